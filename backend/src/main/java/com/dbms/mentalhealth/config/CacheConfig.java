@@ -8,14 +8,17 @@ import com.dbms.mentalhealth.dto.EmergencyHelpline.EmergencyHelplineDTO;
 import com.dbms.mentalhealth.dto.Listener.response.ListenerDetailsResponseDTO;
 import com.dbms.mentalhealth.dto.UserActivity.UserActivityDTO;
 import com.dbms.mentalhealth.dto.adminSettings.response.AdminSettingsResponseDTO;
-import com.dbms.mentalhealth.dto.chatMessage.ChatMessageDTO;
+import com.dbms.mentalhealth.dto.chatMessage.ChatMessagePageDTO;
 import com.dbms.mentalhealth.dto.listenerApplication.response.ListenerApplicationResponseDTO;
 import com.dbms.mentalhealth.dto.listenerApplication.response.ListenerApplicationSummaryResponseDTO;
+import com.dbms.mentalhealth.dto.session.ChatSessionInfo;
 import com.dbms.mentalhealth.dto.session.response.SessionResponseDTO;
 import com.dbms.mentalhealth.dto.SessionReport.response.SessionReportResponseDTO;
 import com.dbms.mentalhealth.dto.SessionReport.response.SessionReportSummaryResponseDTO;
 import com.dbms.mentalhealth.dto.sessionFeedback.response.SessionFeedbackResponseDTO;
 import com.dbms.mentalhealth.dto.sessionFeedback.response.SessionFeedbackSummaryResponseDTO;
+import com.dbms.mentalhealth.dto.user.ChatParticipant;
+import com.dbms.mentalhealth.model.ModerationResult;
 import com.dbms.mentalhealth.model.Session;
 import com.dbms.mentalhealth.service.UserActivityService;
 import com.dbms.mentalhealth.util.Cache.CacheKey.*;
@@ -166,9 +169,9 @@ public class CacheConfig {
                 .build();
     }
 
-    // Chat and metrics caches
+    // Chat and metrics caches; only the newest page of each session's history is cached
     @Bean
-    public Cache<SessionCacheKey, List<ChatMessageDTO>> chatMessageCache() {
+    public Cache<SessionCacheKey, ChatMessagePageDTO> chatMessageCache() {
         return createListBuilder()
                 .maximumSize(STANDARD_CACHE_SIZE)
                 .build();
@@ -263,25 +266,20 @@ public class CacheConfig {
     }
 
     @Bean
-    public Cache<String, List<UserActivityDTO>> roleBasedDetailsCache() {
-        return createBaseBuilder()
-                .expireAfterWrite(USER_INACTIVITY_MINUTES, TimeUnit.MINUTES)
-                .maximumSize(MEDIUM_CACHE_SIZE)
+    public Cache<String, LocalDateTime> blogViewCache() {
+        return Caffeine.newBuilder()
+                .expireAfterWrite(10, TimeUnit.MINUTES)  // 10 minute cooldown
+                .maximumSize(10000)  // Adjust based on your needs
+                .recordStats()
                 .build();
     }
 
+    // Moderation verdicts keyed by the SHA-256 of the normalized message
     @Bean
-    public Cache<Integer, Integer> currentlyInSessionCache() {
-        return createBaseBuilder()
-                .expireAfterWrite(USER_INACTIVITY_MINUTES, TimeUnit.MINUTES)
-                .maximumSize(LARGE_CACHE_SIZE)
-                .build();
-    }
-    @Bean
-    public Cache<String, LocalDateTime> blogViewCache() {
+    public Cache<String, ModerationResult> moderationVerdictCache(PreModerationConfig preModerationConfig) {
         return Caffeine.newBuilder()
-                .expireAfterWrite(10, TimeUnit.MINUTES)  // 10 minute cooldown
-                .maximumSize(10000)  // Adjust based on your needs
+                .expireAfterWrite(preModerationConfig.getVerdictCacheTtlMinutes(), TimeUnit.MINUTES)
+                .maximumSize(preModerationConfig.getVerdictCacheSize())
                 .recordStats()
                 .build();
     }
@@ -292,4 +290,23 @@ public class CacheConfig {
                 .maximumSize(SMALL_CACHE_SIZE)
                 .build();
     }
-}
\ No newline at end of file
+
+    // Lookups of the chat WebSocket handler; small records, invalidated when the session ends or the user changes
+    @Bean
+    public Cache<Integer, ChatSessionInfo> chatSessionInfoCache(ChatLookupCacheConfig lookupCacheConfig) {
+        return Caffeine.newBuilder()
+                .expireAfterWrite(lookupCacheConfig.getTtlMinutes(), TimeUnit.MINUTES)
+                .maximumSize(lookupCacheConfig.getMaxSessions())
+                .recordStats()
+                .build();
+    }
+
+    @Bean
+    public Cache<String, ChatParticipant> chatParticipantCache(ChatLookupCacheConfig lookupCacheConfig) {
+        return Caffeine.newBuilder()
+                .expireAfterWrite(lookupCacheConfig.getTtlMinutes(), TimeUnit.MINUTES)
+                .maximumSize(lookupCacheConfig.getMaxParticipants())
+                .recordStats()
+                .build();
+    }
+}
@@ -0,0 +1,31 @@
+package com.dbms.mentalhealth.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "chat.flush")
+public class ChatFlushConfig {
+    // Bounds for the adaptive batch size (the message-count trigger)
+    private int minBatchSize = 10;
+    private int maxBatchSize = 5000;
+    private int initialBatchSize = 100;
+    // Additive increase per fast flush; a slow flush halves the batch size
+    private int batchSizeStep = 50;
+    // Flushes slower than this count as a sign of database pressure
+    private long targetLatencyMs = 50;
+    // Byte trigger, estimated from message content length
+    private long maxBatchBytes = 1024 * 1024;
+    // Time trigger: the oldest queued message waits at most this long
+    private long maxDelayMs = 200;
+    // Above highWaterMark new chat messages are refused until the queue drains below lowWaterMark
+    private int highWaterMark = 20000;
+    private int lowWaterMark = 10000;
+    // A failed batch is retried until it succeeds; from this many failures in a row each one is logged as an error
+    private int errorLogAttempts = 5;
+    // Backoff between retries, doubling up to maxRetryBackoffMs
+    private long retryBackoffMs = 200;
+    private long maxRetryBackoffMs = 5000;
+}
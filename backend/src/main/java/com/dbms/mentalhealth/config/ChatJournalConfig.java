@@ -0,0 +1,20 @@
+package com.dbms.mentalhealth.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "chat.journal")
+public class ChatJournalConfig {
+    private boolean enabled = true;
+    // Directory holding the journal segment files; must survive restarts and redeploys, so in containers an
+    // absolute path on a mounted volume (CHAT_JOURNAL_DIR). Relative paths resolve against the working directory
+    private String directory = "data/chat-journal";
+    private int segmentSizeBytes = 16 * 1024 * 1024;
+    // More segment files than this on disk means acknowledgements are not keeping up; logged as an error
+    private int maxSegmentsWarning = 64;
+    // Group commit: how often written entries are forced to disk
+    private long commitIntervalMs = 5;
+}
@@ -0,0 +1,16 @@
+package com.dbms.mentalhealth.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "chat.lookup-cache")
+public class ChatLookupCacheConfig {
+    // Sessions and senders the chat handler resolves per message
+    private int maxSessions = 10000;
+    private int maxParticipants = 20000;
+    // Entries are reloaded after this long even without an explicit invalidation
+    private int ttlMinutes = 10;
+}
@@ -0,0 +1,21 @@
+package com.dbms.mentalhealth.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "chat.moderation")
+public class ChatModerationConfig {
+    // Maximum number of moderation calls running at the same time
+    private int maxConcurrency = 16;
+    // Messages waiting for a moderation slot before new ones are refused
+    private int queueCapacity = 1000;
+    // Time budget for a single message before the failure policy applies
+    private long timeoutMs = 3000;
+    // Threads handing verdicts to the chat handler, which journals, stores and relays the message
+    private int deliveryThreads = 4;
+    // true = deliver the message when moderation cannot decide, false = block it
+    private boolean failOpen = true;
+}
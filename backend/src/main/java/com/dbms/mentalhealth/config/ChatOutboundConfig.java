@@ -0,0 +1,22 @@
+package com.dbms.mentalhealth.config;
+
+import com.dbms.mentalhealth.enums.OutboundOverflowPolicy;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "chat.outbound")
+public class ChatOutboundConfig {
+    // Threads writing to WebSocket connections; a connection is drained by at most one at a time
+    private int writerThreads = 8;
+    // A connection whose current send takes longer than this is closed as a slow consumer; also the
+    // container's write timeout, so a writer thread is never held longer than this by one client
+    private long sendTimeLimitMs = 5000;
+    private int bufferSizeLimitBytes = 512 * 1024;
+    private int bufferSizeLimitMessages = 1000;
+    private OutboundOverflowPolicy overflowPolicy = OutboundOverflowPolicy.CLOSE;
+    // Frames sent per drain pass before the writer yields to other connections
+    private int maxFramesPerDrain = 64;
+}
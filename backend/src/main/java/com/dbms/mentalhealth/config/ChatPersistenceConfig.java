@@ -0,0 +1,18 @@
+package com.dbms.mentalhealth.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "chat.persistence")
+public class ChatPersistenceConfig {
+    // Write chat messages with plain JDBC batches instead of one Hibernate INSERT per row. Hibernate cannot
+    // batch these inserts itself: chat_messages uses IDENTITY ids, which turn off hibernate.jdbc.batch_size
+    private boolean jdbcBatchEnabled = true;
+    // Rows per executeBatch call; the driver rewrites each batch into multi-row INSERTs
+    private int jdbcBatchSize = 500;
+    // Users per UPDATE ... FROM (VALUES ...) statement when flushing message counters
+    private int counterChunkSize = 1000;
+}
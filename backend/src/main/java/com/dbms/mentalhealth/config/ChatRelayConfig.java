@@ -0,0 +1,18 @@
+package com.dbms.mentalhealth.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "chat.relay")
+public class ChatRelayConfig {
+    // in-process: single instance only; postgres: fan out across replicas with LISTEN/NOTIFY
+    private String type = "in-process";
+    private String channel = "chat_relay";
+    private long pollTimeoutMs = 500;
+    private long reconnectBackoffMs = 2000;
+    // Events waiting for the publisher thread to NOTIFY them; further events are not relayed
+    private int publishQueueCapacity = 10000;
+}
@@ -0,0 +1,18 @@
+package com.dbms.mentalhealth.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "chat.replay")
+public class ChatReplayConfig {
+    // Recent frames kept per chat session for resuming v2 clients
+    private int bufferSize = 256;
+    private int maxSessions = 10000;
+    // Buffers of sessions without traffic are dropped after this long
+    private int retentionMinutes = 30;
+    // Upper bound on messages replayed from the database when the gap has left the buffer
+    private int maxDatabaseReplay = 1000;
+}
@@ -0,0 +1,21 @@
+package com.dbms.mentalhealth.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "gemini.cache")
+public class GeminiCacheConfig {
+    private boolean enabled = true;
+    // Keep analysis responses in the database so they survive restarts and are shared between instances
+    private boolean persistent = true;
+    // In-memory entries per use case
+    private int memoryMaxEntries = 5000;
+    // In-memory entries never outlive this, even if the use case TTL is longer
+    private int memoryTtlMinutes = 60;
+    private int moderationTtlMinutes = 1440;
+    // Long enough that a retried analysis finds the answer of the attempt that failed afterwards
+    private int analysisTtlMinutes = 10080;
+}
@@ -0,0 +1,60 @@
+package com.dbms.mentalhealth.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "gemini.client")
+public class GeminiClientConfig {
+    private long connectTimeoutMs = 2000;
+    // Backoff before retry n is drawn from [cap / 2, cap] with cap = min(max, initial * 2^(n - 1))
+    private long initialBackoffMs = 200;
+    private long maxBackoffMs = 2000;
+
+    // Chat moderation sits on the message path: a single attempt that ends inside chat.moderation.timeout-ms
+    private UseCase moderation = new UseCase(2500, 32, 1);
+    // Session analysis runs in the background on long prompts; room for the analysis workers plus chunk summaries
+    private UseCase analysis = new UseCase(60000, 8, 3);
+
+    /**
+     * Longest a call of the given use case can take: every attempt timing out plus the longest backoff
+     * before each retry.
+     */
+    public long worstCaseMs(UseCase useCase) {
+        long total = 0;
+        for (int attempt = 1; attempt <= useCase.getMaxAttempts(); attempt++) {
+            total += useCase.getReadTimeoutMs();
+            if (attempt < useCase.getMaxAttempts()) {
+                total += Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempt - 1, 20));
+            }
+        }
+        return total;
+    }
+
+    @Data
+    public static class UseCase {
+        private long readTimeoutMs;
+        // Bulkhead: calls in flight at once; further calls are rejected instead of queued
+        private int maxConcurrentCalls;
+        private int maxAttempts;
+
+        // Circuit breaker over the last slidingWindowSize attempts
+        private int slidingWindowSize = 20;
+        private int minimumCalls = 10;
+        private int failureRateThreshold = 50;
+        private long openStateMs = 30000;
+        // Trial calls let through once the open state has elapsed
+        private int halfOpenProbes = 3;
+
+        public UseCase() {
+        }
+
+        public UseCase(long readTimeoutMs, int maxConcurrentCalls, int maxAttempts) {
+            this.readTimeoutMs = readTimeoutMs;
+            this.maxConcurrentCalls = maxConcurrentCalls;
+            this.maxAttempts = maxAttempts;
+        }
+    }
+}
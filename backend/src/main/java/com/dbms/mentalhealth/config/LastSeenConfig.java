@@ -0,0 +1,15 @@
+package com.dbms.mentalhealth.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "presence.last-seen")
+public class LastSeenConfig {
+    // Time between flushes of buffered last-seen timestamps, which bounds how stale users.last_seen gets
+    private long flushIntervalMs = 5000;
+    // Users per UPDATE ... FROM (VALUES ...) statement
+    private int chunkSize = 1000;
+}
@@ -0,0 +1,16 @@
+package com.dbms.mentalhealth.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "chat.moderation.batch")
+public class ModerationBatchConfig {
+    private boolean enabled = true;
+    // How long the first message of a batch waits for others before the batch is sent
+    private long windowMs = 25;
+    // A batch is sent as soon as it holds this many messages
+    private int maxBatchSize = 16;
+}
@@ -0,0 +1,23 @@
+package com.dbms.mentalhealth.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "chat.moderation.pre")
+public class PreModerationConfig {
+    private boolean enabled = true;
+    // Phrases that block a message outright when they appear as whole words
+    private List<String> blocklist = new ArrayList<>();
+    // Phrases that make a short message clearly benign when it consists only of them
+    private List<String> allowlist = new ArrayList<>();
+    // Longer messages always go to the remote moderator even if every word is allowlisted
+    private int maxAllowlistWords = 6;
+    private int verdictCacheSize = 10000;
+    private int verdictCacheTtlMinutes = 60;
+}
@@ -0,0 +1,38 @@
+package com.dbms.mentalhealth.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "analysis")
+public class SessionAnalysisConfig {
+    // Sessions analyzed at the same time on this instance
+    private int workers = 4;
+    // Upper bound for one claim; an instance never claims more jobs than it has idle workers
+    private int claimBatchSize = 20;
+    // Time after which a claimed job whose instance died can be claimed again; renewed on every scheduler
+    // tick while the job runs, so it only has to outlast a few missed ticks
+    private long leaseSeconds = 600;
+    // A job running longer than this is considered hung: its lease is no longer renewed, so it expires
+    // and the job is claimed again, or dead-lettered if that was its last attempt
+    private long maxRunSeconds = 3600;
+    // Attempts before a job is dead-lettered and left for manual inspection
+    private int maxAttempts = 5;
+    private long initialBackoffSeconds = 60;
+    private long maxBackoffSeconds = 3600;
+    private Summarization summarization = new Summarization();
+
+    @Data
+    public static class Summarization {
+        // Transcripts estimated at or below this size are analyzed with a single prompt
+        private int singleShotMaxTokens = 8000;
+        // Size of one chunk of a longer transcript, summarized on its own
+        private int chunkMaxTokens = 3000;
+        // Rough size estimate; no tokenizer is available locally
+        private int charsPerToken = 4;
+        // Chunk summaries requested at the same time across all analysis workers
+        private int chunkConcurrency = 4;
+    }
+}
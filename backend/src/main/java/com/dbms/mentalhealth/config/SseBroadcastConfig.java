@@ -0,0 +1,13 @@
+package com.dbms.mentalhealth.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "sse.broadcast")
+public class SseBroadcastConfig {
+    // Changes within one tick are sent as at most one event per topic
+    private long tickMs = 250;
+}
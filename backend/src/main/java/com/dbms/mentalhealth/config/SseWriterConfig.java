@@ -0,0 +1,17 @@
+package com.dbms.mentalhealth.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "sse.writer")
+public class SseWriterConfig {
+    // Threads writing to SSE subscribers; a write stuck past sendTimeLimitMs gets a thread added in its place
+    private int threads = 4;
+    // A subscriber whose write, or oldest queued event, is older than this is closed, whatever its delivery
+    private long sendTimeLimitMs = 10000;
+    // Events a QUEUE subscriber may have waiting before it is dropped
+    private int queueCapacity = 64;
+}
@@ -2,8 +2,10 @@ package com.dbms.mentalhealth.controller;
 
 import com.dbms.mentalhealth.websocket.ChatWebSocketHandler;
 import com.dbms.mentalhealth.dto.chatMessage.ChatMessageDTO;
+import com.dbms.mentalhealth.dto.chatMessage.ChatMessagePageDTO;
 import com.dbms.mentalhealth.dto.session.response.SessionResponseDTO;
 import com.dbms.mentalhealth.dto.session.response.SessionSummaryDTO;
+import com.dbms.mentalhealth.enums.MessageHistoryDirection;
 import com.dbms.mentalhealth.service.SessionService;
 import com.dbms.mentalhealth.urlMapper.SessionUrlMapping;
 import com.dbms.mentalhealth.util.Etags.SessionETagGenerator;
@@ -74,6 +76,10 @@ public class SessionController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * @deprecated returns the whole history; use {@link #getMessagePage} instead
+     */
+    @Deprecated
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @GetMapping(SessionUrlMapping.GET_MESSAGES_BY_SESSION_ID)
     public ResponseEntity<List<ChatMessageDTO>> getMessagesBySessionId(@PathVariable Integer sessionId) {
@@ -81,6 +87,17 @@ public class SessionController {
         return ResponseEntity.ok(messages);
     }
 
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @GetMapping(SessionUrlMapping.GET_MESSAGE_PAGE_BY_SESSION_ID)
+    public ResponseEntity<ChatMessagePageDTO> getMessagePage(
+            @PathVariable Integer sessionId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "BEFORE") MessageHistoryDirection direction,
+            @RequestParam(required = false) Integer limit) {
+        ChatMessagePageDTO page = sessionService.getMessagePage(sessionId, cursor, direction, limit);
+        return ResponseEntity.ok(page);
+    }
+
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @GetMapping(SessionUrlMapping.AVG_SESSION_DURATION)
     public String getAverageSessionDuration() {
@@ -1,10 +1,15 @@
 package com.dbms.mentalhealth.controller;
 
+import com.dbms.mentalhealth.dto.UserActivity.PresenceSnapshotDTO;
+import com.dbms.mentalhealth.enums.CacheKey;
+import com.dbms.mentalhealth.exception.appointment.InvalidRequestException;
 import com.dbms.mentalhealth.exception.sse.EmitterCreationException;
 import com.dbms.mentalhealth.service.UserActivityService;
 import com.dbms.mentalhealth.urlMapper.SSEUrlMapping;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
@@ -20,9 +25,14 @@ public class UserActivityController {
 
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @GetMapping(SSEUrlMapping.SSE_ALL_ONLINE_USERS)
-    public SseEmitter streamAllOnlineUsers(@RequestParam("token") String token) {
+    public SseEmitter streamAllOnlineUsers(@RequestParam("token") String token,
+                                           @RequestParam(value = "delta", defaultValue = "false") boolean delta) {
         try {
             SseEmitter emitter = userActivityService.createEmitter();
+            if (delta) {
+                userActivityService.addPresenceDeltaEmitter(emitter, CacheKey.ALL_USERS);
+                return emitter;
+            }
             userActivityService.addAllUsersEmitter(emitter);
             userActivityService.sendInitialAllUsers(emitter);
             return emitter;
@@ -46,9 +56,14 @@ public class UserActivityController {
 
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @GetMapping(SSEUrlMapping.SSE_ONLINE_ADMINS)
-    public SseEmitter streamOnlineAdmins(@RequestParam("token") String token) {
+    public SseEmitter streamOnlineAdmins(@RequestParam("token") String token,
+                                         @RequestParam(value = "delta", defaultValue = "false") boolean delta) {
         try {
             SseEmitter emitter = userActivityService.createEmitter();
+            if (delta) {
+                userActivityService.addPresenceDeltaEmitter(emitter, CacheKey.ADMIN_DETAILS);
+                return emitter;
+            }
             userActivityService.addAdminEmitter(emitter);
             userActivityService.sendInitialAdminDetails(emitter);
             return emitter;
@@ -59,9 +74,14 @@ public class UserActivityController {
 
     @PreAuthorize("isAuthenticated()")
     @GetMapping(SSEUrlMapping.SSE_ONLINE_LISTENERS)
-    public SseEmitter streamOnlineListeners(@RequestParam("token") String token) {
+    public SseEmitter streamOnlineListeners(@RequestParam("token") String token,
+                                            @RequestParam(value = "delta", defaultValue = "false") boolean delta) {
         try {
             SseEmitter emitter = userActivityService.createEmitter();
+            if (delta) {
+                userActivityService.addPresenceDeltaEmitter(emitter, CacheKey.LISTENER_DETAILS);
+                return emitter;
+            }
             userActivityService.addListenerEmitter(emitter);
             userActivityService.sendInitialListenerDetails(emitter);
             return emitter;
@@ -72,9 +92,14 @@ public class UserActivityController {
 
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @GetMapping(SSEUrlMapping.SSE_ONLINE_USERS)
-    public SseEmitter streamOnlineUsers(@RequestParam("token") String token) {
+    public SseEmitter streamOnlineUsers(@RequestParam("token") String token,
+                                        @RequestParam(value = "delta", defaultValue = "false") boolean delta) {
         try {
             SseEmitter emitter = userActivityService.createEmitter();
+            if (delta) {
+                userActivityService.addPresenceDeltaEmitter(emitter, CacheKey.USER_DETAILS);
+                return emitter;
+            }
             userActivityService.addUserEmitter(emitter);
             userActivityService.sendInitialUserDetails(emitter);
             return emitter;
@@ -83,6 +108,20 @@ public class UserActivityController {
         }
     }
 
+    // Topics are the event names: allUsers, adminDetails, listenerDetails and userDetails
+    @PreAuthorize("#topic == 'listenerDetails' or hasRole('ROLE_ADMIN')")
+    @GetMapping(SSEUrlMapping.SSE_PRESENCE_SNAPSHOT)
+    public ResponseEntity<PresenceSnapshotDTO> getPresenceSnapshot(@PathVariable("topic") String topic,
+                                                                   @RequestParam("token") String token) {
+        CacheKey presenceTopic;
+        try {
+            presenceTopic = CacheKey.fromEventName(topic);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException("Unknown presence topic: " + topic);
+        }
+        return ResponseEntity.ok(userActivityService.getPresenceSnapshot(presenceTopic));
+    }
+
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @GetMapping(SSEUrlMapping.SSE_ACTIVE_SESSIONS)
     public SseEmitter streamActiveSessions(@RequestParam("token") String token) {
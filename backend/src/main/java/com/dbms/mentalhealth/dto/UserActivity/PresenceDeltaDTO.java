@@ -0,0 +1,14 @@
+package com.dbms.mentalhealth.dto.UserActivity;
+
+import com.dbms.mentalhealth.enums.PresenceChangeType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class PresenceDeltaDTO {
+    // Per topic, one more than the version of the previous delta
+    private final long version;
+    private final PresenceChangeType type;
+    private final UserActivityDTO user;
+}
@@ -0,0 +1,14 @@
+package com.dbms.mentalhealth.dto.UserActivity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class PresenceSnapshotDTO {
+    // Version of the last delta the list includes
+    private final long version;
+    private final List<UserActivityDTO> users;
+}
@@ -0,0 +1,33 @@
+package com.dbms.mentalhealth.dto.chatMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position of a message in a session's history. Messages are ordered by {@code sentAt}, then
+ * {@code messageId}, so the pair is unique and stable while new messages are appended.
+ */
+public record ChatMessageCursor(LocalDateTime sentAt, Integer messageId) {
+
+    public static ChatMessageCursor of(ChatMessageDTO message) {
+        return new ChatMessageCursor(message.getSentAt(), message.getMessageId());
+    }
+
+    public String encode() {
+        String raw = sentAt + "|" + messageId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ChatMessageCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            return new ChatMessageCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                    Integer.valueOf(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid message cursor: " + cursor, e);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.dbms.mentalhealth.dto.chatMessage;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChatMessagePageDTO {
+    // Oldest first, whichever direction the page was read in
+    private List<ChatMessageDTO> messages;
+    // Pass back with the same direction to continue; null only for an empty session
+    private String nextCursor;
+    private boolean hasMore;
+}
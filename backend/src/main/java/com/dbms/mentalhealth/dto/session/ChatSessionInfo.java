@@ -0,0 +1,11 @@
+package com.dbms.mentalhealth.dto.session;
+
+/**
+ * What the chat handler needs to know about a session, loaded as a projection instead of the entity.
+ */
+public record ChatSessionInfo(Integer sessionId, Integer userId, Integer listenerUserId) {
+
+    public boolean hasParticipant(Integer participantUserId) {
+        return participantUserId.equals(userId) || participantUserId.equals(listenerUserId);
+    }
+}
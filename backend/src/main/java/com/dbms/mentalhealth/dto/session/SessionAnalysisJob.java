@@ -0,0 +1,7 @@
+package com.dbms.mentalhealth.dto.session;
+
+/**
+ * A session status row claimed for analysis. {@code attempt} counts this claim, starting at 1.
+ */
+public record SessionAnalysisJob(Integer statusId, Integer sessionId, int attempt) {
+}
@@ -0,0 +1,7 @@
+package com.dbms.mentalhealth.dto.user;
+
+/**
+ * A chat sender resolved from its anonymous name.
+ */
+public record ChatParticipant(Integer userId, String anonymousName) {
+}
@@ -0,0 +1,12 @@
+package com.dbms.mentalhealth.enums;
+
+// In dispatch order: refreshing the session details marks the presence topics, which then go out in the same tick
+public enum BroadcastTopic {
+    SESSION_DETAILS,
+    ALL_USERS,
+    ADMIN_DETAILS,
+    LISTENER_DETAILS,
+    USER_DETAILS,
+    ROLE_COUNTS,
+    FULL_CACHE_DETAILS
+}
@@ -31,6 +31,15 @@ public enum CacheKey {
         return role;
     }
 
+    public static CacheKey fromEventName(String eventName) {
+        for (CacheKey key : values()) {
+            if (key.eventName.equals(eventName)) {
+                return key;
+            }
+        }
+        throw new IllegalArgumentException("No cache key for event name: " + eventName);
+    }
+
     public static CacheKey fromRole(Role role) {
         for (CacheKey key : values()) {
             if (role.equals(key.role)) {
@@ -0,0 +1,6 @@
+package com.dbms.mentalhealth.enums;
+
+public enum GeminiUseCase {
+    MODERATION,
+    ANALYSIS
+}
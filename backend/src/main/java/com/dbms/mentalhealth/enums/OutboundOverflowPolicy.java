@@ -0,0 +1,10 @@
+package com.dbms.mentalhealth.enums;
+
+public enum OutboundOverflowPolicy {
+    // Discard the new frame
+    DROP,
+    // Replace a still-queued frame with the same key; discard the new frame if it cannot be merged
+    COALESCE,
+    // Close the connection with a reason; the client reconnects and reloads history
+    CLOSE
+}
@@ -0,0 +1,9 @@
+package com.dbms.mentalhealth.enums;
+
+public enum OutboundResult {
+    QUEUED,
+    // Took the place of a still-queued frame, which the client will not receive
+    COALESCED,
+    // Not queued: the connection is closed or its buffer is full
+    REJECTED
+}
@@ -0,0 +1,10 @@
+package com.dbms.mentalhealth.enums;
+
+public enum PresenceChangeType {
+    // The user came online
+    JOIN,
+    // The user went offline
+    LEAVE,
+    // The user entered or left a session
+    SESSION_CHANGED
+}
@@ -0,0 +1,9 @@
+package com.dbms.mentalhealth.enums;
+
+// How a subscriber's queued events are kept while its writer catches up
+public enum SseDelivery {
+    // Snapshot events: a newer event of the same name replaces the queued one
+    LATEST,
+    // Notifications and deltas: every event in order, up to sse.writer.queue-capacity
+    QUEUE
+}
@@ -0,0 +1,11 @@
+package com.dbms.mentalhealth.exception.gemini;
+
+public class GeminiUnavailableException extends RuntimeException {
+    public GeminiUnavailableException(String message) {
+        super(message);
+    }
+
+    public GeminiUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
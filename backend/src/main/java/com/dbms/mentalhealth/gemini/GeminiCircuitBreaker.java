@@ -0,0 +1,109 @@
+package com.dbms.mentalhealth.gemini;
+
+import com.dbms.mentalhealth.config.GeminiClientConfig;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Count-based circuit breaker. Opens when the failure rate over the last {@code slidingWindowSize}
+ * attempts reaches the threshold; after {@code openStateMs} it lets {@code halfOpenProbes} trial calls
+ * through and closes once all of them succeed, or opens again on the first failure.
+ */
+@Slf4j
+final class GeminiCircuitBreaker {
+
+    enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    private final String name;
+    private final GeminiClientConfig.UseCase config;
+    private final boolean[] window;
+
+    private State state = State.CLOSED;
+    private int next;
+    private int recorded;
+    private int failures;
+    private long openedAt;
+    private int probesInFlight;
+    private int probeSuccesses;
+
+    GeminiCircuitBreaker(String name, GeminiClientConfig.UseCase config) {
+        this.name = name;
+        this.config = config;
+        this.window = new boolean[Math.max(1, config.getSlidingWindowSize())];
+    }
+
+    synchronized boolean tryAcquirePermission() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < config.getOpenStateMs()) {
+                return false;
+            }
+            transition(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesInFlight >= config.getHalfOpenProbes()) {
+                return false;
+            }
+            probesInFlight++;
+        }
+        return true;
+    }
+
+    // For a permission that was acquired but not used for a call
+    synchronized void releasePermission() {
+        if (state == State.HALF_OPEN && probesInFlight > 0) {
+            probesInFlight--;
+        }
+    }
+
+    synchronized void onResult(boolean failure) {
+        switch (state) {
+            case HALF_OPEN -> {
+                probesInFlight = Math.max(0, probesInFlight - 1);
+                if (failure) {
+                    transition(State.OPEN);
+                } else if (++probeSuccesses >= config.getHalfOpenProbes()) {
+                    transition(State.CLOSED);
+                }
+            }
+            case CLOSED -> {
+                if (recorded == window.length) {
+                    failures -= window[next] ? 1 : 0;
+                } else {
+                    recorded++;
+                }
+                window[next] = failure;
+                failures += failure ? 1 : 0;
+                next = (next + 1) % window.length;
+                if (recorded >= config.getMinimumCalls() && failures * 100 >= config.getFailureRateThreshold() * recorded) {
+                    transition(State.OPEN);
+                }
+            }
+            case OPEN -> {
+                // A call that started before the circuit opened
+            }
+        }
+    }
+
+    synchronized State state() {
+        return state;
+    }
+
+    synchronized double failureRate() {
+        return recorded == 0 ? 0 : (double) failures / recorded;
+    }
+
+    private void transition(State target) {
+        log.warn("Gemini {} circuit {} -> {} (failure rate {}/{})", name, state, target, failures, recorded);
+        state = target;
+        probesInFlight = 0;
+        probeSuccesses = 0;
+        if (target == State.OPEN) {
+            openedAt = System.currentTimeMillis();
+        } else if (target == State.CLOSED) {
+            next = 0;
+            recorded = 0;
+            failures = 0;
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package com.dbms.mentalhealth.gemini;
+
+import com.dbms.mentalhealth.config.GeminiClientConfig;
+import com.dbms.mentalhealth.enums.GeminiUseCase;
+import com.dbms.mentalhealth.exception.gemini.GeminiUnavailableException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Shared HTTP client for the Gemini API. One JDK {@link HttpClient} keeps pooled keep-alive connections
+ * and negotiates HTTP/2; each use case gets its own read timeout, bulkhead, retry budget and circuit
+ * breaker, so a slow analysis backlog cannot starve chat moderation or the other way round.
+ * <p>
+ * 429 and 5xx responses, timeouts and I/O errors are retried with jittered exponential backoff,
+ * honouring {@code Retry-After}. Calls rejected by an open circuit or a full bulkhead fail immediately
+ * with {@link GeminiUnavailableException}. The read timeout covers the whole attempt: the request only
+ * bounds the wait for the headers, so the body is closed once the rest of the time is up, which ends a
+ * stalled read and frees the bulkhead permit. Response bodies are read as streams by
+ * {@link GeminiResponseParser}; a body that is not the expected JSON fails with
+ * {@link UncheckedIOException} and is not retried.
+ */
+@Slf4j
+@Component
+public class GeminiClient {
+
+    private enum Outcome {
+        SUCCESS(false, false),
+        CLIENT_ERROR(true, false),
+        THROTTLED(true, true),
+        SERVER_ERROR(true, true),
+        TIMEOUT(true, true),
+        IO_ERROR(true, true);
+
+        final boolean failure;
+        final boolean retryable;
+
+        Outcome(boolean failure, boolean retryable) {
+            this.failure = failure;
+            this.retryable = retryable;
+        }
+
+        String tag() {
+            return name().toLowerCase();
+        }
+    }
+
+    @FunctionalInterface
+    private interface BodyReader<T> {
+        T read(InputStream body) throws IOException;
+    }
+
+    private final class Lane {
+        final GeminiUseCase useCase;
+        final GeminiClientConfig.UseCase settings;
+        final GeminiCircuitBreaker breaker;
+        final Semaphore bulkhead;
+        final Counter retries;
+
+        Lane(GeminiUseCase useCase, GeminiClientConfig.UseCase settings) {
+            this.useCase = useCase;
+            this.settings = settings;
+            this.breaker = new GeminiCircuitBreaker(tag(useCase), settings);
+            this.bulkhead = new Semaphore(settings.getMaxConcurrentCalls());
+            this.retries = Counter.builder("gemini.client.retries")
+                    .tag("use_case", tag(useCase))
+                    .register(meterRegistry);
+            Gauge.builder("gemini.client.circuit.state", breaker, b -> b.state().ordinal())
+                    .description("0 closed, 1 half-open, 2 open")
+                    .tag("use_case", tag(useCase))
+                    .register(meterRegistry);
+            Gauge.builder("gemini.client.failure.rate", breaker, GeminiCircuitBreaker::failureRate)
+                    .description("Failure rate over the circuit breaker's sliding window")
+                    .tag("use_case", tag(useCase))
+                    .register(meterRegistry);
+            Gauge.builder("gemini.client.in.flight", bulkhead, b -> settings.getMaxConcurrentCalls() - b.availablePermits())
+                    .tag("use_case", tag(useCase))
+                    .register(meterRegistry);
+        }
+    }
+
+    private final GeminiClientConfig config;
+    private final MeterRegistry meterRegistry;
+    private final HttpClient httpClient;
+    private final URI endpoint;
+    private final URI streamEndpoint;
+    private final Map<GeminiUseCase, Lane> lanes = new EnumMap<>(GeminiUseCase.class);
+    // Closes response bodies still being read when their attempt runs out of time
+    private final ScheduledExecutorService deadlines = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "gemini-deadline");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public GeminiClient(GeminiClientConfig config,
+                        MeterRegistry meterRegistry,
+                        @Value("${spring.ai.google.gemini.url}") String geminiUrl,
+                        @Value("${spring.ai.google.gemini.api-key}") String apiKey) {
+        this.config = config;
+        this.meterRegistry = meterRegistry;
+        this.endpoint = URI.create(geminiUrl + "?key=" + apiKey);
+        this.streamEndpoint = URI.create(geminiUrl.replace(":generateContent", ":streamGenerateContent") + "?alt=sse&key=" + apiKey);
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(config.getConnectTimeoutMs()))
+                .build();
+        lanes.put(GeminiUseCase.MODERATION, new Lane(GeminiUseCase.MODERATION, config.getModeration()));
+        lanes.put(GeminiUseCase.ANALYSIS, new Lane(GeminiUseCase.ANALYSIS, config.getAnalysis()));
+    }
+
+    /**
+     * Posts a generateContent request body and returns the text of the first candidate.
+     */
+    public String generateContent(String requestBody, GeminiUseCase useCase) {
+        return execute(requestBody, useCase, endpoint, body -> {
+            String text = GeminiResponseParser.extractText(body);
+            // The parser stops at the text; read the rest so the connection can be reused
+            body.transferTo(OutputStream.nullOutputStream());
+            return text;
+        });
+    }
+
+    /**
+     * Posts the request body to {@code streamGenerateContent} and feeds the streamed text to a handler from
+     * {@code handlers}, one per attempt. The stream is closed as soon as the handler has its result, which
+     * also stops the generation of the remaining chunks.
+     */
+    public <T> T streamGenerateContent(String requestBody, GeminiUseCase useCase,
+                                       Supplier<? extends GeminiStreamHandler<T>> handlers) {
+        return execute(requestBody, useCase, streamEndpoint, body -> GeminiResponseParser.readEventStream(body, handlers.get()));
+    }
+
+    // The body is read while the bulkhead permit is held and counts towards the attempt's latency and deadline
+    private <T> T execute(String requestBody, GeminiUseCase useCase, URI uri, BodyReader<T> reader) {
+        Lane lane = lanes.get(useCase);
+        for (int attempt = 1; ; attempt++) {
+            if (!lane.breaker.tryAcquirePermission()) {
+                count(useCase, "circuit_open");
+                throw new GeminiUnavailableException("Gemini circuit is open for " + tag(useCase));
+            }
+            if (!lane.bulkhead.tryAcquire()) {
+                lane.breaker.releasePermission();
+                count(useCase, "bulkhead_full");
+                throw new GeminiUnavailableException("Too many Gemini " + tag(useCase) + " calls in flight");
+            }
+
+            HttpResponse<InputStream> response = null;
+            T result = null;
+            String errorBody = null;
+            Exception error = null;
+            JsonProcessingException unreadable = null;
+            Outcome outcome;
+            long start = System.nanoTime();
+            long deadline = start + TimeUnit.MILLISECONDS.toNanos(lane.settings.getReadTimeoutMs());
+            AtomicBoolean expired = new AtomicBoolean();
+            ScheduledFuture<?> watchdog = null;
+            try {
+                response = httpClient.send(request(uri, requestBody, lane.settings), HttpResponse.BodyHandlers.ofInputStream());
+                outcome = classify(response.statusCode());
+                InputStream body = response.body();
+                watchdog = closeAt(deadline, body, expired);
+                try (body) {
+                    if (outcome == Outcome.SUCCESS) {
+                        result = reader.read(body);
+                    } else {
+                        errorBody = new String(body.readAllBytes(), StandardCharsets.UTF_8);
+                    }
+                }
+            } catch (IOException e) {
+                if (expired.get()) {
+                    // Whatever the closed body made the reader throw, the attempt ran out of time
+                    outcome = Outcome.TIMEOUT;
+                    error = new HttpTimeoutException("Response body not read within "
+                            + lane.settings.getReadTimeoutMs() + " ms");
+                } else if (e instanceof JsonProcessingException json) {
+                    // Gemini answered, only not in the expected shape: no reason to retry or to trip the breaker
+                    outcome = Outcome.SUCCESS;
+                    unreadable = json;
+                } else {
+                    outcome = e instanceof HttpTimeoutException ? Outcome.TIMEOUT : Outcome.IO_ERROR;
+                    error = e;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                lane.breaker.releasePermission();
+                throw new GeminiUnavailableException("Interrupted while calling Gemini", e);
+            } finally {
+                if (watchdog != null) {
+                    watchdog.cancel(false);
+                }
+                lane.bulkhead.release();
+            }
+
+            Timer.builder("gemini.client.latency")
+                    .description("Duration of one Gemini API attempt")
+                    .tag("use_case", tag(useCase))
+                    .tag("outcome", outcome.tag())
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            count(useCase, outcome.tag());
+            lane.breaker.onResult(outcome.failure);
+
+            if (unreadable != null) {
+                throw new UncheckedIOException("Unreadable Gemini " + tag(useCase) + " response", unreadable);
+            }
+            if (outcome == Outcome.SUCCESS) {
+                return result;
+            }
+            String detail = response != null && error == null
+                    ? "status " + response.statusCode() + ": " + errorBody
+                    : error.getClass().getSimpleName() + ": " + error.getMessage();
+            if (!outcome.retryable || attempt >= lane.settings.getMaxAttempts()) {
+                log.error("Gemini {} call failed after {} attempt(s), {}", tag(useCase), attempt, detail);
+                throw new GeminiUnavailableException("Gemini " + tag(useCase) + " call failed with " + detail, error);
+            }
+
+            long backoff = backoffMillis(attempt, response);
+            log.warn("Gemini {} attempt {} failed ({}); retrying in {} ms", tag(useCase), attempt, outcome.tag(), backoff);
+            lane.retries.increment();
+            try {
+                TimeUnit.MILLISECONDS.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new GeminiUnavailableException("Interrupted while waiting to retry Gemini", e);
+            }
+        }
+    }
+
+    // Closing the body from another thread makes a read blocked on it fail
+    private ScheduledFuture<?> closeAt(long deadline, InputStream body, AtomicBoolean expired) {
+        return deadlines.schedule(() -> {
+            expired.set(true);
+            try {
+                body.close();
+            } catch (IOException e) {
+                log.debug("Could not close Gemini response body: {}", e.getMessage());
+            }
+        }, Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    private HttpRequest request(URI uri, String body, GeminiClientConfig.UseCase settings) {
+        return HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofMillis(settings.getReadTimeoutMs()))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static Outcome classify(int status) {
+        if (status >= 200 && status < 300) {
+            return Outcome.SUCCESS;
+        }
+        if (status == 429) {
+            return Outcome.THROTTLED;
+        }
+        return status >= 500 ? Outcome.SERVER_ERROR : Outcome.CLIENT_ERROR;
+    }
+
+    private long backoffMillis(int attempt, HttpResponse<?> response) {
+        long cap = Math.min(config.getMaxBackoffMs(), config.getInitialBackoffMs() << Math.min(attempt - 1, 20));
+        long backoff = cap / 2 + ThreadLocalRandom.current().nextLong(cap / 2 + 1);
+        if (response != null) {
+            // Retry-After in seconds; the HTTP-date form is ignored
+            long retryAfter = response.headers().firstValue("Retry-After")
+                    .map(value -> {
+                        try {
+                            return TimeUnit.SECONDS.toMillis(Long.parseLong(value.trim()));
+                        } catch (NumberFormatException e) {
+                            return 0L;
+                        }
+                    })
+                    .orElse(0L);
+            backoff = Math.max(backoff, Math.min(retryAfter, config.getMaxBackoffMs()));
+        }
+        return backoff;
+    }
+
+    private void count(GeminiUseCase useCase, String outcome) {
+        Counter.builder("gemini.client.calls")
+                .description("Gemini API attempts and rejected calls by outcome")
+                .tag("use_case", tag(useCase))
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private static String tag(GeminiUseCase useCase) {
+        return useCase.name().toLowerCase();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        deadlines.shutdownNow();
+    }
+}
@@ -0,0 +1,227 @@
+package com.dbms.mentalhealth.gemini;
+
+import com.dbms.mentalhealth.config.GeminiCacheConfig;
+import com.dbms.mentalhealth.enums.GeminiUseCase;
+import com.dbms.mentalhealth.repository.GeminiResponseCacheRepository;
+import com.dbms.mentalhealth.util.Cache.CacheUtils;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed cache for Gemini responses, keyed by the SHA-256 of model, use case and the prompt
+ * with whitespace normalized. A bounded in-memory tier sits in front of the {@code gemini_response_cache}
+ * table; each use case has its own TTL. Moderation uses the memory tier only: it sits on the chat message
+ * path, where a database read on every miss and a write after every call cost more than they save.
+ * Identical requests that arrive while the first one is still running wait for its answer instead of
+ * calling Gemini again.
+ * <p>
+ * Failed calls, empty answers and answers the caller cannot read are never cached, so a retry asks Gemini
+ * again. Errors of the database tier are logged and the call goes ahead as if the entry was missing.
+ */
+@Slf4j
+@Component
+public class GeminiResponseCache {
+
+    private record CachedResponse(String response, long latencyMs) {
+    }
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final GeminiResponseCacheRepository repository;
+    private final GeminiCacheConfig config;
+    private final MeterRegistry meterRegistry;
+    private final String model;
+
+    private final Map<GeminiUseCase, Cache<String, CachedResponse>> memory = new EnumMap<>(GeminiUseCase.class);
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    public GeminiResponseCache(GeminiResponseCacheRepository repository,
+                               GeminiCacheConfig config,
+                               MeterRegistry meterRegistry,
+                               @Value("${spring.ai.google.gemini.model:gemini-pro}") String model) {
+        this.repository = repository;
+        this.config = config;
+        this.meterRegistry = meterRegistry;
+        this.model = model;
+        for (GeminiUseCase useCase : GeminiUseCase.values()) {
+            Cache<String, CachedResponse> cache = Caffeine.newBuilder()
+                    .expireAfterWrite(Math.min(config.getMemoryTtlMinutes(), ttlMinutes(useCase)), TimeUnit.MINUTES)
+                    .maximumSize(config.getMemoryMaxEntries())
+                    .recordStats()
+                    .build();
+            CaffeineCacheMetrics.monitor(meterRegistry, cache, "geminiResponseCache", "use_case", tag(useCase));
+            memory.put(useCase, cache);
+        }
+    }
+
+    /**
+     * Returns the cached response for the prompt, or runs {@code call} and caches its result.
+     */
+    public String get(GeminiUseCase useCase, String prompt, Supplier<String> call) {
+        return get(useCase, prompt, call, response -> true);
+    }
+
+    /**
+     * Like {@link #get(GeminiUseCase, String, Supplier)}, but caches the result of {@code call} only if
+     * {@code readable} accepts it. An answer it rejects is still returned, once, to this caller and any
+     * request that waited for it.
+     */
+    public String get(GeminiUseCase useCase, String prompt, Supplier<String> call, Predicate<String> readable) {
+        if (!config.isEnabled()) {
+            return call.get();
+        }
+
+        String key = key(useCase, prompt);
+        Cache<String, CachedResponse> cache = memory.get(useCase);
+        CachedResponse cached = cache.getIfPresent(key);
+        if (cached != null) {
+            recordHit(useCase, "memory", cached);
+            return cached.response();
+        }
+
+        CompletableFuture<String> pending = new CompletableFuture<>();
+        CompletableFuture<String> running = inFlight.putIfAbsent(key, pending);
+        if (running != null) {
+            count(useCase, "coalesced");
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+
+        try {
+            cached = loadPersistent(useCase, key);
+            if (cached != null) {
+                cache.put(key, cached);
+                recordHit(useCase, "database", cached);
+                pending.complete(cached.response());
+                return cached.response();
+            }
+
+            count(useCase, "miss");
+            long start = System.nanoTime();
+            String response = call.get();
+            long latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (response != null && !response.isBlank() && readable.test(response)) {
+                cached = new CachedResponse(response, latencyMs);
+                cache.put(key, cached);
+                storePersistent(useCase, key, cached);
+            }
+            pending.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            pending.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, pending);
+        }
+    }
+
+    /**
+     * Deletes expired rows of the database tier.
+     */
+    public void purgeExpired() {
+        if (!config.isPersistent()) {
+            return;
+        }
+        try {
+            int deleted = repository.deleteExpired(LocalDateTime.now());
+            if (deleted > 0) {
+                log.info("Purged {} expired Gemini responses", deleted);
+            }
+        } catch (Exception e) {
+            log.warn("Could not purge expired Gemini responses: {}", e.getMessage());
+        }
+    }
+
+    public void logCacheStats() {
+        memory.forEach((useCase, cache) -> CacheUtils.logCacheStats(cache, "Gemini Response Cache (" + tag(useCase) + ")"));
+    }
+
+    private CachedResponse loadPersistent(GeminiUseCase useCase, String key) {
+        if (!persistent(useCase)) {
+            return null;
+        }
+        try {
+            return repository.findByPromptHashAndExpiresAtAfter(key, LocalDateTime.now())
+                    .map(entry -> new CachedResponse(entry.getResponse(), entry.getLatencyMs()))
+                    .orElse(null);
+        } catch (Exception e) {
+            log.warn("Could not read cached Gemini {} response: {}", tag(useCase), e.getMessage());
+            return null;
+        }
+    }
+
+    private void storePersistent(GeminiUseCase useCase, String key, CachedResponse cached) {
+        if (!persistent(useCase)) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            repository.upsert(key, useCase.name(), cached.response(), cached.latencyMs(), now, now.plusMinutes(ttlMinutes(useCase)));
+        } catch (Exception e) {
+            log.warn("Could not store Gemini {} response: {}", tag(useCase), e.getMessage());
+        }
+    }
+
+    private void recordHit(GeminiUseCase useCase, String tier, CachedResponse cached) {
+        count(useCase, tier + "_hit");
+        Timer.builder("gemini.cache.saved.latency")
+                .description("Duration of the original Gemini call, saved by each cache hit")
+                .tag("use_case", tag(useCase))
+                .register(meterRegistry)
+                .record(cached.latencyMs(), TimeUnit.MILLISECONDS);
+    }
+
+    private void count(GeminiUseCase useCase, String result) {
+        meterRegistry.counter("gemini.cache.requests", "use_case", tag(useCase), "result", result).increment();
+    }
+
+    private boolean persistent(GeminiUseCase useCase) {
+        return config.isPersistent() && useCase != GeminiUseCase.MODERATION;
+    }
+
+    private int ttlMinutes(GeminiUseCase useCase) {
+        return switch (useCase) {
+            case MODERATION -> config.getModerationTtlMinutes();
+            case ANALYSIS -> config.getAnalysisTtlMinutes();
+        };
+    }
+
+    private String key(GeminiUseCase useCase, String prompt) {
+        String normalized = WHITESPACE.matcher(prompt.strip()).replaceAll(" ");
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((model + "\n" + useCase.name() + "\n").getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest(normalized.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String tag(GeminiUseCase useCase) {
+        return useCase.name().toLowerCase();
+    }
+}
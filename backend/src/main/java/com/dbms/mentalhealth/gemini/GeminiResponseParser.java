@@ -0,0 +1,274 @@
+package com.dbms.mentalhealth.gemini;
+
+import com.dbms.mentalhealth.model.ModerationResult;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadFeature;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads Gemini answers with the Jackson streaming API, without building trees. The answer text is taken
+ * from {@code candidates[0].content.parts[0].text} and everything after it is left unread; moderation
+ * verdicts stop as soon as {@code allowed} (and, for blocked messages, {@code reason}) are known.
+ * <p>
+ * A leading markdown fence such as {@code ```json} is skipped by hand. The closing fence needs no
+ * handling, since the verdict is complete before it.
+ */
+public final class GeminiResponseParser {
+
+    // Callers close the response stream themselves, after draining it for connection reuse
+    private static final JsonFactory FACTORY = JsonFactory.builder()
+            .disable(StreamReadFeature.AUTO_CLOSE_SOURCE)
+            .build();
+
+    private GeminiResponseParser() {
+    }
+
+    /**
+     * Returns the text of the first candidate of a {@code generateContent} response, or an empty string if
+     * the response has none. Reading stops at the text.
+     */
+    public static String extractText(InputStream body) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(body)) {
+            return extractText(parser);
+        }
+    }
+
+    public static String extractText(String body) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(body)) {
+            return extractText(parser);
+        }
+    }
+
+    private static String extractText(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT
+                || !seekField(parser, "candidates") || parser.currentToken() != JsonToken.START_ARRAY
+                || parser.nextToken() != JsonToken.START_OBJECT
+                || !seekField(parser, "content") || parser.currentToken() != JsonToken.START_OBJECT
+                || !seekField(parser, "parts") || parser.currentToken() != JsonToken.START_ARRAY
+                || parser.nextToken() != JsonToken.START_OBJECT
+                || !seekField(parser, "text")) {
+            return "";
+        }
+        return parser.currentToken() == JsonToken.VALUE_STRING ? parser.getText() : "";
+    }
+
+    // Moves to the value of the named field of the current object, skipping the fields before it
+    private static boolean seekField(JsonParser parser, String name) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            boolean found = name.equals(parser.currentName());
+            parser.nextToken();
+            if (found) {
+                return true;
+            }
+            parser.skipChildren();
+        }
+        return false;
+    }
+
+    /**
+     * Reads the verdict of a single moderation answer. A missing {@code allowed} counts as allowed, as it
+     * always has; an answer that is not a JSON object fails.
+     */
+    public static ModerationResult parseModerationVerdict(String text) throws IOException {
+        int start = contentStart(text);
+        if (start < 0) {
+            throw new JsonParseException(null, "Moderation answer is empty");
+        }
+        VerdictReader verdict = new VerdictReader();
+        try (JsonParser parser = FACTORY.createParser(start == 0 ? text : text.substring(start))) {
+            verdict.advance(parser);
+            return verdict.result(parser);
+        }
+    }
+
+    /**
+     * Reads the server-sent events of a {@code streamGenerateContent?alt=sse} response and hands the text of
+     * each event to the handler, returning as soon as it has its result.
+     */
+    public static <T> T readEventStream(InputStream body, GeminiStreamHandler<T> handler) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        StringBuilder data = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                if (data.length() > 0 && handler.onText(extractText(data.toString()))) {
+                    return handler.result();
+                }
+                data.setLength(0);
+            } else if (line.startsWith("data:")) {
+                if (data.length() > 0) {
+                    data.append('\n');
+                }
+                data.append(line, line.startsWith("data: ") ? 6 : 5, line.length());
+            }
+        }
+        if (data.length() > 0) {
+            handler.onText(extractText(data.toString()));
+        }
+        return handler.result();
+    }
+
+    // Index after leading whitespace and an opening fence with its language tag; -1 if the text ends first
+    private static int contentStart(CharSequence text) {
+        int length = text.length();
+        int i = skipWhitespace(text, 0);
+        if (i == length || text.charAt(i) != '`') {
+            return i == length ? -1 : i;
+        }
+        int fence = i;
+        while (i < length && text.charAt(i) == '`') {
+            i++;
+        }
+        if (i - fence < 3) {
+            // Not a fence after all, unless the rest of it is still to come
+            return i == length ? -1 : fence;
+        }
+        while (i < length && Character.isLetter(text.charAt(i))) {
+            i++;
+        }
+        i = skipWhitespace(text, i);
+        return i == length ? -1 : i;
+    }
+
+    private static int skipWhitespace(CharSequence text, int from) {
+        int i = from;
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Decides a moderation verdict from a {@code streamGenerateContent} answer, usually from its first
+     * chunk or two: the text is fed to a non-blocking parser as it arrives.
+     */
+    public static final class ModerationVerdictStream implements GeminiStreamHandler<ModerationResult> {
+        private final StringBuilder prefix = new StringBuilder();
+        private final VerdictReader verdict = new VerdictReader();
+        private JsonParser parser;
+        private boolean decided;
+
+        @Override
+        public boolean onText(String text) throws IOException {
+            if (decided) {
+                return true;
+            }
+            String input = text;
+            if (parser == null) {
+                // Hold the text back until it is clear where a fence ends and the JSON starts
+                prefix.append(text);
+                int start = contentStart(prefix);
+                if (start < 0) {
+                    return false;
+                }
+                parser = FACTORY.createNonBlockingByteArrayParser();
+                input = prefix.substring(start);
+            }
+            byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+            ((ByteArrayFeeder) parser.getNonBlockingInputFeeder()).feedInput(bytes, 0, bytes.length);
+            decided = verdict.advance(parser);
+            return decided;
+        }
+
+        @Override
+        public ModerationResult result() throws IOException {
+            if (parser == null) {
+                throw new JsonParseException(null, "Moderation answer is empty");
+            }
+            if (!decided) {
+                parser.getNonBlockingInputFeeder().endOfInput();
+                try {
+                    decided = verdict.advance(parser);
+                } catch (JsonParseException e) {
+                    // A cut-off answer still counts if it got as far as the verdict
+                    if (!verdict.hasVerdict()) {
+                        throw e;
+                    }
+                }
+            }
+            parser.close();
+            return verdict.result(parser);
+        }
+    }
+
+    // Tracks the top-level fields of a moderation answer across any number of parser calls
+    private static final class VerdictReader {
+        private int depth;
+        private boolean complete;
+        private String field;
+        private Boolean allowed;
+        private String reason;
+        private boolean reasonSeen;
+
+        // Consumes tokens until the verdict is decided or the parser needs more input; true once decided
+        boolean advance(JsonParser parser) throws IOException {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                if (depth == 0) {
+                    if (token != JsonToken.START_OBJECT) {
+                        throw new JsonParseException(parser, "Moderation answer is not a JSON object");
+                    }
+                    depth = 1;
+                    continue;
+                }
+                if (token == JsonToken.FIELD_NAME) {
+                    if (depth == 1) {
+                        field = parser.currentName();
+                    }
+                    continue;
+                }
+                if (depth == 1 && !token.isStructEnd()) {
+                    if ("allowed".equals(field)) {
+                        allowed = asBoolean(parser, token);
+                    } else if ("reason".equals(field)) {
+                        reason = token.isScalarValue() && token != JsonToken.VALUE_NULL ? parser.getText() : null;
+                        reasonSeen = true;
+                    }
+                }
+                if (token.isStructStart()) {
+                    depth++;
+                } else if (token.isStructEnd() && --depth == 0) {
+                    complete = true;
+                    return true;
+                }
+                // The reason only matters for blocked messages
+                if (allowed != null && (allowed || reasonSeen)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean hasVerdict() {
+            return allowed != null || complete;
+        }
+
+        ModerationResult result(JsonParser parser) throws JsonParseException {
+            if (!hasVerdict()) {
+                throw new JsonParseException(parser, "Moderation answer ended before the verdict");
+            }
+            // Default to allowing if not found
+            return new ModerationResult(allowed == null || allowed, reason);
+        }
+
+        // Same leniency as JsonNode.asBoolean(true)
+        private static boolean asBoolean(JsonParser parser, JsonToken token) throws IOException {
+            return switch (token) {
+                case VALUE_TRUE -> true;
+                case VALUE_FALSE -> false;
+                case VALUE_NUMBER_INT -> parser.getLongValue() != 0;
+                case VALUE_STRING -> !"false".equals(parser.getText().trim());
+                default -> true;
+            };
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.dbms.mentalhealth.gemini;
+
+import java.io.IOException;
+
+/**
+ * Consumes the text of a {@code streamGenerateContent} answer chunk by chunk. {@link GeminiClient} creates
+ * a fresh handler for every attempt, so a retried call never sees the chunks of a failed one.
+ */
+public interface GeminiStreamHandler<T> {
+
+    /**
+     * Receives the text of the next chunk. Returns true once the result is known; the rest of the stream
+     * is then dropped.
+     */
+    boolean onText(String text) throws IOException;
+
+    /**
+     * Returns the result, once the stream has ended or {@link #onText} returned true.
+     */
+    T result() throws IOException;
+}
@@ -0,0 +1,191 @@
+package com.dbms.mentalhealth.gemini;
+
+import com.dbms.mentalhealth.config.ModerationBatchConfig;
+import com.dbms.mentalhealth.enums.GeminiUseCase;
+import com.dbms.mentalhealth.exception.gemini.GeminiUnavailableException;
+import com.dbms.mentalhealth.model.ModerationResult;
+import com.dbms.mentalhealth.service.impl.GeminiServiceImpl;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces concurrent moderation requests into one Gemini call. The first message of a batch waits up
+ * to {@code chat.moderation.batch.window-ms} for others (or until {@code max-batch-size} messages have
+ * joined), then sends them in one prompt on its own thread and hands each waiting caller its verdict,
+ * matched by id. No extra threads are involved: callers already run on the moderation pipeline executor.
+ * <p>
+ * Messages the batch answer leaves without a usable verdict (malformed response, missing or repeated id)
+ * are moderated again one by one, each on the thread of the caller waiting for it.
+ * <p>
+ * A caller interrupted by the pipeline's timeout stops waiting. If it is the leader, the interrupt also
+ * aborts the batch call, and the other callers, whose budgets end at most one window later, get
+ * {@link ModerationResult#unavailable}.
+ */
+@Slf4j
+@Component
+public class ModerationBatcher {
+
+    private static final class Batch {
+        final List<String> messages = new ArrayList<>();
+        // A null verdict tells the caller to moderate its message on its own
+        final List<CompletableFuture<ModerationResult>> verdicts = new ArrayList<>();
+        final CountDownLatch full = new CountDownLatch(1);
+    }
+
+    private final GeminiServiceImpl geminiServiceImpl;
+    private final ModerationBatchConfig config;
+    private final MeterRegistry meterRegistry;
+    private final DistributionSummary batchSizes;
+    private final Counter batchCalls;
+
+    private final Object lock = new Object();
+    private Batch open;
+
+    public ModerationBatcher(GeminiServiceImpl geminiServiceImpl,
+                             ModerationBatchConfig config,
+                             MeterRegistry meterRegistry) {
+        this.geminiServiceImpl = geminiServiceImpl;
+        this.config = config;
+        this.meterRegistry = meterRegistry;
+        this.batchSizes = DistributionSummary.builder("chat.moderation.batch.size")
+                .description("Messages moderated by one Gemini call")
+                .publishPercentiles(0.5, 0.95)
+                .register(meterRegistry);
+        this.batchCalls = Counter.builder("chat.moderation.batch.calls")
+                .description("Gemini calls made for batches of two or more messages")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Moderates a message, possibly together with messages submitted concurrently by other threads.
+     * Blocks until the verdict is available; failures are reported as {@link ModerationResult#unavailable}.
+     */
+    public ModerationResult moderate(String message) {
+        if (!config.isEnabled() || config.getMaxBatchSize() < 2) {
+            return geminiServiceImpl.moderateMessage(message);
+        }
+
+        CompletableFuture<ModerationResult> verdict = new CompletableFuture<>();
+        Batch batch;
+        boolean leader = false;
+        synchronized (lock) {
+            if (open == null) {
+                open = new Batch();
+                leader = true;
+            }
+            batch = open;
+            batch.messages.add(message);
+            batch.verdicts.add(verdict);
+            if (batch.messages.size() >= config.getMaxBatchSize()) {
+                open = null;
+                batch.full.countDown();
+            }
+        }
+
+        if (leader) {
+            awaitWindow(batch);
+            synchronized (lock) {
+                if (open == batch) {
+                    open = null;
+                }
+            }
+            send(batch);
+        }
+
+        ModerationResult result;
+        try {
+            result = verdict.get();
+        } catch (InterruptedException e) {
+            // The pipeline gave up on this message; the batch goes on for the others
+            Thread.currentThread().interrupt();
+            return ModerationResult.unavailable("Moderation cancelled");
+        } catch (ExecutionException e) {
+            return ModerationResult.unavailable("Moderation service unavailable");
+        }
+        return result != null ? result : geminiServiceImpl.moderateMessage(message);
+    }
+
+    private void awaitWindow(Batch batch) {
+        try {
+            batch.full.await(config.getWindowMs(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            // Send what has been collected so far; the waiting callers must not be left hanging
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Runs on the leader's thread once no more messages can join the batch
+    private void send(Batch batch) {
+        int size = batch.messages.size();
+        batchSizes.record(size);
+        if (size == 1) {
+            batch.verdicts.get(0).complete(null);
+            return;
+        }
+
+        batchCalls.increment();
+        Map<Integer, ModerationResult> verdicts;
+        try {
+            String prompt = geminiServiceImpl.createBatchModerationPrompt(batch.messages);
+            // A batch prompt is practically never repeated, so it bypasses the response cache
+            String response = geminiServiceImpl.callGeminiApiDirect(prompt, GeminiUseCase.MODERATION);
+            verdicts = geminiServiceImpl.parseBatchModerationResponse(response, size);
+        } catch (GeminiUnavailableException e) {
+            // Separate calls would meet the same open circuit or full bulkhead
+            log.warn("Batch moderation of {} messages failed: {}", size, e.getMessage());
+            completeAll(batch, ModerationResult.unavailable("Moderation service unavailable"));
+            return;
+        } catch (UncheckedIOException e) {
+            log.warn("Batch moderation answer of {} messages was unreadable, moderating them one by one: {}",
+                    size, e.getMessage());
+            geminiServiceImpl.countParseFailure("moderation_batch");
+            recordFallbacks("malformed", size);
+            completeAll(batch, null);
+            return;
+        } catch (Exception e) {
+            log.warn("Batch moderation of {} messages failed, moderating them one by one: {}", size, e.getMessage());
+            recordFallbacks("malformed", size);
+            completeAll(batch, null);
+            return;
+        }
+
+        int missing = 0;
+        for (int i = 0; i < size; i++) {
+            ModerationResult result = verdicts.get(i + 1);
+            if (result == null) {
+                missing++;
+            }
+            batch.verdicts.get(i).complete(result);
+        }
+        if (missing > 0) {
+            log.warn("Batch moderation answer had no usable verdict for {} of {} messages", missing, size);
+            recordFallbacks("missing_item", missing);
+        }
+    }
+
+    private static void completeAll(Batch batch, ModerationResult result) {
+        for (CompletableFuture<ModerationResult> verdict : batch.verdicts) {
+            verdict.complete(result);
+        }
+    }
+
+    private void recordFallbacks(String reason, int messages) {
+        Counter.builder("chat.moderation.batch.fallbacks")
+                .description("Messages moderated individually because the batch answer did not cover them")
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment(messages);
+    }
+}
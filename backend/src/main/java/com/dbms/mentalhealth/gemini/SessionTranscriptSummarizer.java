@@ -0,0 +1,163 @@
+package com.dbms.mentalhealth.gemini;
+
+import com.dbms.mentalhealth.config.SessionAnalysisConfig;
+import com.dbms.mentalhealth.enums.GeminiUseCase;
+import com.dbms.mentalhealth.service.impl.GeminiServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Produces the category and summary of a session transcript. Transcripts up to
+ * {@code analysis.summarization.single-shot-max-tokens} go to Gemini in one prompt. Longer ones are split
+ * into chunks of {@code chunk-max-tokens}, the chunks are summarized in parallel, and one final prompt
+ * derives the category and summary from the chunk summaries.
+ * <p>
+ * Chunk prompts go through {@link GeminiResponseCache} like every analysis call, so a retried analysis, on
+ * this node or another, only requests the chunks that did not finish last time. Token counts are estimated
+ * from the character count.
+ */
+@Slf4j
+@Component
+public class SessionTranscriptSummarizer {
+
+    private final GeminiServiceImpl geminiService;
+    private final SessionAnalysisConfig.Summarization config;
+    private final MeterRegistry meterRegistry;
+    private final ThreadPoolExecutor executor;
+
+    public SessionTranscriptSummarizer(GeminiServiceImpl geminiService,
+                                       SessionAnalysisConfig sessionAnalysisConfig,
+                                       MeterRegistry meterRegistry) {
+        this.geminiService = geminiService;
+        this.config = sessionAnalysisConfig.getSummarization();
+        this.meterRegistry = meterRegistry;
+        // Shared by all analysis workers, so the chunk calls of one long session cannot crowd out the others
+        this.executor = new ThreadPoolExecutor(
+                config.getChunkConcurrency(),
+                config.getChunkConcurrency(),
+                60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new CustomizableThreadFactory("AnalysisChunk-"));
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Analyzes a formatted transcript and returns a map with {@code category} and {@code summary}.
+     */
+    public Map<String, String> analyze(List<String> formattedMessages) {
+        if (estimateTokens(formattedMessages) <= config.getSingleShotMaxTokens()) {
+            countMode("single_shot");
+            String prompt = geminiService.createJsonSessionAnalysisPrompt(formattedMessages);
+            return geminiService.parseJsonAnalysisResponse(callForJsonAnalysis(prompt));
+        }
+
+        countMode("map_reduce");
+        List<String> summaries = summarize(split(formattedMessages));
+        // Very long sessions: fold the summaries again until they fit into the final prompt
+        while (summaries.size() > 1 && estimateTokens(summaries) > config.getSingleShotMaxTokens()) {
+            List<List<String>> groups = split(summaries);
+            if (groups.size() == summaries.size()) {
+                break;
+            }
+            summaries = summarize(groups);
+        }
+        log.info("Reducing {} chunk summaries of a {}-message transcript", summaries.size(), formattedMessages.size());
+
+        String prompt = geminiService.createJsonSessionAnalysisReducePrompt(summaries);
+        return geminiService.parseJsonAnalysisResponse(callForJsonAnalysis(prompt));
+    }
+
+    // An answer that does not parse is not cached, so a retried analysis asks for it again
+    private String callForJsonAnalysis(String prompt) {
+        return geminiService.callGeminiApi(prompt, GeminiUseCase.ANALYSIS, geminiService::isJsonAnalysisResponse);
+    }
+
+    // Greedy split in transcript order; a single line above the budget is cut into pieces
+    private List<List<String>> split(List<String> lines) {
+        int maxChars = config.getChunkMaxTokens() * config.getCharsPerToken();
+        List<List<String>> chunks = new ArrayList<>();
+        List<String> current = new ArrayList<>();
+        int currentTokens = 0;
+        for (String line : lines) {
+            List<String> pieces = new ArrayList<>();
+            for (int start = 0; start < line.length() || pieces.isEmpty(); start += maxChars) {
+                pieces.add(line.substring(start, Math.min(line.length(), start + maxChars)));
+            }
+            for (String piece : pieces) {
+                int tokens = estimateTokens(piece);
+                if (!current.isEmpty() && currentTokens + tokens > config.getChunkMaxTokens()) {
+                    chunks.add(current);
+                    current = new ArrayList<>();
+                    currentTokens = 0;
+                }
+                current.add(piece);
+                currentTokens += tokens;
+            }
+        }
+        if (!current.isEmpty()) {
+            chunks.add(current);
+        }
+        return chunks;
+    }
+
+    private List<String> summarize(List<List<String>> chunks) {
+        int parts = chunks.size();
+        List<CompletableFuture<String>> summaries = new ArrayList<>(parts);
+        for (int i = 0; i < parts; i++) {
+            List<String> chunk = chunks.get(i);
+            int part = i + 1;
+            summaries.add(CompletableFuture.supplyAsync(() -> {
+                // Cached as soon as it arrives, so a failure of a sibling chunk does not waste it
+                String prompt = geminiService.createChunkSummaryPrompt(chunk, part, parts);
+                String summary = geminiService.callGeminiApi(prompt).trim();
+                if (summary.isEmpty()) {
+                    throw new IllegalStateException("Gemini returned an empty summary for chunk " + part + " of " + parts);
+                }
+                return summary;
+            }, executor));
+        }
+
+        try {
+            CompletableFuture.allOf(summaries.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        return summaries.stream().map(CompletableFuture::join).toList();
+    }
+
+    private int estimateTokens(List<String> lines) {
+        int tokens = 0;
+        for (String line : lines) {
+            tokens += estimateTokens(line);
+        }
+        return tokens;
+    }
+
+    private int estimateTokens(String line) {
+        return line.length() / config.getCharsPerToken() + 1;
+    }
+
+    private void countMode(String mode) {
+        meterRegistry.counter("session.analysis.summarization", "mode", mode).increment();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,362 @@
+package com.dbms.mentalhealth.journal;
+
+import com.dbms.mentalhealth.config.ChatJournalConfig;
+import com.dbms.mentalhealth.model.ChatMessage;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Append-only write-ahead log for chat messages waiting in {@code ChatMessageScheduler}.
+ * <p>
+ * Messages are copied into a memory-mapped segment before they are queued, so a process crash loses
+ * nothing; a background thread forces dirty segments every {@code commitIntervalMs} (group commit),
+ * which bounds what a machine crash can lose. Once the database confirms a batch, its sequence numbers
+ * are acknowledged with an ack record and fully acknowledged segments are deleted oldest first.
+ * <p>
+ * An unacknowledged message keeps its segment and every later one on disk. {@code chat.journal.pending}
+ * and {@code chat.journal.segments} expose the backlog, and crossing {@code maxSegmentsWarning} is logged.
+ */
+@Slf4j
+@Component
+public class ChatMessageJournal {
+    private static final long NO_SEQ = -1L;
+    private static final int MAX_ACKS_PER_RECORD = 1024;
+
+    private final ChatJournalConfig config;
+    private final MeterRegistry meterRegistry;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Segments in activation order; only the flusher removes from the head
+    private final ConcurrentLinkedDeque<JournalSegment> segments = new ConcurrentLinkedDeque<>();
+    // Rolled segments that may still hold unforced writes
+    private final ConcurrentLinkedQueue<JournalSegment> unforced = new ConcurrentLinkedQueue<>();
+    private List<JournalEntry> recovered = List.of();
+
+    private Path directory;
+    private ScheduledExecutorService flusher;
+
+    // Written under lock, read by the flusher
+    private volatile JournalSegment active;
+    // Guarded by lock
+    private JournalSegment spare;
+    private long nextSeq;
+    private long nextIndex;
+
+    private volatile long appended;
+    private long forced;
+    // Flusher thread only
+    private boolean oversized;
+
+    public ChatMessageJournal(ChatJournalConfig config, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!config.isEnabled()) {
+            log.warn("Chat message journal is disabled; queued messages will be lost on a crash");
+            return;
+        }
+
+        Path configured = Paths.get(config.getDirectory());
+        if (!configured.isAbsolute()) {
+            log.warn("Chat message journal directory {} is relative; set chat.journal.directory to a persistent volume",
+                    configured);
+        }
+        directory = configured.toAbsolutePath();
+        Files.createDirectories(directory);
+        recovered = replaySegments();
+
+        lock.lock();
+        try {
+            activate(JournalSegment.create(directory, nextIndex++, config.getSegmentSizeBytes()));
+        } finally {
+            lock.unlock();
+        }
+
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "chat-journal-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::commit, config.getCommitIntervalMs(), config.getCommitIntervalMs(),
+                TimeUnit.MILLISECONDS);
+
+        Gauge.builder("chat.journal.segments", segments, Collection::size)
+                .description("Journal segment files on disk")
+                .register(meterRegistry);
+        Gauge.builder("chat.journal.pending", segments, all -> all.stream().mapToInt(s -> s.pending.get()).sum())
+                .description("Journaled messages not yet acknowledged")
+                .register(meterRegistry);
+
+        log.info("Chat message journal opened at {} with {} unacknowledged messages", directory, recovered.size());
+    }
+
+    /**
+     * Messages that were journaled but never acknowledged before the last shutdown, in sequence order.
+     * They keep their sequence numbers and must be acknowledged like new ones.
+     */
+    public List<JournalEntry> recover() {
+        List<JournalEntry> entries = recovered;
+        recovered = List.of();
+        return entries;
+    }
+
+    /**
+     * Records a message and returns its sequence number, or -1 if the journal is disabled or the write
+     * failed (the message is then only held in memory).
+     */
+    public long append(ChatMessage message) {
+        if (!config.isEnabled()) {
+            return NO_SEQ;
+        }
+
+        byte[] frame = JournalSegment.encodeMessage(message.getClientMessageId(), message.getSession().getSessionId(),
+                message.getSender().getUserId(), message.getSentAt(), message.getMessageContent());
+        if (frame.length > config.getSegmentSizeBytes() - Integer.BYTES) {
+            log.error("Chat message of {} bytes does not fit in a journal segment", frame.length);
+            return NO_SEQ;
+        }
+
+        lock.lock();
+        try {
+            long seq = nextSeq++;
+            JournalSegment.seal(frame, frame.length, seq);
+            JournalSegment segment = segmentFor(frame.length);
+            segment.write(frame, frame.length);
+            if (segment.firstSeq == NO_SEQ) {
+                segment.firstSeq = seq;
+            }
+            segment.pending.incrementAndGet();
+            appended++;
+            return seq;
+        } catch (IOException e) {
+            log.error("Failed to journal chat message", e);
+            return NO_SEQ;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Marks messages as persisted. Segments whose messages are all acknowledged are deleted by the flusher.
+     */
+    public void acknowledge(Collection<Long> seqs) {
+        long[] valid = seqs.stream().mapToLong(Long::longValue).filter(seq -> seq >= 0).toArray();
+        if (!config.isEnabled() || valid.length == 0) {
+            return;
+        }
+
+        // An ack record must fit in an empty segment
+        int perRecord = Math.min(MAX_ACKS_PER_RECORD, (config.getSegmentSizeBytes() - 64) / Long.BYTES);
+        lock.lock();
+        try {
+            for (int from = 0; from < valid.length; from += perRecord) {
+                byte[] frame = JournalSegment.encodeAck(valid, from, Math.min(valid.length, from + perRecord));
+                segmentFor(frame.length).write(frame, frame.length);
+            }
+            appended++;
+        } catch (IOException e) {
+            // The messages stay pending and are replayed, at worst as duplicates, after a restart
+            log.error("Failed to journal acknowledgement of {} messages", valid.length, e);
+            return;
+        } finally {
+            lock.unlock();
+        }
+
+        for (long seq : valid) {
+            JournalSegment segment = owner(seq);
+            if (segment != null) {
+                segment.pending.decrementAndGet();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        lock.lock();
+        try {
+            for (JournalSegment segment : segments) {
+                segment.close();
+            }
+            if (spare != null) {
+                spare.closeAndDelete();
+            }
+        } catch (IOException e) {
+            log.error("Failed to close chat message journal", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Group commit, segment pre-allocation and truncation; runs on the flusher thread only
+    private void commit() {
+        try {
+            long target = appended;
+            JournalSegment segment;
+            while ((segment = unforced.poll()) != null) {
+                segment.force();
+            }
+            if (target != forced) {
+                active.force();
+                forced = target;
+            }
+
+            deleteAcknowledgedPrefix();
+            checkBacklog();
+            prepareSpare();
+        } catch (Exception e) {
+            log.error("Chat message journal commit failed", e);
+        }
+    }
+
+    private void deleteAcknowledgedPrefix() throws IOException {
+        Iterator<JournalSegment> iterator = segments.iterator();
+        while (iterator.hasNext()) {
+            JournalSegment segment = iterator.next();
+            if (segment == active || segment.pending.get() > 0) {
+                return;
+            }
+            iterator.remove();
+            segment.closeAndDelete();
+            log.debug("Deleted acknowledged journal segment {}", segment.path.getFileName());
+        }
+    }
+
+    private void checkBacklog() {
+        int count = segments.size();
+        if (count > config.getMaxSegmentsWarning() && !oversized) {
+            oversized = true;
+            JournalSegment oldest = segments.peekFirst();
+            log.error("Chat message journal holds {} segments; the oldest, {}, still has {} unacknowledged messages",
+                    count, oldest.path.getFileName(), oldest.pending.get());
+        } else if (count <= config.getMaxSegmentsWarning() && oversized) {
+            oversized = false;
+            log.info("Chat message journal is back to {} segments", count);
+        }
+    }
+
+    private void prepareSpare() throws IOException {
+        JournalSegment created = null;
+        lock.lock();
+        try {
+            if (spare == null) {
+                spare = JournalSegment.create(directory, nextIndex++, config.getSegmentSizeBytes());
+                created = spare;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (created != null) {
+            // Fault the pages in off the append path
+            created.load();
+        }
+    }
+
+    // Caller holds lock
+    private JournalSegment segmentFor(int frameLength) throws IOException {
+        if (active.remaining() >= frameLength) {
+            return active;
+        }
+        unforced.add(active);
+        JournalSegment next = spare != null ? spare : JournalSegment.create(directory, nextIndex++, config.getSegmentSizeBytes());
+        spare = null;
+        activate(next);
+        return next;
+    }
+
+    // Caller holds lock
+    private void activate(JournalSegment segment) {
+        segments.addLast(segment);
+        active = segment;
+    }
+
+    private JournalSegment owner(long seq) {
+        Iterator<JournalSegment> iterator = segments.descendingIterator();
+        while (iterator.hasNext()) {
+            JournalSegment segment = iterator.next();
+            if (segment.firstSeq != NO_SEQ && segment.firstSeq <= seq) {
+                return segment;
+            }
+        }
+        return null;
+    }
+
+    private List<JournalEntry> replaySegments() throws IOException {
+        List<JournalSegment> existing = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : files.filter(JournalSegment::isSegmentFile).sorted().toList()) {
+                existing.add(JournalSegment.open(path));
+            }
+        }
+
+        TreeMap<Long, JournalEntry> entries = new TreeMap<>();
+        Set<Long> acknowledged = new HashSet<>();
+        for (JournalSegment segment : existing) {
+            segment.recover(entry -> {
+                entries.put(entry.seq(), entry);
+                if (segment.firstSeq == NO_SEQ) {
+                    segment.firstSeq = entry.seq();
+                }
+            }, acknowledged::add);
+            nextIndex = Math.max(nextIndex, segment.index + 1);
+        }
+        entries.keySet().removeAll(acknowledged);
+        nextSeq = entries.isEmpty() ? 0 : entries.lastKey() + 1;
+        for (Long seq : acknowledged) {
+            nextSeq = Math.max(nextSeq, seq + 1);
+        }
+
+        for (JournalSegment segment : existing) {
+            segments.addLast(segment);
+        }
+        for (Long seq : entries.keySet()) {
+            owner(seq).pending.incrementAndGet();
+        }
+        // Old segments are never appended to again; drop the ones with nothing left to replay
+        Iterator<JournalSegment> iterator = segments.iterator();
+        while (iterator.hasNext()) {
+            JournalSegment segment = iterator.next();
+            if (segment.pending.get() > 0) {
+                break;
+            }
+            iterator.remove();
+            segment.closeAndDelete();
+        }
+        return new ArrayList<>(entries.values());
+    }
+}
@@ -0,0 +1,16 @@
+package com.dbms.mentalhealth.journal;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * A chat message as recorded in the journal: only ids and values, no entity graph. The client message id
+ * is what makes replaying an entry that was already inserted harmless.
+ */
+public record JournalEntry(long seq, UUID clientMessageId, int sessionId, int senderId, LocalDateTime sentAt, String content) {
+
+    public JournalEntry {
+        Objects.requireNonNull(clientMessageId, "clientMessageId");
+    }
+}
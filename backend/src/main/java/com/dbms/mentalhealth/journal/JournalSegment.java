@@ -0,0 +1,214 @@
+package com.dbms.mentalhealth.journal;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * One fixed-size, memory-mapped journal file.
+ * <p>
+ * Frame layout: {@code [int length][byte type][body ...][int crc32]} where length covers type and body
+ * and the checksum covers the same bytes. A zero length marks the end of the written part of the file
+ * (new files are zero-filled), a bad length or checksum marks a torn write.
+ */
+final class JournalSegment {
+
+    static final byte ACK = 2;
+    // Type 1 was a message without a client message id; such frames are no longer read
+    static final byte MESSAGE = 3;
+    static final int FRAME_OVERHEAD = Integer.BYTES + Integer.BYTES;
+    // type + seq + client message id + session id + sender id + epoch second + nanos + content length
+    static final int MESSAGE_HEADER = 1 + Long.BYTES + Long.BYTES * 2 + Integer.BYTES * 2 + Long.BYTES + Integer.BYTES * 2;
+
+    private static final String PREFIX = "chat-journal-";
+    private static final String SUFFIX = ".log";
+
+    final long index;
+    final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    // Journaled messages of this segment not yet confirmed as persisted
+    final AtomicInteger pending = new AtomicInteger();
+    // Sequence number of the first message written here, -1 while there is none
+    volatile long firstSeq = -1L;
+
+    private JournalSegment(long index, Path path, FileChannel channel, MappedByteBuffer buffer) {
+        this.index = index;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    static JournalSegment create(Path directory, long index, int size) throws IOException {
+        Path path = directory.resolve(String.format("%s%020d%s", PREFIX, index, SUFFIX));
+        return map(index, path, size);
+    }
+
+    static JournalSegment open(Path path) throws IOException {
+        return map(indexOf(path), path, (int) Files.size(path));
+    }
+
+    static boolean isSegmentFile(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+    }
+
+    static long indexOf(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private static JournalSegment map(long index, Path path, int size) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            if (file.length() < size) {
+                file.setLength(size);
+            }
+        }
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        return new JournalSegment(index, path, channel, buffer);
+    }
+
+    int remaining() {
+        // Keep room for the zero length word that terminates the segment
+        return buffer.remaining() - Integer.BYTES;
+    }
+
+    void write(byte[] frame, int length) {
+        buffer.put(frame, 0, length);
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    void load() {
+        buffer.load();
+    }
+
+    void closeAndDelete() throws IOException {
+        channel.close();
+        Files.deleteIfExists(path);
+    }
+
+    void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    /**
+     * Encodes a message frame into a new array. The sequence number and checksum are left for
+     * {@link #seal(byte[], int, long)} so the expensive part happens outside the journal lock.
+     */
+    static byte[] encodeMessage(UUID clientMessageId, int sessionId, int senderId, LocalDateTime sentAt, String content) {
+        byte[] text = content.getBytes(StandardCharsets.UTF_8);
+        int bodyLength = MESSAGE_HEADER + text.length;
+        ByteBuffer frame = ByteBuffer.allocate(bodyLength + FRAME_OVERHEAD);
+        frame.putInt(bodyLength)
+                .put(MESSAGE)
+                .putLong(0L)
+                .putLong(clientMessageId.getMostSignificantBits())
+                .putLong(clientMessageId.getLeastSignificantBits())
+                .putInt(sessionId)
+                .putInt(senderId)
+                .putLong(sentAt.toEpochSecond(ZoneOffset.UTC))
+                .putInt(sentAt.getNano())
+                .putInt(text.length)
+                .put(text);
+        return frame.array();
+    }
+
+    static byte[] encodeAck(long[] seqs, int from, int to) {
+        int bodyLength = 1 + Integer.BYTES + Long.BYTES * (to - from);
+        ByteBuffer frame = ByteBuffer.allocate(bodyLength + FRAME_OVERHEAD);
+        frame.putInt(bodyLength).put(ACK).putInt(to - from);
+        for (int i = from; i < to; i++) {
+            frame.putLong(seqs[i]);
+        }
+        seal(frame.array(), frame.capacity(), -1);
+        return frame.array();
+    }
+
+    /**
+     * Writes the sequence number (for message frames) and the checksum into an encoded frame.
+     */
+    static void seal(byte[] frame, int length, long seq) {
+        ByteBuffer view = ByteBuffer.wrap(frame);
+        if (seq >= 0) {
+            view.putLong(Integer.BYTES + 1, seq);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(frame, Integer.BYTES, length - FRAME_OVERHEAD);
+        view.putInt(length - Integer.BYTES, (int) crc.getValue());
+    }
+
+    interface EntryVisitor {
+        void onMessage(JournalEntry entry);
+    }
+
+    /**
+     * Reads every intact frame from the start of the segment and leaves the write position right
+     * after the last one, so appends continue there and a torn tail is overwritten.
+     */
+    void recover(EntryVisitor messages, LongConsumer acks) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(0);
+        CRC32 crc = new CRC32();
+        int end = 0;
+        while (view.remaining() >= FRAME_OVERHEAD + 1) {
+            int start = view.position();
+            int length = view.getInt();
+            if (length <= 0 || length > view.remaining() - Integer.BYTES) {
+                break;
+            }
+            byte[] body = new byte[length];
+            view.get(body);
+            int checksum = view.getInt();
+            crc.reset();
+            crc.update(body);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            decode(body, messages, acks);
+            end = view.position();
+            if (end == start) {
+                break;
+            }
+        }
+        buffer.position(end);
+    }
+
+    private static void decode(byte[] body, EntryVisitor messages, LongConsumer acks) {
+        ByteBuffer view = ByteBuffer.wrap(body);
+        byte type = view.get();
+        if (type == MESSAGE) {
+            long seq = view.getLong();
+            UUID clientMessageId = new UUID(view.getLong(), view.getLong());
+            int sessionId = view.getInt();
+            int senderId = view.getInt();
+            LocalDateTime sentAt = LocalDateTime.ofEpochSecond(view.getLong(), view.getInt(), ZoneOffset.UTC);
+            byte[] text = new byte[view.getInt()];
+            view.get(text);
+            messages.onMessage(new JournalEntry(seq, clientMessageId, sessionId, senderId, sentAt, new String(text, StandardCharsets.UTF_8)));
+        } else if (type == ACK) {
+            int count = view.getInt();
+            for (int i = 0; i < count; i++) {
+                acks.accept(view.getLong());
+            }
+        }
+    }
+}
@@ -6,9 +6,13 @@ import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 
 import java.time.LocalDateTime;
+import java.util.UUID;
 
 @Entity
-@Table(name = "chat_messages")
+@Table(name = "chat_messages", indexes = {
+        @Index(name = "idx_chat_messages_session_sent", columnList = "session_id, sent_at, message_id"),
+        @Index(name = "uk_chat_messages_client_message_id", columnList = "client_message_id", unique = true)
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -32,4 +36,24 @@ public class ChatMessage {
 
     @Column(name = "sent_at", nullable = false)
     private LocalDateTime sentAt;
-}
\ No newline at end of file
+
+    // Assigned when the message is accepted from the client and journaled with it, so a replayed message
+    // is recognized if it was already inserted; null for messages stored before it existed
+    @Column(name = "client_message_id")
+    private UUID clientMessageId;
+
+    /**
+     * A message that references its session and sender by id only, for inserts that need no other state.
+     */
+    public static ChatMessage of(Integer sessionId, Integer senderId, String messageContent, LocalDateTime sentAt) {
+        return of(UUID.randomUUID(), sessionId, senderId, messageContent, sentAt);
+    }
+
+    public static ChatMessage of(UUID clientMessageId, Integer sessionId, Integer senderId, String messageContent, LocalDateTime sentAt) {
+        Session session = new Session();
+        session.setSessionId(sessionId);
+        User sender = new User();
+        sender.setUserId(senderId);
+        return new ChatMessage(null, session, sender, messageContent, sentAt, clientMessageId);
+    }
+}
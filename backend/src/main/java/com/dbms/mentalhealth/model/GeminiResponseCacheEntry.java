@@ -0,0 +1,44 @@
+package com.dbms.mentalhealth.model;
+
+import com.dbms.mentalhealth.enums.GeminiUseCase;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A stored Gemini response, addressed by the hash of model, use case and normalized prompt. The prompt
+ * itself is not stored.
+ */
+@Entity
+@Table(name = "gemini_response_cache", indexes = {
+        @Index(name = "idx_gemini_response_cache_expires", columnList = "expires_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GeminiResponseCacheEntry {
+
+    @Id
+    @Column(name = "prompt_hash", length = 64)
+    private String promptHash;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "use_case", nullable = false, length = 20)
+    private GeminiUseCase useCase;
+
+    @Column(name = "response", nullable = false, columnDefinition = "TEXT")
+    private String response;
+
+    // Duration of the original call, reported as saved time on every hit
+    @Column(name = "latency_ms", nullable = false)
+    private Long latencyMs;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
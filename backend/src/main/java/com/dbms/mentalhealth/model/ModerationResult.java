@@ -10,6 +10,12 @@ import lombok.NoArgsConstructor;
 public class ModerationResult {
     private boolean allowed;
     private String reason;
+    // Set when the moderator could not produce a verdict and this result is only a default
+    private boolean fallback;
+
+    public ModerationResult(boolean allowed, String reason) {
+        this(allowed, reason, false);
+    }
 
     // Convenience method to quickly create an allowed result
     public static ModerationResult allowed() {
@@ -20,4 +26,9 @@ public class ModerationResult {
     public static ModerationResult rejected(String reason) {
         return new ModerationResult(false, reason);
     }
-}
\ No newline at end of file
+
+    // Convenience method for when moderation failed and no real verdict is available
+    public static ModerationResult unavailable(String reason) {
+        return new ModerationResult(true, reason, true);
+    }
+}
@@ -6,8 +6,12 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.LocalDateTime;
+
 @Entity
-@Table(name = "session_status")
+@Table(name = "session_status", indexes = {
+        @Index(name = "idx_session_status_pending_analysis", columnList = "is_session_status_computed, analysis_dead_lettered, status_id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -31,4 +35,24 @@ public class SessionStatus {
 
     @Column(name = "summary", columnDefinition = "TEXT")
     private String summary;
+
+    // Analysis job bookkeeping, written by SessionAnalysisJobRepository
+
+    @Column(name = "analysis_attempts", nullable = false, columnDefinition = "integer default 0")
+    private Integer analysisAttempts = 0;
+
+    @Column(name = "analysis_lease_owner", length = 64)
+    private String analysisLeaseOwner;
+
+    @Column(name = "analysis_lease_until")
+    private LocalDateTime analysisLeaseUntil;
+
+    @Column(name = "analysis_next_attempt_at")
+    private LocalDateTime analysisNextAttemptAt;
+
+    @Column(name = "analysis_last_error", columnDefinition = "TEXT")
+    private String analysisLastError;
+
+    @Column(name = "analysis_dead_lettered", nullable = false, columnDefinition = "boolean default false")
+    private Boolean analysisDeadLettered = false;
 }
\ No newline at end of file
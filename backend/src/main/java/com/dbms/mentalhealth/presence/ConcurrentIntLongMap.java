@@ -0,0 +1,179 @@
+package com.dbms.mentalhealth.presence;
+
+/**
+ * Concurrent hash map from int to long without boxing, striped like {@link ConcurrentIntObjectMap}.
+ * Key 0 cannot be stored.
+ */
+final class ConcurrentIntLongMap {
+    private static final int STRIPES = 16;
+
+    interface EntryConsumer {
+        void accept(int key, long value);
+    }
+
+    interface EntryPredicate {
+        boolean test(int key, long value);
+    }
+
+    // Guarded by itself
+    private static final class Stripe {
+        int[] keys = new int[8];
+        long[] values = new long[8];
+        int size;
+    }
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    ConcurrentIntLongMap() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    long get(int key, long missing) {
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            int index = indexOf(stripe.keys, key);
+            return index >= 0 ? stripe.values[index] : missing;
+        }
+    }
+
+    void put(int key, long value) {
+        if (key == 0) {
+            throw new IllegalArgumentException("Key 0 is reserved");
+        }
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            int index = indexOf(stripe.keys, key);
+            if (index >= 0) {
+                stripe.values[index] = value;
+                return;
+            }
+            if (IntIntTable.capacityFor(stripe.size + 1) > stripe.keys.length) {
+                resize(stripe, IntIntTable.capacityFor(stripe.size + 1));
+            }
+            insert(stripe, key, value);
+            stripe.size++;
+        }
+    }
+
+    /**
+     * Removes the key and returns whether it was mapped.
+     */
+    boolean remove(int key) {
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            int index = indexOf(stripe.keys, key);
+            if (index < 0) {
+                return false;
+            }
+            delete(stripe, index);
+            return true;
+        }
+    }
+
+    /**
+     * Removes every entry the predicate accepts, one stripe at a time, and returns how many were removed.
+     */
+    int removeIf(EntryPredicate predicate) {
+        int removed = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                for (int i = 0; i < stripe.keys.length; ) {
+                    // A deletion shifts a later entry into slot i, so it is looked at again
+                    if (stripe.keys[i] != 0 && predicate.test(stripe.keys[i], stripe.values[i])) {
+                        delete(stripe, i);
+                        removed++;
+                    } else {
+                        i++;
+                    }
+                }
+            }
+        }
+        return removed;
+    }
+
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Calls the action with every entry, one stripe at a time while that stripe is locked.
+     */
+    void forEach(EntryConsumer action) {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                for (int i = 0; i < stripe.keys.length; i++) {
+                    if (stripe.keys[i] != 0) {
+                        action.accept(stripe.keys[i], stripe.values[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    private Stripe stripeFor(int key) {
+        return stripes[IntIntTable.mix(key) >>> 28];
+    }
+
+    private static int indexOf(int[] keys, int key) {
+        if (key == 0) {
+            return -1;
+        }
+        int mask = keys.length - 1;
+        for (int i = IntIntTable.mix(key) & mask; ; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return i;
+            }
+            if (keys[i] == 0) {
+                return -1;
+            }
+        }
+    }
+
+    private static void insert(Stripe stripe, int key, long value) {
+        int mask = stripe.keys.length - 1;
+        int i = IntIntTable.mix(key) & mask;
+        while (stripe.keys[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        stripe.keys[i] = key;
+        stripe.values[i] = value;
+    }
+
+    private static void resize(Stripe stripe, int capacity) {
+        int[] keys = stripe.keys;
+        long[] values = stripe.values;
+        stripe.keys = new int[capacity];
+        stripe.values = new long[capacity];
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                insert(stripe, keys[i], values[i]);
+            }
+        }
+    }
+
+    // Backward-shift deletion, as in ConcurrentIntObjectMap
+    private static void delete(Stripe stripe, int index) {
+        int[] keys = stripe.keys;
+        long[] values = stripe.values;
+        int mask = keys.length - 1;
+        int gap = index;
+        for (int i = (index + 1) & mask; keys[i] != 0; i = (i + 1) & mask) {
+            int home = IntIntTable.mix(keys[i]) & mask;
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+        keys[gap] = 0;
+        stripe.size--;
+    }
+}
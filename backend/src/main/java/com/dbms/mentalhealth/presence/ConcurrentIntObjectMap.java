@@ -0,0 +1,177 @@
+package com.dbms.mentalhealth.presence;
+
+import java.util.Objects;
+
+/**
+ * Concurrent hash map from int to object without boxing the keys. Keys are spread over a fixed number of
+ * stripes, each an open-addressing table with its own lock, so writers of different stripes do not wait
+ * for each other and a change costs amortized O(1). Key 0 and null values cannot be stored.
+ */
+final class ConcurrentIntObjectMap<V> {
+    private static final int STRIPES = 16;
+
+    // Guarded by itself
+    private static final class Stripe {
+        int[] keys = new int[8];
+        Object[] values = new Object[8];
+        int size;
+    }
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    ConcurrentIntObjectMap() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(int key) {
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            int index = indexOf(stripe.keys, key);
+            return index >= 0 ? (V) stripe.values[index] : null;
+        }
+    }
+
+    /**
+     * Maps the key to the value and returns the previous value, or null if there was none.
+     */
+    @SuppressWarnings("unchecked")
+    V put(int key, V value) {
+        if (key == 0) {
+            throw new IllegalArgumentException("Key 0 is reserved");
+        }
+        Objects.requireNonNull(value, "value");
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            int index = indexOf(stripe.keys, key);
+            if (index >= 0) {
+                V previous = (V) stripe.values[index];
+                stripe.values[index] = value;
+                return previous;
+            }
+            if (IntIntTable.capacityFor(stripe.size + 1) > stripe.keys.length) {
+                resize(stripe, IntIntTable.capacityFor(stripe.size + 1));
+            }
+            insert(stripe, key, value);
+            stripe.size++;
+            return null;
+        }
+    }
+
+    /**
+     * Removes the key and returns its value, or null if it was not mapped.
+     */
+    @SuppressWarnings("unchecked")
+    V remove(int key) {
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            int index = indexOf(stripe.keys, key);
+            if (index < 0) {
+                return null;
+            }
+            V previous = (V) stripe.values[index];
+            delete(stripe, index);
+            return previous;
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size;
+            }
+        }
+        return size;
+    }
+
+    void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.keys = new int[8];
+                stripe.values = new Object[8];
+                stripe.size = 0;
+            }
+        }
+    }
+
+    /**
+     * Calls the action with every entry, one stripe at a time while that stripe is locked. Changes to other
+     * stripes may or may not be seen.
+     */
+    @SuppressWarnings("unchecked")
+    void forEach(IntObjectTable.EntryConsumer<? super V> action) {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                for (int i = 0; i < stripe.keys.length; i++) {
+                    if (stripe.keys[i] != 0) {
+                        action.accept(stripe.keys[i], (V) stripe.values[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    // The high bits pick the stripe, the low bits the slot within it
+    private Stripe stripeFor(int key) {
+        return stripes[IntIntTable.mix(key) >>> 28];
+    }
+
+    private static int indexOf(int[] keys, int key) {
+        if (key == 0) {
+            return -1;
+        }
+        int mask = keys.length - 1;
+        for (int i = IntIntTable.mix(key) & mask; ; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return i;
+            }
+            if (keys[i] == 0) {
+                return -1;
+            }
+        }
+    }
+
+    private static void insert(Stripe stripe, int key, Object value) {
+        int mask = stripe.keys.length - 1;
+        int i = IntIntTable.mix(key) & mask;
+        while (stripe.keys[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        stripe.keys[i] = key;
+        stripe.values[i] = value;
+    }
+
+    private static void resize(Stripe stripe, int capacity) {
+        int[] keys = stripe.keys;
+        Object[] values = stripe.values;
+        stripe.keys = new int[capacity];
+        stripe.values = new Object[capacity];
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                insert(stripe, keys[i], values[i]);
+            }
+        }
+    }
+
+    // Backward-shift deletion: later entries of the probe run move into the gap, so no tombstones are left
+    private static void delete(Stripe stripe, int index) {
+        int[] keys = stripe.keys;
+        Object[] values = stripe.values;
+        int mask = keys.length - 1;
+        int gap = index;
+        for (int i = (index + 1) & mask; keys[i] != 0; i = (i + 1) & mask) {
+            int home = IntIntTable.mix(keys[i]) & mask;
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+        keys[gap] = 0;
+        values[gap] = null;
+        stripe.size--;
+    }
+}
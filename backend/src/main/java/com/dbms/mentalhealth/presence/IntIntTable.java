@@ -0,0 +1,101 @@
+package com.dbms.mentalhealth.presence;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Immutable open-addressing hash table from int to int, without boxing, built once so readers need no
+ * locking. Key 0 marks an empty slot and cannot be stored; user ids start at 1.
+ */
+final class IntIntTable {
+    static final IntIntTable EMPTY = new IntIntTable(new int[8], new int[8], 0);
+
+    private final int[] keys;
+    private final int[] values;
+    private final int size;
+
+    private IntIntTable(int[] keys, int[] values, int size) {
+        this.keys = keys;
+        this.values = values;
+        this.size = size;
+    }
+
+    /**
+     * Builds a table from parallel arrays in one pass; a repeated key keeps its last value.
+     */
+    static IntIntTable of(int[] keys, int[] values, int count) {
+        int capacity = capacityFor(count);
+        IntIntTable table = new IntIntTable(new int[capacity], new int[capacity], 0);
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            if (keys[i] == 0) {
+                throw new IllegalArgumentException("Key 0 is reserved");
+            }
+            int index = table.indexOf(keys[i]);
+            if (index >= 0) {
+                table.values[index] = values[i];
+            } else {
+                table.insert(keys[i], values[i]);
+                size++;
+            }
+        }
+        return new IntIntTable(table.keys, table.values, size);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean containsKey(int key) {
+        return key != 0 && indexOf(key) >= 0;
+    }
+
+    int get(int key, int missing) {
+        int index = key != 0 ? indexOf(key) : -1;
+        return index >= 0 ? values[index] : missing;
+    }
+
+    void forEachKey(IntConsumer action) {
+        for (int key : keys) {
+            if (key != 0) {
+                action.accept(key);
+            }
+        }
+    }
+
+    private int indexOf(int key) {
+        int mask = keys.length - 1;
+        for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return i;
+            }
+            if (keys[i] == 0) {
+                return -1;
+            }
+        }
+    }
+
+    private void insert(int key, int value) {
+        int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        while (keys[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+    }
+
+    // At most half full, so probe sequences stay short
+    static int capacityFor(int size) {
+        int capacity = 8;
+        while (capacity < size * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    // Sequential ids would otherwise fill one run of slots
+    static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,95 @@
+package com.dbms.mentalhealth.presence;
+
+/**
+ * Immutable open-addressing hash table from int to object, the counterpart of {@link IntIntTable}.
+ * Key 0 cannot be stored.
+ */
+final class IntObjectTable<V> {
+    private static final IntObjectTable<?> EMPTY = new IntObjectTable<>(new int[8], new Object[8], 0);
+
+    private final int[] keys;
+    private final Object[] values;
+    private final int size;
+
+    private IntObjectTable(int[] keys, Object[] values, int size) {
+        this.keys = keys;
+        this.values = values;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <V> IntObjectTable<V> empty() {
+        return (IntObjectTable<V>) EMPTY;
+    }
+
+    /**
+     * Builds a table from parallel arrays in one pass; a repeated key keeps its last value.
+     */
+    static <V> IntObjectTable<V> of(int[] keys, V[] values, int count) {
+        int capacity = IntIntTable.capacityFor(count);
+        IntObjectTable<V> table = new IntObjectTable<>(new int[capacity], new Object[capacity], 0);
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            if (keys[i] == 0) {
+                throw new IllegalArgumentException("Key 0 is reserved");
+            }
+            int index = table.indexOf(keys[i]);
+            if (index >= 0) {
+                table.values[index] = values[i];
+            } else {
+                table.insert(keys[i], values[i]);
+                size++;
+            }
+        }
+        return new IntObjectTable<>(table.keys, table.values, size);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean containsKey(int key) {
+        return key != 0 && indexOf(key) >= 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(int key) {
+        int index = key != 0 ? indexOf(key) : -1;
+        return index >= 0 ? (V) values[index] : null;
+    }
+
+    interface EntryConsumer<V> {
+        void accept(int key, V value);
+    }
+
+    @SuppressWarnings("unchecked")
+    void forEach(EntryConsumer<? super V> action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                action.accept(keys[i], (V) values[i]);
+            }
+        }
+    }
+
+    private int indexOf(int key) {
+        int mask = keys.length - 1;
+        for (int i = IntIntTable.mix(key) & mask; ; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return i;
+            }
+            if (keys[i] == 0) {
+                return -1;
+            }
+        }
+    }
+
+    private void insert(int key, Object value) {
+        int mask = keys.length - 1;
+        int i = IntIntTable.mix(key) & mask;
+        while (keys[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+    }
+}
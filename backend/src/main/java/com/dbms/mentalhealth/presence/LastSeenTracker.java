@@ -0,0 +1,121 @@
+package com.dbms.mentalhealth.presence;
+
+import com.dbms.mentalhealth.config.LastSeenConfig;
+import com.dbms.mentalhealth.repository.LastSeenRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind store for {@code users.last_seen}. Activity only records the time in memory, keyed by user
+ * id, without touching the database; every {@code presence.last-seen.flush-interval-ms} the latest time
+ * per user is written in chunks of {@code chunk-size} users, one UPDATE each.
+ * <p>
+ * An entry leaves the buffer only once written, and only if no newer activity replaced it meanwhile, so
+ * a failed chunk is simply written again on the next flush. Reports the age of the oldest timestamp each
+ * flush writes ({@code presence.last-seen.flush.lag}), rows per flush and users waiting.
+ */
+@Slf4j
+@Component
+public class LastSeenTracker {
+
+    private final LastSeenRepository lastSeenRepository;
+    private final LastSeenConfig config;
+    // Latest activity per user id not yet written, in epoch milliseconds
+    private final Map<Integer, Long> pending = new ConcurrentHashMap<>();
+
+    private final Timer flushLag;
+    private final DistributionSummary flushRows;
+    private final Counter flushFailures;
+
+    public LastSeenTracker(LastSeenRepository lastSeenRepository, LastSeenConfig config, MeterRegistry meterRegistry) {
+        this.lastSeenRepository = lastSeenRepository;
+        this.config = config;
+        Gauge.builder("presence.last-seen.pending", pending, Map::size)
+                .description("Users whose last-seen time is not yet written")
+                .register(meterRegistry);
+        this.flushLag = Timer.builder("presence.last-seen.flush.lag")
+                .description("Age of the oldest last-seen time written by a flush")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.flushRows = DistributionSummary.builder("presence.last-seen.flush.rows")
+                .description("User rows updated per flush")
+                .register(meterRegistry);
+        this.flushFailures = Counter.builder("presence.last-seen.flush.failures")
+                .description("Chunks that failed and were left for the next flush")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records activity of the user now. Memory only; safe to call on every request.
+     */
+    public void touch(int userId) {
+        pending.put(userId, System.currentTimeMillis());
+    }
+
+    /**
+     * The later of the given time and the user's unwritten activity, for code about to save a whole
+     * {@code User} row so it does not move {@code last_seen} back.
+     */
+    public LocalDateTime latest(int userId, LocalDateTime persisted) {
+        Long millis = pending.get(userId);
+        if (millis == null) {
+            return persisted;
+        }
+        LocalDateTime buffered = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+        return persisted == null || buffered.isAfter(persisted) ? buffered : persisted;
+    }
+
+    @Scheduled(fixedDelayString = "${presence.last-seen.flush-interval-ms:5000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<Integer, Long>> lastSeen = new ArrayList<>(pending.size());
+        pending.forEach((userId, millis) -> lastSeen.add(new AbstractMap.SimpleImmutableEntry<>(userId, millis)));
+
+        int chunkSize = Math.max(1, config.getChunkSize());
+        int updated = 0;
+        long oldest = Long.MAX_VALUE;
+        for (int from = 0; from < lastSeen.size(); from += chunkSize) {
+            List<Map.Entry<Integer, Long>> chunk = lastSeen.subList(from, Math.min(lastSeen.size(), from + chunkSize));
+            try {
+                updated += lastSeenRepository.updateLastSeen(chunk);
+            } catch (Exception e) {
+                flushFailures.increment();
+                log.error("Error writing last-seen times for {} users; retrying on the next flush", chunk.size(), e);
+                continue;
+            }
+            for (Map.Entry<Integer, Long> entry : chunk) {
+                pending.remove(entry.getKey(), entry.getValue());
+                oldest = Math.min(oldest, entry.getValue());
+            }
+        }
+        if (oldest != Long.MAX_VALUE) {
+            flushLag.record(Math.max(0, System.currentTimeMillis() - oldest), TimeUnit.MILLISECONDS);
+            flushRows.record(updated);
+        }
+        log.debug("Flushed last-seen times: {} users buffered, {} rows updated", lastSeen.size(), updated);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
@@ -0,0 +1,294 @@
+package com.dbms.mentalhealth.presence;
+
+import com.dbms.mentalhealth.dto.UserActivity.UserActivityDTO;
+import com.dbms.mentalhealth.dto.UserActivity.UserRoleCountDTO;
+import com.dbms.mentalhealth.enums.Role;
+import com.dbms.mentalhealth.model.User;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Online users per role and the users currently in a session, keyed by primitive user id. Each role is a
+ * striped concurrent map with an atomic counter beside it, so a login, logout or session change costs O(1)
+ * and writers of different users rarely wait for each other. Readers get an immutable {@link PresenceView},
+ * built on the first read after a change and shared until the next one.
+ * <p>
+ * An in-session flag lapses {@link #SESSION_FLAG_TTL_SECONDS} after the session started, as with the
+ * in-session cache this replaced, so a session that is never ended does not keep its listener busy for good.
+ * <p>
+ * Membership is maintained by {@code UserActivityServiceImpl}, sessions by {@code SessionServiceImpl}.
+ * Reports the online count per role as {@code presence.online}.
+ */
+@Slf4j
+@Component
+public class PresenceRegistry {
+    static final long SESSION_FLAG_TTL_SECONDS = TimeUnit.MINUTES.toSeconds(30);
+
+    private static final Role[] ROLES = Role.values();
+    // The order role counts have always been reported in
+    private static final Role[] COUNTED_ROLES = {Role.ADMIN, Role.LISTENER, Role.USER};
+    private static final long NO_SESSION = -1L;
+    private static final int USER_LOCKS = 64;
+
+    // Anonymous names of the online users, and how many there are, per role
+    private final Map<Role, ConcurrentIntObjectMap<String>> members = new EnumMap<>(Role.class);
+    private final Map<Role, AtomicInteger> counts = new EnumMap<>(Role.class);
+    // User id to the other participant's id in the low 32 bits and the epoch second the flag lapses in the high
+    private final ConcurrentIntLongMap sessions = new ConcurrentIntLongMap();
+    // Make moving one user between roles atomic
+    private final Object[] userLocks = new Object[USER_LOCKS];
+    // Changes hold the read lock and building a view the write lock, so a view never shows half a change
+    private final ReentrantReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+    private final AtomicLong version = new AtomicLong();
+    private volatile PresenceView snapshot = PresenceView.EMPTY;
+
+    public PresenceRegistry(MeterRegistry meterRegistry) {
+        for (Role role : ROLES) {
+            members.put(role, new ConcurrentIntObjectMap<>());
+            counts.put(role, new AtomicInteger());
+        }
+        for (int i = 0; i < USER_LOCKS; i++) {
+            userLocks[i] = new Object();
+        }
+        for (Role role : ROLES) {
+            Gauge.builder("presence.online", counts.get(role), AtomicInteger::get)
+                    .description("Users online with the role")
+                    .tag("role", role.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * The current state as an immutable view; the same instance until something changes.
+     */
+    public PresenceView view() {
+        PresenceView current = snapshot;
+        if (current.version() == version.get()) {
+            return current;
+        }
+        snapshotLock.writeLock().lock();
+        try {
+            current = snapshot;
+            long latest = version.get();
+            if (current.version() != latest) {
+                current = buildView(latest);
+                snapshot = current;
+            }
+            return current;
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+    }
+
+    public boolean isInSession(int userId) {
+        long entry = sessions.get(userId, NO_SESSION);
+        return entry != NO_SESSION && !lapsed(entry, nowSeconds());
+    }
+
+    /**
+     * The role the user is online with, or null if they are offline.
+     */
+    public Role roleOf(int userId) {
+        for (Role role : ROLES) {
+            if (members.get(role).get(userId) != null) {
+                return role;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A new DTO for the user, or null if they are offline.
+     */
+    public UserActivityDTO member(int userId) {
+        for (Role role : ROLES) {
+            String name = members.get(role).get(userId);
+            if (name != null) {
+                return new UserActivityDTO(userId, name, isInSession(userId));
+            }
+        }
+        return null;
+    }
+
+    public int count(Role role) {
+        return counts.get(role).get();
+    }
+
+    public List<UserRoleCountDTO> roleCounts() {
+        List<UserRoleCountDTO> roleCounts = new ArrayList<>(COUNTED_ROLES.length);
+        for (Role role : COUNTED_ROLES) {
+            roleCounts.add(new UserRoleCountDTO(role.name(), count(role)));
+        }
+        return roleCounts;
+    }
+
+    /**
+     * Puts the user online with the role, moving them out of any other role. Returns whether anything changed.
+     */
+    public boolean join(int userId, String anonymousName, Role role) {
+        snapshotLock.readLock().lock();
+        try {
+            synchronized (userLocks[Math.floorMod(userId, USER_LOCKS)]) {
+                boolean changed = false;
+                for (Role other : ROLES) {
+                    if (other != role && members.get(other).remove(userId) != null) {
+                        counts.get(other).decrementAndGet();
+                        changed = true;
+                    }
+                }
+                String previous = members.get(role).put(userId, anonymousName);
+                if (previous == null) {
+                    counts.get(role).incrementAndGet();
+                }
+                changed |= !anonymousName.equals(previous);
+                if (changed) {
+                    version.incrementAndGet();
+                }
+                return changed;
+            }
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Takes the user offline. Returns the role they had, or null if they were not online.
+     */
+    public Role leave(int userId) {
+        snapshotLock.readLock().lock();
+        try {
+            synchronized (userLocks[Math.floorMod(userId, USER_LOCKS)]) {
+                for (Role role : ROLES) {
+                    if (members.get(role).remove(userId) != null) {
+                        counts.get(role).decrementAndGet();
+                        version.incrementAndGet();
+                        return role;
+                    }
+                }
+                return null;
+            }
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces all online users at once, keeping the sessions.
+     */
+    public void replaceMembers(Collection<User> users) {
+        snapshotLock.writeLock().lock();
+        try {
+            for (Role role : ROLES) {
+                members.get(role).clear();
+                counts.get(role).set(0);
+            }
+            for (User user : users) {
+                if (members.get(user.getRole()).put(user.getUserId(), user.getAnonymousName()) == null) {
+                    counts.get(user.getRole()).incrementAndGet();
+                }
+            }
+            version.incrementAndGet();
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+    }
+
+    public void startSession(int userId, int partnerId) {
+        long expiresAt = nowSeconds() + SESSION_FLAG_TTL_SECONDS;
+        snapshotLock.readLock().lock();
+        try {
+            sessions.put(userId, entry(partnerId, expiresAt));
+            sessions.put(partnerId, entry(userId, expiresAt));
+            version.incrementAndGet();
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    public void endSession(int userId, int partnerId) {
+        snapshotLock.readLock().lock();
+        try {
+            if (sessions.remove(userId) | sessions.remove(partnerId)) {
+                version.incrementAndGet();
+            }
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Drops lapsed in-session flags so views stop showing them; {@link #isInSession} already ignores them.
+     */
+    @Scheduled(fixedDelay = 60_000)
+    public void expireSessionFlags() {
+        long now = nowSeconds();
+        int expired;
+        snapshotLock.readLock().lock();
+        try {
+            expired = sessions.removeIf((userId, entry) -> lapsed(entry, now));
+            if (expired > 0) {
+                version.incrementAndGet();
+            }
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+        if (expired > 0) {
+            log.info("Expired the in-session flag of {} users whose session was not ended", expired);
+        }
+    }
+
+    // Caller holds the write lock, so nothing changes while the tables are copied
+    private PresenceView buildView(long builtVersion) {
+        List<IntObjectTable<String>> tables = new ArrayList<>(ROLES.length);
+        for (Role role : ROLES) {
+            ConcurrentIntObjectMap<String> roleMembers = members.get(role);
+            int size = roleMembers.size();
+            int[] ids = new int[size];
+            String[] names = new String[size];
+            int[] filled = new int[1];
+            roleMembers.forEach((userId, name) -> {
+                ids[filled[0]] = userId;
+                names[filled[0]++] = name;
+            });
+            tables.add(IntObjectTable.of(ids, names, size));
+        }
+
+        long now = nowSeconds();
+        int size = sessions.size();
+        int[] userIds = new int[size];
+        int[] partnerIds = new int[size];
+        int[] filled = new int[1];
+        sessions.forEach((userId, entry) -> {
+            if (!lapsed(entry, now)) {
+                userIds[filled[0]] = userId;
+                partnerIds[filled[0]++] = (int) entry;
+            }
+        });
+        return new PresenceView(builtVersion, List.copyOf(tables), IntIntTable.of(userIds, partnerIds, filled[0]));
+    }
+
+    private static long entry(int partnerId, long expiresAt) {
+        return (expiresAt << 32) | (partnerId & 0xffffffffL);
+    }
+
+    private static boolean lapsed(long entry, long now) {
+        return (entry >>> 32) <= now;
+    }
+
+    private static long nowSeconds() {
+        return System.currentTimeMillis() / 1000;
+    }
+}
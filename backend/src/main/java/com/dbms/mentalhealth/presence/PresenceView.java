@@ -0,0 +1,131 @@
+package com.dbms.mentalhealth.presence;
+
+import com.dbms.mentalhealth.dto.UserActivity.UserActivityDTO;
+import com.dbms.mentalhealth.enums.CacheKey;
+import com.dbms.mentalhealth.enums.Role;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntConsumer;
+
+/**
+ * Who is online, by role, and who is in a session, as of one moment. Never changes: the
+ * {@link PresenceRegistry} builds a new view on the first read after a change. The online lists are built on
+ * first read and then shared by every reader of the same view, so they must not be modified.
+ */
+public final class PresenceView {
+    private static final Role[] ROLES = Role.values();
+    private static final CacheKey[] TOPICS = CacheKey.values();
+
+    static final PresenceView EMPTY = new PresenceView(0, emptyMembers(), IntIntTable.EMPTY);
+
+    // The registry version the view was built from
+    private final long version;
+    // Anonymous names of the online users, per role ordinal
+    private final List<IntObjectTable<String>> members;
+    // User id to the id of the other participant of their session
+    private final IntIntTable partners;
+    // Built lazily; two readers racing only build equal lists
+    private final AtomicReferenceArray<List<UserActivityDTO>> online = new AtomicReferenceArray<>(TOPICS.length);
+
+    PresenceView(long version, List<IntObjectTable<String>> members, IntIntTable partners) {
+        this.version = version;
+        this.members = members;
+        this.partners = partners;
+    }
+
+    private static List<IntObjectTable<String>> emptyMembers() {
+        List<IntObjectTable<String>> members = new ArrayList<>(ROLES.length);
+        for (int i = 0; i < ROLES.length; i++) {
+            members.add(IntObjectTable.empty());
+        }
+        return List.copyOf(members);
+    }
+
+    long version() {
+        return version;
+    }
+
+    public boolean isInSession(int userId) {
+        return partners.containsKey(userId);
+    }
+
+    /**
+     * The role the user is online with, or null if they are offline.
+     */
+    public Role roleOf(int userId) {
+        for (Role role : ROLES) {
+            if (members.get(role.ordinal()).containsKey(userId)) {
+                return role;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A new DTO for the user, or null if they are offline.
+     */
+    public UserActivityDTO member(int userId) {
+        Role role = roleOf(userId);
+        return role == null ? null
+                : new UserActivityDTO(userId, members.get(role.ordinal()).get(userId), isInSession(userId));
+    }
+
+    public int count(Role role) {
+        return members.get(role.ordinal()).size();
+    }
+
+    /**
+     * The online users of a topic, ordered by user id.
+     */
+    public List<UserActivityDTO> online(CacheKey topic) {
+        List<UserActivityDTO> users = online.get(topic.ordinal());
+        if (users == null) {
+            users = buildOnline(topic);
+            online.set(topic.ordinal(), users);
+        }
+        return users;
+    }
+
+    /**
+     * Calls the action with every user whose in-session flag differs between the previous view and this one.
+     */
+    public void forEachSessionChange(PresenceView previous, IntConsumer action) {
+        if (previous.partners == partners) {
+            return;
+        }
+        previous.partners.forEachKey(userId -> {
+            if (!partners.containsKey(userId)) {
+                action.accept(userId);
+            }
+        });
+        partners.forEachKey(userId -> {
+            if (!previous.partners.containsKey(userId)) {
+                action.accept(userId);
+            }
+        });
+    }
+
+    private List<UserActivityDTO> buildOnline(CacheKey topic) {
+        Role only = topic.getRole();
+        List<UserActivityDTO> users = new ArrayList<>(only != null ? count(only) : onlineCount());
+        for (Role role : ROLES) {
+            if (only == null || only == role) {
+                members.get(role.ordinal()).forEach((userId, name) ->
+                        users.add(new UserActivityDTO(userId, name, partners.containsKey(userId))));
+            }
+        }
+        users.sort(Comparator.comparingInt(UserActivityDTO::getUserId));
+        return List.copyOf(users);
+    }
+
+    private int onlineCount() {
+        int total = 0;
+        for (IntObjectTable<String> roleMembers : members) {
+            total += roleMembers.size();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,56 @@
+package com.dbms.mentalhealth.repository;
+
+import com.dbms.mentalhealth.model.ChatMessage;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Inserts chat messages with JDBC statement batching. The ids stay database-generated; nothing reads
+ * them back, so the driver is free to rewrite each batch into multi-row INSERTs
+ * ({@code reWriteBatchedInserts}) and reuse its server-side prepared statement across flushes.
+ * <p>
+ * A message whose client message id is already stored is skipped, so replaying the journal after a crash
+ * between insert and acknowledgement does not duplicate it.
+ */
+@Repository
+public class ChatMessageBatchRepository {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO chat_messages (session_id, sender_id, message_content, sent_at, client_message_id) VALUES (?, ?, ?, ?, ?)"
+                    + " ON CONFLICT (client_message_id) DO NOTHING";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ChatMessageBatchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Returns the number of rows inserted, without the skipped duplicates. A statement the driver reports as
+     * {@link Statement#SUCCESS_NO_INFO}, as it does for rewritten batches, counts as one row.
+     */
+    public int insertAll(List<ChatMessage> messages, int batchSize) {
+        int[][] counts = jdbcTemplate.batchUpdate(INSERT_SQL, messages, batchSize, (ps, message) -> {
+            ps.setInt(1, message.getSession().getSessionId());
+            ps.setInt(2, message.getSender().getUserId());
+            ps.setString(3, message.getMessageContent());
+            ps.setTimestamp(4, Timestamp.valueOf(message.getSentAt()));
+            ps.setObject(5, message.getClientMessageId());
+        });
+        int rows = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                if (count == Statement.SUCCESS_NO_INFO) {
+                    rows++;
+                } else if (count > 0) {
+                    rows += count;
+                }
+            }
+        }
+        return rows;
+    }
+}
@@ -1,10 +1,46 @@
 package com.dbms.mentalhealth.repository;
 
 import com.dbms.mentalhealth.model.ChatMessage;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.UUID;
 
 public interface ChatMessageRepository extends JpaRepository<ChatMessage, Integer> {
     List<ChatMessage> findBySession_SessionId(Integer sessionId);
+
+    List<ChatMessage> findBySession_SessionIdAndSentAtAfterOrderBySentAtAsc(Integer sessionId, LocalDateTime sentAt, Pageable pageable);
+
+    // Keyset reads over idx_chat_messages_session_sent; the sentAt bound lets the index range scan start at the cursor
+    @Query("SELECT m FROM ChatMessage m JOIN FETCH m.sender WHERE m.session.sessionId = :sessionId " +
+            "ORDER BY m.sentAt DESC, m.messageId DESC")
+    List<ChatMessage> findNewestBySessionId(@Param("sessionId") Integer sessionId, Pageable pageable);
+
+    @Query("SELECT m FROM ChatMessage m JOIN FETCH m.sender WHERE m.session.sessionId = :sessionId " +
+            "ORDER BY m.sentAt ASC, m.messageId ASC")
+    List<ChatMessage> findOldestBySessionId(@Param("sessionId") Integer sessionId, Pageable pageable);
+
+    @Query("SELECT m FROM ChatMessage m JOIN FETCH m.sender WHERE m.session.sessionId = :sessionId " +
+            "AND m.sentAt <= :sentAt AND (m.sentAt < :sentAt OR m.messageId < :messageId) " +
+            "ORDER BY m.sentAt DESC, m.messageId DESC")
+    List<ChatMessage> findBeforeCursor(@Param("sessionId") Integer sessionId,
+                                       @Param("sentAt") LocalDateTime sentAt,
+                                       @Param("messageId") Integer messageId,
+                                       Pageable pageable);
+
+    @Query("SELECT m FROM ChatMessage m JOIN FETCH m.sender WHERE m.session.sessionId = :sessionId " +
+            "AND m.sentAt >= :sentAt AND (m.sentAt > :sentAt OR m.messageId > :messageId) " +
+            "ORDER BY m.sentAt ASC, m.messageId ASC")
+    List<ChatMessage> findAfterCursor(@Param("sessionId") Integer sessionId,
+                                      @Param("sentAt") LocalDateTime sentAt,
+                                      @Param("messageId") Integer messageId,
+                                      Pageable pageable);
+
+    @Query("SELECT m.clientMessageId FROM ChatMessage m WHERE m.clientMessageId IN :clientMessageIds")
+    List<UUID> findExistingClientMessageIds(@Param("clientMessageIds") Collection<UUID> clientMessageIds);
 }
@@ -0,0 +1,34 @@
+package com.dbms.mentalhealth.repository;
+
+import com.dbms.mentalhealth.model.GeminiResponseCacheEntry;
+import jakarta.transaction.Transactional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface GeminiResponseCacheRepository extends JpaRepository<GeminiResponseCacheEntry, String> {
+    Optional<GeminiResponseCacheEntry> findByPromptHashAndExpiresAtAfter(String promptHash, LocalDateTime now);
+
+    // Two instances may store the same response at the same time; the later one wins
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO gemini_response_cache (prompt_hash, use_case, response, latency_ms, created_at, expires_at) " +
+            "VALUES (:promptHash, :useCase, :response, :latencyMs, :createdAt, :expiresAt) " +
+            "ON CONFLICT (prompt_hash) DO UPDATE SET response = EXCLUDED.response, latency_ms = EXCLUDED.latency_ms, " +
+            "created_at = EXCLUDED.created_at, expires_at = EXCLUDED.expires_at", nativeQuery = true)
+    void upsert(@Param("promptHash") String promptHash,
+                @Param("useCase") String useCase,
+                @Param("response") String response,
+                @Param("latencyMs") long latencyMs,
+                @Param("createdAt") LocalDateTime createdAt,
+                @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM GeminiResponseCacheEntry e WHERE e.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
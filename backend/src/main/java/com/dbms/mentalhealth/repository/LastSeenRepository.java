@@ -0,0 +1,45 @@
+package com.dbms.mentalhealth.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes buffered last-seen timestamps to {@code users} with one set-based UPDATE per chunk of users,
+ * joined on {@code user_id}. A timestamp never moves {@code last_seen} backwards.
+ */
+@Repository
+public class LastSeenRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public LastSeenRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Timestamps are epoch milliseconds
+    public int updateLastSeen(List<Map.Entry<Integer, Long>> lastSeen) {
+        return jdbcTemplate.update(updateSql(lastSeen.size()), parameters(lastSeen));
+    }
+
+    private static String updateSql(int rows) {
+        StringBuilder sql = new StringBuilder("UPDATE users u SET last_seen = v.ts FROM (VALUES ");
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? "" : ", ").append("(CAST(? AS INTEGER), CAST(? AS TIMESTAMP))");
+        }
+        return sql.append(") AS v(user_id, ts) WHERE u.user_id = v.user_id")
+                .append(" AND (u.last_seen IS NULL OR u.last_seen < v.ts)").toString();
+    }
+
+    private static Object[] parameters(List<Map.Entry<Integer, Long>> lastSeen) {
+        Object[] parameters = new Object[lastSeen.size() * 2];
+        for (int i = 0; i < lastSeen.size(); i++) {
+            parameters[2 * i] = lastSeen.get(i).getKey();
+            parameters[2 * i + 1] = new Timestamp(lastSeen.get(i).getValue());
+        }
+        return parameters;
+    }
+}
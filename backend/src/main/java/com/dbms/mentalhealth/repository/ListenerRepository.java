@@ -3,11 +3,9 @@ package com.dbms.mentalhealth.repository;
 import com.dbms.mentalhealth.enums.ProfileStatus;
 import com.dbms.mentalhealth.model.Listener;
 import com.dbms.mentalhealth.model.User;
-import jakarta.transaction.Transactional;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
@@ -38,9 +36,4 @@ public interface ListenerRepository extends JpaRepository<Listener, Integer> {
 
     boolean existsByUser(User user);
 
-    @Modifying
-    @Transactional
-    @Query("UPDATE Listener l SET l.totalMessagesSent = l.totalMessagesSent + :count WHERE l.user.anonymousName = :anonymousName")
-    void incrementMessageCount(@Param("anonymousName") String anonymousName, @Param("count") Integer count);
-
 }
@@ -0,0 +1,47 @@
+package com.dbms.mentalhealth.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Adds message count deltas to {@code listeners} and {@code user_metrics} with one set-based UPDATE per
+ * chunk of users, joined on {@code user_id}. Users without a row in the table are skipped.
+ */
+@Repository
+public class MessageCountRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public MessageCountRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public int incrementListenerMessageCounts(List<Map.Entry<Integer, Long>> deltas) {
+        return jdbcTemplate.update(updateSql("listeners", deltas.size()), parameters(deltas));
+    }
+
+    public int incrementUserMetricsMessageCounts(List<Map.Entry<Integer, Long>> deltas) {
+        return jdbcTemplate.update(updateSql("user_metrics", deltas.size()), parameters(deltas));
+    }
+
+    private static String updateSql(String table, int rows) {
+        StringBuilder sql = new StringBuilder("UPDATE ").append(table)
+                .append(" t SET total_messages_sent = COALESCE(t.total_messages_sent, 0) + v.delta FROM (VALUES ");
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? "" : ", ").append("(CAST(? AS INTEGER), CAST(? AS INTEGER))");
+        }
+        return sql.append(") AS v(user_id, delta) WHERE t.user_id = v.user_id").toString();
+    }
+
+    private static Object[] parameters(List<Map.Entry<Integer, Long>> deltas) {
+        Object[] parameters = new Object[deltas.size() * 2];
+        for (int i = 0; i < deltas.size(); i++) {
+            parameters[2 * i] = deltas.get(i).getKey();
+            parameters[2 * i + 1] = Math.toIntExact(deltas.get(i).getValue());
+        }
+        return parameters;
+    }
+}
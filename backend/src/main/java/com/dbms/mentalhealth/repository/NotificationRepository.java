@@ -1,8 +1,20 @@
 package com.dbms.mentalhealth.repository;
 
+import com.dbms.mentalhealth.enums.NotificationStatus;
 import com.dbms.mentalhealth.model.Notification;
-import jakarta.persistence.criteria.CriteriaBuilder;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
 
 public interface NotificationRepository extends JpaRepository<Notification, Integer> {
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Notification n SET n.status = :status WHERE n.notificationId IN :notificationIds")
+    int updateStatus(@Param("notificationIds") Collection<Integer> notificationIds,
+                     @Param("status") NotificationStatus status);
 }
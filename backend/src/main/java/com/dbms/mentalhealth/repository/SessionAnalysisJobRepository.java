@@ -0,0 +1,123 @@
+package com.dbms.mentalhealth.repository;
+
+import com.dbms.mentalhealth.dto.session.SessionAnalysisJob;
+import com.dbms.mentalhealth.enums.SessionCategory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Treats unanalyzed rows of {@code session_status} as a job queue shared by all instances. A claim takes
+ * a lease on a batch of due rows with {@code FOR UPDATE SKIP LOCKED}, so concurrent claims never return
+ * the same row; completion and failure only apply while the caller still holds the lease, which the
+ * caller renews while the job runs. All times come from the database clock.
+ */
+@Repository
+public class SessionAnalysisJobRepository {
+
+    private static final String OPEN = "is_session_status_computed = false AND analysis_dead_lettered = false"
+            + " AND (analysis_lease_until IS NULL OR analysis_lease_until < now())";
+    private static final String DUE = OPEN
+            + " AND (analysis_next_attempt_at IS NULL OR analysis_next_attempt_at <= now())"
+            + " AND COALESCE(analysis_attempts, 0) < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SessionAnalysisJobRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Leases up to {@code limit} due jobs with attempts left to {@code owner} and counts the attempt. A job
+     * whose lease expired because its instance died counts as a failed attempt.
+     */
+    public List<SessionAnalysisJob> claim(String owner, int limit, long leaseSeconds, int maxAttempts) {
+        return jdbcTemplate.query(
+                "UPDATE session_status s SET analysis_lease_owner = ?,"
+                        + " analysis_lease_until = now() + CAST(? AS INTEGER) * INTERVAL '1 second',"
+                        + " analysis_attempts = COALESCE(s.analysis_attempts, 0) + 1"
+                        + " WHERE s.status_id IN (SELECT status_id FROM session_status WHERE " + DUE
+                        + " ORDER BY status_id LIMIT ? FOR UPDATE SKIP LOCKED)"
+                        + " RETURNING s.status_id, s.session_id, s.analysis_attempts",
+                (rs, rowNum) -> new SessionAnalysisJob(rs.getInt("status_id"), rs.getInt("session_id"), rs.getInt("analysis_attempts")),
+                owner, leaseSeconds, maxAttempts, limit);
+    }
+
+    /**
+     * Pushes the lease of jobs {@code owner} is still working on {@code leaseSeconds} into the future.
+     *
+     * @return how many leases were renewed; a job whose lease was taken over is skipped
+     */
+    public int renewLeases(Collection<SessionAnalysisJob> jobs, String owner, long leaseSeconds) {
+        List<Object[]> rows = jobs.stream()
+                .map(job -> new Object[]{leaseSeconds, job.statusId(), owner})
+                .toList();
+        int[] counts = jdbcTemplate.batchUpdate(
+                "UPDATE session_status SET analysis_lease_until = now() + CAST(? AS INTEGER) * INTERVAL '1 second'"
+                        + " WHERE status_id = ? AND analysis_lease_owner = ? AND is_session_status_computed = false",
+                rows);
+        return (int) Arrays.stream(counts).filter(count -> count > 0 || count == Statement.SUCCESS_NO_INFO).count();
+    }
+
+    /**
+     * Dead-letters unleased jobs that have used up their attempts: their last lease expired because the
+     * instance died or the job overran, so no failure was ever recorded for it.
+     *
+     * @return the number of jobs dead-lettered
+     */
+    public int deadLetterExhausted(int maxAttempts) {
+        return jdbcTemplate.update(
+                "UPDATE session_status SET analysis_dead_lettered = true,"
+                        + " analysis_last_error = 'Lease of the last attempt expired before it finished',"
+                        + " analysis_lease_owner = NULL, analysis_lease_until = NULL"
+                        + " WHERE " + OPEN + " AND COALESCE(analysis_attempts, 0) >= ?",
+                maxAttempts);
+    }
+
+    /**
+     * Stores the analysis result and releases the job.
+     *
+     * @return false if the lease was lost to another instance in the meantime
+     */
+    public boolean complete(SessionAnalysisJob job, String owner, SessionCategory category, String summary) {
+        return jdbcTemplate.update(
+                "UPDATE session_status SET category = ?, summary = ?, is_session_status_computed = true,"
+                        + " analysis_lease_owner = NULL, analysis_lease_until = NULL, analysis_last_error = NULL"
+                        + " WHERE status_id = ? AND analysis_lease_owner = ?",
+                category.name(), summary, job.statusId(), owner) == 1;
+    }
+
+    /**
+     * Records a failed attempt and releases the job, either for a retry after {@code backoffSeconds} or
+     * for good when {@code deadLetter} is set.
+     *
+     * @return false if the lease was lost to another instance in the meantime
+     */
+    public boolean fail(SessionAnalysisJob job, String owner, String error, long backoffSeconds, boolean deadLetter) {
+        return jdbcTemplate.update(
+                "UPDATE session_status SET analysis_last_error = ?, analysis_dead_lettered = ?,"
+                        + " analysis_next_attempt_at = now() + CAST(? AS INTEGER) * INTERVAL '1 second',"
+                        + " analysis_lease_owner = NULL, analysis_lease_until = NULL"
+                        + " WHERE status_id = ? AND analysis_lease_owner = ?",
+                error, deadLetter, backoffSeconds, job.statusId(), owner) == 1;
+    }
+
+    // Unanalyzed jobs that are not dead-lettered, whether due, waiting for a retry or leased
+    public long countPending() {
+        Long count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM session_status WHERE is_session_status_computed = false AND analysis_dead_lettered = false",
+                Long.class);
+        return count == null ? 0 : count;
+    }
+
+    public long countDeadLettered() {
+        Long count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM session_status WHERE is_session_status_computed = false AND analysis_dead_lettered = true",
+                Long.class);
+        return count == null ? 0 : count;
+    }
+}
@@ -1,10 +1,13 @@
 package com.dbms.mentalhealth.repository;
 
+import com.dbms.mentalhealth.dto.session.ChatSessionInfo;
 import com.dbms.mentalhealth.enums.SessionActivityStatus;
 import com.dbms.mentalhealth.model.Session;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 import java.util.Optional;
@@ -21,4 +24,8 @@ public interface SessionRepository extends JpaRepository<Session, Integer> {
     Page<Session> findBySessionStatus(SessionActivityStatus sessionStatus, Pageable pageable);
     Page<Session> findByUser_UserIdAndSessionStatus(Integer userId, SessionActivityStatus sessionStatus, Pageable pageable);
     Page<Session> findByListener_ListenerIdAndSessionStatus(Integer listenerId, SessionActivityStatus sessionStatus, Pageable pageable);
+
+    @Query("SELECT new com.dbms.mentalhealth.dto.session.ChatSessionInfo(s.sessionId, s.user.userId, s.listener.user.userId) " +
+            "FROM Session s WHERE s.sessionId = :sessionId")
+    Optional<ChatSessionInfo> findChatSessionInfo(@Param("sessionId") Integer sessionId);
 }
@@ -11,7 +11,6 @@ import java.util.List;
 
 @Repository
 public interface SessionStatusRepository extends JpaRepository<SessionStatus, Integer> {
-    List<SessionStatus> findByIsSessionStatusComputedFalse();
     List<SessionStatus> findByCategory(SessionCategory category);
 
     @Query("SELECT ss FROM SessionStatus ss WHERE ss.session.user.userId = :userId")
@@ -1,5 +1,6 @@
 package com.dbms.mentalhealth.repository;
 
+import com.dbms.mentalhealth.dto.user.ChatParticipant;
 import com.dbms.mentalhealth.enums.ProfileStatus;
 import com.dbms.mentalhealth.enums.Role;
 import com.dbms.mentalhealth.model.User;
@@ -11,9 +12,14 @@ import org.springframework.data.repository.query.Param;
 
 
 import java.util.List;
+import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Integer> {
     User findByAnonymousName(String anonymousName);
+
+    @Query("SELECT new com.dbms.mentalhealth.dto.user.ChatParticipant(u.userId, u.anonymousName) " +
+            "FROM User u WHERE u.anonymousName = :anonymousName")
+    Optional<ChatParticipant> findChatParticipant(@Param("anonymousName") String anonymousName);
     User findByEmail(String email);
     List<User> findByIsActive(Boolean isActive);
     boolean existsByEmail(String email);
@@ -1,7 +1,9 @@
 package com.dbms.mentalhealth.scheduler;
 
+import com.dbms.mentalhealth.gemini.GeminiResponseCache;
 import com.dbms.mentalhealth.service.cachableImpl.*;
 import com.dbms.mentalhealth.service.impl.UserActivityServiceImpl;
+import com.dbms.mentalhealth.websocket.ChatWebSocketHandler;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
@@ -16,6 +18,9 @@ public class CacheScheduler {
     private final UserActivityServiceImpl userActivityServiceImpl;
     private final CacheableAppointmentServiceImpl cacheableAppointmentServiceImpl;
     private final CacheableEmergencyHelplineServiceImpl cacheableEmergencyHelplineServiceImpl;
+    private final CacheableGeminiServiceImpl cacheableGeminiServiceImpl;
+    private final ChatWebSocketHandler chatWebSocketHandler;
+    private final GeminiResponseCache geminiResponseCache;
     public CacheScheduler(CacheableAdminServiceImpl cacheableAdminServiceImpl,
                           CacheableSessionServiceImpl cacheableSessionServiceImpl,
                           CacheableSessionFeedbackServiceImpl cacheableSessionFeedbackServiceImpl,
@@ -23,7 +28,10 @@ public class CacheScheduler {
                           CacheableListenerApplicationServiceImpl cacheableListenerApplicationServiceImpl,
                           UserActivityServiceImpl userActivityServiceImpl,
                           CacheableAppointmentServiceImpl cacheableAppointmentServiceImpl,
-                          CacheableEmergencyHelplineServiceImpl cacheableEmergencyHelplineServiceImpl) {
+                          CacheableEmergencyHelplineServiceImpl cacheableEmergencyHelplineServiceImpl,
+                          CacheableGeminiServiceImpl cacheableGeminiServiceImpl,
+                          ChatWebSocketHandler chatWebSocketHandler,
+                          GeminiResponseCache geminiResponseCache) {
         this.cacheableAdminServiceImpl = cacheableAdminServiceImpl;
         this.cacheableSessionServiceImpl = cacheableSessionServiceImpl;
         this.cacheableSessionFeedbackServiceImpl = cacheableSessionFeedbackServiceImpl;
@@ -32,6 +40,9 @@ public class CacheScheduler {
         this.userActivityServiceImpl = userActivityServiceImpl;
         this.cacheableAppointmentServiceImpl = cacheableAppointmentServiceImpl;
         this.cacheableEmergencyHelplineServiceImpl = cacheableEmergencyHelplineServiceImpl;
+        this.cacheableGeminiServiceImpl = cacheableGeminiServiceImpl;
+        this.chatWebSocketHandler = chatWebSocketHandler;
+        this.geminiResponseCache = geminiResponseCache;
     }
 
     @Scheduled(fixedRateString = "${scheduler.user-activity-cleanup-interval}")
@@ -45,5 +56,13 @@ public class CacheScheduler {
         cacheableAdminServiceImpl.logCacheStats();
         cacheableAppointmentServiceImpl.logCacheStats();
         cacheableEmergencyHelplineServiceImpl.logCacheStats();
+        cacheableGeminiServiceImpl.logCacheStats();
+        chatWebSocketHandler.logCacheStats();
+        geminiResponseCache.logCacheStats();
+    }
+
+    @Scheduled(fixedRate = 3600000) // 1 hour
+    public void purgeExpiredGeminiResponses() {
+        geminiResponseCache.purgeExpired();
     }
 }
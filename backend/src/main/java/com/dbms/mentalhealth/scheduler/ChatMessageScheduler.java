@@ -1,93 +1,389 @@
 package com.dbms.mentalhealth.scheduler;
 
+import com.dbms.mentalhealth.config.ChatFlushConfig;
+import com.dbms.mentalhealth.config.ChatPersistenceConfig;
+import com.dbms.mentalhealth.journal.ChatMessageJournal;
+import com.dbms.mentalhealth.journal.JournalEntry;
 import com.dbms.mentalhealth.model.ChatMessage;
+import com.dbms.mentalhealth.repository.MessageCountRepository;
 import com.dbms.mentalhealth.service.ChatMessageService;
-import com.dbms.mentalhealth.service.ListenerService;
-import com.dbms.mentalhealth.service.UserMetricService;
-import com.dbms.mentalhealth.service.impl.UserMetricServiceImpl;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.util.AbstractMap;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
 
+/**
+ * Buffers chat messages and writes them to the database from a dedicated flush thread. A flush starts
+ * as soon as the queue holds a full batch, holds {@code maxBatchBytes} of content, or its oldest message
+ * has waited {@code maxDelayMs}. The batch size grows additively while flushes stay under the target
+ * latency and halves when they do not.
+ * <p>
+ * A batch that fails stays at the head of the line and is retried with exponential backoff until the
+ * database takes it; meanwhile the queue fills up to its high-water mark and new messages are refused.
+ * Only a batch rejected for its data (a constraint violation) is split up, so the rows that can never be
+ * written do not hold back the others.
+ */
 @Slf4j
 @Component
 public class ChatMessageScheduler {
     private final ChatMessageService chatMessageService;
-    private final ListenerService listenerService;
+    private final MessageCountRepository messageCountRepository;
+    private final ChatMessageJournal journal;
+    private final ChatFlushConfig flushConfig;
+    private final ChatPersistenceConfig persistenceConfig;
 
-    private final BlockingQueue<ChatMessage> messageQueue = new LinkedBlockingQueue<>();
-    private final Map<String, Integer> messageCountBuffer = new ConcurrentHashMap<>();
+    // Each queued message carries its journal sequence number so it can be acknowledged once saved
+    private record QueuedMessage(long seq, ChatMessage message, int bytes, long enqueuedAt) {
+    }
+
+    private final BlockingQueue<QueuedMessage> messageQueue = new LinkedBlockingQueue<>();
+    // Messages sent per user id since the last counter flush, one buffer per counter table. Updated with
+    // merge and taken with remove, both atomic per key, so no increment can land in a removed entry
+    private final ConcurrentMap<Integer, Long> listenerMessageCounts = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Long> userMetricsMessageCounts = new ConcurrentHashMap<>();
+
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Condition flushNeeded = flushLock.newCondition();
+    private volatile int batchSize;
+    private volatile boolean backpressured;
+    private volatile boolean running = true;
+    private Thread flushThread;
+    // The batch that failed last, retried before anything else; only the flush thread writes these
+    private volatile List<QueuedMessage> failedBatch;
+    private int failedAttempts;
+    private long retryBackoffMs;
 
-    private static final int BATCH_SIZE = 100;
-    private final UserMetricService userMetricService;
-    int batchSize = calculateDynamicBatchSize();
+    private final Timer flushLatency;
+    private final DistributionSummary flushSize;
+    private final Counter flushFailures;
+    private final Counter droppedMessages;
 
-    public ChatMessageScheduler(ChatMessageService chatMessageService, ListenerService listenerService, UserMetricService userMetricService) {
+    public ChatMessageScheduler(ChatMessageService chatMessageService, MessageCountRepository messageCountRepository,
+                                ChatMessageJournal journal, ChatFlushConfig flushConfig,
+                                ChatPersistenceConfig persistenceConfig, MeterRegistry meterRegistry) {
         this.chatMessageService = chatMessageService;
-        this.listenerService = listenerService;
-        this.userMetricService = userMetricService;
+        this.messageCountRepository = messageCountRepository;
+        this.journal = journal;
+        this.flushConfig = flushConfig;
+        this.persistenceConfig = persistenceConfig;
+        this.batchSize = Math.max(flushConfig.getMinBatchSize(),
+                Math.min(flushConfig.getMaxBatchSize(), flushConfig.getInitialBatchSize()));
+
+        Gauge.builder("chat.persistence.queue.depth", messageQueue, BlockingQueue::size)
+                .description("Chat messages waiting to be written to the database")
+                .register(meterRegistry);
+        Gauge.builder("chat.persistence.queue.bytes", queuedBytes, AtomicLong::get)
+                .description("Estimated content bytes waiting to be written")
+                .register(meterRegistry);
+        Gauge.builder("chat.persistence.batch.size", this, s -> s.batchSize)
+                .description("Current adaptive flush batch size")
+                .register(meterRegistry);
+        Gauge.builder("chat.persistence.retry.pending", this, s -> {
+                    List<QueuedMessage> failed = s.failedBatch;
+                    return failed == null ? 0 : failed.size();
+                })
+                .description("Messages of the failed batch waiting to be retried")
+                .register(meterRegistry);
+        Gauge.builder("chat.persistence.backpressure", this, s -> s.backpressured ? 1 : 0)
+                .description("1 while new chat messages are refused because the queue is too deep")
+                .register(meterRegistry);
+        this.flushLatency = Timer.builder("chat.persistence.flush.latency")
+                .description("Time to write one batch of chat messages")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.flushSize = DistributionSummary.builder("chat.persistence.flush.size")
+                .description("Messages per flushed batch")
+                .register(meterRegistry);
+        this.flushFailures = Counter.builder("chat.persistence.flush.failures")
+                .description("Failed batch write attempts")
+                .register(meterRegistry);
+        this.droppedMessages = Counter.builder("chat.persistence.dropped")
+                .description("Messages the database rejected for their data")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void replayJournal() {
+        List<JournalEntry> entries = journal.recover();
+        for (JournalEntry entry : entries) {
+            // The journaled client message id makes a replay of an already inserted message a no-op
+            ChatMessage message = ChatMessage.of(entry.clientMessageId(), entry.sessionId(), entry.senderId(), entry.content(), entry.sentAt());
+            enqueue(entry.seq(), message);
+        }
+        if (!entries.isEmpty()) {
+            // Message counts are not journaled, only the messages themselves
+            log.info("Requeued {} chat messages recovered from the journal", entries.size());
+        }
+
+        flushThread = new Thread(this::flushLoop, "chat-message-flush");
+        flushThread.setDaemon(true);
+        flushThread.start();
     }
 
-    public void queueMessage(ChatMessage message, String username) {
-        messageQueue.offer(message);
-        messageCountBuffer.compute(username, (k, v) -> (v == null) ? 1 : v + 1);
-        log.info("Queued message from user: {}", username);
+    public void queueMessage(ChatMessage message) {
+        long seq = journal.append(message);
+        enqueue(seq, message);
+        Integer senderId = message.getSender().getUserId();
+        listenerMessageCounts.merge(senderId, 1L, Long::sum);
+        userMetricsMessageCounts.merge(senderId, 1L, Long::sum);
+        log.debug("Queued message from user: {}", senderId);
     }
 
-    @Scheduled(fixedDelay = 30000) // 5 seconds
-    public void processBatchMessages() {
-        List<ChatMessage> messageBatch = new ArrayList<>();
-        messageQueue.drainTo(messageBatch, batchSize);
+    /**
+     * True while the queue is above its high-water mark; callers should refuse new chat messages
+     * until it has drained below the low-water mark.
+     */
+    public boolean isBackpressured() {
+        return backpressured;
+    }
+
+    private void enqueue(long seq, ChatMessage message) {
+        int bytes = message.getMessageContent().length();
+        messageQueue.offer(new QueuedMessage(seq, message, bytes, System.nanoTime()));
+        long totalBytes = queuedBytes.addAndGet(bytes);
+        int depth = messageQueue.size();
+
+        if (depth >= flushConfig.getHighWaterMark() && !backpressured) {
+            backpressured = true;
+            log.warn("Chat message queue reached {} messages; refusing new messages until it drains", depth);
+        }
+        if (depth >= batchSize || totalBytes >= flushConfig.getMaxBatchBytes()) {
+            flushLock.lock();
+            try {
+                flushNeeded.signal();
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
 
-        if (!messageBatch.isEmpty()) {
+    private void flushLoop() {
+        while (running) {
             try {
-                chatMessageService.saveMessages(messageBatch);
-                log.info("Successfully processed batch of {} messages", messageBatch.size());
+                if (failedBatch == null) {
+                    awaitFlushTrigger();
+                }
+                flushBatch();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
             } catch (Exception e) {
-                log.error("Error processing message batch", e);
-                // Requeue failed messages
-                messageBatch.forEach(messageQueue::offer);
-                log.info("Requeued {} failed messages", messageBatch.size());
+                log.error("Unexpected error in chat message flush loop", e);
             }
         }
     }
 
-    @Scheduled(fixedDelay = 60000)
-    public void processMessageCounts() {
-        Map<String, Integer> countsToProcess = new HashMap<>(messageCountBuffer);
-        messageCountBuffer.clear();
-
-        countsToProcess.forEach((username, count) -> {
-            if (count > 0) {
-                boolean listenerUpdated = false;
-                boolean metricsUpdated = false;
-
-                try {
-                    listenerService.incrementMessageCount(username, count);
-                    listenerUpdated = true;
-                    userMetricService.incrementMessageCount(username, count);
-                    metricsUpdated = true;
-                    log.info("Updated message count for user {}: +{}", username, count);
-                } catch (Exception e) {
-                    log.error("Error updating message count for user {}", username, e);
-                    // Only requeue the counts that failed to update
-                    if (!listenerUpdated || !metricsUpdated) {
-                        messageCountBuffer.compute(username, (k, v) -> (v == null) ? count : v + count);
-                    }
+    // Returns once any of the count, byte or age triggers fires
+    private void awaitFlushTrigger() throws InterruptedException {
+        long maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(flushConfig.getMaxDelayMs());
+        flushLock.lock();
+        try {
+            while (running) {
+                QueuedMessage oldest = messageQueue.peek();
+                if (oldest == null) {
+                    flushNeeded.awaitNanos(maxDelayNanos);
+                    continue;
+                }
+                if (messageQueue.size() >= batchSize || queuedBytes.get() >= flushConfig.getMaxBatchBytes()) {
+                    return;
+                }
+                long wait = oldest.enqueuedAt() + maxDelayNanos - System.nanoTime();
+                if (wait <= 0) {
+                    return;
                 }
+                flushNeeded.awaitNanos(wait);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushBatch() throws InterruptedException {
+        List<QueuedMessage> batch = failedBatch != null ? failedBatch : nextBatch();
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            save(batch);
+            failedBatch = null;
+            failedAttempts = 0;
+        } catch (DataIntegrityViolationException e) {
+            log.error("Batch of {} messages was rejected for its data; saving them one by one", batch.size(), e);
+            failedBatch = null;
+            failedAttempts = 0;
+            saveIndividually(batch);
+        } catch (Exception e) {
+            retryLater(batch, e);
+        }
+        if (backpressured && messageQueue.size() <= flushConfig.getLowWaterMark()) {
+            backpressured = false;
+            log.info("Chat message queue drained to {} messages; accepting messages again", messageQueue.size());
+        }
+    }
+
+    private List<QueuedMessage> nextBatch() {
+        List<QueuedMessage> batch = new ArrayList<>(Math.min(batchSize, messageQueue.size()));
+        long bytes = 0;
+        QueuedMessage next;
+        while (batch.size() < batchSize && (batch.isEmpty() || bytes < flushConfig.getMaxBatchBytes())
+                && (next = messageQueue.poll()) != null) {
+            batch.add(next);
+            bytes += next.bytes();
+        }
+        queuedBytes.addAndGet(-bytes);
+        return batch;
+    }
+
+    private void save(List<QueuedMessage> batch) {
+        long start = System.nanoTime();
+        try {
+            chatMessageService.saveMessages(batch.stream().map(QueuedMessage::message).toList());
+        } catch (RuntimeException e) {
+            flushFailures.increment();
+            adaptBatchSize(batch.size(), Long.MAX_VALUE);
+            throw e;
+        }
+        long elapsed = System.nanoTime() - start;
+        flushLatency.record(elapsed, TimeUnit.NANOSECONDS);
+        flushSize.record(batch.size());
+        journal.acknowledge(batch.stream().map(QueuedMessage::seq).toList());
+        adaptBatchSize(batch.size(), TimeUnit.NANOSECONDS.toMillis(elapsed));
+        log.debug("Flushed batch of {} messages in {} ms", batch.size(), TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+
+    // Keeps the batch for the next turn of the flush loop, which retries it before taking new messages
+    private void retryLater(List<QueuedMessage> batch, Exception e) throws InterruptedException {
+        failedBatch = batch;
+        failedAttempts++;
+        retryBackoffMs = failedAttempts == 1
+                ? flushConfig.getRetryBackoffMs()
+                : Math.min(retryBackoffMs * 2, flushConfig.getMaxRetryBackoffMs());
+        if (failedAttempts >= flushConfig.getErrorLogAttempts()) {
+            log.error("Saving a batch of {} messages failed {} times in a row; retrying in {} ms",
+                    batch.size(), failedAttempts, retryBackoffMs, e);
+        } else {
+            log.warn("Saving a batch of {} messages failed (attempt {}); retrying in {} ms",
+                    batch.size(), failedAttempts, retryBackoffMs, e);
+        }
+        if (running) {
+            Thread.sleep(retryBackoffMs);
+        }
+    }
+
+    // Only for a batch rejected for its data: a row that fails on its own is acknowledged, since it never succeeds
+    private void saveIndividually(List<QueuedMessage> batch) {
+        for (QueuedMessage queued : batch) {
+            try {
+                save(List.of(queued));
+            } catch (Exception e) {
+                droppedMessages.increment();
+                journal.acknowledge(List.of(queued.seq()));
+                log.error("Dropping message {} from user {} in session {}: {}", queued.seq(),
+                        queued.message().getSender().getUserId(), queued.message().getSession().getSessionId(),
+                        e.getMessage());
+            }
+        }
+    }
+
+    // Additive increase while full batches are fast, multiplicative decrease when they are slow or fail
+    private void adaptBatchSize(int flushedMessages, long latencyMs) {
+        int current = batchSize;
+        if (latencyMs > flushConfig.getTargetLatencyMs()) {
+            batchSize = Math.max(flushConfig.getMinBatchSize(), current / 2);
+        } else if (flushedMessages >= current) {
+            batchSize = Math.min(flushConfig.getMaxBatchSize(), current + flushConfig.getBatchSizeStep());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (flushThread == null) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            flushNeeded.signalAll();
+        } finally {
+            flushLock.unlock();
+        }
+        try {
+            flushThread.join(TimeUnit.SECONDS.toMillis(10));
+            // One last attempt; anything not saved is replayed from the journal on restart
+            List<QueuedMessage> remaining = new ArrayList<>();
+            List<QueuedMessage> failed = failedBatch;
+            if (failed != null) {
+                remaining.addAll(failed);
+            }
+            messageQueue.drainTo(remaining);
+            if (!remaining.isEmpty()) {
+                save(remaining);
             }
-        });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Could not save the queued chat messages on shutdown; they are replayed from the journal", e);
+        }
     }
-    private int calculateDynamicBatchSize() {
-        int queueSize = messageQueue.size();
-        return Math.min(BATCH_SIZE, Math.max(10, queueSize / 10));
+
+    @Scheduled(fixedDelay = 60000)
+    public void processMessageCounts() {
+        flushCounts("listeners", listenerMessageCounts, messageCountRepository::incrementListenerMessageCounts);
+        flushCounts("user_metrics", userMetricsMessageCounts, messageCountRepository::incrementUserMetricsMessageCounts);
+    }
+
+    /**
+     * Writes the buffered deltas of one table in chunks of {@code counterChunkSize} users, one UPDATE per
+     * chunk. A chunk that fails is added back to the buffer and retried on the next run; the other
+     * chunks stay committed.
+     */
+    private void flushCounts(String table, ConcurrentMap<Integer, Long> counts,
+                             ToIntFunction<List<Map.Entry<Integer, Long>>> update) {
+        List<Map.Entry<Integer, Long>> deltas = new ArrayList<>();
+        for (Integer userId : counts.keySet()) {
+            // Messages counted after the removal start a new entry for the next run
+            Long delta = counts.remove(userId);
+            if (delta != null && delta > 0) {
+                deltas.add(new AbstractMap.SimpleImmutableEntry<>(userId, delta));
+            }
+        }
+
+        int chunkSize = Math.max(1, persistenceConfig.getCounterChunkSize());
+        int updated = 0;
+        for (int from = 0; from < deltas.size(); from += chunkSize) {
+            List<Map.Entry<Integer, Long>> chunk = deltas.subList(from, Math.min(deltas.size(), from + chunkSize));
+            try {
+                updated += update.applyAsInt(chunk);
+            } catch (Exception e) {
+                log.error("Error updating {} message counts for {} users; retrying on the next run", table, chunk.size(), e);
+                chunk.forEach(entry -> counts.merge(entry.getKey(), entry.getValue(), Long::sum));
+            }
+        }
+        if (!deltas.isEmpty()) {
+            log.info("Updated {} message counts: {} users buffered, {} rows updated", table, deltas.size(), updated);
+        }
     }
-}
\ No newline at end of file
+}
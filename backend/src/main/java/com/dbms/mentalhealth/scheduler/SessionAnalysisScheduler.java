@@ -14,9 +14,9 @@ public class SessionAnalysisScheduler {
 
     private final SessionAnalysisService sessionAnalysisService;
 
-    @Scheduled(fixedRate = 60000)
+    @Scheduled(fixedDelayString = "${scheduler.session-analysis-interval:15000}")
     public void scheduleUnanalyzedSessions() {
-        log.info("Scheduled task: processing unanalyzed sessions");
+        log.debug("Scheduled task: processing unanalyzed sessions");
         sessionAnalysisService.processUnanalyzedSessions();
     }
 }
\ No newline at end of file
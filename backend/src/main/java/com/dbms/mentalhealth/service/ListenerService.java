@@ -10,5 +10,4 @@ public interface ListenerService {
     FullListenerDetailsDTO getListenerDetails(String type, Integer id);
     Page<UserActivityDTO> getListenersByFilters(String status, String searchTerm, Pageable pageable);
     String suspendOrUnsuspendListener(Integer listenerId, String action);
-    void incrementMessageCount(String username, Integer count);
 }
\ No newline at end of file
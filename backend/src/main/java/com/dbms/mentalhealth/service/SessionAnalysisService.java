@@ -1,7 +1,7 @@
 package com.dbms.mentalhealth.service;
 
+import com.dbms.mentalhealth.dto.session.SessionAnalysisJob;
 import com.dbms.mentalhealth.model.ChatMessage;
-import com.dbms.mentalhealth.model.SessionStatus;
 
 import java.util.List;
 import java.util.Map;
@@ -9,16 +9,16 @@ import java.util.concurrent.CompletableFuture;
 
 public interface SessionAnalysisService {
     /**
-     * Scheduled task that runs at specified intervals to process unanalyzed sessions
+     * Scheduled task that claims due analysis jobs for the idle workers of this instance
      */
     void processUnanalyzedSessions();
 
     /**
-     * Analyzes a single session asynchronously using Gemini
-     * @param sessionStatus The session status to analyze
-     * @return CompletableFuture for asynchronous handling
+     * Analyzes a claimed session on the analysis worker pool using Gemini
+     * @param job The claimed job to analyze
+     * @return CompletableFuture completed once the job is stored, retried or dead-lettered
      */
-    CompletableFuture<Void> analyzeSessionAsync(SessionStatus sessionStatus);
+    CompletableFuture<Void> analyzeSessionAsync(SessionAnalysisJob job);
 
     /**
      * Formats chat messages in a readable format for analysis
@@ -29,8 +29,9 @@ public interface SessionAnalysisService {
 
     /**
      * Updates the session status with analysis results
-     * @param sessionStatus The session status to update
+     * @param job The claimed job to update
      * @param analysisResult The analysis results from Gemini
+     * @return false if the job was claimed by another instance in the meantime
      */
-    void updateSessionStatus(SessionStatus sessionStatus, Map<String, String> analysisResult);
-}
\ No newline at end of file
+    boolean updateSessionStatus(SessionAnalysisJob job, Map<String, String> analysisResult);
+}
@@ -1,8 +1,10 @@
 package com.dbms.mentalhealth.service;
 
 import com.dbms.mentalhealth.dto.chatMessage.ChatMessageDTO;
+import com.dbms.mentalhealth.dto.chatMessage.ChatMessagePageDTO;
 import com.dbms.mentalhealth.dto.session.response.SessionResponseDTO;
 import com.dbms.mentalhealth.dto.session.response.SessionSummaryDTO;
+import com.dbms.mentalhealth.enums.MessageHistoryDirection;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -14,7 +16,12 @@ public interface SessionService {
     String updateSessionStatus(Integer userId, String action);
     SessionResponseDTO getSessionById(Integer sessionId);
     String endSession(Integer sessionId);
+    /**
+     * @deprecated reads the whole session; use {@link #getMessagePage} instead
+     */
+    @Deprecated
     List<ChatMessageDTO> getMessagesBySessionId(Integer sessionId);
+    ChatMessagePageDTO getMessagePage(Integer sessionId, String cursor, MessageHistoryDirection direction, Integer limit);
     String getAverageSessionDuration();
     List<SessionSummaryDTO> broadcastFullSessionCache();
     boolean isUserInSession(Integer userId);
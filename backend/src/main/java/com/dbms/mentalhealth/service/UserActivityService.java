@@ -1,8 +1,10 @@
 package com.dbms.mentalhealth.service;
 
+import com.dbms.mentalhealth.dto.UserActivity.PresenceSnapshotDTO;
 import com.dbms.mentalhealth.dto.UserActivity.UserActivityDTO;
 import com.dbms.mentalhealth.dto.UserActivity.UserRoleCountDTO;
 import com.dbms.mentalhealth.dto.session.response.SessionSummaryDTO;
+import com.dbms.mentalhealth.enums.CacheKey;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
@@ -16,6 +18,8 @@ public interface UserActivityService {
     void addListenerEmitter(SseEmitter emitter);
     void addUserEmitter(SseEmitter emitter);
     void addSessionDetailsEmitter(SseEmitter emitter);
+    // Sends a versioned snapshot of the topic, then join/leave/session deltas instead of full lists
+    void addPresenceDeltaEmitter(SseEmitter emitter, CacheKey topic);
 
     void sendInitialAllUsers(SseEmitter emitter);
     void sendInitialRoleCounts(SseEmitter emitter);
@@ -32,6 +36,7 @@ public interface UserActivityService {
     void broadcastSessionDetails(List<SessionSummaryDTO> sessionSummaryDTOs);
     void broadcastUpdates();
 
+    PresenceSnapshotDTO getPresenceSnapshot(CacheKey topic);
     List<UserActivityDTO> getAllOnlineUsers();
     List<UserRoleCountDTO> getOnlineUsersCountByRole();
     List<UserActivityDTO> getOnlineAdmins();
@@ -5,7 +5,6 @@ import com.dbms.mentalhealth.model.User;
 import java.time.LocalDateTime;
 
 public interface UserMetricService {
-    void incrementMessageCount(String username, Integer count);
     void setLastSessionDate(User user, LocalDateTime lastSessionDate);
     void incrementSessionCount(User user);
     void updateAppointmentCount(User user,int count);
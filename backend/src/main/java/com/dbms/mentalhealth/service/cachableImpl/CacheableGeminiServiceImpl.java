@@ -0,0 +1,178 @@
+package com.dbms.mentalhealth.service.cachableImpl;
+
+import com.dbms.mentalhealth.config.PreModerationConfig;
+import com.dbms.mentalhealth.gemini.ModerationBatcher;
+import com.dbms.mentalhealth.model.ModerationResult;
+import com.dbms.mentalhealth.service.GeminiService;
+import com.dbms.mentalhealth.service.impl.GeminiServiceImpl;
+import com.dbms.mentalhealth.util.Cache.CacheUtils;
+import com.dbms.mentalhealth.util.ModerationPreFilter;
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Puts a local tier and a verdict cache in front of Gemini moderation. Clearly blocked and clearly
+ * benign messages are settled by {@link ModerationPreFilter}; repeats of earlier messages are
+ * answered from the cache; only the rest reaches {@link GeminiServiceImpl}, coalesced with other
+ * concurrent messages by {@link ModerationBatcher}.
+ */
+@Service
+@Primary
+public class CacheableGeminiServiceImpl implements GeminiService {
+    private static final Logger logger = LoggerFactory.getLogger(CacheableGeminiServiceImpl.class);
+
+    private static final String BLOCKLIST_REASON = "Message contains content that is not allowed in this chat";
+
+    private final GeminiServiceImpl geminiServiceImpl;
+    private final ModerationBatcher moderationBatcher;
+    private final Cache<String, ModerationResult> moderationVerdictCache;
+    private final PreModerationConfig config;
+    private final ModerationPreFilter preFilter;
+
+    private final Counter blocklistHits;
+    private final Counter allowlistHits;
+    private final Counter cacheHits;
+    private final Counter geminiCalls;
+
+    public CacheableGeminiServiceImpl(GeminiServiceImpl geminiServiceImpl,
+                                      ModerationBatcher moderationBatcher,
+                                      Cache<String, ModerationResult> moderationVerdictCache,
+                                      PreModerationConfig config,
+                                      MeterRegistry meterRegistry) {
+        this.geminiServiceImpl = geminiServiceImpl;
+        this.moderationBatcher = moderationBatcher;
+        this.moderationVerdictCache = moderationVerdictCache;
+        this.config = config;
+        this.preFilter = new ModerationPreFilter(config.getBlocklist(), config.getAllowlist(), config.getMaxAllowlistWords());
+
+        this.blocklistHits = tierCounter(meterRegistry, "blocklist");
+        this.allowlistHits = tierCounter(meterRegistry, "allowlist");
+        this.cacheHits = tierCounter(meterRegistry, "cache");
+        this.geminiCalls = tierCounter(meterRegistry, "gemini");
+        CaffeineCacheMetrics.monitor(meterRegistry, moderationVerdictCache, "moderationVerdictCache");
+
+        logger.info("CacheableGeminiServiceImpl initialized with {} blocklist and {} allowlist phrases",
+                config.getBlocklist().size(), config.getAllowlist().size());
+    }
+
+    @Override
+    public ModerationResult moderateMessage(String message) {
+        if (!config.isEnabled()) {
+            geminiCalls.increment();
+            return moderationBatcher.moderate(message);
+        }
+
+        switch (preFilter.evaluate(message)) {
+            case BLOCKED -> {
+                blocklistHits.increment();
+                return ModerationResult.rejected(BLOCKLIST_REASON);
+            }
+            case ALLOWED -> {
+                allowlistHits.increment();
+                return ModerationResult.allowed();
+            }
+            default -> {
+                // Ambiguous, fall through to the cache and the remote moderator
+            }
+        }
+
+        String cacheKey = hash(ModerationPreFilter.normalizeForCache(message));
+        ModerationResult cached = moderationVerdictCache.getIfPresent(cacheKey);
+        if (cached != null) {
+            cacheHits.increment();
+            return cached;
+        }
+
+        geminiCalls.increment();
+        ModerationResult result = moderationBatcher.moderate(message);
+        // Fallback verdicts are not real answers and must be retried next time
+        if (!result.isFallback()) {
+            moderationVerdictCache.put(cacheKey, result);
+        }
+        return result;
+    }
+
+    @Override
+    public String createModerationPrompt(String message) {
+        return geminiServiceImpl.createModerationPrompt(message);
+    }
+
+    @Override
+    public String processPrompt(String promptText) {
+        return geminiServiceImpl.processPrompt(promptText);
+    }
+
+    @Override
+    public String createSessionAnalysisPrompt(Iterable<String> chatMessages) {
+        return geminiServiceImpl.createSessionAnalysisPrompt(chatMessages);
+    }
+
+    @Override
+    public Map<String, String> parseAnalysisResponse(String apiResponse) {
+        return geminiServiceImpl.parseAnalysisResponse(apiResponse);
+    }
+
+    @Override
+    public String callGeminiApi(String promptText) {
+        return geminiServiceImpl.callGeminiApi(promptText);
+    }
+
+    @Override
+    public String createJsonSessionAnalysisPrompt(List<String> formattedMessages) {
+        return geminiServiceImpl.createJsonSessionAnalysisPrompt(formattedMessages);
+    }
+
+    @Override
+    public Map<String, String> parseJsonAnalysisResponse(String response) {
+        return geminiServiceImpl.parseJsonAnalysisResponse(response);
+    }
+
+    @Override
+    public boolean isValidCategory(String category) {
+        return geminiServiceImpl.isValidCategory(category);
+    }
+
+    public void logCacheStats() {
+        double total = blocklistHits.count() + allowlistHits.count() + cacheHits.count() + geminiCalls.count();
+        if (total > 0) {
+            logger.info("Moderation tiers - blocklist: {}%, allowlist: {}%, cache: {}%, gemini: {}% of {} messages",
+                    percent(blocklistHits, total), percent(allowlistHits, total),
+                    percent(cacheHits, total), percent(geminiCalls, total), (long) total);
+        }
+        CacheUtils.logCacheStats(moderationVerdictCache, "Moderation Verdict Cache");
+    }
+
+    private static Counter tierCounter(MeterRegistry meterRegistry, String tier) {
+        return Counter.builder("chat.moderation.tier")
+                .description("Moderation requests settled by each tier")
+                .tag("tier", tier)
+                .register(meterRegistry);
+    }
+
+    private static long percent(Counter counter, double total) {
+        return Math.round(counter.count() * 100 / total);
+    }
+
+    // SHA-256, so two messages practically never share a verdict; the cache never keeps the message text
+    private static String hash(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
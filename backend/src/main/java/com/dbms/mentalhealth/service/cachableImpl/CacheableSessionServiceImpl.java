@@ -1,8 +1,10 @@
 package com.dbms.mentalhealth.service.cachableImpl;
 
 import com.dbms.mentalhealth.dto.chatMessage.ChatMessageDTO;
+import com.dbms.mentalhealth.dto.chatMessage.ChatMessagePageDTO;
 import com.dbms.mentalhealth.dto.session.response.SessionResponseDTO;
 import com.dbms.mentalhealth.dto.session.response.SessionSummaryDTO;
+import com.dbms.mentalhealth.enums.MessageHistoryDirection;
 import com.dbms.mentalhealth.service.SessionService;
 import com.dbms.mentalhealth.service.impl.SessionServiceImpl;
 import com.dbms.mentalhealth.util.Cache.CacheKey.SessionCacheKey;
@@ -27,12 +29,12 @@ public class CacheableSessionServiceImpl implements SessionService {
 
     private final SessionServiceImpl sessionServiceImpl;
     private final Cache<SessionCacheKey, SessionResponseDTO> sessionCache;
-    private final Cache<SessionCacheKey, List<ChatMessageDTO>> chatMessageCache;
+    private final Cache<SessionCacheKey, ChatMessagePageDTO> chatMessageCache;
     private final Cache<SessionCacheKey, String> metricsCache;
     private final String METRICS_CACHE_KEY = "average";
     public CacheableSessionServiceImpl(SessionServiceImpl sessionServiceImpl,
                                        Cache<SessionCacheKey, SessionResponseDTO> sessionCache,
-                                       Cache<SessionCacheKey, List<ChatMessageDTO>> chatMessageCache,
+                                       Cache<SessionCacheKey, ChatMessagePageDTO> chatMessageCache,
                                        Cache<SessionCacheKey, String> metricsCache) {
         this.sessionServiceImpl = sessionServiceImpl;
         this.sessionCache = sessionCache;
@@ -55,15 +57,24 @@ public class CacheableSessionServiceImpl implements SessionService {
     }
 
     @Override
+    @Deprecated
     @Transactional(readOnly = true)
     public List<ChatMessageDTO> getMessagesBySessionId(Integer sessionId) {
-        SessionCacheKey cacheKey = new SessionCacheKey(sessionId.toString(), SessionKeyType.SESSION_METRICS);
-        logger.debug("Cache lookup for session messages, ID: {}", sessionId);
+        return sessionServiceImpl.getMessagesBySessionId(sessionId);
+    }
+
+    // Only the newest page at the default size is cached; older pages are cheap keyset reads
+    @Override
+    @Transactional(readOnly = true)
+    public ChatMessagePageDTO getMessagePage(Integer sessionId, String cursor, MessageHistoryDirection direction, Integer limit) {
+        if (cursor != null || direction != MessageHistoryDirection.BEFORE || limit != null) {
+            return sessionServiceImpl.getMessagePage(sessionId, cursor, direction, limit);
+        }
+        SessionCacheKey cacheKey = new SessionCacheKey(sessionId.toString(), SessionKeyType.SESSION_MESSAGES);
+        logger.debug("Cache lookup for newest messages, session ID: {}", sessionId);
         return chatMessageCache.get(cacheKey, k -> {
-            logger.info("Cache MISS - Fetching messages from database for session ID: {}", sessionId);
-            List<ChatMessageDTO> messages = sessionServiceImpl.getMessagesBySessionId(sessionId);
-            logger.debug("Cached messages for session ID: {}", sessionId);
-            return messages;
+            logger.info("Cache MISS - Fetching newest messages from database for session ID: {}", sessionId);
+            return sessionServiceImpl.getMessagePage(sessionId, null, direction, null);
         });
     }
 
@@ -1,31 +1,68 @@
 // ChatMessageServiceImpl.java
 package com.dbms.mentalhealth.service.impl;
 
+import com.dbms.mentalhealth.config.ChatPersistenceConfig;
+import com.dbms.mentalhealth.dto.chatMessage.ChatMessagePageDTO;
 import com.dbms.mentalhealth.model.ChatMessage;
+import com.dbms.mentalhealth.repository.ChatMessageBatchRepository;
 import com.dbms.mentalhealth.repository.ChatMessageRepository;
 import com.dbms.mentalhealth.service.ChatMessageService;
+import com.dbms.mentalhealth.util.Cache.CacheKey.SessionCacheKey;
+import com.dbms.mentalhealth.util.Cache.KeyEnum.SessionKeyType;
+import com.github.benmanes.caffeine.cache.Cache;
 import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
 
 @Service
 @Slf4j
 public class ChatMessageServiceImpl implements ChatMessageService {
 
     private final ChatMessageRepository chatMessageRepository;
+    private final ChatMessageBatchRepository chatMessageBatchRepository;
+    private final ChatPersistenceConfig persistenceConfig;
+    private final Cache<SessionCacheKey, ChatMessagePageDTO> chatMessageCache;
 
     @Autowired
-    public ChatMessageServiceImpl(ChatMessageRepository chatMessageRepository) {
+    public ChatMessageServiceImpl(ChatMessageRepository chatMessageRepository,
+                                  ChatMessageBatchRepository chatMessageBatchRepository,
+                                  ChatPersistenceConfig persistenceConfig,
+                                  Cache<SessionCacheKey, ChatMessagePageDTO> chatMessageCache) {
         this.chatMessageRepository = chatMessageRepository;
+        this.chatMessageBatchRepository = chatMessageBatchRepository;
+        this.persistenceConfig = persistenceConfig;
+        this.chatMessageCache = chatMessageCache;
     }
 
     @Transactional
     public void saveMessages(List<ChatMessage> messages) {
-        chatMessageRepository.saveAll(messages);
+        if (persistenceConfig.isJdbcBatchEnabled()) {
+            chatMessageBatchRepository.insertAll(messages, persistenceConfig.getJdbcBatchSize());
+        } else {
+            // Without ON CONFLICT here, skip messages a journal replay already inserted
+            Set<UUID> stored = new HashSet<>(chatMessageRepository.findExistingClientMessageIds(messages.stream()
+                    .map(ChatMessage::getClientMessageId)
+                    .filter(Objects::nonNull)
+                    .toList()));
+            chatMessageRepository.saveAll(stored.isEmpty() ? messages : messages.stream()
+                    .filter(message -> !stored.contains(message.getClientMessageId()))
+                    .toList());
+        }
         log.info("Batch saved {} messages", messages.size());
+
+        // The cached newest page of these sessions is now stale
+        messages.stream()
+                .map(message -> message.getSession().getSessionId())
+                .distinct()
+                .forEach(sessionId -> chatMessageCache.invalidate(
+                        new SessionCacheKey(sessionId.toString(), SessionKeyType.SESSION_MESSAGES)));
     }
 
 
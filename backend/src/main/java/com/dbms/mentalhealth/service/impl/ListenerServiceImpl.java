@@ -13,6 +13,7 @@ import com.dbms.mentalhealth.mapper.UserActivityMapper;
 import com.dbms.mentalhealth.model.Listener;
 import com.dbms.mentalhealth.model.User;
 import com.dbms.mentalhealth.model.UserMetrics;
+import com.dbms.mentalhealth.presence.PresenceRegistry;
 import com.dbms.mentalhealth.repository.ListenerRepository;
 import com.dbms.mentalhealth.repository.UserMetricsRepository;
 import com.dbms.mentalhealth.repository.UserRepository;
@@ -30,12 +31,15 @@ public class ListenerServiceImpl implements ListenerService {
     private final ListenerRepository listenerRepository;
     private final UserRepository userRepository;
     private final UserMetricsRepository userMetricsRepository;
+    private final PresenceRegistry presenceRegistry;
 
     @Autowired
-    public ListenerServiceImpl(ListenerRepository listenerRepository, UserRepository userRepository, UserMetricsRepository userMetricsRepository) {
+    public ListenerServiceImpl(ListenerRepository listenerRepository, UserRepository userRepository, UserMetricsRepository userMetricsRepository,
+                               PresenceRegistry presenceRegistry) {
         this.listenerRepository = listenerRepository;
         this.userRepository = userRepository;
         this.userMetricsRepository = userMetricsRepository;
+        this.presenceRegistry = presenceRegistry;
     }
 
     @Transactional(readOnly = true)
@@ -86,7 +90,8 @@ public class ListenerServiceImpl implements ListenerService {
             listeners = listenerRepository.findListenersWithFilters(profileStatus, normalizedSearch, pageable);
         }
 
-        return listeners.map(listener -> UserActivityMapper.toUserActivityDTO(listener.getUser()));
+        return listeners.map(listener -> UserActivityMapper.toUserActivityDTO(listener.getUser(),
+                presenceRegistry.isInSession(listener.getUser().getUserId())));
     }
 
     @Override
@@ -112,9 +117,4 @@ public class ListenerServiceImpl implements ListenerService {
             throw new IllegalArgumentException("Invalid action: " + action);
         }
     }
-
-    @Override
-    public void incrementMessageCount(String username, Integer count) {
-        listenerRepository.incrementMessageCount(username, count);
-    }
 }
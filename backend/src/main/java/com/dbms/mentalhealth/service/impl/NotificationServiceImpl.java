@@ -2,19 +2,28 @@ package com.dbms.mentalhealth.service.impl;
 
 import com.dbms.mentalhealth.dto.notification.NotificationResponseDTO;
 import com.dbms.mentalhealth.enums.NotificationStatus;
+import com.dbms.mentalhealth.enums.SseDelivery;
 import com.dbms.mentalhealth.exception.sse.UserNotOnlineException;
 import com.dbms.mentalhealth.mapper.NotificationMapper;
 import com.dbms.mentalhealth.model.Notification;
 import com.dbms.mentalhealth.repository.NotificationRepository;
 import com.dbms.mentalhealth.security.jwt.JwtUtils;
 import com.dbms.mentalhealth.service.NotificationService;
+import com.dbms.mentalhealth.sse.SseFanOut;
+import com.dbms.mentalhealth.sse.SseFrame;
+import com.dbms.mentalhealth.sse.SseSubscriber;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -25,45 +34,34 @@ public class NotificationServiceImpl implements NotificationService {
 
     private final NotificationRepository notificationRepository;
     private final JwtUtils jwtUtils;
+    private final SseFanOut sseFanOut;
 
-    // ConcurrentHashMap for thread-safe emitter management
-    private final ConcurrentMap<Integer, SseEmitter> emitters = new ConcurrentHashMap<>();
+    // ConcurrentHashMap for thread-safe emitter management; SseFanOut removes a subscriber when it closes
+    private final ConcurrentMap<Integer, SseSubscriber> emitters = new ConcurrentHashMap<>();
+    // Delivery outcomes reported by the SSE writers, stored by flushDeliveryOutcomes so writers never wait on the database
+    private final ConcurrentMap<Integer, NotificationStatus> deliveryOutcomes = new ConcurrentHashMap<>();
 
     @Override
     public SseEmitter createEmitter(Integer userId) {
         // Create SseEmitter with a specific timeout (e.g., 30 seconds)
         SseEmitter emitter = new SseEmitter((long)Integer.MAX_VALUE);
 
-        // Store emitter for the user
-        emitters.put(userId, emitter);
-
-        // Remove emitter on completion or timeout
-        emitter.onCompletion(() -> {
-            log.info("SSE Emitter completed for user: {}", userId);
-            emitters.remove(userId);
-        });
-
-        emitter.onTimeout(() -> {
-            log.warn("SSE Emitter timed out for user: {}", userId);
-            emitters.remove(userId);
-            emitter.complete();
+        // Store emitter for the user; notifications are queued in order, none replaces another
+        SseSubscriber subscriber = sseFanOut.subscribe(emitter, SseDelivery.QUEUE, closed -> {
+            log.info("SSE Emitter closed for user: {}", userId);
+            emitters.remove(userId, closed);
         });
+        emitters.put(userId, subscriber);
 
         // Optional: Send initial connection event
-        sendInitialEvent(emitter, userId);
+        sendInitialEvent(subscriber, userId);
 
         return emitter;
     }
 
-    private void sendInitialEvent(SseEmitter emitter, Integer userId) {
-        try {
-            emitter.send(SseEmitter.event()
-                    .id(String.valueOf(userId))
-                    .name("notification")
-                    .data("Connected successfully"));
-        } catch (IOException e) {
-            log.error("Error sending initial SSE event for user {}: {}", userId, e.getMessage());
-            emitters.remove(userId);
+    private void sendInitialEvent(SseSubscriber subscriber, Integer userId) {
+        if (!subscriber.offer(sseFanOut.encode(String.valueOf(userId), "notification", "Connected successfully"))) {
+            log.error("Error sending initial SSE event for user {}", userId);
         }
     }
 
@@ -71,37 +69,70 @@ public class NotificationServiceImpl implements NotificationService {
     @Transactional
     public void sendNotification(Notification notification) {
         Integer receiverId = notification.getReceiver().getUserId();
-        SseEmitter emitter = emitters.get(receiverId);
+        SseSubscriber subscriber = emitters.get(receiverId);
 
 
-        if (emitter == null) {
+        if (subscriber == null) {
             throw new UserNotOnlineException("No active emitter found for user: " + receiverId);
         }
 
+        // PENDING until the user's writer reports whether the event reached the connection
+        notificationRepository.save(notification);
+        Integer notificationId = notification.getNotificationId();
+        NotificationResponseDTO responseDTO = NotificationMapper.toNotificationResponseDTO(notification);
+        SseFrame frame = sseFanOut.encode(String.valueOf(notificationId), "notification", responseDTO);
+
+        // Queued once the notification is committed, so the outcome always finds its row
+        Runnable deliver = () -> {
+            boolean queued = subscriber.offer(frame, written ->
+                    deliveryOutcomes.put(notificationId, written ? NotificationStatus.SENT : NotificationStatus.FAILED));
+            if (!queued) {
+                log.error("Failed to send notification to user {}: connection closed or too far behind", receiverId);
+                deliveryOutcomes.put(notificationId, NotificationStatus.FAILED);
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    deliver.run();
+                }
+            });
+        } else {
+            deliver.run();
+        }
+    }
+
+    @Scheduled(fixedDelay = 1000)
+    public void flushDeliveryOutcomes() {
+        List<Integer> sent = new ArrayList<>();
+        List<Integer> failed = new ArrayList<>();
+        for (Map.Entry<Integer, NotificationStatus> outcome : deliveryOutcomes.entrySet()) {
+            // Only an outcome still unchanged is taken, so one reported meanwhile waits for the next flush
+            if (deliveryOutcomes.remove(outcome.getKey(), outcome.getValue())) {
+                (outcome.getValue() == NotificationStatus.SENT ? sent : failed).add(outcome.getKey());
+            }
+        }
         try {
-            NotificationResponseDTO responseDTO = NotificationMapper.toNotificationResponseDTO(notification);
-            emitter.send(SseEmitter.event()
-                    .id(String.valueOf(notification.getNotificationId()))
-                    .name("notification")
-                    .data(responseDTO));
-            notification.setStatus(NotificationStatus.SENT);
-            notificationRepository.save(notification);
-        } catch (IOException e) {
-            log.error("Failed to send notification to user {}: {}",
-                    receiverId, e.getMessage());
-
-            // Mark notification as failed
-            notification.setStatus(NotificationStatus.FAILED);
-            notificationRepository.save(notification);
-            emitters.remove(receiverId);
+            if (!sent.isEmpty()) {
+                notificationRepository.updateStatus(sent, NotificationStatus.SENT);
+            }
+            if (!failed.isEmpty()) {
+                notificationRepository.updateStatus(failed, NotificationStatus.FAILED);
+            }
+        } catch (Exception e) {
+            log.error("Error storing the delivery outcome of {} notifications; retrying on the next flush",
+                    sent.size() + failed.size(), e);
+            sent.forEach(id -> deliveryOutcomes.putIfAbsent(id, NotificationStatus.SENT));
+            failed.forEach(id -> deliveryOutcomes.putIfAbsent(id, NotificationStatus.FAILED));
         }
     }
 
     // Optional: Method to remove specific user's emitter
     public void removeEmitter(Integer userId) {
-        SseEmitter emitter = emitters.remove(userId);
-        if (emitter != null) {
-            emitter.complete();
+        SseSubscriber subscriber = emitters.remove(userId);
+        if (subscriber != null) {
+            subscriber.close();
         }
     }
 }
\ No newline at end of file
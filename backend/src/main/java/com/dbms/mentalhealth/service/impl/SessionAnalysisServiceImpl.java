@@ -1,79 +1,294 @@
 package com.dbms.mentalhealth.service.impl;
 
+import com.dbms.mentalhealth.config.SessionAnalysisConfig;
+import com.dbms.mentalhealth.dto.session.SessionAnalysisJob;
 import com.dbms.mentalhealth.enums.Role;
 import com.dbms.mentalhealth.enums.SessionCategory;
+import com.dbms.mentalhealth.gemini.SessionTranscriptSummarizer;
 import com.dbms.mentalhealth.model.ChatMessage;
-import com.dbms.mentalhealth.model.SessionStatus;
 import com.dbms.mentalhealth.repository.ChatMessageRepository;
-import com.dbms.mentalhealth.repository.SessionStatusRepository;
+import com.dbms.mentalhealth.repository.SessionAnalysisJobRepository;
 import com.dbms.mentalhealth.service.SessionAnalysisService;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
+/**
+ * Analyzes ended sessions with Gemini on a bounded worker pool. Jobs are the unanalyzed rows of
+ * {@code session_status}; every instance claims only as many as it has idle workers, under a lease, so
+ * replicas share the backlog instead of all analyzing the same sessions. A failed attempt is retried with
+ * jittered exponential backoff and dead-lettered after {@code analysis.max-attempts}; the attempt count
+ * and last error stay on the row.
+ * <p>
+ * Leases of running jobs are renewed on every scheduler tick for up to {@code analysis.max-run-seconds}.
+ * A job whose lease expired on its last attempt, because its instance died or it overran, is dead-lettered
+ * by the next tick of any instance.
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class SessionAnalysisServiceImpl implements SessionAnalysisService {
 
-    private final SessionStatusRepository sessionStatusRepository;
+    private static final int MESSAGE_PAGE_SIZE = 500;
+    private static final int MAX_ERROR_LENGTH = 2000;
+
+    private final SessionAnalysisJobRepository jobRepository;
     private final ChatMessageRepository chatMessageRepository;
     private final GeminiServiceImpl geminiService;
+    private final SessionTranscriptSummarizer transcriptSummarizer;
+    private final SessionAnalysisConfig config;
+    private final MeterRegistry meterRegistry;
+
+    private final String workerId = "analysis-" + UUID.randomUUID().toString().substring(0, 8);
+    private final ThreadPoolExecutor executor;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // Jobs running on this instance and when they started, for lease renewal
+    private final Map<SessionAnalysisJob, Long> running = new ConcurrentHashMap<>();
+    private final ReentrantLock claimLock = new ReentrantLock();
+    // Set when the last claim was full, so a finishing worker claims again instead of waiting for the next tick
+    private volatile boolean moreWork;
+
+    private final AtomicLong backlog = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+    private final Timer analysisDuration;
+
+    public SessionAnalysisServiceImpl(SessionAnalysisJobRepository jobRepository,
+                                      ChatMessageRepository chatMessageRepository,
+                                      GeminiServiceImpl geminiService,
+                                      SessionTranscriptSummarizer transcriptSummarizer,
+                                      SessionAnalysisConfig config,
+                                      MeterRegistry meterRegistry) {
+        this.jobRepository = jobRepository;
+        this.chatMessageRepository = chatMessageRepository;
+        this.geminiService = geminiService;
+        this.transcriptSummarizer = transcriptSummarizer;
+        this.config = config;
+        this.meterRegistry = meterRegistry;
+        // Unbounded queue, but never more than `workers` jobs are handed over at a time
+        this.executor = new ThreadPoolExecutor(
+                config.getWorkers(),
+                config.getWorkers(),
+                60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new CustomizableThreadFactory("Analysis-"));
+        this.executor.allowCoreThreadTimeOut(true);
+
+        this.analysisDuration = Timer.builder("session.analysis.duration")
+                .description("Time to analyze one session, including failed attempts")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("session.analysis.backlog", backlog, AtomicLong::get)
+                .description("Sessions waiting for analysis on any instance, as of the last scheduled claim")
+                .register(meterRegistry);
+        Gauge.builder("session.analysis.dead.lettered", deadLettered, AtomicLong::get)
+                .description("Sessions whose analysis was given up after the maximum number of attempts")
+                .register(meterRegistry);
+        Gauge.builder("session.analysis.in.flight", inFlight, AtomicInteger::get)
+                .description("Sessions being analyzed on this instance")
+                .register(meterRegistry);
+    }
 
     @Override
     public void processUnanalyzedSessions() {
-        log.info("Processing unanalyzed sessions");
-        List<SessionStatus> unanalyzedSessions = sessionStatusRepository.findByIsSessionStatusComputedFalse();
+        renewLeases();
+        try {
+            int exhausted = jobRepository.deadLetterExhausted(config.getMaxAttempts());
+            if (exhausted > 0) {
+                recordOutcome("dead_lettered", exhausted);
+                log.error("Gave up analysis of {} sessions whose last attempt lost its lease", exhausted);
+            }
+        } catch (Exception e) {
+            log.warn("Could not dead-letter exhausted session analysis jobs: {}", e.getMessage());
+        }
+        try {
+            backlog.set(jobRepository.countPending());
+            deadLettered.set(jobRepository.countDeadLettered());
+        } catch (Exception e) {
+            log.warn("Could not count pending session analysis jobs: {}", e.getMessage());
+        }
+        claimJobs();
+    }
 
-        log.info("Found {} unanalyzed sessions", unanalyzedSessions.size());
+    private void renewLeases() {
+        long cutoff = System.nanoTime() - TimeUnit.SECONDS.toNanos(config.getMaxRunSeconds());
+        running.forEach((job, startedAt) -> {
+            if (startedAt - cutoff < 0 && running.remove(job, startedAt)) {
+                recordOutcome("overrun");
+                log.error("Analysis of session {} has run for over {} s, no longer renewing its lease",
+                        job.sessionId(), config.getMaxRunSeconds());
+            }
+        });
+        if (running.isEmpty()) {
+            return;
+        }
+        try {
+            int renewed = jobRepository.renewLeases(running.keySet(), workerId, config.getLeaseSeconds());
+            log.debug("Renewed the lease of {} running session analysis jobs", renewed);
+        } catch (Exception e) {
+            log.warn("Could not renew the lease of running session analysis jobs: {}", e.getMessage());
+        }
+    }
 
-        for (SessionStatus sessionStatus : unanalyzedSessions) {
-            analyzeSessionAsync(sessionStatus);
+    private void claimJobs() {
+        // A claim already running on another thread will fill the idle workers
+        if (!claimLock.tryLock()) {
+            return;
+        }
+        try {
+            int limit = Math.min(config.getWorkers() - inFlight.get(), config.getClaimBatchSize());
+            if (limit <= 0) {
+                return;
+            }
+            List<SessionAnalysisJob> jobs = jobRepository.claim(workerId, limit, config.getLeaseSeconds(), config.getMaxAttempts());
+            moreWork = jobs.size() == limit;
+            if (!jobs.isEmpty()) {
+                log.info("Claimed {} session analysis jobs ({} pending in total)", jobs.size(), backlog.get());
+            }
+            for (SessionAnalysisJob job : jobs) {
+                analyzeSessionAsync(job);
+            }
+        } catch (Exception e) {
+            log.error("Could not claim session analysis jobs", e);
+        } finally {
+            claimLock.unlock();
         }
     }
 
     @Override
-    @Async
-    public CompletableFuture<Void> analyzeSessionAsync(SessionStatus sessionStatus) {
-        log.info("Analyzing session with ID: {}", sessionStatus.getSession().getSessionId());
+    public CompletableFuture<Void> analyzeSessionAsync(SessionAnalysisJob job) {
+        inFlight.incrementAndGet();
+        try {
+            return CompletableFuture.runAsync(() -> analyze(job), executor)
+                    .whenComplete((ignored, error) -> {
+                        inFlight.decrementAndGet();
+                        if (moreWork) {
+                            claimJobs();
+                        }
+                    });
+        } catch (RejectedExecutionException e) {
+            // Only happens during shutdown; the lease expires and another instance takes the job
+            inFlight.decrementAndGet();
+            log.warn("Analysis of session {} not started, the worker pool is shut down", job.sessionId());
+            return CompletableFuture.completedFuture(null);
+        }
+    }
 
+    private void analyze(SessionAnalysisJob job) {
+        log.info("Analyzing session with ID: {} (attempt {})", job.sessionId(), job.attempt());
+        long start = System.nanoTime();
+        running.put(job, start);
         try {
-            // Get all chat messages for this session
-            List<ChatMessage> messages = chatMessageRepository.findBySession_SessionId(sessionStatus.getSession().getSessionId());
+            // Read the session page by page and keep only the formatted lines
+            List<String> formattedMessages = loadFormattedMessages(job.sessionId());
 
-            if (messages.isEmpty()) {
-                log.warn("No messages found for session with ID: {}", sessionStatus.getSession().getSessionId());
-                return CompletableFuture.completedFuture(null);
+            Map<String, String> analysisResult;
+            if (formattedMessages.isEmpty()) {
+                log.warn("No messages found for session with ID: {}", job.sessionId());
+                analysisResult = Map.of("category", SessionCategory.OTHER.name(),
+                        "summary", "No messages were exchanged in this session.");
+            } else {
+                // Single prompt for short transcripts, chunked map-reduce for long ones
+                analysisResult = transcriptSummarizer.analyze(formattedMessages);
             }
 
-            // Format messages for analysis
-            List<String> formattedMessages = formatMessagesForAnalysis(messages);
+            if (updateSessionStatus(job, analysisResult)) {
+                recordOutcome("completed");
+                log.info("Successfully analyzed session with ID: {}", job.sessionId());
+            } else {
+                recordOutcome("lease_lost");
+                log.warn("Analysis of session {} finished after its lease was taken over, result discarded", job.sessionId());
+            }
+        } catch (Exception e) {
+            onFailure(job, e);
+        } finally {
+            running.remove(job);
+            analysisDuration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
 
-            // Build the prompt for Gemini using the method from GeminiService
-            String prompt = geminiService.createJsonSessionAnalysisPrompt(formattedMessages);
+    private void onFailure(SessionAnalysisJob job, Exception error) {
+        boolean deadLetter = job.attempt() >= config.getMaxAttempts();
+        long backoff = deadLetter ? 0 : backoffSeconds(job.attempt());
+        String message = error.getClass().getSimpleName() + ": " + error.getMessage();
+        if (message.length() > MAX_ERROR_LENGTH) {
+            message = message.substring(0, MAX_ERROR_LENGTH);
+        }
 
-            // Make API call to Gemini using the GeminiService
-            String apiResponse = geminiService.callGeminiApi(prompt);
+        try {
+            if (!jobRepository.fail(job, workerId, message, backoff, deadLetter)) {
+                recordOutcome("lease_lost");
+                log.warn("Analysis of session {} failed after its lease was taken over: {}", job.sessionId(), message);
+                return;
+            }
+        } catch (Exception e) {
+            // The lease expires and the job is claimed again
+            log.error("Could not record failed analysis of session {}", job.sessionId(), e);
+            return;
+        }
 
-            // Parse the response using the GeminiService
-            Map<String, String> analysisResult = geminiService.parseJsonAnalysisResponse(apiResponse);
+        if (deadLetter) {
+            recordOutcome("dead_lettered");
+            log.error("Giving up analysis of session {} after {} attempts", job.sessionId(), job.attempt(), error);
+        } else {
+            recordOutcome("retried");
+            log.warn("Analysis of session {} failed on attempt {}, retrying in {} s: {}",
+                    job.sessionId(), job.attempt(), backoff, message);
+        }
+    }
 
-            // Update the session status with the results
-            updateSessionStatus(sessionStatus, analysisResult);
+    private long backoffSeconds(int attempt) {
+        long cap = Math.min(config.getMaxBackoffSeconds(), config.getInitialBackoffSeconds() << Math.min(attempt - 1, 20));
+        return cap / 2 + ThreadLocalRandom.current().nextLong(cap / 2 + 1);
+    }
 
-            log.info("Successfully analyzed session with ID: {}", sessionStatus.getSession().getSessionId());
-        } catch (Exception e) {
-            log.error("Error analyzing session with ID: {}", sessionStatus.getSession().getSessionId(), e);
-        }
+    private void recordOutcome(String outcome) {
+        recordOutcome(outcome, 1);
+    }
 
-        return CompletableFuture.completedFuture(null);
+    private void recordOutcome(String outcome, int count) {
+        Counter.builder("session.analysis.jobs")
+                .description("Finished session analysis attempts by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment(count);
+    }
+
+    private List<String> loadFormattedMessages(Integer sessionId) {
+        List<String> formattedMessages = new ArrayList<>();
+        Pageable pageable = PageRequest.of(0, MESSAGE_PAGE_SIZE);
+        List<ChatMessage> page = chatMessageRepository.findOldestBySessionId(sessionId, pageable);
+        while (!page.isEmpty()) {
+            formattedMessages.addAll(formatMessagesForAnalysis(page));
+            if (page.size() < MESSAGE_PAGE_SIZE) {
+                break;
+            }
+            ChatMessage last = page.get(page.size() - 1);
+            page = chatMessageRepository.findAfterCursor(sessionId, last.getSentAt(), last.getMessageId(), pageable);
+        }
+        return formattedMessages;
     }
 
     @Override
@@ -88,32 +303,41 @@ public class SessionAnalysisServiceImpl implements SessionAnalysisService {
     }
 
     @Override
-    public void updateSessionStatus(SessionStatus sessionStatus, Map<String, String> analysisResult) {
+    public boolean updateSessionStatus(SessionAnalysisJob job, Map<String, String> analysisResult) {
+        // Update session with analysis results
+        String categoryStr = analysisResult.getOrDefault("category", "OTHER").toUpperCase();
+        SessionCategory category;
         try {
-            // Update session with analysis results
-            String categoryStr = analysisResult.getOrDefault("category", "OTHER").toUpperCase();
-            SessionCategory category;
-            try {
-                if (geminiService.isValidCategory(categoryStr)) {
-                    category = SessionCategory.valueOf(categoryStr);
-                } else {
-                    log.warn("Invalid category '{}' found, defaulting to OTHER", categoryStr);
-                    category = SessionCategory.OTHER;
-                }
-            } catch (IllegalArgumentException e) {
+            if (geminiService.isValidCategory(categoryStr)) {
+                category = SessionCategory.valueOf(categoryStr);
+            } else {
                 log.warn("Invalid category '{}' found, defaulting to OTHER", categoryStr);
                 category = SessionCategory.OTHER;
             }
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid category '{}' found, defaulting to OTHER", categoryStr);
+            category = SessionCategory.OTHER;
+        }
 
-            sessionStatus.setCategory(category);
-            sessionStatus.setSummary(analysisResult.getOrDefault("summary", "No summary available"));
-            sessionStatus.setIsSessionStatusComputed(true);
-
-            sessionStatusRepository.save(sessionStatus);
+        boolean updated = jobRepository.complete(job, workerId, category,
+                analysisResult.getOrDefault("summary", "No summary available"));
+        if (updated) {
+            log.info("Updated session status for ID: {}", job.statusId());
+        }
+        return updated;
+    }
 
-            log.info("Updated session status for ID: {}", sessionStatus.getStatusId());
-        } catch (Exception e) {
-            log.error("Error updating session status for ID: {}", sessionStatus.getStatusId(), e);
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                // Interrupted jobs keep their lease until it expires and are then claimed again
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
         }
     }
-}
\ No newline at end of file
+}
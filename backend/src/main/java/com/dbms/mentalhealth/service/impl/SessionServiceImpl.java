@@ -1,7 +1,10 @@
 package com.dbms.mentalhealth.service.impl;
+import com.dbms.mentalhealth.dto.chatMessage.ChatMessageCursor;
 import com.dbms.mentalhealth.dto.chatMessage.ChatMessageDTO;
+import com.dbms.mentalhealth.dto.chatMessage.ChatMessagePageDTO;
 import com.dbms.mentalhealth.dto.session.response.SessionResponseDTO;
 import com.dbms.mentalhealth.dto.session.response.SessionSummaryDTO;
+import com.dbms.mentalhealth.enums.MessageHistoryDirection;
 import com.dbms.mentalhealth.enums.SessionActivityStatus;
 import com.dbms.mentalhealth.enums.SessionCategory;
 import com.dbms.mentalhealth.exception.appointment.InvalidRequestException;
@@ -11,6 +14,7 @@ import com.dbms.mentalhealth.exception.user.UserNotFoundException;
 import com.dbms.mentalhealth.mapper.ChatMessageMapper;
 import com.dbms.mentalhealth.mapper.SessionMapper;
 import com.dbms.mentalhealth.model.*;
+import com.dbms.mentalhealth.presence.PresenceRegistry;
 import com.dbms.mentalhealth.repository.*;
 import com.dbms.mentalhealth.security.jwt.JwtUtils;
 import com.dbms.mentalhealth.service.NotificationService;
@@ -24,6 +28,7 @@ import com.github.benmanes.caffeine.cache.Cache;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -32,12 +37,16 @@ import org.springframework.stereotype.Service;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 @Service
 @Slf4j
 public class SessionServiceImpl implements SessionService {
 
+    public static final int DEFAULT_MESSAGE_PAGE_SIZE = 50;
+    public static final int MAX_MESSAGE_PAGE_SIZE = 500;
+
     private final NotificationService notificationService;
     private final JwtUtils jwtUtils;
     private final UserRepository userRepository;
@@ -47,8 +56,7 @@ public class SessionServiceImpl implements SessionService {
     private final ChatMessageRepository chatMessageRepository;
     private final Cache<Integer, Session> ongoingSessionsCache;
     private final UserActivityService userActivityService;
-    private final Cache<Integer, Integer> currentlyInSessionCache;
-    private static SessionServiceImpl instance;
+    private final PresenceRegistry presenceRegistry;
     public static SessionStatusRepository sessionStatusRepository;
     private final UserMetricService userMetricService;
     @Autowired
@@ -60,7 +68,7 @@ public class SessionServiceImpl implements SessionService {
                               NotificationRepository notificationRepository,
                               ChatMessageRepository chatMessageRepository,
                               Cache<Integer, Session> ongoingSessionsCache,
-                              Cache<Integer, Integer> currentlyInSessionCache,
+                              PresenceRegistry presenceRegistry,
                                 UserMetricService userMetricService,
                               SessionStatusRepository sessionStatusRepository,
                               @Lazy UserActivityService userActivityService) {
@@ -72,11 +80,10 @@ public class SessionServiceImpl implements SessionService {
         this.notificationRepository = notificationRepository;
         this.chatMessageRepository = chatMessageRepository;
         this.ongoingSessionsCache = ongoingSessionsCache;
-        this.currentlyInSessionCache = currentlyInSessionCache;
+        this.presenceRegistry = presenceRegistry;
         this.userActivityService = userActivityService;
         this.userMetricService = userMetricService;
         this.sessionStatusRepository = sessionStatusRepository;
-        instance = this;
     }
 
 
@@ -90,7 +97,7 @@ public class SessionServiceImpl implements SessionService {
         User receiver = userRepository.findById(listenerId)
                 .orElseThrow(() -> new ListenerNotFoundException("Receiver not found"));
 
-        if(isUserInSessionStatic(receiver.getUserId())) {
+        if(isUserInSession(receiver.getUserId())) {
             throw new IllegalStateException("Listener is already in a session");
         }
         // Create a notification
@@ -129,8 +136,7 @@ public class SessionServiceImpl implements SessionService {
             userMetricService.setLastSessionDate(user, LocalDateTime.now());
 
             ongoingSessionsCache.put(session.getSessionId(), session);
-            currentlyInSessionCache.put(user.getUserId(), listener.getUser().getUserId());
-            currentlyInSessionCache.put(listener.getUser().getUserId(), user.getUserId());
+            presenceRegistry.startSession(user.getUserId(), listener.getUser().getUserId());
 
             // Broadcast session details
             broadcastFullSessionCache();
@@ -195,8 +201,7 @@ public class SessionServiceImpl implements SessionService {
 
         // Invalidate caches
         ongoingSessionsCache.invalidate(sessionId);
-        currentlyInSessionCache.invalidate(session.getUser().getUserId());
-        currentlyInSessionCache.invalidate(session.getListener().getUser().getUserId());
+        presenceRegistry.endSession(session.getUser().getUserId(), session.getListener().getUser().getUserId());
 
         SessionStatus sessionStatus = new SessionStatus();
         sessionStatus.setCategory(SessionCategory.OTHER);
@@ -229,12 +234,68 @@ public class SessionServiceImpl implements SessionService {
     }
 
     @Override
-    @Transactional
+    @Deprecated
+    @Transactional(readOnly = true)
     public List<ChatMessageDTO> getMessagesBySessionId(Integer sessionId) {
-        List<ChatMessage> messages = chatMessageRepository.findBySession_SessionId(sessionId);
-        return messages.stream()
+        List<ChatMessageDTO> messages = new ArrayList<>();
+        ChatMessagePageDTO page = getMessagePage(sessionId, null, MessageHistoryDirection.AFTER, MAX_MESSAGE_PAGE_SIZE);
+        messages.addAll(page.getMessages());
+        while (page.isHasMore()) {
+            page = getMessagePage(sessionId, page.getNextCursor(), MessageHistoryDirection.AFTER, MAX_MESSAGE_PAGE_SIZE);
+            messages.addAll(page.getMessages());
+        }
+        return messages;
+    }
+
+    /**
+     * Reads up to {@code limit} messages before or after the cursor. Without a cursor, BEFORE starts at the
+     * newest message and AFTER at the oldest. One extra row is fetched to tell whether more remain.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public ChatMessagePageDTO getMessagePage(Integer sessionId, String cursor, MessageHistoryDirection direction, Integer limit) {
+        int pageSize = limit == null ? DEFAULT_MESSAGE_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_MESSAGE_PAGE_SIZE));
+        ChatMessageCursor position;
+        try {
+            position = cursor != null ? ChatMessageCursor.decode(cursor) : null;
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException(e.getMessage());
+        }
+
+        boolean before = direction == MessageHistoryDirection.BEFORE;
+        Pageable pageable = PageRequest.of(0, pageSize + 1);
+        List<ChatMessage> rows;
+        if (position == null) {
+            rows = before
+                    ? chatMessageRepository.findNewestBySessionId(sessionId, pageable)
+                    : chatMessageRepository.findOldestBySessionId(sessionId, pageable);
+        } else {
+            rows = before
+                    ? chatMessageRepository.findBeforeCursor(sessionId, position.sentAt(), position.messageId(), pageable)
+                    : chatMessageRepository.findAfterCursor(sessionId, position.sentAt(), position.messageId(), pageable);
+        }
+
+        boolean hasMore = rows.size() > pageSize;
+        List<ChatMessageDTO> messages = new ArrayList<>(rows.subList(0, Math.min(rows.size(), pageSize)).stream()
                 .map(ChatMessageMapper::toChatMessageDTO)
-                .toList();
+                .toList());
+        if (before) {
+            Collections.reverse(messages);
+        }
+
+        // Continue from the last message read; for AFTER this also lets a client poll for new messages
+        String nextCursor = null;
+        if (!messages.isEmpty()) {
+            ChatMessageDTO last = before ? messages.get(0) : messages.get(messages.size() - 1);
+            nextCursor = ChatMessageCursor.of(last).encode();
+        } else if (position != null) {
+            nextCursor = cursor;
+        }
+        return ChatMessagePageDTO.builder()
+                .messages(messages)
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .build();
     }
 
 
@@ -292,12 +353,8 @@ public class SessionServiceImpl implements SessionService {
 
 
 
-    public static boolean isUserInSessionStatic(Integer userId) {
-        return instance.isUserInSession(userId);
-    }
-
     @Override
     public boolean isUserInSession(Integer userId) {
-        return currentlyInSessionCache.asMap().containsKey(userId);
+        return userId != null && presenceRegistry.isInSession(userId);
     }
 }
\ No newline at end of file
@@ -1,62 +1,103 @@
 package com.dbms.mentalhealth.service.impl;
 
+import com.dbms.mentalhealth.dto.UserActivity.PresenceDeltaDTO;
+import com.dbms.mentalhealth.dto.UserActivity.PresenceSnapshotDTO;
 import com.dbms.mentalhealth.dto.UserActivity.UserActivityDTO;
 import com.dbms.mentalhealth.dto.UserActivity.UserRoleCountDTO;
 import com.dbms.mentalhealth.dto.session.response.SessionSummaryDTO;
+import com.dbms.mentalhealth.enums.BroadcastTopic;
 import com.dbms.mentalhealth.enums.CacheKey;
+import com.dbms.mentalhealth.enums.PresenceChangeType;
 import com.dbms.mentalhealth.enums.Role;
+import com.dbms.mentalhealth.enums.SseDelivery;
 import com.dbms.mentalhealth.mapper.UserActivityMapper;
 import com.dbms.mentalhealth.model.User;
+import com.dbms.mentalhealth.presence.LastSeenTracker;
+import com.dbms.mentalhealth.presence.PresenceRegistry;
+import com.dbms.mentalhealth.presence.PresenceView;
 import com.dbms.mentalhealth.repository.UserRepository;
 import com.dbms.mentalhealth.service.SessionService;
 import com.dbms.mentalhealth.service.UserActivityService;
+import com.dbms.mentalhealth.sse.SseBroadcastDispatcher;
+import com.dbms.mentalhealth.sse.SseFanOut;
+import com.dbms.mentalhealth.sse.SseSubscriber;
 import com.github.benmanes.caffeine.cache.Cache;
-import org.apache.catalina.connector.ClientAbortException;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.io.IOException;
-import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 
 @Service
 public class UserActivityServiceImpl implements UserActivityService {
-    private final CopyOnWriteArrayList<SseEmitter> allUserEmitters = new CopyOnWriteArrayList<>();
-    private final CopyOnWriteArrayList<SseEmitter> roleEmitters = new CopyOnWriteArrayList<>();
-    private final CopyOnWriteArrayList<SseEmitter> adminEmitters = new CopyOnWriteArrayList<>();
-    private final CopyOnWriteArrayList<SseEmitter> listenerEmitters = new CopyOnWriteArrayList<>();
-    private final CopyOnWriteArrayList<SseEmitter> userEmitters = new CopyOnWriteArrayList<>();
-    private final CopyOnWriteArrayList<SseEmitter> sessionDetailsEmitters = new CopyOnWriteArrayList<>();
+    // Full-list subscribers only need the latest list, so their queues keep one frame per event
+    private final CopyOnWriteArrayList<SseSubscriber> allUserEmitters = new CopyOnWriteArrayList<>();
+    private final CopyOnWriteArrayList<SseSubscriber> roleEmitters = new CopyOnWriteArrayList<>();
+    private final CopyOnWriteArrayList<SseSubscriber> adminEmitters = new CopyOnWriteArrayList<>();
+    private final CopyOnWriteArrayList<SseSubscriber> listenerEmitters = new CopyOnWriteArrayList<>();
+    private final CopyOnWriteArrayList<SseSubscriber> userEmitters = new CopyOnWriteArrayList<>();
+    private final CopyOnWriteArrayList<SseSubscriber> sessionDetailsEmitters = new CopyOnWriteArrayList<>();
+    // Subscribers that asked for deltas, per topic; they get no full-list broadcasts and every delta in order
+    private final Map<CacheKey, CopyOnWriteArrayList<SseSubscriber>> deltaEmitters = new EnumMap<>(CacheKey.class);
+    // Version of the last delta per topic, guarded by this; changed together with the caches
+    private final Map<CacheKey, Long> presenceVersions = new EnumMap<>(CacheKey.class);
+    // One thread, so every subscriber receives snapshots and deltas in version order
+    private final ExecutorService presenceDeltaExecutor =
+            Executors.newSingleThreadExecutor(new CustomizableThreadFactory("PresenceDelta-"));
     private final SessionService sessionService;
     Logger log = org.slf4j.LoggerFactory.getLogger(UserActivityServiceImpl.class);
     private final UserRepository userRepository;
     private final Cache<String, UserActivityDTO> userDetailsCache;
-    private final Cache<String, List<UserActivityDTO>> roleBasedDetailsCache;
+    private final PresenceRegistry presenceRegistry;
+    // The session flags the SESSION_CHANGED deltas so far describe; only initializeCaches and the tick move it, monitor held
+    private PresenceView sessionView;
     private final Cache<String, LocalDateTime> lastSeenCache;
-    private static final long BROADCAST_THROTTLE_MS = 1000;
-    private LocalDateTime lastBroadcast = LocalDateTime.now();
+    private final LastSeenTracker lastSeenTracker;
+    private final SseBroadcastDispatcher broadcastDispatcher;
+    private final SseFanOut sseFanOut;
+    // Latest list handed to broadcastSessionDetails, sent on the next tick
+    private volatile List<SessionSummaryDTO> latestSessionDetails = List.of();
 
     public UserActivityServiceImpl(UserRepository userRepository,
                                    Cache<String, UserActivityDTO> userDetailsCache,
-                                   Cache<String, List<UserActivityDTO>> roleBasedDetailsCache,
+                                   PresenceRegistry presenceRegistry,
                                    Cache<String, LocalDateTime> lastSeenCache,
-                                   SessionService sessionService) {
+                                   LastSeenTracker lastSeenTracker,
+                                   SessionService sessionService,
+                                   SseBroadcastDispatcher broadcastDispatcher,
+                                   SseFanOut sseFanOut) {
         this.userRepository = userRepository;
         this.userDetailsCache = userDetailsCache;
-        this.roleBasedDetailsCache = roleBasedDetailsCache;
+        this.presenceRegistry = presenceRegistry;
         this.lastSeenCache = lastSeenCache;
+        this.lastSeenTracker = lastSeenTracker;
         this.sessionService = sessionService;
+        this.broadcastDispatcher = broadcastDispatcher;
+        this.sseFanOut = sseFanOut;
+        for (CacheKey topic : CacheKey.values()) {
+            deltaEmitters.put(topic, new CopyOnWriteArrayList<>());
+            presenceVersions.put(topic, 0L);
+        }
         initializeCaches();
+
+        broadcastDispatcher.register(BroadcastTopic.SESSION_DETAILS, this::publishSessionDetails);
+        broadcastDispatcher.register(BroadcastTopic.ALL_USERS, () -> broadcastData(CacheKey.ALL_USERS, allUserEmitters));
+        broadcastDispatcher.register(BroadcastTopic.ADMIN_DETAILS, () -> broadcastData(CacheKey.ADMIN_DETAILS, adminEmitters));
+        broadcastDispatcher.register(BroadcastTopic.LISTENER_DETAILS, () -> broadcastData(CacheKey.LISTENER_DETAILS, listenerEmitters));
+        broadcastDispatcher.register(BroadcastTopic.USER_DETAILS, () -> broadcastData(CacheKey.USER_DETAILS, userEmitters));
+        broadcastDispatcher.register(BroadcastTopic.ROLE_COUNTS, this::publishRoleCounts);
+        broadcastDispatcher.register(BroadcastTopic.FULL_CACHE_DETAILS, this::broadcastFullCacheDetails);
     }
 
     private synchronized void initializeCaches() {
@@ -65,28 +106,25 @@ public class UserActivityServiceImpl implements UserActivityService {
             List<User> activeUsers = userRepository.findByIsActive(true);
 
             userDetailsCache.invalidateAll();
-            roleBasedDetailsCache.invalidateAll();
             lastSeenCache.invalidateAll();
 
             activeUsers.forEach(user -> {
                 try {
-                    UserActivityDTO dto = UserActivityMapper.toUserActivityDTO(user);
                     String email = user.getEmail();
-                    CacheKey cacheKey = CacheKey.fromRole(user.getRole());
-
-                    userDetailsCache.put(email, dto);
-                    roleBasedDetailsCache.asMap()
-                            .computeIfAbsent(cacheKey.getCacheKey(), k -> new CopyOnWriteArrayList<>())
-                            .add(dto);
+                    userDetailsCache.put(email, UserActivityMapper.toUserActivityDTO(user,
+                            presenceRegistry.isInSession(user.getUserId())));
                     lastSeenCache.put(email, user.getLastSeen());
 
-                    log.debug("Initialized caches for user: {} with cache key: {}", email, cacheKey);
+                    log.debug("Initialized caches for user: {} with role: {}", email, user.getRole());
                 } catch (Exception e) {
                     log.error("Error initializing caches for user: {}", user.getEmail(), e);
                 }
             });
+            presenceRegistry.replaceMembers(activeUsers);
+            sessionView = presenceRegistry.view();
 
             logCacheStats();
+            resyncDeltaSubscribers();
         } catch (Exception e) {
             log.error("Failed to initialize caches", e);
             throw new RuntimeException("Cache initialization failed", e);
@@ -98,20 +136,15 @@ public class UserActivityServiceImpl implements UserActivityService {
         return new SseEmitter(TimeUnit.MINUTES.toMillis(30));
     }
 
-    private void addEmitterToList(SseEmitter emitter, CopyOnWriteArrayList<SseEmitter> emitterList) {
-        emitterList.add(emitter);
-        emitter.onCompletion(() -> emitterList.remove(emitter));
-        emitter.onTimeout(() -> emitterList.remove(emitter));
-        emitter.onError(e -> emitterList.remove(emitter));
+    // SseFanOut removes the subscriber from the list again when the connection ends or falls behind
+    private void addEmitterToList(SseEmitter emitter, CopyOnWriteArrayList<SseSubscriber> emitterList) {
+        emitterList.add(sseFanOut.subscribe(emitter, SseDelivery.LATEST, emitterList::remove));
     }
 
 
     @Override
     public void addAllUsersEmitter(SseEmitter emitter) {
-        emitter.onTimeout(() -> removeEmitterSafely(emitter, allUserEmitters));
-        emitter.onCompletion(() -> removeEmitterSafely(emitter, allUserEmitters));
-        emitter.onError(e -> removeEmitterSafely(emitter, allUserEmitters));
-        allUserEmitters.add(emitter);
+        addEmitterToList(emitter, allUserEmitters);
     }
 
 
@@ -142,328 +175,247 @@ public class UserActivityServiceImpl implements UserActivityService {
     }
 
     @Override
-    public void sendInitialSessionDetails(SseEmitter emitter) {
-        try {
-            List<SessionSummaryDTO> cachedData = sessionService.broadcastFullSessionCache();
-            if (cachedData == null) {
-                cachedData = new ArrayList<>();
+    public synchronized void addPresenceDeltaEmitter(SseEmitter emitter, CacheKey topic) {
+        PresenceSnapshotDTO snapshot = getPresenceSnapshot(topic);
+        CopyOnWriteArrayList<SseSubscriber> subscribers = deltaEmitters.get(topic);
+        SseSubscriber subscriber = sseFanOut.subscribe(emitter, SseDelivery.QUEUE, subscribers::remove);
+        // Queued behind the deltas already assigned a version, so the first delta sent is snapshot + 1
+        presenceDeltaExecutor.execute(() -> {
+            if (subscriber.offer(sseFanOut.encode(String.valueOf(snapshot.getVersion()), "presenceSnapshot", snapshot))) {
+                subscribers.add(subscriber);
+            } else {
+                log.debug("Could not queue presence snapshot for {}", topic);
             }
-            emitter.send(SseEmitter.event().name("sessionDetails").data(cachedData));
-        } catch (IOException e) {
-            log.error("Error sending initial session details", e);
-            sessionDetailsEmitters.remove(emitter);
-        }
+        });
     }
 
-    private List<UserActivityDTO> updateSessionStatus(List<UserActivityDTO> users) {
-        return users.stream()
-                .map(UserActivityMapper::toUserActivityDTO)
-                .collect(Collectors.toList());
+    @Override
+    public synchronized PresenceSnapshotDTO getPresenceSnapshot(CacheKey topic) {
+        return new PresenceSnapshotDTO(presenceVersions.get(topic), presenceRegistry.view().online(topic));
     }
 
-    private void sendInitialData(SseEmitter emitter, CacheKey cacheKey, CopyOnWriteArrayList<SseEmitter> emitters) {
-        try {
-            logMapContents();
-            List<UserActivityDTO> cachedData;
+    // Called with the monitor held, so the versions follow the order of the cache changes
+    private void publishPresenceChange(PresenceChangeType type, UserActivityDTO user, Role role) {
+        publishPresenceChange(CacheKey.ALL_USERS, type, user);
+        publishPresenceChange(CacheKey.fromRole(role), type, user);
+    }
 
-            if (cacheKey == CacheKey.ALL_USERS) {
-                cachedData = getAllOnlineUsers();
-            } else {
-                cachedData = roleBasedDetailsCache.getIfPresent(cacheKey.getCacheKey());
-                if (cachedData == null) {
-                    cachedData = fetchUserActivityDataForKey(cacheKey);
-                    roleBasedDetailsCache.put(cacheKey.getCacheKey(), updateSessionStatus(cachedData));
-                }
+    // Publishes the in-session flags that changed between the views, for users online now; monitor held.
+    // A user who joined in between may get a SESSION_CHANGED carrying the same DTO as their JOIN
+    private boolean publishSessionChanges(PresenceView previous, PresenceView current) {
+        boolean[] changed = {false};
+        current.forEachSessionChange(previous, userId -> {
+            Role role = current.roleOf(userId);
+            if (role != null) {
+                publishPresenceChange(PresenceChangeType.SESSION_CHANGED, current.member(userId), role);
+                changed[0] = true;
             }
+        });
+        return changed[0];
+    }
 
-            emitter.send(SseEmitter.event()
-                    .name(cacheKey.getEventName())
-                    .data(updateSessionStatus(cachedData)));
-        } catch (IOException e) {
-            log.error("Error sending initial data for key: {}", cacheKey, e);
-            emitters.remove(emitter);
+    private void publishPresenceChange(CacheKey topic, PresenceChangeType type, UserActivityDTO user) {
+        long version = presenceVersions.merge(topic, 1L, Long::sum);
+        PresenceDeltaDTO delta = new PresenceDeltaDTO(version, type, user);
+        CopyOnWriteArrayList<SseSubscriber> emitters = deltaEmitters.get(topic);
+        presenceDeltaExecutor.execute(() -> sendPresenceEvent(emitters, "presenceDelta", version, delta));
+    }
+
+    // After a reload of the caches the deltas are unknown: every delta subscriber gets a new snapshot
+    private void resyncDeltaSubscribers() {
+        for (CacheKey topic : CacheKey.values()) {
+            presenceVersions.merge(topic, 1L, Long::sum);
+            PresenceSnapshotDTO snapshot = getPresenceSnapshot(topic);
+            CopyOnWriteArrayList<SseSubscriber> emitters = deltaEmitters.get(topic);
+            presenceDeltaExecutor.execute(() -> sendPresenceEvent(emitters, "presenceSnapshot", snapshot.getVersion(), snapshot));
+        }
+    }
+
+    private void sendPresenceEvent(CopyOnWriteArrayList<SseSubscriber> emitters, String name, long version, Object data) {
+        if (!emitters.isEmpty()) {
+            sseFanOut.broadcast(emitters, sseFanOut.encode(String.valueOf(version), name, data));
         }
     }
 
-    private List<UserActivityDTO> fetchUserActivityDataForKey(CacheKey cacheKey) {
-        return switch (cacheKey) {
-            case ALL_USERS -> getAllOnlineUsers();
-            case ADMIN_DETAILS -> getOnlineAdmins();
-            case LISTENER_DETAILS -> getOnlineListeners();
-            case USER_DETAILS -> getOnlineUsers();
-        };
+    @PreDestroy
+    public void shutdownPresenceDeltas() {
+        presenceDeltaExecutor.shutdownNow();
     }
+
+    @Override
+    public void sendInitialSessionDetails(SseEmitter emitter) {
+        List<SessionSummaryDTO> cachedData = sessionService.broadcastFullSessionCache();
+        if (cachedData == null) {
+            cachedData = new ArrayList<>();
+        }
+        if (!sseFanOut.send(emitter, sseFanOut.encode("sessionDetails", cachedData))) {
+            log.debug("Could not queue initial session details");
+        }
+    }
+
+    private void sendInitialData(SseEmitter emitter, CacheKey cacheKey) {
+        logMapContents();
+        if (!sseFanOut.send(emitter, sseFanOut.encode(cacheKey.getEventName(), presenceRegistry.view().online(cacheKey)))) {
+            log.debug("Could not queue initial data for key: {}", cacheKey);
+        }
+    }
+
     @Override
     public void sendInitialRoleCounts(SseEmitter emitter) {
-        try {
-            List<UserRoleCountDTO> cachedData = getOnlineUsersCountByRole();
-            emitter.send(SseEmitter.event().name("roleCounts").data(cachedData));
-        } catch (IOException e) {
-            log.error("Error sending initial role counts", e);
-            roleEmitters.remove(emitter);
+        List<UserRoleCountDTO> cachedData = getOnlineUsersCountByRole();
+        if (!sseFanOut.send(emitter, sseFanOut.encode("roleCounts", cachedData))) {
+            log.debug("Could not queue initial role counts");
         }
     }
 
     @Override
     public void sendInitialAllUsers(SseEmitter emitter) {
-        sendInitialData(emitter, CacheKey.ALL_USERS, allUserEmitters);
+        sendInitialData(emitter, CacheKey.ALL_USERS);
     }
 
     @Override
     public void sendInitialAdminDetails(SseEmitter emitter) {
-        sendInitialData(emitter, CacheKey.ADMIN_DETAILS, adminEmitters);
+        sendInitialData(emitter, CacheKey.ADMIN_DETAILS);
     }
 
     @Override
     public void sendInitialListenerDetails(SseEmitter emitter) {
-        sendInitialData(emitter, CacheKey.LISTENER_DETAILS, listenerEmitters);
+        sendInitialData(emitter, CacheKey.LISTENER_DETAILS);
     }
 
     @Override
     public void sendInitialUserDetails(SseEmitter emitter) {
-        sendInitialData(emitter, CacheKey.USER_DETAILS, userEmitters);
+        sendInitialData(emitter, CacheKey.USER_DETAILS);
     }
 
     private void logMapContents() {
-        log.info("Cache contents - User Details: {}, Role Based: {}, Last Seen: {}",
-                userDetailsCache.asMap(), roleBasedDetailsCache.asMap(), lastSeenCache.asMap());
+        log.debug("Cache contents - User Details: {}, Role Based: {}, Last Seen: {}",
+                userDetailsCache.asMap(), onlineByRole(), lastSeenCache.asMap());
     }
 
     @Override
     public void broadcastSessionDetails(List<SessionSummaryDTO> sessionSummaryDTOs) {
+        latestSessionDetails = sessionSummaryDTOs;
+        broadcastDispatcher.markDirty(BroadcastTopic.SESSION_DETAILS);
+    }
+
+    // Runs on the dispatcher thread, once per tick however many sessions started or ended
+    private void publishSessionDetails() {
+        // Refreshes the in-session flags and publishes the presence deltas, with or without session subscribers
+        if (updateAllCaches()) {
+            // Marked during the tick, sent later in the same one
+            broadcastAllUsers();
+            broadcastAdminDetails();
+            broadcastListenerDetails();
+            broadcastUserDetails();
+        }
         if (sessionDetailsEmitters.isEmpty()) {
             return; // Skip if no active listeners
         }
 
-        List<SseEmitter> deadEmitters = new ArrayList<>();
-
-        sessionDetailsEmitters.forEach(emitter -> {
-            try {
-                if (emitter != null) {
-                    emitter.send(SseEmitter.event()
-                            .name("sessionDetails")
-                            .data(sessionSummaryDTOs));
-                }
-            } catch (Exception e) {
-                if (e instanceof ClientAbortException ||
-                        (e.getMessage() != null && e.getMessage().contains("Broken pipe"))) {
-                    log.debug("Client disconnected from session details: {}", e.getMessage());
-                } else {
-                    log.warn("Error broadcasting session details: {}", e.getMessage());
-                }
-                deadEmitters.add(emitter);
-            }
-        });
-
-        // Clean up dead emitters
-        if (!deadEmitters.isEmpty()) {
-            sessionDetailsEmitters.removeAll(deadEmitters);
-            deadEmitters.forEach(emitter -> {
-                try {
-                    emitter.complete();
-                } catch (Exception e) {
-                    log.debug("Error while completing session emitter: {}", e.getMessage());
-                }
-            });
-        }
-
-        // Continue with other broadcasts
-        updateAllCaches();
-        broadcastAllUsers();
-        broadcastAdminDetails();
-        broadcastListenerDetails();
-        broadcastUserDetails();
+        sseFanOut.broadcast(sessionDetailsEmitters, sseFanOut.encode("sessionDetails", latestSessionDetails));
     }
 
-    private void updateAllCaches() {
-        userDetailsCache.asMap().forEach((email, dto) -> {
-            UserActivityDTO updatedDto = UserActivityMapper.toUserActivityDTO(dto);
-            userDetailsCache.put(email, updatedDto);
-        });
-
-        roleBasedDetailsCache.asMap().forEach((role, dtos) -> {
-            List<UserActivityDTO> updatedDtos = dtos.stream()
-                    .map(UserActivityMapper::toUserActivityDTO)
-                    .collect(Collectors.toList());
-            roleBasedDetailsCache.put(role, updatedDtos);
-        });
-    }
-    private void removeEmitterSafely(SseEmitter emitter, CopyOnWriteArrayList<SseEmitter> emitterList) {
-        try {
-            emitterList.remove(emitter);
-            emitter.complete();
-        } catch (Exception e) {
-            log.debug("Error while removing emitter: {}", e.getMessage());
-        }
+    // Catches up with the sessions started and ended since the last change; returns whether any flag changed
+    private synchronized boolean updateAllCaches() {
+        PresenceView current = presenceRegistry.view();
+        boolean changed = publishSessionChanges(sessionView, current);
+        sessionView = current;
+        return changed;
     }
-
-    private <T> void broadcastData(CacheKey cacheKey, CopyOnWriteArrayList<SseEmitter> emitterList) {
+    private <T> void broadcastData(CacheKey cacheKey, CopyOnWriteArrayList<SseSubscriber> emitterList) {
         if (emitterList.isEmpty()) {
             return; // Skip broadcasting if there are no active emitters
         }
 
-        List<UserActivityDTO> data = fetchUserActivityDataForKey(cacheKey);
-        List<UserActivityDTO> updatedData = data.stream()
-                .map(UserActivityMapper::toUserActivityDTO)
-                .collect(Collectors.toList());
-
-        List<SseEmitter> deadEmitters = new ArrayList<>();
-
-        emitterList.forEach(emitter -> {
-            try {
-                if (emitter != null) {
-                    emitter.send(SseEmitter.event()
-                            .name(cacheKey.getEventName())
-                            .data(updatedData));
-                }
-            } catch (ClientAbortException e) {
-                log.debug("Client disconnected gracefully: {}", e.getMessage());
-                deadEmitters.add(emitter);
-            } catch (IOException e) {
-                if (e.getMessage() != null &&
-                        (e.getMessage().contains("Broken pipe") ||
-                                e.getMessage().contains("Connection reset by peer"))) {
-                    log.debug("Client connection closed: {}", e.getMessage());
-                } else {
-                    log.warn("Error broadcasting data for key {}: {}", cacheKey, e.getMessage());
-                }
-                deadEmitters.add(emitter);
-            } catch (Exception e) {
-                log.warn("Unexpected error while broadcasting: {}", e.getMessage());
-                deadEmitters.add(emitter);
-            }
-        });
-
-        // Clean up dead emitters outside the loop
-        if (!deadEmitters.isEmpty()) {
-            emitterList.removeAll(deadEmitters);
-            deadEmitters.forEach(emitter -> {
-                try {
-                    emitter.complete();
-                } catch (Exception e) {
-                    log.debug("Error while completing emitter: {}", e.getMessage());
-                }
-            });
-        }
+        // Serialized once for all subscribers
+        sseFanOut.broadcast(emitterList, sseFanOut.encode(cacheKey.getEventName(), presenceRegistry.view().online(cacheKey)));
     }
 
     @Override
-    @Async
     public void broadcastAllUsers() {
-        broadcastData(CacheKey.ALL_USERS, allUserEmitters);
-        broadcastFullCacheDetails();
+        broadcastDispatcher.markDirty(BroadcastTopic.ALL_USERS);
+        broadcastDispatcher.markDirty(BroadcastTopic.FULL_CACHE_DETAILS);
     }
 
     @Override
-    @Async
     public void broadcastAdminDetails() {
-        broadcastData(CacheKey.ADMIN_DETAILS, adminEmitters);
-        broadcastFullCacheDetails();
+        broadcastDispatcher.markDirty(BroadcastTopic.ADMIN_DETAILS);
+        broadcastDispatcher.markDirty(BroadcastTopic.FULL_CACHE_DETAILS);
     }
 
     @Override
-    @Async
     public void broadcastListenerDetails() {
-        broadcastData(CacheKey.LISTENER_DETAILS, listenerEmitters);
-        broadcastFullCacheDetails();
+        broadcastDispatcher.markDirty(BroadcastTopic.LISTENER_DETAILS);
+        broadcastDispatcher.markDirty(BroadcastTopic.FULL_CACHE_DETAILS);
     }
 
     @Override
-    @Async
     public void broadcastUserDetails() {
-        broadcastData(CacheKey.USER_DETAILS, userEmitters);
-        broadcastFullCacheDetails();
+        broadcastDispatcher.markDirty(BroadcastTopic.USER_DETAILS);
+        broadcastDispatcher.markDirty(BroadcastTopic.FULL_CACHE_DETAILS);
     }
 
     @Override
     public void broadcastRoleCounts() {
+        broadcastDispatcher.markDirty(BroadcastTopic.ROLE_COUNTS);
+        broadcastDispatcher.markDirty(BroadcastTopic.FULL_CACHE_DETAILS);
+    }
+
+    private void publishRoleCounts() {
         if (roleEmitters.isEmpty()) {
             return;
         }
 
-        List<UserRoleCountDTO> roleCounts = getOnlineUsersCountByRole();
-        List<SseEmitter> deadEmitters = new ArrayList<>();
-
-        roleEmitters.forEach(emitter -> {
-            try {
-                if (emitter != null) {
-                    emitter.send(SseEmitter.event()
-                            .name("roleCounts")
-                            .data(roleCounts));
-                }
-            } catch (Exception e) {
-                if (e instanceof ClientAbortException ||
-                        (e.getMessage() != null && e.getMessage().contains("Broken pipe"))) {
-                    log.debug("Client disconnected from role counts: {}", e.getMessage());
-                } else {
-                    log.warn("Error broadcasting role counts: {}", e.getMessage());
-                }
-                deadEmitters.add(emitter);
-            }
-        });
-
-        // Clean up dead emitters
-        if (!deadEmitters.isEmpty()) {
-            roleEmitters.removeAll(deadEmitters);
-            deadEmitters.forEach(emitter -> {
-                try {
-                    emitter.complete();
-                } catch (Exception e) {
-                    log.debug("Error while completing role emitter: {}", e.getMessage());
-                }
-            });
-        }
-
-        broadcastFullCacheDetails();
+        sseFanOut.broadcast(roleEmitters, sseFanOut.encode("roleCounts", getOnlineUsersCountByRole()));
     }
 
     private void broadcastFullCacheDetails() {
         logMapContents();
-        allUserEmitters.forEach(emitter -> {
-            try {
-                emitter.send(SseEmitter.event().name("fullCacheDetails")
-                        .data(Map.of(
-                                "userDetails", userDetailsCache.asMap(),
-                                "roleBasedDetails", roleBasedDetailsCache.asMap(),
-                                "lastSeen", lastSeenCache.asMap()
-                        )));
-            } catch (IOException e) {
-                log.error("Error broadcasting cache details", e);
-                allUserEmitters.remove(emitter);
-            }
-        });
+        if (allUserEmitters.isEmpty()) {
+            return;
+        }
+        sseFanOut.broadcast(allUserEmitters, sseFanOut.encode("fullCacheDetails", Map.of(
+                "userDetails", userDetailsCache.asMap(),
+                "roleBasedDetails", onlineByRole(),
+                "lastSeen", lastSeenCache.asMap()
+        )));
+    }
+
+    private Map<String, List<UserActivityDTO>> onlineByRole() {
+        PresenceView view = presenceRegistry.view();
+        return Map.of(
+                Role.ADMIN.name(), view.online(CacheKey.ADMIN_DETAILS),
+                Role.LISTENER.name(), view.online(CacheKey.LISTENER_DETAILS),
+                Role.USER.name(), view.online(CacheKey.USER_DETAILS)
+        );
     }
 
+    // The lists below are shared and immutable: a read allocates nothing until presence changes, and the counts
+    // come straight from the registry's counters
     @Override
     public List<UserActivityDTO> getAllOnlineUsers() {
-        return updateSessionStatus(new ArrayList<>(userDetailsCache.asMap().values()));
+        return presenceRegistry.view().online(CacheKey.ALL_USERS);
     }
 
     @Override
     public List<UserRoleCountDTO> getOnlineUsersCountByRole() {
-        return Arrays.asList(
-                new UserRoleCountDTO(Role.ADMIN.name(), getOnlineAdmins().size()),
-                new UserRoleCountDTO(Role.LISTENER.name(), getOnlineListeners().size()),
-                new UserRoleCountDTO(Role.USER.name(), getOnlineUsers().size())
-        );
+        return presenceRegistry.roleCounts();
     }
 
     @Override
     public List<UserActivityDTO> getOnlineAdmins() {
-        List<UserActivityDTO> admins = roleBasedDetailsCache.getIfPresent(Role.ADMIN.name());
-        return admins != null ? updateSessionStatus(admins) : new ArrayList<>();
+        return presenceRegistry.view().online(CacheKey.ADMIN_DETAILS);
     }
 
     @Override
     public List<UserActivityDTO> getOnlineListeners() {
-        List<UserActivityDTO> listeners = roleBasedDetailsCache.getIfPresent(Role.LISTENER.name());
-        return listeners != null ? updateSessionStatus(listeners) : new ArrayList<>();
+        return presenceRegistry.view().online(CacheKey.LISTENER_DETAILS);
     }
 
     @Override
     public List<UserActivityDTO> getOnlineUsers() {
-        List<UserActivityDTO> users = roleBasedDetailsCache.getIfPresent(Role.USER.name());
-        return users != null ? updateSessionStatus(users) : new ArrayList<>();
+        return presenceRegistry.view().online(CacheKey.USER_DETAILS);
     }
 
 
@@ -473,24 +425,24 @@ public class UserActivityServiceImpl implements UserActivityService {
     public void updateLastSeenStatus(String email) {
         User user = userRepository.findByEmail(email);
         if (user != null) {
-            user.setIsActive(true);
-            user.setLastSeen(LocalDateTime.now());
-            userRepository.save(user);
-            lastSeenCache.put(email, user.getLastSeen());
-
-            UserActivityDTO dto = UserActivityMapper.toUserActivityDTO(user);
-            updateCaches(email, dto, Role.valueOf(user.getRole().name()));
+            // An active user only needs the new time, which the tracker writes with the next flush
+            if (!Boolean.TRUE.equals(user.getIsActive())) {
+                user.setIsActive(true);
+                user.setLastSeen(LocalDateTime.now());
+                userRepository.save(user);
+            }
+            lastSeenTracker.touch(user.getUserId());
+            lastSeenCache.put(email, LocalDateTime.now());
 
-            // Throttle broadcasts
-            if (Duration.between(lastBroadcast, LocalDateTime.now()).toMillis() > BROADCAST_THROTTLE_MS) {
+            // Most calls only confirm what the lists already say; the dispatcher coalesces the rest
+            if (updateCaches(email, user)) {
                 broadcastUpdates();
-                lastBroadcast = LocalDateTime.now();
             }
         }
     }
 
 
-    @Async
+    // Runs on every authenticated request: memory only, no database access and no task hand-off
     @Override
     public void updateLastSeen(String email) {
         LocalDateTime now = LocalDateTime.now();
@@ -498,6 +450,7 @@ public class UserActivityServiceImpl implements UserActivityService {
 
         UserActivityDTO dto = userDetailsCache.getIfPresent(email);
         if (dto != null) {
+            lastSeenTracker.touch(dto.getUserId());
             userDetailsCache.put(email, dto);
         }
     }
@@ -508,54 +461,63 @@ public class UserActivityServiceImpl implements UserActivityService {
         User user = userRepository.findByEmail(email);
         if (user != null && user.getIsActive()) {
             user.setIsActive(false);
+            user.setLastSeen(lastSeenTracker.latest(user.getUserId(), user.getLastSeen()));
             userRepository.save(user);
-            lastSeenCache.invalidate(email);
-            userDetailsCache.invalidate(email);
-            roleBasedDetailsCache.asMap().values().forEach(list ->
-                    list.removeIf(dto -> dto.getUserId().equals(user.getUserId())));
+            synchronized (this) {
+                lastSeenCache.invalidate(email);
+                userDetailsCache.invalidate(email);
+                UserActivityDTO removed = presenceRegistry.member(user.getUserId());
+                Role role = presenceRegistry.leave(user.getUserId());
+                if (role != null) {
+                    publishPresenceChange(PresenceChangeType.LEAVE, removed, role);
+                }
+            }
             broadcastUpdates();
         }
     }
     @Override
     public void broadcastUpdates() {
-        CompletableFuture.runAsync(() -> {
-            broadcastAllUsers();
-            broadcastRoleCounts();
-            broadcastAdminDetails();
-            broadcastListenerDetails();
-            broadcastUserDetails();
-        });
+        broadcastAllUsers();
+        broadcastRoleCounts();
+        broadcastAdminDetails();
+        broadcastListenerDetails();
+        broadcastUserDetails();
     }
-    private synchronized void updateCaches(String email, UserActivityDTO dto, Role role) {
-        try {
-            synchronized (this) {
-                userDetailsCache.put(email, dto);
-
-                CacheKey cacheKey = CacheKey.fromRole(role);
-                List<UserActivityDTO> roleUsers = roleBasedDetailsCache.getIfPresent(cacheKey.getCacheKey());
-                if (roleUsers == null) {
-                    roleUsers = new CopyOnWriteArrayList<>();
-                    roleBasedDetailsCache.put(cacheKey.getCacheKey(), roleUsers);
-                }
-
-                roleUsers.removeIf(existing -> existing.getUserId().equals(dto.getUserId()));
-                roleUsers.add(dto);
 
-                lastSeenCache.put(email, LocalDateTime.now());
-
-                log.debug("Updated all caches for user: {} with cache key: {}", email, cacheKey);
+    // Returns whether the online lists changed
+    private synchronized boolean updateCaches(String email, User user) {
+        try {
+            int userId = user.getUserId();
+            Role role = user.getRole();
+            userDetailsCache.put(email, UserActivityMapper.toUserActivityDTO(user, presenceRegistry.isInSession(userId)));
+            lastSeenCache.put(email, LocalDateTime.now());
+
+            // O(1): session flags that changed meanwhile are left to the next tick
+            Role previousRole = presenceRegistry.roleOf(userId);
+            boolean changed = presenceRegistry.join(userId, user.getAnonymousName(), role);
+            UserActivityDTO dto = presenceRegistry.member(userId);
+            if (previousRole == null) {
+                publishPresenceChange(PresenceChangeType.JOIN, dto, role);
+            } else if (previousRole != role) {
+                // Still online, so nothing changes for ALL_USERS
+                publishPresenceChange(CacheKey.fromRole(previousRole), PresenceChangeType.LEAVE, dto);
+                publishPresenceChange(CacheKey.fromRole(role), PresenceChangeType.JOIN, dto);
             }
+
+            log.debug("Updated all caches for user: {} with role: {}", email, role);
+            return changed;
         } catch (Exception e) {
             log.error("Failed to update caches for user: {}", email, e);
             initializeCaches();
+            return true;
         }
     }
 
 
     public void logCacheStats() {
-        log.info("Cache stats - User Details: {}, Role Based: {}, Last Seen: {}",
-                userDetailsCache.stats(), roleBasedDetailsCache.stats(), lastSeenCache.stats());
+        log.info("Cache stats - User Details: {}, Online by role: {}, Last Seen: {}",
+                userDetailsCache.stats(), presenceRegistry.roleCounts(), lastSeenCache.stats());
         log.info("Cache contents - User Details: {}, Role Based: {}, Last Seen: {}",
-                userDetailsCache.asMap(), roleBasedDetailsCache.asMap(), lastSeenCache.asMap());
+                userDetailsCache.asMap(), onlineByRole(), lastSeenCache.asMap());
     }
 }
\ No newline at end of file
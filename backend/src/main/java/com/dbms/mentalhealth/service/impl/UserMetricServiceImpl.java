@@ -18,11 +18,6 @@ public class UserMetricServiceImpl implements UserMetricService {
         this.userMetricsRepository = userMetricsRepository;
     }
 
-    @Override
-    public void incrementMessageCount(String username, Integer count) {
-        userMetricsRepository.incrementMessageCount(username, count);
-    }
-
     @Override
     @Transactional
     public void setLastSessionDate(User user, LocalDateTime lastSessionDate) {
@@ -1,4 +1,5 @@
 package com.dbms.mentalhealth.service.impl;
+import com.dbms.mentalhealth.dto.user.ChatParticipant;
 import com.dbms.mentalhealth.dto.user.request.UserLoginRequestDTO;
 import com.dbms.mentalhealth.dto.user.request.UserRegistrationRequestDTO;
 import com.dbms.mentalhealth.dto.user.request.UserUpdateRequestDTO;
@@ -38,6 +39,7 @@ import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
+import com.github.benmanes.caffeine.cache.Cache;
 import java.time.LocalDateTime;
 import java.util.*;
 
@@ -57,8 +59,9 @@ public class UserServiceImpl implements UserService, UserDetailsService {
     private final SessionRepository sessionRepository;
     private final AppointmentRepository appointmentRepository;
     private final UserMetricsRepository userMetricsRepository;
+    private final Cache<String, ChatParticipant> chatParticipantCache;
 
-    public UserServiceImpl(UserRepository userRepository, UserActivityService userActivityService, RefreshTokenService refreshTokenService, JwtUtils jwtUtils, @Lazy AuthenticationManager authenticationManager, PasswordEncoder passwordEncoder, EmailVerificationRepository emailVerificationRepository, EmailService emailService, SessionRepository sessionRepository, AppointmentRepository appointmentRepository, UserMetricsRepository userMetricsRepository) {
+    public UserServiceImpl(UserRepository userRepository, UserActivityService userActivityService, RefreshTokenService refreshTokenService, JwtUtils jwtUtils, @Lazy AuthenticationManager authenticationManager, PasswordEncoder passwordEncoder, EmailVerificationRepository emailVerificationRepository, EmailService emailService, SessionRepository sessionRepository, AppointmentRepository appointmentRepository, UserMetricsRepository userMetricsRepository, Cache<String, ChatParticipant> chatParticipantCache) {
         this.userRepository = userRepository;
         this.jwtUtils = jwtUtils;
         this.authenticationManager = authenticationManager;
@@ -70,6 +73,7 @@ public class UserServiceImpl implements UserService, UserDetailsService {
         this.sessionRepository = sessionRepository;
         this.appointmentRepository = appointmentRepository;
         this.userMetricsRepository = userMetricsRepository;
+        this.chatParticipantCache = chatParticipantCache;
     }
 
     @Override
@@ -209,6 +213,7 @@ public class UserServiceImpl implements UserService, UserDetailsService {
         }
 
         userRepository.deleteById(userId);
+        chatParticipantCache.invalidate(user.get().getAnonymousName());
     }
 
     @Override
@@ -250,6 +255,7 @@ public class UserServiceImpl implements UserService, UserDetailsService {
     private void updateUserAsAdmin(Integer userId, UserUpdateRequestDTO userUpdateDTO) {
         User userToUpdate = userRepository.findById(userId)
                 .orElseThrow(() -> new EntityNotFoundException("User not found with ID: " + userId));
+        String previousAnonymousName = userToUpdate.getAnonymousName();
 
         // Validate and update role
         if (userUpdateDTO.getRole() != null) {
@@ -276,6 +282,7 @@ public class UserServiceImpl implements UserService, UserDetailsService {
         }
 
         userRepository.save(userToUpdate);
+        chatParticipantCache.invalidate(previousAnonymousName);
     }
 
     private void updateAnonymousName(Integer userId, String anonymousName) {
@@ -287,8 +294,10 @@ public class UserServiceImpl implements UserService, UserDetailsService {
             throw new AnonymousNameAlreadyInUseException("Anonymous name is already in use: " + anonymousName);
         }
 
+        String previousAnonymousName = userToUpdate.getAnonymousName();
         userToUpdate.setAnonymousName(anonymousName);
         userRepository.save(userToUpdate);
+        chatParticipantCache.invalidate(previousAnonymousName);
     }
 
     public void changePasswordById(Integer userId, String oldPassword, String newPassword) {
@@ -404,7 +413,6 @@ public class UserServiceImpl implements UserService, UserDetailsService {
 
 
     @Override
-    @Transactional
     public void updateUserActivity(String email) {
         userActivityService.updateLastSeen(email);
     }
@@ -435,6 +443,7 @@ public class UserServiceImpl implements UserService, UserDetailsService {
             throw new IllegalArgumentException("Invalid action: " + action);
         }
         userRepository.save(user);
+        chatParticipantCache.invalidate(user.getAnonymousName());
     }
 
     @Transactional(readOnly = true)
@@ -0,0 +1,138 @@
+package com.dbms.mentalhealth.sse;
+
+import com.dbms.mentalhealth.config.SseBroadcastConfig;
+import com.dbms.mentalhealth.enums.BroadcastTopic;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Coalesces SSE broadcasts. Callers only mark a topic dirty; one tick of {@code sse.broadcast.tick-ms}
+ * after the first mark, the dispatcher thread runs each dirty topic's publisher once, so any number of
+ * changes within the tick cost one event per topic. Publishers read the current state when they run.
+ * <p>
+ * Reports marks and dispatches per topic (their ratio is the coalescing ratio) and the time from the
+ * first mark of a topic to the end of its dispatch.
+ */
+@Slf4j
+@Component
+public class SseBroadcastDispatcher {
+
+    private static final BroadcastTopic[] TOPICS = BroadcastTopic.values();
+
+    private final SseBroadcastConfig config;
+    private final ScheduledExecutorService executor;
+    private final Map<BroadcastTopic, Runnable> publishers = new EnumMap<>(BroadcastTopic.class);
+    private final AtomicBoolean[] dirty = new AtomicBoolean[TOPICS.length];
+    // nanoTime of the first mark since the last dispatch, per topic
+    private final AtomicLongArray firstMarked = new AtomicLongArray(TOPICS.length);
+    private final AtomicBoolean tickScheduled = new AtomicBoolean();
+    private final AtomicLong totalMarks = new AtomicLong();
+    private final AtomicLong totalDispatches = new AtomicLong();
+    private final Map<BroadcastTopic, Counter> marks = new EnumMap<>(BroadcastTopic.class);
+    private final Map<BroadcastTopic, Counter> dispatches = new EnumMap<>(BroadcastTopic.class);
+    private final Map<BroadcastTopic, Timer> latencies = new EnumMap<>(BroadcastTopic.class);
+
+    public SseBroadcastDispatcher(SseBroadcastConfig config, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.executor = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("SseBroadcast-"));
+        for (BroadcastTopic topic : TOPICS) {
+            dirty[topic.ordinal()] = new AtomicBoolean();
+            String tag = topic.name().toLowerCase();
+            marks.put(topic, Counter.builder("sse.broadcast.marks")
+                    .description("Changes that asked for a broadcast of the topic")
+                    .tag("topic", tag)
+                    .register(meterRegistry));
+            dispatches.put(topic, Counter.builder("sse.broadcast.dispatches")
+                    .description("Broadcasts actually sent for the topic")
+                    .tag("topic", tag)
+                    .register(meterRegistry));
+            latencies.put(topic, Timer.builder("sse.broadcast.dispatch.latency")
+                    .description("Time from the first change of a tick to the end of the topic's broadcast")
+                    .tag("topic", tag)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry));
+        }
+        Gauge.builder("sse.broadcast.coalescing.ratio", this, SseBroadcastDispatcher::coalescingRatio)
+                .description("Changes per broadcast sent, over all topics since startup")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Sets the code that broadcasts the current state of a topic. Runs on the dispatcher thread.
+     */
+    public void register(BroadcastTopic topic, Runnable publisher) {
+        synchronized (publishers) {
+            publishers.put(topic, publisher);
+        }
+    }
+
+    /**
+     * Asks for a broadcast of the topic in the next tick. Cheap and non-blocking.
+     */
+    public void markDirty(BroadcastTopic topic) {
+        marks.get(topic).increment();
+        totalMarks.incrementAndGet();
+        if (dirty[topic.ordinal()].compareAndSet(false, true)) {
+            firstMarked.set(topic.ordinal(), System.nanoTime());
+            if (tickScheduled.compareAndSet(false, true)) {
+                try {
+                    executor.schedule(this::tick, config.getTickMs(), TimeUnit.MILLISECONDS);
+                } catch (RuntimeException e) {
+                    // Shutting down
+                    tickScheduled.set(false);
+                }
+            }
+        }
+    }
+
+    private void tick() {
+        // Marks from here on schedule the next tick; those for topics not yet handled still go out in this one
+        tickScheduled.set(false);
+        for (BroadcastTopic topic : TOPICS) {
+            if (!dirty[topic.ordinal()].compareAndSet(true, false)) {
+                continue;
+            }
+            long marked = firstMarked.get(topic.ordinal());
+            Runnable publisher;
+            synchronized (publishers) {
+                publisher = publishers.get(topic);
+            }
+            if (publisher == null) {
+                continue;
+            }
+            try {
+                publisher.run();
+            } catch (Exception e) {
+                log.warn("Broadcast of {} failed: {}", topic, e.getMessage(), e);
+            }
+            dispatches.get(topic).increment();
+            totalDispatches.incrementAndGet();
+            latencies.get(topic).record(System.nanoTime() - marked, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private double coalescingRatio() {
+        long sent = totalDispatches.get();
+        return sent == 0 ? 0 : (double) totalMarks.get() / sent;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
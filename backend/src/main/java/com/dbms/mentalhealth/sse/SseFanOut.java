@@ -0,0 +1,322 @@
+package com.dbms.mentalhealth.sse;
+
+import com.dbms.mentalhealth.config.SseWriterConfig;
+import com.dbms.mentalhealth.enums.SseDelivery;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.catalina.connector.ClientAbortException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Sends events to SSE subscribers without blocking the caller. The payload is serialized once, with the
+ * application's {@link ObjectMapper} so the JSON is the same as {@code SseEmitter.event().data(...)}
+ * produced, into an {@link SseFrame}; every subscriber then gets the same bytes. Each subscriber has a
+ * bounded queue ({@link SseSubscriber}) drained by a small pool of writer threads, so a stalled client ties
+ * up at most one writer and never the broadcasting thread.
+ * <p>
+ * A watchdog enforces {@code sse.writer.send-time-limit-ms} whatever the delivery policy. A write running
+ * over it closes its subscriber and adds a writer thread until the write returns, since the stuck thread
+ * cannot be freed from here; a subscriber whose oldest frame has waited longer than the limit while a writer
+ * was idle is closed as too slow.
+ * <p>
+ * Subscribers are closed here and nowhere else: on completion, timeout or error of the emitter, on a failed
+ * or stalled write, and when a broadcast finds a QUEUE subscriber's queue full. Reports the size of each
+ * encoded frame, writes, the time frames wait in the queues ({@code sse.subscriber.lag}), the age of the
+ * oldest frame still waiting, stalled subscribers and the writers standing in for stuck ones.
+ */
+@Slf4j
+@Component
+public class SseFanOut {
+
+    private final ObjectMapper objectMapper;
+    private final SseWriterConfig config;
+    private final ThreadPoolExecutor writers;
+    private final ScheduledExecutorService watchdog;
+    // Writers added for stalled writes that have not returned yet; guarded by this
+    private int stalledWriters;
+    private final Map<SseEmitter, SseSubscriber> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger queuedFrames = new AtomicInteger();
+    private final DistributionSummary frameSize;
+    private final Counter writes;
+    private final Counter failedWrites;
+    private final Counter coalescedFrames;
+    private final Counter rejectedFrames;
+    private final Counter stalledWrites;
+    private final Counter stalledQueues;
+    private final Map<SseDelivery, Timer> lags = new EnumMap<>(SseDelivery.class);
+
+    public SseFanOut(ObjectMapper objectMapper, SseWriterConfig config, MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.config = config;
+        int threads = Math.max(1, config.getThreads());
+        this.writers = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new CustomizableThreadFactory("SseWriter-"));
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("SseWatchdog-"));
+        long checkIntervalMs = Math.max(100, config.getSendTimeLimitMs() / 4);
+        watchdog.scheduleWithFixedDelay(this::closeStalled, checkIntervalMs, checkIntervalMs, TimeUnit.MILLISECONDS);
+        this.frameSize = DistributionSummary.builder("sse.fanout.frame.size")
+                .description("Size of each encoded SSE frame")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.writes = Counter.builder("sse.fanout.writes")
+                .description("Encoded SSE frames written to a subscriber")
+                .register(meterRegistry);
+        this.failedWrites = Counter.builder("sse.fanout.writes.failed")
+                .description("Writes that failed and dropped the subscriber")
+                .register(meterRegistry);
+        this.coalescedFrames = Counter.builder("sse.subscriber.coalesced")
+                .description("Frames that replaced a queued frame of the same event")
+                .register(meterRegistry);
+        this.rejectedFrames = Counter.builder("sse.subscriber.rejected")
+                .description("Frames refused because the subscriber's queue was full")
+                .register(meterRegistry);
+        this.stalledWrites = Counter.builder("sse.subscriber.stalled")
+                .description("Subscribers closed because a write or a queued frame ran over the send time limit")
+                .tag("reason", "write")
+                .register(meterRegistry);
+        this.stalledQueues = Counter.builder("sse.subscriber.stalled")
+                .description("Subscribers closed because a write or a queued frame ran over the send time limit")
+                .tag("reason", "queue")
+                .register(meterRegistry);
+        for (SseDelivery delivery : SseDelivery.values()) {
+            lags.put(delivery, Timer.builder("sse.subscriber.lag")
+                    .description("Time from queueing a frame to writing it to the subscriber")
+                    .tag("delivery", delivery.name().toLowerCase())
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry));
+        }
+        Gauge.builder("sse.subscribers", subscribers, Map::size)
+                .description("Open SSE subscribers")
+                .register(meterRegistry);
+        Gauge.builder("sse.subscriber.queued", queuedFrames, AtomicInteger::get)
+                .description("Frames waiting in subscriber queues")
+                .register(meterRegistry);
+        Gauge.builder("sse.writers.stalled", this, SseFanOut::stalledWriters)
+                .description("Writer threads still stuck in a write the watchdog gave up on")
+                .register(meterRegistry);
+        TimeGauge.builder("sse.subscriber.lag.max", this, TimeUnit.NANOSECONDS, SseFanOut::maxLagNanos)
+                .description("Age of the oldest frame waiting in any subscriber queue")
+                .register(meterRegistry);
+    }
+
+    public SseFrame encode(String name, Object data) {
+        return encode(null, name, data);
+    }
+
+    /**
+     * Encodes an event. Strings are sent as they are, anything else as JSON.
+     */
+    public SseFrame encode(String id, String name, Object data) {
+        String text;
+        if (data instanceof String string) {
+            text = string;
+        } else {
+            try {
+                text = objectMapper.writeValueAsString(data);
+            } catch (JsonProcessingException e) {
+                throw new UncheckedIOException("Could not encode SSE event " + name, e);
+            }
+        }
+        SseFrame frame = SseFrame.of(id, name, text);
+        frameSize.record(frame.size());
+        return frame;
+    }
+
+    /**
+     * Gives the emitter a queue with the delivery policy and takes over its completion, timeout and error
+     * callbacks; onClose runs once when the subscriber closes, to drop it from the caller's collections.
+     */
+    public SseSubscriber subscribe(SseEmitter emitter, SseDelivery delivery, Consumer<SseSubscriber> onClose) {
+        SseSubscriber subscriber = new SseSubscriber(emitter, delivery, Math.max(1, config.getQueueCapacity()), this, onClose);
+        subscribers.put(emitter, subscriber);
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(e -> subscriber.close());
+        return subscriber;
+    }
+
+    /**
+     * Queues the frame for the subscriber of the emitter. Returns false if the emitter has no open
+     * subscriber or its queue is full.
+     */
+    public boolean send(SseEmitter emitter, SseFrame frame) {
+        SseSubscriber subscriber = subscribers.get(emitter);
+        return subscriber != null && subscriber.offer(frame);
+    }
+
+    /**
+     * Queues the frame for every subscriber and returns how many took it. A subscriber whose queue is full
+     * has fallen too far behind to catch up and is closed; its client reconnects and starts over. Subscribers
+     * found closed are removed from the collection.
+     */
+    public int broadcast(Collection<SseSubscriber> subscribers, SseFrame frame) {
+        int queued = 0;
+        for (SseSubscriber subscriber : subscribers) {
+            if (subscriber.offer(frame)) {
+                queued++;
+            } else if (subscriber.isOpen()) {
+                log.debug("Subscriber fell behind on {}, closing it", frame.getName());
+                subscriber.close();
+            } else {
+                // Closed before the caller added it, so its close callback found nothing to remove
+                subscribers.remove(subscriber);
+            }
+        }
+        return queued;
+    }
+
+    boolean submit(Runnable drain) {
+        try {
+            writers.execute(drain);
+            return true;
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            return false;
+        }
+    }
+
+    // Runs on a writer thread; closes the subscriber and returns false if the write failed
+    boolean write(SseSubscriber subscriber, SseFrame frame, long queuedAt) {
+        try {
+            subscriber.getEmitter().send(frame.items());
+        } catch (Exception e) {
+            failedWrites.increment();
+            if (isDisconnect(e)) {
+                log.debug("Client disconnected from {}: {}", frame.getName(), e.getMessage());
+            } else {
+                log.warn("Error sending {}: {}", frame.getName(), e.getMessage());
+            }
+            subscriber.close();
+            return false;
+        }
+        writes.increment();
+        lags.get(subscriber.getDelivery()).record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+        return true;
+    }
+
+    void queued(int delta) {
+        queuedFrames.addAndGet(delta);
+    }
+
+    void coalesced() {
+        coalescedFrames.increment();
+    }
+
+    void rejected() {
+        rejectedFrames.increment();
+    }
+
+    void closed(SseSubscriber subscriber) {
+        subscribers.remove(subscriber.getEmitter(), subscriber);
+    }
+
+    void complete(SseEmitter emitter) {
+        try {
+            emitter.complete();
+        } catch (Exception e) {
+            log.debug("Error while completing emitter: {}", e.getMessage());
+        }
+    }
+
+    // Runs on the watchdog thread
+    private void closeStalled() {
+        try {
+            long now = System.nanoTime();
+            long limit = TimeUnit.MILLISECONDS.toNanos(config.getSendTimeLimitMs());
+            for (SseSubscriber subscriber : subscribers.values()) {
+                long started = subscriber.writeStartedAt();
+                if (started != 0 && now - started > limit && subscriber.markStalled(started)) {
+                    stalledWrites.increment();
+                    addWriter();
+                    log.warn("SSE write has run over {} ms; closing the subscriber", config.getSendTimeLimitMs());
+                    subscriber.close();
+                }
+            }
+            // Frames held up behind stuck writes are not their subscriber's fault
+            if (writers.getActiveCount() >= writers.getMaximumPoolSize()) {
+                return;
+            }
+            for (SseSubscriber subscriber : subscribers.values()) {
+                long queuedAt = subscriber.oldestQueuedAt();
+                if (queuedAt != 0 && now - queuedAt > limit) {
+                    stalledQueues.increment();
+                    log.debug("SSE subscriber is more than {} ms behind, closing it", config.getSendTimeLimitMs());
+                    subscriber.close();
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error checking SSE subscribers for stalls", e);
+        }
+    }
+
+    // Keeps config.getThreads() writers free while stalled writes hold others
+    private synchronized void addWriter() {
+        stalledWriters++;
+        int size = Math.max(1, config.getThreads()) + stalledWriters;
+        writers.setMaximumPoolSize(size);
+        writers.setCorePoolSize(size);
+    }
+
+    // A write the watchdog gave up on has returned; its writer goes back to being a regular one
+    synchronized void stalledWriteReturned() {
+        stalledWriters--;
+        int size = Math.max(1, config.getThreads()) + stalledWriters;
+        writers.setCorePoolSize(size);
+        writers.setMaximumPoolSize(size);
+    }
+
+    private synchronized int stalledWriters() {
+        return stalledWriters;
+    }
+
+    private double maxLagNanos() {
+        long now = System.nanoTime();
+        long max = 0;
+        for (SseSubscriber subscriber : subscribers.values()) {
+            long queuedAt = subscriber.oldestQueuedAt();
+            if (queuedAt != 0) {
+                max = Math.max(max, now - queuedAt);
+            }
+        }
+        return max;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdownNow();
+        writers.shutdownNow();
+    }
+
+    private static boolean isDisconnect(Exception e) {
+        if (e instanceof ClientAbortException || e instanceof IllegalStateException) {
+            // IllegalStateException: the emitter was already completed or timed out
+            return true;
+        }
+        String message = e.getMessage();
+        return message != null && (message.contains("Broken pipe") || message.contains("Connection reset by peer"));
+    }
+}
@@ -0,0 +1,57 @@
+package com.dbms.mentalhealth.sse;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+/**
+ * One server-sent event, encoded once: the complete {@code id:}/{@code event:}/{@code data:} frame as bytes.
+ * The same instance is written to every subscriber; the byte array converter copies it to the response as is.
+ */
+public final class SseFrame {
+    private final String name;
+    private final byte[] bytes;
+    // Shared by all subscribers, so a write allocates nothing per frame
+    private final Set<DataWithMediaType> items;
+
+    SseFrame(String name, byte[] bytes) {
+        this.name = name;
+        this.bytes = bytes;
+        this.items = Set.of(new DataWithMediaType(bytes, MediaType.TEXT_PLAIN));
+    }
+
+    // Same layout as SseEmitter.event(): id, event, then the data, one data: line per line of it
+    static SseFrame of(String id, String name, String data) {
+        StringBuilder frame = new StringBuilder(data.length() + 64);
+        if (id != null) {
+            frame.append("id:").append(id).append('\n');
+        }
+        if (name != null) {
+            frame.append("event:").append(name).append('\n');
+        }
+        frame.append("data:").append(data.replace("\n", "\ndata:")).append("\n\n");
+        return new SseFrame(name, frame.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int size() {
+        return bytes.length;
+    }
+
+    /**
+     * What {@code ResponseBodyEmitter.send(Set)} receives for this frame.
+     */
+    public Set<DataWithMediaType> items() {
+        return items;
+    }
+
+    @Override
+    public String toString() {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,230 @@
+package com.dbms.mentalhealth.sse;
+
+import com.dbms.mentalhealth.enums.SseDelivery;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * One SSE connection with its own bounded outbound queue. Offering an event only queues it; a writer thread
+ * of {@link SseFanOut} drains the queue in order, so a client that reads slowly delays no one but itself.
+ * Created by {@link SseFanOut#subscribe}, which also closes it when the connection ends or its writes stall.
+ * <p>
+ * The emitter's {@code send} and {@code complete} share one monitor, so a subscriber closed during a write
+ * leaves completing the emitter to the writer, and closing never waits for a stuck client.
+ */
+public final class SseSubscriber {
+    // Events written per turn on a writer thread before the other subscribers get theirs
+    private static final int DRAIN_BATCH = 16;
+
+    // Marks a write the fan-out's watchdog found stalled and replaced the writer of
+    static final long STALLED = Long.MIN_VALUE;
+
+    // onOutcome may be null
+    private record Queued(SseFrame frame, long queuedAt, Consumer<Boolean> onOutcome) {
+        void outcome(boolean written) {
+            if (onOutcome != null) {
+                onOutcome.accept(written);
+            }
+        }
+    }
+
+    private final SseEmitter emitter;
+    private final SseDelivery delivery;
+    private final int capacity;
+    private final SseFanOut fanOut;
+    private final Consumer<SseSubscriber> onClose;
+    // Guarded by itself; a linked list so a LATEST frame can be replaced where it stands
+    private final LinkedList<Queued> queue = new LinkedList<>();
+    // Set while a drain of this subscriber is submitted or running, so at most one writes to the emitter
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final AtomicBoolean completed = new AtomicBoolean();
+    // nanoTime the write in progress started, STALLED once the watchdog gave up on it, 0 while idle
+    private final AtomicLong writeStartedAt = new AtomicLong();
+
+    SseSubscriber(SseEmitter emitter, SseDelivery delivery, int capacity, SseFanOut fanOut,
+                  Consumer<SseSubscriber> onClose) {
+        this.emitter = emitter;
+        this.delivery = delivery;
+        this.capacity = capacity;
+        this.fanOut = fanOut;
+        this.onClose = onClose;
+    }
+
+    public SseEmitter getEmitter() {
+        return emitter;
+    }
+
+    public SseDelivery getDelivery() {
+        return delivery;
+    }
+
+    public boolean isOpen() {
+        return !closed.get();
+    }
+
+    /**
+     * Queues the frame for writing. A LATEST subscriber replaces any queued frame with the same event name,
+     * keeping its place in line. Returns false if the subscriber is closed or its queue is full; the frame
+     * is then dropped and the subscriber left as it is.
+     */
+    public boolean offer(SseFrame frame) {
+        return offer(frame, null);
+    }
+
+    /**
+     * Queues the frame like {@link #offer(SseFrame)}, and once it is accepted, calls onOutcome exactly once:
+     * with true after the frame was written, with false if the write failed, the subscriber closed first
+     * or a newer LATEST frame replaced it. It runs on a writer thread or the thread closing the subscriber.
+     */
+    public boolean offer(SseFrame frame, Consumer<Boolean> onOutcome) {
+        Queued replaced;
+        synchronized (queue) {
+            // Checked under the lock so close() drops everything queued before it
+            if (closed.get()) {
+                return false;
+            }
+            replaced = delivery == SseDelivery.LATEST ? replace(frame, onOutcome) : null;
+            if (replaced == null) {
+                if (queue.size() >= capacity) {
+                    fanOut.rejected();
+                    return false;
+                }
+                queue.addLast(new Queued(frame, System.nanoTime(), onOutcome));
+            }
+        }
+        if (replaced != null) {
+            fanOut.coalesced();
+            replaced.outcome(false);
+            return true;
+        }
+        fanOut.queued(1);
+        scheduleDrain();
+        return true;
+    }
+
+    // Keeps the time the replaced frame was queued: the client has been behind on that event since then.
+    // Returns the replaced frame, or null if none had the name
+    private Queued replace(SseFrame frame, Consumer<Boolean> onOutcome) {
+        for (ListIterator<Queued> it = queue.listIterator(); it.hasNext(); ) {
+            Queued queued = it.next();
+            if (Objects.equals(queued.frame().getName(), frame.getName())) {
+                it.set(new Queued(frame, queued.queuedAt(), onOutcome));
+                return queued;
+            }
+        }
+        return null;
+    }
+
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true) && !fanOut.submit(this::drain)) {
+            close();
+        }
+    }
+
+    private void drain() {
+        for (int written = 0; written < DRAIN_BATCH; written++) {
+            Queued next;
+            synchronized (queue) {
+                next = queue.pollFirst();
+            }
+            if (next == null) {
+                draining.set(false);
+                // An offer between the poll and the reset found the flag still set
+                synchronized (queue) {
+                    if (queue.isEmpty()) {
+                        return;
+                    }
+                }
+                scheduleDrain();
+                return;
+            }
+            fanOut.queued(-1);
+            if (!write(next) || closed.get()) {
+                return;
+            }
+        }
+        // Back of the line, behind subscribers that are waiting
+        draining.set(false);
+        scheduleDrain();
+    }
+
+    // Returns whether the frame was written
+    private boolean write(Queued next) {
+        // Published before closed is read, and close() reads them the other way round, so one of the two
+        // sees the other and the emitter is completed once no write holds it
+        writeStartedAt.set(System.nanoTime());
+        boolean written = !closed.get() && fanOut.write(this, next.frame(), next.queuedAt());
+        if (writeStartedAt.getAndSet(0) == STALLED) {
+            fanOut.stalledWriteReturned();
+        }
+        if (closed.get()) {
+            completeEmitter();
+        }
+        next.outcome(written);
+        return written;
+    }
+
+    /**
+     * The nanoTime the write in progress started, or 0 if none is (or the watchdog already gave up on it).
+     */
+    long writeStartedAt() {
+        long started = writeStartedAt.get();
+        return started == STALLED ? 0 : started;
+    }
+
+    /**
+     * Marks the write that started at the given time as stalled, once; returns false if it has returned.
+     */
+    boolean markStalled(long started) {
+        return writeStartedAt.compareAndSet(started, STALLED);
+    }
+
+    /**
+     * The nanoTime the oldest queued frame was offered, or 0 if nothing is queued.
+     */
+    long oldestQueuedAt() {
+        synchronized (queue) {
+            Queued oldest = queue.peekFirst();
+            return oldest == null ? 0 : oldest.queuedAt();
+        }
+    }
+
+    /**
+     * Drops the queued frames, runs the close callback given to {@link SseFanOut#subscribe} and completes
+     * the emitter. Only the first call does anything.
+     */
+    public void close() {
+        List<Queued> dropped;
+        synchronized (queue) {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            dropped = new ArrayList<>(queue);
+            queue.clear();
+        }
+        fanOut.queued(-dropped.size());
+        fanOut.closed(this);
+        onClose.accept(this);
+        if (writeStartedAt.get() == 0) {
+            completeEmitter();
+        }
+        for (Queued queued : dropped) {
+            queued.outcome(false);
+        }
+    }
+
+    private void completeEmitter() {
+        if (completed.compareAndSet(false, true)) {
+            fanOut.complete(emitter);
+        }
+    }
+}
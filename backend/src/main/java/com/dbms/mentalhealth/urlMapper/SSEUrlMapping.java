@@ -11,6 +11,7 @@ public class SSEUrlMapping {
     public static final String SSE_ONLINE_LISTENERS = BASE_URL + "/onlineListeners";
     public static final String SSE_ONLINE_ADMINS = BASE_URL + "/onlineAdmins";
     public static final String SSE_ONLINE_USERS = BASE_URL + "/onlineUsers";
+    public static final String SSE_PRESENCE_SNAPSHOT = BASE_URL + "/presenceSnapshot/{topic}";//for delta subscribers that missed a version
     public static final String SSE_ACTIVE_SESSIONS = BASE_URL + "/activeSessions";
     public static final String HEARTBEAT = BASE_URL + "/heartbeat";
 }
@@ -0,0 +1,130 @@
+package com.dbms.mentalhealth.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Multi-pattern matcher (Aho-Corasick) compiled into a dense automaton.
+ * Works on text that is already reduced to lowercase ASCII letters, digits and single spaces,
+ * so every input character costs one array lookup regardless of how many patterns there are.
+ */
+public final class AhoCorasickMatcher {
+
+    private static final int ALPHABET_SIZE = 37; // a-z, 0-9, space
+
+    @FunctionalInterface
+    public interface MatchListener {
+        /**
+         * @param start   index of the first matched character
+         * @param end     index after the last matched character
+         * @param pattern index of the pattern in the list given to the constructor
+         * @return false to stop scanning
+         */
+        boolean onMatch(int start, int end, int pattern);
+    }
+
+    private final int[][] transitions;
+    private final int[][] matches;
+    private final int[] patternLengths;
+
+    public AhoCorasickMatcher(List<String> patterns) {
+        List<int[]> trie = new ArrayList<>();
+        List<List<Integer>> outputs = new ArrayList<>();
+        trie.add(newState());
+        outputs.add(new ArrayList<>());
+        patternLengths = new int[patterns.size()];
+
+        for (int p = 0; p < patterns.size(); p++) {
+            String pattern = patterns.get(p);
+            patternLengths[p] = pattern.length();
+            if (pattern.isEmpty()) {
+                continue;
+            }
+            int state = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                int symbol = symbol(pattern.charAt(i));
+                if (symbol < 0) {
+                    throw new IllegalArgumentException("Unsupported character in pattern: " + pattern);
+                }
+                if (trie.get(state)[symbol] == -1) {
+                    trie.get(state)[symbol] = trie.size();
+                    trie.add(newState());
+                    outputs.add(new ArrayList<>());
+                }
+                state = trie.get(state)[symbol];
+            }
+            outputs.get(state).add(p);
+        }
+
+        // Breadth-first pass: fill failure links and turn the trie into a complete automaton
+        int[] failure = new int[trie.size()];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        int[] root = trie.get(0);
+        for (int symbol = 0; symbol < ALPHABET_SIZE; symbol++) {
+            if (root[symbol] == -1) {
+                root[symbol] = 0;
+            } else {
+                queue.add(root[symbol]);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            int[] row = trie.get(state);
+            outputs.get(state).addAll(outputs.get(failure[state]));
+            for (int symbol = 0; symbol < ALPHABET_SIZE; symbol++) {
+                int child = row[symbol];
+                if (child == -1) {
+                    row[symbol] = trie.get(failure[state])[symbol];
+                } else {
+                    failure[child] = trie.get(failure[state])[symbol];
+                    queue.add(child);
+                }
+            }
+        }
+
+        transitions = trie.toArray(new int[0][]);
+        matches = new int[outputs.size()][];
+        for (int state = 0; state < outputs.size(); state++) {
+            matches[state] = outputs.get(state).stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    public void findMatches(CharSequence text, MatchListener listener) {
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            int symbol = symbol(text.charAt(i));
+            if (symbol < 0) {
+                state = 0;
+                continue;
+            }
+            state = transitions[state][symbol];
+            for (int pattern : matches[state]) {
+                if (!listener.onMatch(i + 1 - patternLengths[pattern], i + 1, pattern)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    public static boolean isSupported(char c) {
+        return symbol(c) >= 0;
+    }
+
+    private static int symbol(char c) {
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a';
+        }
+        if (c >= '0' && c <= '9') {
+            return 26 + (c - '0');
+        }
+        return c == ' ' ? 36 : -1;
+    }
+
+    private static int[] newState() {
+        int[] state = new int[ALPHABET_SIZE];
+        Arrays.fill(state, -1);
+        return state;
+    }
+}
@@ -0,0 +1,197 @@
+package com.dbms.mentalhealth.util;
+
+import java.text.Normalizer;
+import java.util.List;
+
+/**
+ * Local first tier of chat moderation. Settles messages that are clearly blocked (a blocklist
+ * phrase as whole words) or clearly benign (made up only of allowlist phrases) without a network
+ * call. Anything else is {@link Decision#AMBIGUOUS} and has to go to the remote moderator.
+ */
+public class ModerationPreFilter {
+
+    public enum Decision {
+        BLOCKED,
+        ALLOWED,
+        AMBIGUOUS
+    }
+
+    private final AhoCorasickMatcher blockMatcher;
+    private final AhoCorasickMatcher allowMatcher;
+    private final int maxAllowlistWords;
+
+    public ModerationPreFilter(List<String> blocklist, List<String> allowlist, int maxAllowlistWords) {
+        this.blockMatcher = new AhoCorasickMatcher(normalizePatterns(blocklist));
+        this.allowMatcher = new AhoCorasickMatcher(normalizePatterns(allowlist));
+        this.maxAllowlistWords = maxAllowlistWords;
+    }
+
+    public Decision evaluate(String message) {
+        String text = normalizeForMatching(message);
+        if (text.isEmpty()) {
+            return Decision.AMBIGUOUS;
+        }
+
+        boolean[] blocked = {false};
+        blockMatcher.findMatches(text, (start, end, pattern) -> {
+            blocked[0] = isWordBounded(text, start, end);
+            return !blocked[0];
+        });
+        if (blocked[0]) {
+            return Decision.BLOCKED;
+        }
+
+        // Text outside a-z/0-9 (other scripts, emoji) was dropped by normalization, so we cannot vouch for it
+        if (countWords(text) > maxAllowlistWords || hasUnsupportedContent(message)) {
+            return Decision.AMBIGUOUS;
+        }
+        boolean[] covered = new boolean[text.length()];
+        allowMatcher.findMatches(text, (start, end, pattern) -> {
+            if (isWordBounded(text, start, end)) {
+                for (int i = start; i < end; i++) {
+                    covered[i] = true;
+                }
+            }
+            return true;
+        });
+        for (int i = 0; i < text.length(); i++) {
+            if (!covered[i] && text.charAt(i) != ' ') {
+                return Decision.AMBIGUOUS;
+            }
+        }
+        return Decision.ALLOWED;
+    }
+
+    /**
+     * Normalized form used as the verdict cache key: case, width and whitespace differences
+     * are removed but every letter of every script is kept, so distinct messages stay distinct.
+     */
+    public static String normalizeForCache(String message) {
+        String text = Normalizer.normalize(message, Normalizer.Form.NFKC).toLowerCase();
+        StringBuilder builder = new StringBuilder(text.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = builder.length() > 0;
+            } else {
+                if (pendingSpace) {
+                    builder.append(' ');
+                    pendingSpace = false;
+                }
+                builder.append(c);
+            }
+        }
+        // Trailing punctuation ("ok!!!", "thanks.") does not change a verdict
+        int end = builder.length();
+        while (end > 0 && isTrailingPunctuation(builder.charAt(end - 1))) {
+            end--;
+        }
+        return end > 0 ? builder.substring(0, end) : builder.toString();
+    }
+
+    /**
+     * Folds text into the matcher alphabet: accents removed, common digit/symbol substitutions
+     * undone ("k1ll" -> "kill"), letter runs of three or more collapsed, everything else a single space.
+     */
+    public static String normalizeForMatching(String message) {
+        String decomposed = Normalizer.normalize(message, Normalizer.Form.NFKD).toLowerCase();
+        StringBuilder builder = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (isSubstitute(c) && (isLetterAt(decomposed, i - 1) || isLetterAt(decomposed, i + 1))) {
+                c = substitute(c);
+            }
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+                builder.append(c);
+            } else if (builder.length() > 0 && builder.charAt(builder.length() - 1) != ' ') {
+                builder.append(' ');
+            }
+        }
+
+        // Elongations ("soooo", "fuuuck") are reduced to a single character; normal doubles are kept
+        StringBuilder folded = new StringBuilder(builder.length());
+        int i = 0;
+        while (i < builder.length()) {
+            char c = builder.charAt(i);
+            int runEnd = i;
+            while (runEnd < builder.length() && builder.charAt(runEnd) == c) {
+                runEnd++;
+            }
+            if (runEnd - i >= 3 || c == ' ') {
+                folded.append(c);
+            } else {
+                folded.append(builder, i, runEnd);
+            }
+            i = runEnd;
+        }
+        int end = folded.length();
+        while (end > 0 && folded.charAt(end - 1) == ' ') {
+            end--;
+        }
+        return folded.substring(0, end);
+    }
+
+    private static List<String> normalizePatterns(List<String> patterns) {
+        return patterns.stream()
+                .map(ModerationPreFilter::normalizeForMatching)
+                .filter(pattern -> !pattern.isEmpty())
+                .distinct()
+                .toList();
+    }
+
+    private static boolean hasUnsupportedContent(String message) {
+        for (int i = 0; i < message.length(); i++) {
+            char c = message.charAt(i);
+            if (Character.isLetterOrDigit(c) && c > 0x024F) {
+                return true;
+            }
+            if (Character.isSurrogate(c) || Character.getType(c) == Character.OTHER_SYMBOL) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isWordBounded(String text, int start, int end) {
+        return (start == 0 || text.charAt(start - 1) == ' ')
+                && (end == text.length() || text.charAt(end) == ' ');
+    }
+
+    private static int countWords(String text) {
+        int words = 1;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == ' ') {
+                words++;
+            }
+        }
+        return words;
+    }
+
+    private static boolean isLetterAt(String text, int index) {
+        return index >= 0 && index < text.length() && Character.isLetter(text.charAt(index));
+    }
+
+    private static boolean isSubstitute(char c) {
+        return c == '0' || c == '1' || c == '3' || c == '4' || c == '5' || c == '7' || c == '@' || c == '$';
+    }
+
+    private static char substitute(char c) {
+        return switch (c) {
+            case '0' -> 'o';
+            case '1' -> 'i';
+            case '3' -> 'e';
+            case '4', '@' -> 'a';
+            case '5', '$' -> 's';
+            case '7' -> 't';
+            default -> c;
+        };
+    }
+
+    private static boolean isTrailingPunctuation(char c) {
+        return c == '.' || c == '!' || c == '?' || c == ',' || c == '~';
+    }
+}
@@ -0,0 +1,66 @@
+package com.dbms.mentalhealth.websocket;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.LocalDateTime;
+
+/**
+ * JSON frame of the v2 chat protocol ({@code ?protocol=v2} on the WebSocket URL).
+ * <ul>
+ *     <li>{@code message} / {@code system}: sequenced session traffic; {@code seq} is per session and only
+ *     meaningful together with {@code epoch}, which changes whenever the serving instance restarts or
+ *     recreates the session's buffer</li>
+ *     <li>{@code notice}: unsequenced note for one client (moderation, busy)</li>
+ *     <li>{@code hello}: first frame, carries the epoch and the latest seq of the session</li>
+ *     <li>{@code resumed}: ends the replay after a reconnect; {@code content} is memory, database or none</li>
+ *     <li>{@code gap}: frames were not delivered to this client. With a {@code seq}, the connection fell
+ *     behind and frames up to that seq may be missing; with only {@code sentAt}, the database replay
+ *     stopped at its limit and messages after that time are missing. The client resyncs by reconnecting
+ *     with its last contiguous seq, or by loading the message history.</li>
+ * </ul>
+ * Clients send {@code message} frames with {@code content} and {@code ack} frames with {@code seq}.
+ * Messages replayed from the database have no seq.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ChatFrame(String type,
+                        String epoch,
+                        Long seq,
+                        String sender,
+                        String content,
+                        LocalDateTime sentAt) {
+
+    public static final String MESSAGE = "message";
+    public static final String SYSTEM = "system";
+    public static final String NOTICE = "notice";
+    public static final String HELLO = "hello";
+    public static final String RESUMED = "resumed";
+    public static final String ACK = "ack";
+    public static final String GAP = "gap";
+
+    static ChatFrame notice(String content) {
+        return new ChatFrame(NOTICE, null, null, null, content, LocalDateTime.now());
+    }
+
+    static ChatFrame hello(String epoch, long seq) {
+        return new ChatFrame(HELLO, epoch, seq, null, null, null);
+    }
+
+    static ChatFrame resumed(String epoch, long seq, String source) {
+        return new ChatFrame(RESUMED, epoch, seq, null, source, null);
+    }
+
+    static ChatFrame gap(String epoch, Long seq, LocalDateTime sentAt) {
+        return new ChatFrame(GAP, epoch, seq, null, null, sentAt);
+    }
+
+    static ChatFrame history(String sender, String content, LocalDateTime sentAt) {
+        return new ChatFrame(MESSAGE, null, null, sender, content, sentAt);
+    }
+
+    /**
+     * The frame as a legacy client sees it.
+     */
+    String toLegacyText() {
+        return sender == null ? "SYSTEM: " + content : sender + ": " + content;
+    }
+}
@@ -0,0 +1,195 @@
+package com.dbms.mentalhealth.websocket;
+
+import com.dbms.mentalhealth.config.ChatModerationConfig;
+import com.dbms.mentalhealth.config.GeminiClientConfig;
+import com.dbms.mentalhealth.config.ModerationBatchConfig;
+import com.dbms.mentalhealth.model.ModerationResult;
+import com.dbms.mentalhealth.service.GeminiService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Runs chat moderation off the WebSocket container threads.
+ * Messages of different sessions are moderated in parallel (bounded by maxConcurrency),
+ * while verdicts of one session are handed back strictly in the order the messages arrived.
+ * A call that misses its time budget is cancelled by interrupting its worker, so a slow Gemini cannot keep
+ * the pool busy after the failure policy has answered.
+ * <p>
+ * Verdicts are handled and delivered on a pool of their own: a timeout completes the call on the JDK's
+ * shared delay thread, which must not run the journal, database and relay work of the callback.
+ */
+@Slf4j
+@Component
+public class ChatModerationPipeline {
+
+    private final GeminiService geminiService;
+    private final ChatModerationConfig config;
+    private final MeterRegistry meterRegistry;
+    private final ThreadPoolExecutor executor;
+    private final ThreadPoolExecutor deliveryExecutor;
+    private final Timer moderationTimer;
+
+    // Last pending delivery per session; the next message of the session waits on it
+    private final Map<String, CompletableFuture<Void>> sessionTails = new ConcurrentHashMap<>();
+
+    public ChatModerationPipeline(GeminiService geminiService,
+                                  ChatModerationConfig config,
+                                  GeminiClientConfig clientConfig,
+                                  ModerationBatchConfig batchConfig,
+                                  MeterRegistry meterRegistry) {
+        this.geminiService = geminiService;
+        this.config = config;
+        this.meterRegistry = meterRegistry;
+        // Retries that cannot finish inside the budget only keep a worker busy after the verdict is decided
+        long worstCase = clientConfig.worstCaseMs(clientConfig.getModeration())
+                + (batchConfig.isEnabled() ? batchConfig.getWindowMs() : 0);
+        if (worstCase >= config.getTimeoutMs()) {
+            log.warn("Gemini moderation can take up to {} ms (attempts, backoff and batch window) but "
+                    + "chat.moderation.timeout-ms is {} ms", worstCase, config.getTimeoutMs());
+        }
+        this.executor = new ThreadPoolExecutor(
+                config.getMaxConcurrency(),
+                config.getMaxConcurrency(),
+                60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(config.getQueueCapacity()),
+                new CustomizableThreadFactory("Moderation-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+        // Unbounded: every message the moderation pool accepted or refused must still get its verdict
+        this.deliveryExecutor = new ThreadPoolExecutor(
+                config.getDeliveryThreads(),
+                config.getDeliveryThreads(),
+                60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new CustomizableThreadFactory("ModerationDelivery-"));
+        this.deliveryExecutor.allowCoreThreadTimeOut(true);
+
+        this.moderationTimer = Timer.builder("chat.moderation.latency")
+                .description("Time from submission until a moderation verdict is available")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("chat.moderation.queue.depth", executor, e -> e.getQueue().size())
+                .description("Messages waiting for a moderation slot")
+                .register(meterRegistry);
+        Gauge.builder("chat.moderation.in.flight", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Moderation calls currently running")
+                .register(meterRegistry);
+        Gauge.builder("chat.moderation.delivery.queue.depth", deliveryExecutor, e -> e.getQueue().size())
+                .description("Verdicts waiting to be handed to the chat handler")
+                .register(meterRegistry);
+        Gauge.builder("chat.moderation.sessions.pending", sessionTails, Map::size)
+                .description("Sessions with at least one message awaiting delivery")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Moderates a message asynchronously. The callback receives the final verdict (after the
+     * timeout and failure policy are applied) and runs only once every earlier message of the
+     * same session has been handed to its own callback.
+     */
+    public void submit(String sessionId, String message, Consumer<ModerationResult> onVerdict) {
+        CompletableFuture<ModerationResult> verdict = moderate(message);
+
+        CompletableFuture<Void> gate = new CompletableFuture<>();
+        CompletableFuture<Void> previous = sessionTails.put(sessionId, gate);
+        CompletableFuture<Void> predecessor = previous != null ? previous : CompletableFuture.completedFuture(null);
+
+        predecessor.thenCombine(verdict, (ignored, result) -> result)
+                .thenAcceptAsync(onVerdict, deliveryExecutor)
+                .whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        log.error("Error delivering moderated message in session {}", sessionId, error);
+                    }
+                    gate.complete(null);
+                    sessionTails.remove(sessionId, gate);
+                });
+    }
+
+    private CompletableFuture<ModerationResult> moderate(String message) {
+        long start = System.nanoTime();
+        CompletableFuture<ModerationResult> call = new CompletableFuture<>();
+        Future<?> task;
+        try {
+            task = executor.submit(() -> {
+                try {
+                    call.complete(geminiService.moderateMessage(message));
+                } catch (Throwable e) {
+                    call.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Moderation queue is full ({} waiting), applying failure policy", executor.getQueue().size());
+            recordOutcome("rejected");
+            return CompletableFuture.completedFuture(applyFailurePolicy("Moderation is currently overloaded"));
+        }
+
+        return call
+                .completeOnTimeout(null, config.getTimeoutMs(), TimeUnit.MILLISECONDS)
+                .handleAsync((result, error) -> {
+                    moderationTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    if (error != null) {
+                        log.error("Moderation call failed: {}", error.getMessage());
+                        recordOutcome("error");
+                        return applyFailurePolicy("Moderation failed");
+                    }
+                    if (result == null) {
+                        // Interrupting the worker aborts its Gemini exchange or retry wait and frees the thread
+                        task.cancel(true);
+                        log.warn("Moderation did not answer within {} ms, applying failure policy", config.getTimeoutMs());
+                        recordOutcome("timeout");
+                        return applyFailurePolicy("Moderation timed out");
+                    }
+                    if (result.isFallback()) {
+                        recordOutcome("unavailable");
+                        return applyFailurePolicy(result.getReason());
+                    }
+                    recordOutcome(result.isAllowed() ? "allowed" : "blocked");
+                    return result;
+                }, deliveryExecutor);
+    }
+
+    private ModerationResult applyFailurePolicy(String reason) {
+        if (config.isFailOpen()) {
+            return ModerationResult.allowed();
+        }
+        return ModerationResult.rejected(reason + ", please try sending your message again");
+    }
+
+    private void recordOutcome(String outcome) {
+        meterRegistry.counter("chat.moderation.outcomes", "outcome", outcome).increment();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Moderation first, so the verdicts it still produces are delivered
+        shutdown(executor);
+        shutdown(deliveryExecutor);
+    }
+
+    private void shutdown(ThreadPoolExecutor pool) {
+        pool.shutdown();
+        try {
+            if (!pool.awaitTermination(config.getTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                pool.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
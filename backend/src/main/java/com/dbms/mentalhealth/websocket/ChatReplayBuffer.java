@@ -0,0 +1,65 @@
+package com.dbms.mentalhealth.websocket;
+
+import com.dbms.mentalhealth.config.ChatReplayConfig;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-session {@link ChatSessionLog}s of this instance. Every log gets its own epoch, this instance's id
+ * plus a creation counter, naming its sequence space; a client presenting another epoch (restart, other
+ * replica, or a log that was evicted and created again) is replayed from the database.
+ */
+@Component
+public class ChatReplayBuffer {
+
+    private final String instanceId = UUID.randomUUID().toString().substring(0, 8);
+    private final AtomicLong logsCreated = new AtomicLong();
+    private final ChatReplayConfig config;
+    private final Cache<String, ChatSessionLog> logs;
+    private final MeterRegistry meterRegistry;
+
+    public ChatReplayBuffer(ChatReplayConfig config, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.meterRegistry = meterRegistry;
+        this.logs = Caffeine.newBuilder()
+                .maximumSize(config.getMaxSessions())
+                .expireAfterAccess(Duration.ofMinutes(config.getRetentionMinutes()))
+                .build();
+        Gauge.builder("chat.replay.sessions", logs, Cache::estimatedSize)
+                .description("Chat sessions with a replay buffer on this instance")
+                .register(meterRegistry);
+    }
+
+    public int maxDatabaseReplay() {
+        return config.getMaxDatabaseReplay();
+    }
+
+    ChatSessionLog getOrCreate(String sessionId) {
+        return logs.get(sessionId, id ->
+                new ChatSessionLog(instanceId + "-" + logsCreated.incrementAndGet(), config.getBufferSize()));
+    }
+
+    ChatSessionLog get(String sessionId) {
+        return logs.getIfPresent(sessionId);
+    }
+
+    void remove(String sessionId) {
+        logs.invalidate(sessionId);
+    }
+
+    void recordResume(String source) {
+        Counter.builder("chat.replay.resumes")
+                .description("Reconnects of v2 clients by where the missed frames came from")
+                .tag("source", source)
+                .register(meterRegistry)
+                .increment();
+    }
+}
@@ -0,0 +1,86 @@
+package com.dbms.mentalhealth.websocket;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sequencer and ring buffer of the most recent frames of one chat session. Callers hold the log's
+ * monitor while they append and fan a frame out, so every connection sees frames in seq order and a
+ * resuming connection can join between two frames without gaps or duplicates.
+ */
+final class ChatSessionLog {
+
+    private final String epoch;
+    private final ChatFrame[] ring;
+    private long lastSeq;
+    // Highest seq each participant has acknowledged
+    private final Map<String, Long> acked = new ConcurrentHashMap<>();
+
+    ChatSessionLog(String epoch, int capacity) {
+        this.epoch = epoch;
+        this.ring = new ChatFrame[capacity];
+    }
+
+    // Caller holds the monitor
+    ChatFrame append(String sender, String content, LocalDateTime sentAt) {
+        long seq = ++lastSeq;
+        ChatFrame frame = new ChatFrame(sender == null ? ChatFrame.SYSTEM : ChatFrame.MESSAGE,
+                epoch, seq, sender, content, sentAt);
+        ring[(int) (seq % ring.length)] = frame;
+        return frame;
+    }
+
+    String epoch() {
+        return epoch;
+    }
+
+    // Caller holds the monitor
+    long lastSeq() {
+        return lastSeq;
+    }
+
+    /**
+     * Frames after {@code seq}, or null if some of them have already left the buffer.
+     * Caller holds the monitor.
+     */
+    List<ChatFrame> after(long seq) {
+        if (seq > lastSeq) {
+            return null;
+        }
+        long oldest = Math.max(1, lastSeq - ring.length + 1);
+        if (seq + 1 < oldest) {
+            return null;
+        }
+        List<ChatFrame> frames = new ArrayList<>((int) (lastSeq - seq));
+        for (long s = seq + 1; s <= lastSeq; s++) {
+            frames.add(ring[(int) (s % ring.length)]);
+        }
+        return frames;
+    }
+
+    /**
+     * Buffered frames sent after the given time, oldest first. Caller holds the monitor.
+     */
+    List<ChatFrame> sentAfter(LocalDateTime time) {
+        List<ChatFrame> frames = new ArrayList<>();
+        long oldest = Math.max(1, lastSeq - ring.length + 1);
+        for (long s = oldest; s <= lastSeq; s++) {
+            ChatFrame frame = ring[(int) (s % ring.length)];
+            if (frame.sentAt().isAfter(time)) {
+                frames.add(frame);
+            }
+        }
+        return frames;
+    }
+
+    void acknowledge(String username, long seq) {
+        acked.merge(username, seq, Math::max);
+    }
+
+    Long lastAcknowledged(String username) {
+        return acked.get(username);
+    }
+}
@@ -1,25 +1,34 @@
 package com.dbms.mentalhealth.websocket;
 
+import com.dbms.mentalhealth.dto.session.ChatSessionInfo;
+import com.dbms.mentalhealth.dto.user.ChatParticipant;
+import com.dbms.mentalhealth.enums.OutboundResult;
 import com.dbms.mentalhealth.model.ChatMessage;
-import com.dbms.mentalhealth.model.ModerationResult;
-import com.dbms.mentalhealth.model.Session;
-import com.dbms.mentalhealth.model.User;
+import com.dbms.mentalhealth.repository.ChatMessageRepository;
 import com.dbms.mentalhealth.repository.SessionRepository;
 import com.dbms.mentalhealth.repository.UserRepository;
 import com.dbms.mentalhealth.scheduler.ChatMessageScheduler;
-import com.dbms.mentalhealth.service.ChatMessageService;
-import com.dbms.mentalhealth.service.GeminiService;
-import com.dbms.mentalhealth.service.UserService;
-import com.dbms.mentalhealth.service.ListenerService;
+import com.dbms.mentalhealth.websocket.relay.ChatRelay;
+import com.dbms.mentalhealth.util.Cache.CacheUtils;
+import com.dbms.mentalhealth.websocket.relay.ChatRelayEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -27,42 +36,164 @@ import java.util.concurrent.ConcurrentHashMap;
 @Component
 public class ChatWebSocketHandler extends TextWebSocketHandler {
 
+    private static final String PROTOCOL_ATTRIBUTE = "chatProtocol";
+    private static final String PROTOCOL_V2 = "v2";
+    // Highest seq a v2 connection may have missed, until a gap frame tells it so
+    private static final String GAP_ATTRIBUTE = "chatGapSeq";
+
     private final SessionRepository sessionRepository;
     private final UserRepository userRepository;
+    private final ChatMessageRepository chatMessageRepository;
     private final ChatMessageScheduler chatMessageScheduler;
-    private final GeminiService geminiService;
+    private final ChatModerationPipeline moderationPipeline;
+    private final WebSocketOutboundDispatcher outbound;
+    private final ChatRelay chatRelay;
+    private final ChatReplayBuffer replayBuffer;
+    private final ObjectMapper objectMapper;
+    private final Cache<Integer, ChatSessionInfo> sessionInfoCache;
+    private final Cache<String, ChatParticipant> participantCache;
 
     private static final Map<String, Map<String, WebSocketSession>> chatSessions = new ConcurrentHashMap<>();
-    private final Map<String, Session> sessionCache = new ConcurrentHashMap<>();
-    private final Map<String, User> userCache = new ConcurrentHashMap<>();
 
     public ChatWebSocketHandler(SessionRepository sessionRepository,
                                 UserRepository userRepository,
+                                ChatMessageRepository chatMessageRepository,
                                 ChatMessageScheduler chatMessageScheduler,
-                                GeminiService geminiService) {
+                                ChatModerationPipeline moderationPipeline,
+                                WebSocketOutboundDispatcher outbound,
+                                ChatRelay chatRelay,
+                                ChatReplayBuffer replayBuffer,
+                                ObjectMapper objectMapper,
+                                Cache<Integer, ChatSessionInfo> chatSessionInfoCache,
+                                Cache<String, ChatParticipant> chatParticipantCache,
+                                MeterRegistry meterRegistry) {
         this.sessionRepository = sessionRepository;
         this.userRepository = userRepository;
+        this.chatMessageRepository = chatMessageRepository;
         this.chatMessageScheduler = chatMessageScheduler;
-        this.geminiService = geminiService;
+        this.moderationPipeline = moderationPipeline;
+        this.outbound = outbound;
+        this.chatRelay = chatRelay;
+        this.replayBuffer = replayBuffer;
+        this.objectMapper = objectMapper;
+        this.sessionInfoCache = chatSessionInfoCache;
+        this.participantCache = chatParticipantCache;
+        CaffeineCacheMetrics.monitor(meterRegistry, chatSessionInfoCache, "chatSessionInfoCache");
+        CaffeineCacheMetrics.monitor(meterRegistry, chatParticipantCache, "chatParticipantCache");
+        chatRelay.subscribe(this::onRelayEvent);
     }
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
         String sessionId = getPathParam(session, "sessionId");
         String username = getPathParam(session, "username");
+        Map<String, String> query = getQueryParams(session);
+        if (PROTOCOL_V2.equals(query.get("protocol"))) {
+            session.getAttributes().put(PROTOCOL_ATTRIBUTE, PROTOCOL_V2);
+        }
 
         log.info("WebSocket connection established for user: {}, sessionId: {}", username, sessionId);
 
         Map<String, WebSocketSession> sessionsForId = chatSessions.computeIfAbsent(sessionId, k -> new ConcurrentHashMap<>());
-        if (sessionsForId.size() >= 2) {
+        // A participant who reconnects takes the place of their old connection, which may not have noticed yet
+        WebSocketSession previous = sessionsForId.get(username);
+        if (previous == null && sessionsForId.size() >= 2) {
             log.warn("Session {} is full. Closing connection for user: {}", sessionId, username);
             session.close(CloseStatus.NOT_ACCEPTABLE.withReason("Session is full"));
             return;
         }
 
-        sessionsForId.put(username, session);
+        outbound.register(session);
+        if (isV2(session)) {
+            resume(session, sessionId, username, sessionsForId, query);
+        } else {
+            sessionsForId.put(username, session);
+        }
+        if (previous != null) {
+            closeReplaced(previous, username, sessionId);
+            log.info("User {} reconnected to session {}", username, sessionId);
+            return;
+        }
         log.info("User {} added to session {}", username, sessionId);
-        broadcastMessage(sessionId, createSystemMessage(username + " has joined the chat"), null);
+        broadcastSystemMessage(sessionId, username + " has joined the chat", presenceKey(username));
+    }
+
+    private void closeReplaced(WebSocketSession previous, String username, String sessionId) {
+        if (!previous.isOpen()) {
+            return;
+        }
+        try {
+            previous.close(CloseStatus.NORMAL.withReason("Replaced by a new connection"));
+        } catch (IOException e) {
+            log.error("Error closing replaced WebSocket of user {} in session {}", username, sessionId, e);
+        }
+    }
+
+    /**
+     * Joins a v2 client to the session's frame stream. A client that presents the session log's epoch
+     * and a seq still in the ring buffer gets only the frames after it; otherwise messages sent after
+     * its {@code since} timestamp are read from the database. The replay and the registration happen
+     * under the session log's monitor, so no live frame can overtake or duplicate a replayed one.
+     */
+    private void resume(WebSocketSession session, String sessionId, String username,
+                        Map<String, WebSocketSession> sessionsForId, Map<String, String> query) {
+        ChatSessionLog sessionLog = replayBuffer.getOrCreate(sessionId);
+        boolean sameEpoch = sessionLog.epoch().equals(query.get("epoch"));
+        Long lastSeq = parseLong(query.get("lastSeq"));
+        if (lastSeq == null && sameEpoch) {
+            lastSeq = sessionLog.lastAcknowledged(username);
+        }
+        LocalDateTime since = parseDateTime(query.get("since"));
+
+        List<ChatMessage> history = null;
+        boolean fromMemory;
+        synchronized (sessionLog) {
+            fromMemory = sameEpoch && lastSeq != null && sessionLog.after(lastSeq) != null;
+        }
+        // The database read happens outside the monitor so it does not hold up live frames
+        if (!fromMemory && since != null) {
+            history = loadMessagesSince(sessionId, since);
+        }
+
+        synchronized (sessionLog) {
+            List<ChatFrame> gap = sameEpoch && lastSeq != null ? sessionLog.after(lastSeq) : null;
+            sendFrame(session, ChatFrame.hello(sessionLog.epoch(), sessionLog.lastSeq()));
+
+            String source;
+            if (gap != null) {
+                gap.forEach(frame -> sendFrame(session, frame));
+                source = "memory";
+            } else if (history != null) {
+                LocalDateTime replayedUpTo = since;
+                for (ChatMessage message : history) {
+                    sendFrame(session, ChatFrame.history(message.getSender().getAnonymousName(),
+                            message.getMessageContent(), message.getSentAt()));
+                    replayedUpTo = message.getSentAt();
+                }
+                if (history.size() >= replayBuffer.maxDatabaseReplay()) {
+                    // More messages than one replay carries; the ones before the buffered frames are left out
+                    sendFrame(session, ChatFrame.gap(sessionLog.epoch(), null, replayedUpTo));
+                }
+                // Messages not yet written to the database, and system frames, come from the buffer
+                sessionLog.sentAfter(replayedUpTo).forEach(frame -> sendFrame(session, frame));
+                source = "database";
+            } else {
+                source = "none";
+            }
+            sendFrame(session, ChatFrame.resumed(sessionLog.epoch(), sessionLog.lastSeq(), source));
+            replayBuffer.recordResume(source);
+            sessionsForId.put(username, session);
+        }
+    }
+
+    private List<ChatMessage> loadMessagesSince(String sessionId, LocalDateTime since) {
+        try {
+            return chatMessageRepository.findBySession_SessionIdAndSentAtAfterOrderBySentAtAsc(
+                    Integer.parseInt(sessionId), since, PageRequest.of(0, replayBuffer.maxDatabaseReplay()));
+        } catch (Exception e) {
+            log.error("Could not load messages of session {} since {} for resume", sessionId, since, e);
+            return null;
+        }
     }
 
     @Override
@@ -71,42 +202,67 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
             String sessionId = getPathParam(session, "sessionId");
             String username = getPathParam(session, "username");
 
-            if (!isValidMessage(message, sessionId, username)) {
+            String messageContent = message.getPayload();
+            if (isV2(session)) {
+                ChatFrame frame = parseFrame(messageContent);
+                if (frame == null) {
+                    return;
+                }
+                if (ChatFrame.ACK.equals(frame.type())) {
+                    ChatSessionLog sessionLog = replayBuffer.get(sessionId);
+                    if (sessionLog != null && frame.seq() != null) {
+                        sessionLog.acknowledge(username, frame.seq());
+                    }
+                    return;
+                }
+                messageContent = frame.content() != null ? frame.content() : "";
+            }
+
+            if (!isValidMessage(messageContent, sessionId, username)) {
                 return;
             }
 
-            Session chatSession = getSessionFromCache(sessionId);
-            User sender = getUserFromCache(username);
+            ChatSessionInfo chatSession = getSessionInfo(sessionId);
+            ChatParticipant sender = getParticipant(username);
 
             if (chatSession == null || sender == null) {
-                log.error("Session or user not found in cache");
+                log.error("Session {} or user {} not found", sessionId, username);
+                return;
+            }
+            if (!chatSession.hasParticipant(sender.userId())) {
+                log.warn("User {} is not a participant of session {}; message ignored", username, sessionId);
                 return;
             }
 
-            String messageContent = message.getPayload();
+            // Persistence is falling behind; refuse rather than keep growing the queue
+            if (chatMessageScheduler.isBackpressured()) {
+                log.warn("Refusing message from {} in session {}: chat message queue is full", username, sessionId);
+                sendSystemNotification(session, "The chat is busy right now. Please resend your message in a moment.");
+                return;
+            }
 
-            // Moderate the message using Gemini API
-            ModerationResult moderationResult = geminiService.moderateMessage(messageContent);
+            String content = messageContent;
+            LocalDateTime receivedAt = LocalDateTime.now();
 
-            if (!moderationResult.isAllowed()) {
-                log.warn("Message from user {} in session {} was blocked by moderation. Reason: {}",
-                        username, sessionId, moderationResult.getReason());
+            // Moderate off the container thread; delivery keeps the per-session order
+            moderationPipeline.submit(sessionId, content, moderationResult -> {
+                if (!moderationResult.isAllowed()) {
+                    log.warn("Message from user {} in session {} was blocked by moderation. Reason: {}",
+                            username, sessionId, moderationResult.getReason());
 
-                // Send notification back to the sender that their message was blocked
-                sendModerationNotification(session, moderationResult.getReason());
-                return;
-            }
+                    // Send notification back to the sender that their message was blocked
+                    sendSystemNotification(session,
+                            "Your message was not sent due to content policy violation: " + moderationResult.getReason());
+                    return;
+                }
 
-            ChatMessage chatMessage = new ChatMessage();
-            chatMessage.setSession(chatSession);
-            chatMessage.setSender(sender);
-            chatMessage.setMessageContent(messageContent);
-            chatMessage.setSentAt(LocalDateTime.now());
+                ChatMessage chatMessage = ChatMessage.of(chatSession.sessionId(), sender.userId(), content, receivedAt);
 
-            chatMessageScheduler.queueMessage(chatMessage, username);
+                chatMessageScheduler.queueMessage(chatMessage);
 
-            log.info("Queued message from {} in session {}: {}", username, sessionId, messageContent);
-            broadcastMessage(sessionId, username + ": " + messageContent, username);
+                log.info("Queued message from {} in session {}: {}", username, sessionId, content);
+                chatRelay.publish(ChatRelayEvent.message(sessionId, username, content, receivedAt));
+            });
 
         } catch (Exception e) {
             log.error("Error processing WebSocket message", e);
@@ -117,45 +273,64 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
         String sessionId = getPathParam(session, "sessionId");
         String username = getPathParam(session, "username");
+        outbound.unregister(session);
 
         Map<String, WebSocketSession> sessionsForId = chatSessions.get(sessionId);
         if (sessionsForId != null) {
-            sessionsForId.remove(username);
+            // Only if it is still this connection; a resumed connection may already have replaced it
+            if (!sessionsForId.remove(username, session)) {
+                log.info("Replaced WebSocket closed for user {} in session {}", username, sessionId);
+                return;
+            }
             log.info("WebSocket closed for user {} in session {}", username, sessionId);
 
             if (sessionsForId.isEmpty()) {
                 chatSessions.remove(sessionId);
-                sessionCache.remove(sessionId);
+                invalidateSessionInfo(sessionId);
                 log.info("Session {} removed from chatSessions", sessionId);
             } else {
-                broadcastMessage(sessionId, createSystemMessage(username + " has left the chat"), null);
+                broadcastSystemMessage(sessionId, username + " has left the chat", presenceKey(username));
             }
         }
     }
 
-    private void sendModerationNotification(WebSocketSession session, String reason) {
-        try {
-            String notification = createSystemMessage("Your message was not sent due to content policy violation: " + reason);
-            session.sendMessage(new TextMessage(notification));
-        } catch (IOException e) {
-            log.error("Error sending moderation notification", e);
+    private void sendSystemNotification(WebSocketSession session, String content) {
+        String payload = isV2(session) ? toJson(ChatFrame.notice(content)) : createSystemMessage(content);
+        if (payload == null || !outbound.send(session, payload)) {
+            log.warn("System notification to WebSocket {} was not queued", session.getId());
         }
     }
 
-    private Session getSessionFromCache(String sessionId) {
-        return sessionCache.computeIfAbsent(sessionId, id -> {
-            try {
-                return sessionRepository.findById(Integer.parseInt(id)).orElse(null);
-            } catch (NumberFormatException e) {
-                log.error("Invalid session ID format: {}", id);
-                return null;
-            }
-        });
+    private void sendFrame(WebSocketSession session, ChatFrame frame) {
+        String payload = toJson(frame);
+        if (payload != null) {
+            outbound.send(session, payload);
+        }
+    }
+
+    private ChatSessionInfo getSessionInfo(String sessionId) {
+        Integer id = parseInteger(sessionId);
+        if (id == null) {
+            log.error("Invalid session ID format: {}", sessionId);
+            return null;
+        }
+        return sessionInfoCache.get(id, key -> sessionRepository.findChatSessionInfo(key).orElse(null));
+    }
+
+    private ChatParticipant getParticipant(String username) {
+        return participantCache.get(username, name -> userRepository.findChatParticipant(name).orElse(null));
     }
 
-    private User getUserFromCache(String username) {
-        return userCache.computeIfAbsent(username,
-                name -> userRepository.findByAnonymousName(name));
+    private void invalidateSessionInfo(String sessionId) {
+        Integer id = parseInteger(sessionId);
+        if (id != null) {
+            sessionInfoCache.invalidate(id);
+        }
+    }
+
+    public void logCacheStats() {
+        CacheUtils.logCacheStats(sessionInfoCache, "Chat Session Info Cache");
+        CacheUtils.logCacheStats(participantCache, "Chat Participant Cache");
     }
 
     private String getPathParam(WebSocketSession session, String paramName) {
@@ -169,8 +344,16 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
         return null;
     }
 
-    private boolean isValidMessage(TextMessage message, String sessionId, String username) {
-        if (message.getPayload().trim().isEmpty()) {
+    private Map<String, String> getQueryParams(WebSocketSession session) {
+        return UriComponentsBuilder.fromUri(session.getUri()).build().getQueryParams().toSingleValueMap();
+    }
+
+    private boolean isV2(WebSocketSession session) {
+        return PROTOCOL_V2.equals(session.getAttributes().get(PROTOCOL_ATTRIBUTE));
+    }
+
+    private boolean isValidMessage(String content, String sessionId, String username) {
+        if (content.trim().isEmpty()) {
             log.warn("Empty message received from {}", username);
             return false;
         }
@@ -183,25 +366,101 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
         return true;
     }
 
-    private void broadcastMessage(String sessionId, String message, String excludeUser) {
-        Map<String, WebSocketSession> sessionsForId = chatSessions.get(sessionId);
-        if (sessionsForId != null) {
-            sessionsForId.forEach((username, wsSession) -> {
-                if (!username.equals(excludeUser) && wsSession.isOpen()) {
-                    synchronized (wsSession) {
-                        try {
-                            wsSession.sendMessage(new TextMessage(message));
-                            log.info("Broadcasted message to user {} in session {}", username, sessionId);
-                        } catch (IOException e) {
-                            log.error("Error broadcasting message to user {} in session {}", username, sessionId, e);
-                        }
-                    }
+    // Goes through the relay so participants connected to other instances receive it too
+    private void broadcastSystemMessage(String sessionId, String content, String coalesceKey) {
+        chatRelay.publish(ChatRelayEvent.system(sessionId, content, coalesceKey));
+    }
+
+    private void onRelayEvent(ChatRelayEvent event) {
+        switch (event.type()) {
+            case BROADCAST -> deliverLocally(event);
+            case END_SESSION -> closeLocalSession(event.sessionId());
+        }
+    }
+
+    /**
+     * Sequences the frame in the session log and queues it for every local participant: v2 clients get
+     * the JSON frame (their own messages included), legacy clients the plain text without their own.
+     * Only queues; the outbound dispatcher's writers do the socket I/O.
+     */
+    private void deliverLocally(ChatRelayEvent event) {
+        String sessionId = event.sessionId();
+        ChatSessionLog sessionLog = chatSessions.containsKey(sessionId)
+                ? replayBuffer.getOrCreate(sessionId)
+                : replayBuffer.get(sessionId);
+        if (sessionLog == null) {
+            return;
+        }
+
+        synchronized (sessionLog) {
+            ChatFrame frame = sessionLog.append(event.sender(), event.content(), event.sentAt());
+            Map<String, WebSocketSession> sessionsForId = chatSessions.get(sessionId);
+            if (sessionsForId == null) {
+                return;
+            }
+            String json = null;
+            String legacy = null;
+            for (Map.Entry<String, WebSocketSession> participant : sessionsForId.entrySet()) {
+                String username = participant.getKey();
+                WebSocketSession wsSession = participant.getValue();
+                if (!wsSession.isOpen()) {
+                    continue;
                 }
-            });
+                String payload;
+                boolean v2 = isV2(wsSession);
+                if (v2) {
+                    payload = json != null ? json : (json = toJson(frame));
+                    reportGap(wsSession, sessionLog);
+                } else if (!username.equals(event.sender())) {
+                    payload = legacy != null ? legacy : (legacy = frame.toLegacyText());
+                } else {
+                    continue;
+                }
+                OutboundResult result = payload != null
+                        ? outbound.offer(wsSession, payload, event.coalesceKey())
+                        : OutboundResult.REJECTED;
+                if (result == OutboundResult.REJECTED) {
+                    log.warn("Broadcast to user {} in session {} was not queued", username, sessionId);
+                } else {
+                    log.debug("Queued broadcast to user {} in session {}", username, sessionId);
+                }
+                if (v2 && result != OutboundResult.QUEUED) {
+                    // Dropped, or a queued frame was replaced: this connection's seqs now have a hole
+                    wsSession.getAttributes().merge(GAP_ATTRIBUTE, frame.seq(), (a, b) -> Math.max((Long) a, (Long) b));
+                }
+            }
+        }
+    }
+
+    // Caller holds the session log's monitor
+    private void reportGap(WebSocketSession wsSession, ChatSessionLog sessionLog) {
+        Long missed = (Long) wsSession.getAttributes().get(GAP_ATTRIBUTE);
+        if (missed == null) {
+            return;
+        }
+        String payload = toJson(ChatFrame.gap(sessionLog.epoch(), missed, null));
+        if (payload != null && outbound.send(wsSession, payload)) {
+            wsSession.getAttributes().remove(GAP_ATTRIBUTE, missed);
         }
     }
 
+    // Join and leave notices of one user supersede each other while still queued
+    private static String presenceKey(String username) {
+        return "presence:" + username;
+    }
+
+    /**
+     * Ends the chat on every instance. Returns whether a participant was connected to this one.
+     */
     public boolean endSession(String sessionId) {
+        boolean connectedHere = chatSessions.containsKey(sessionId);
+        chatRelay.publish(ChatRelayEvent.endSession(sessionId));
+        return connectedHere;
+    }
+
+    private void closeLocalSession(String sessionId) {
+        replayBuffer.remove(sessionId);
+        invalidateSessionInfo(sessionId);
         Map<String, WebSocketSession> sessionsForId = chatSessions.remove(sessionId);
         if (sessionsForId != null) {
             sessionsForId.forEach((username, wsSession) -> {
@@ -214,16 +473,55 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
                     }
                 }
             });
-            sessionCache.remove(sessionId);
             log.info("Session {} ended and removed from chatSessions", sessionId);
-            return true;
         } else {
-            log.warn("Session {} not found in chatSessions", sessionId);
-            return false;
+            log.debug("Session {} has no participants connected to this instance", sessionId);
         }
     }
 
     private String createSystemMessage(String content) {
         return "SYSTEM: " + content;
     }
-}
\ No newline at end of file
+
+    private String toJson(ChatFrame frame) {
+        try {
+            return objectMapper.writeValueAsString(frame);
+        } catch (JsonProcessingException e) {
+            log.error("Could not encode {} frame", frame.type(), e);
+            return null;
+        }
+    }
+
+    private ChatFrame parseFrame(String payload) {
+        try {
+            return objectMapper.readValue(payload, ChatFrame.class);
+        } catch (JsonProcessingException e) {
+            log.warn("Ignoring malformed v2 chat frame");
+            return null;
+        }
+    }
+
+    private static Integer parseInteger(String value) {
+        try {
+            return value != null ? Integer.valueOf(value) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Long parseLong(String value) {
+        try {
+            return value != null ? Long.valueOf(value) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static LocalDateTime parseDateTime(String value) {
+        try {
+            return value != null ? LocalDateTime.parse(value) : null;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
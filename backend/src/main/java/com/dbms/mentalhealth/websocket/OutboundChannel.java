@@ -0,0 +1,244 @@
+package com.dbms.mentalhealth.websocket;
+
+import com.dbms.mentalhealth.config.ChatOutboundConfig;
+import com.dbms.mentalhealth.enums.OutboundOverflowPolicy;
+import com.dbms.mentalhealth.enums.OutboundResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Outbound buffer of one WebSocket connection. Producers only enqueue; a single writer task at a time
+ * drains the queue on the dispatcher's executor, so a slow client never blocks the thread that
+ * produced the frame. Limits are checked without locking and may be overshot by concurrent producers.
+ * <p>
+ * Each write is bounded by {@code sendTimeLimitMs}: Tomcat's blocking send timeout is set to it, so a
+ * write to a client that stopped reading fails instead of holding a writer thread, and the dispatcher's
+ * watchdog closes a connection whose send has run over the limit.
+ */
+@Slf4j
+final class OutboundChannel {
+    // Per-session write timeout of Tomcat's WebSocket implementation, in milliseconds
+    private static final String BLOCKING_SEND_TIMEOUT = "org.apache.tomcat.websocket.BLOCKING_SEND_TIMEOUT";
+
+    private static final class Pending {
+        final String key;
+        final long enqueuedAt;
+        final AtomicReference<TextMessage> frame;
+
+        Pending(String key, TextMessage frame, long enqueuedAt) {
+            this.key = key;
+            this.enqueuedAt = enqueuedAt;
+            this.frame = new AtomicReference<>(frame);
+        }
+    }
+
+    private final WebSocketSession session;
+    private final ChatOutboundConfig config;
+    private final WebSocketOutboundDispatcher dispatcher;
+
+    private final ConcurrentLinkedQueue<Pending> queue = new ConcurrentLinkedQueue<>();
+    private final Map<String, Pending> pendingByKey = new ConcurrentHashMap<>();
+    private final AtomicInteger queuedFrames = new AtomicInteger();
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    // Start of the send in progress, 0 while idle
+    private volatile long sendStartedAt;
+    private volatile boolean closed;
+
+    OutboundChannel(WebSocketSession session, ChatOutboundConfig config, WebSocketOutboundDispatcher dispatcher) {
+        this.session = session;
+        this.config = config;
+        this.dispatcher = dispatcher;
+        if (session instanceof NativeWebSocketSession nativeSession) {
+            jakarta.websocket.Session container = nativeSession.getNativeSession(jakarta.websocket.Session.class);
+            if (container != null) {
+                container.getUserProperties().put(BLOCKING_SEND_TIMEOUT, config.getSendTimeLimitMs());
+            }
+        }
+    }
+
+    OutboundResult offer(TextMessage frame, String coalesceKey) {
+        if (closed || !session.isOpen()) {
+            return OutboundResult.REJECTED;
+        }
+
+        long now = System.nanoTime();
+        if (sendOverdue(now)) {
+            close("Send time limit exceeded");
+            return OutboundResult.REJECTED;
+        }
+
+        OutboundOverflowPolicy policy = config.getOverflowPolicy();
+        int bytes = frame.getPayloadLength();
+        if (policy == OutboundOverflowPolicy.COALESCE && coalesceKey != null && replaceQueued(coalesceKey, frame)) {
+            return OutboundResult.COALESCED;
+        }
+
+        if (queuedFrames.get() >= config.getBufferSizeLimitMessages()
+                || queuedBytes.get() + bytes > config.getBufferSizeLimitBytes()) {
+            if (policy == OutboundOverflowPolicy.CLOSE) {
+                close("Outbound buffer limit exceeded");
+            } else {
+                dispatcher.recordOverflow("dropped");
+                log.debug("Dropped frame for WebSocket {}: {} frames queued, lag {} ms",
+                        session.getId(), queuedFrames.get(), lagMillis());
+            }
+            return OutboundResult.REJECTED;
+        }
+
+        Pending pending = new Pending(coalesceKey, frame, now);
+        if (policy == OutboundOverflowPolicy.COALESCE && coalesceKey != null) {
+            pendingByKey.put(coalesceKey, pending);
+        }
+        queuedFrames.incrementAndGet();
+        queuedBytes.addAndGet(bytes);
+        queue.offer(pending);
+        scheduleDrain();
+        return OutboundResult.QUEUED;
+    }
+
+    // Swaps the payload of a frame that is still queued; fails once the writer has taken it
+    private boolean replaceQueued(String key, TextMessage frame) {
+        Pending existing = pendingByKey.get(key);
+        if (existing == null) {
+            return false;
+        }
+        TextMessage previous = existing.frame.get();
+        if (previous == null || !existing.frame.compareAndSet(previous, frame)) {
+            return false;
+        }
+        queuedBytes.addAndGet(frame.getPayloadLength() - previous.getPayloadLength());
+        dispatcher.recordOverflow("coalesced");
+        return true;
+    }
+
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            try {
+                dispatcher.executor().execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                draining.set(false);
+                log.warn("Outbound writer rejected drain for WebSocket {}", session.getId());
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            int sent = 0;
+            Pending pending;
+            while (sent < config.getMaxFramesPerDrain() && (pending = queue.poll()) != null) {
+                queuedFrames.decrementAndGet();
+                if (pending.key != null) {
+                    pendingByKey.remove(pending.key, pending);
+                }
+                TextMessage frame = pending.frame.getAndSet(null);
+                if (frame == null) {
+                    continue;
+                }
+                queuedBytes.addAndGet(-frame.getPayloadLength());
+                if (closed || !session.isOpen()) {
+                    continue;
+                }
+
+                long start = System.nanoTime();
+                dispatcher.recordLag(start - pending.enqueuedAt);
+                sendStartedAt = start;
+                try {
+                    session.sendMessage(frame);
+                    sent++;
+                } catch (IOException | IllegalStateException e) {
+                    // Also how a write that ran into the blocking send timeout ends
+                    log.error("Error sending frame to WebSocket {}", session.getId(), e);
+                    close("Send failed");
+                } finally {
+                    sendStartedAt = 0;
+                }
+            }
+        } finally {
+            draining.set(false);
+            // Frames that arrived after the last poll, or that exceeded this pass's quota
+            if (!queue.isEmpty() && !closed) {
+                scheduleDrain();
+            }
+        }
+    }
+
+    void close(String reason) {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        dispatcher.recordOverflow("closed");
+        log.warn("Closing slow WebSocket {}: {} ({} frames queued, lag {} ms)",
+                session.getId(), reason, queuedFrames.get(), lagMillis());
+        discard();
+        // Closing may block behind the stuck send, so do it on the closer threads, never a writer
+        try {
+            dispatcher.closer().execute(() -> {
+                try {
+                    session.close(CloseStatus.SESSION_NOT_RELIABLE.withReason(reason));
+                } catch (IOException e) {
+                    log.error("Error closing WebSocket {}", session.getId(), e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Outbound closer rejected close for WebSocket {}", session.getId());
+        }
+    }
+
+    /**
+     * True if the send in progress started more than {@code sendTimeLimitMs} before {@code now}.
+     */
+    boolean sendOverdue(long now) {
+        long started = sendStartedAt;
+        return started != 0 && now - started > TimeUnit.MILLISECONDS.toNanos(config.getSendTimeLimitMs());
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    void discard() {
+        closed = true;
+        queue.clear();
+        pendingByKey.clear();
+        queuedFrames.set(0);
+        queuedBytes.set(0);
+    }
+
+    int queuedFrames() {
+        return queuedFrames.get();
+    }
+
+    /**
+     * Age of the oldest frame not yet handed to the socket, or of the send in progress.
+     */
+    long lagMillis() {
+        long now = System.nanoTime();
+        long oldest = now;
+        Pending head = queue.peek();
+        if (head != null) {
+            oldest = head.enqueuedAt;
+        }
+        long started = sendStartedAt;
+        if (started != 0 && started < oldest) {
+            oldest = started;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(now - oldest);
+    }
+}
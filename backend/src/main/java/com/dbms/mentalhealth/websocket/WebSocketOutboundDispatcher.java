@@ -0,0 +1,164 @@
+package com.dbms.mentalhealth.websocket;
+
+import com.dbms.mentalhealth.config.ChatOutboundConfig;
+import com.dbms.mentalhealth.enums.OutboundResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Owns the outbound buffers of all chat WebSocket connections. Every frame to a client, chat or system,
+ * goes through {@link #send}, which only enqueues; writer threads do the actual socket writes and apply
+ * the configured send-time limit, buffer limits and overflow policy.
+ * <p>
+ * A watchdog thread closes connections whose send has run over the limit even when nothing else is sent
+ * to them, and connections are closed on separate threads, so stuck writers cannot delay the close.
+ */
+@Slf4j
+@Component
+public class WebSocketOutboundDispatcher {
+
+    private final ChatOutboundConfig config;
+    private final ExecutorService writers;
+    // Unbounded, but only ever busy with closes, one per connection
+    private final ExecutorService closers;
+    private final ScheduledExecutorService watchdog;
+    private final Map<String, OutboundChannel> channels = new ConcurrentHashMap<>();
+    private final Timer sendLag;
+    private final Map<String, Counter> overflow;
+
+    public WebSocketOutboundDispatcher(ChatOutboundConfig config, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.writers = Executors.newFixedThreadPool(config.getWriterThreads(), new CustomizableThreadFactory("WsWriter-"));
+        this.closers = Executors.newCachedThreadPool(new CustomizableThreadFactory("WsCloser-"));
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("WsWatchdog-"));
+        long checkIntervalMs = Math.max(100, config.getSendTimeLimitMs() / 4);
+        watchdog.scheduleWithFixedDelay(this::closeOverdue, checkIntervalMs, checkIntervalMs, TimeUnit.MILLISECONDS);
+
+        this.sendLag = Timer.builder("chat.websocket.outbound.lag")
+                .description("Time a frame waits in its connection's buffer before it is written")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("chat.websocket.outbound.queued", channels,
+                        c -> c.values().stream().mapToInt(OutboundChannel::queuedFrames).sum())
+                .description("Frames buffered across all connections")
+                .register(meterRegistry);
+        Gauge.builder("chat.websocket.outbound.max.lag", channels,
+                        c -> c.values().stream().mapToLong(OutboundChannel::lagMillis).max().orElse(0))
+                .description("Lag in milliseconds of the most delayed connection")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("chat.websocket.connections", channels, Map::size)
+                .description("Open chat WebSocket connections")
+                .register(meterRegistry);
+        this.overflow = Map.of(
+                "dropped", overflowCounter(meterRegistry, "dropped"),
+                "coalesced", overflowCounter(meterRegistry, "coalesced"),
+                "closed", overflowCounter(meterRegistry, "closed"));
+    }
+
+    private static Counter overflowCounter(MeterRegistry meterRegistry, String action) {
+        return Counter.builder("chat.websocket.outbound.overflow")
+                .description("Frames dropped or coalesced and connections closed because a client fell behind")
+                .tag("action", action)
+                .register(meterRegistry);
+    }
+
+    public void register(WebSocketSession session) {
+        channels.put(session.getId(), new OutboundChannel(session, config, this));
+    }
+
+    public void unregister(WebSocketSession session) {
+        OutboundChannel channel = channels.remove(session.getId());
+        if (channel != null) {
+            channel.discard();
+        }
+    }
+
+    public boolean send(WebSocketSession session, String payload) {
+        return send(session, payload, null);
+    }
+
+    /**
+     * Queues a frame for the connection. Under the COALESCE policy a still-queued frame with the same
+     * key is replaced instead of adding a new one. Returns false if the frame was not queued.
+     */
+    public boolean send(WebSocketSession session, String payload, String coalesceKey) {
+        return offer(session, payload, coalesceKey) != OutboundResult.REJECTED;
+    }
+
+    /**
+     * Like {@link #send(WebSocketSession, String, String)}, but tells a replaced frame apart from a
+     * queued one, for callers that report lost frames to the client.
+     */
+    public OutboundResult offer(WebSocketSession session, String payload, String coalesceKey) {
+        OutboundChannel channel = channels.get(session.getId());
+        if (channel == null) {
+            return OutboundResult.REJECTED;
+        }
+        return channel.offer(new TextMessage(payload), coalesceKey);
+    }
+
+    /**
+     * Lag of one connection in milliseconds, 0 if it is unknown or idle.
+     */
+    public long lagMillis(WebSocketSession session) {
+        OutboundChannel channel = channels.get(session.getId());
+        return channel != null ? channel.lagMillis() : 0;
+    }
+
+    Executor executor() {
+        return writers;
+    }
+
+    Executor closer() {
+        return closers;
+    }
+
+    private void closeOverdue() {
+        long now = System.nanoTime();
+        for (OutboundChannel channel : channels.values()) {
+            if (!channel.isClosed() && channel.sendOverdue(now)) {
+                channel.close("Send time limit exceeded");
+            }
+        }
+    }
+
+    void recordLag(long nanos) {
+        sendLag.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void recordOverflow(String action) {
+        overflow.get(action).increment();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdownNow();
+        closers.shutdown();
+        writers.shutdown();
+        try {
+            if (!writers.awaitTermination(5, TimeUnit.SECONDS)) {
+                writers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            writers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.dbms.mentalhealth.websocket.relay;
+
+import java.util.function.Consumer;
+
+/**
+ * Fans chat events out to every backend instance that may hold a participant's WebSocket.
+ * Implementations deliver each published event to the local subscribers as well, exactly once.
+ */
+public interface ChatRelay {
+
+    void publish(ChatRelayEvent event);
+
+    void subscribe(Consumer<ChatRelayEvent> subscriber);
+}
@@ -0,0 +1,38 @@
+package com.dbms.mentalhealth.websocket.relay;
+
+import java.time.LocalDateTime;
+
+/**
+ * A chat event as it travels between instances. A BROADCAST without a sender is a system notice.
+ * {@code originNodeId} and {@code publishedAt} (epoch millis) are stamped by the relay on publish.
+ */
+public record ChatRelayEvent(Type type,
+                             String sessionId,
+                             String sender,
+                             String content,
+                             LocalDateTime sentAt,
+                             String coalesceKey,
+                             String originNodeId,
+                             long publishedAt) {
+
+    public enum Type {
+        BROADCAST,
+        END_SESSION
+    }
+
+    public static ChatRelayEvent message(String sessionId, String sender, String content, LocalDateTime sentAt) {
+        return new ChatRelayEvent(Type.BROADCAST, sessionId, sender, content, sentAt, null, null, 0L);
+    }
+
+    public static ChatRelayEvent system(String sessionId, String content, String coalesceKey) {
+        return new ChatRelayEvent(Type.BROADCAST, sessionId, null, content, LocalDateTime.now(), coalesceKey, null, 0L);
+    }
+
+    public static ChatRelayEvent endSession(String sessionId) {
+        return new ChatRelayEvent(Type.END_SESSION, sessionId, null, null, null, null, null, 0L);
+    }
+
+    ChatRelayEvent stamped(String nodeId) {
+        return new ChatRelayEvent(type, sessionId, sender, content, sentAt, coalesceKey, nodeId, System.currentTimeMillis());
+    }
+}
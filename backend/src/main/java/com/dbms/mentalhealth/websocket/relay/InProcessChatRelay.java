@@ -0,0 +1,40 @@
+package com.dbms.mentalhealth.websocket.relay;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Single-instance relay: events go straight to the local subscribers. Both participants of a chat
+ * session must be connected to the same instance.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "chat.relay.type", havingValue = "in-process", matchIfMissing = true)
+public class InProcessChatRelay implements ChatRelay {
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final List<Consumer<ChatRelayEvent>> subscribers = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(ChatRelayEvent event) {
+        ChatRelayEvent stamped = event.stamped(nodeId);
+        for (Consumer<ChatRelayEvent> subscriber : subscribers) {
+            try {
+                subscriber.accept(stamped);
+            } catch (Exception e) {
+                log.error("Error delivering {} event for session {}", event.type(), event.sessionId(), e);
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<ChatRelayEvent> subscriber) {
+        subscribers.add(subscriber);
+    }
+}
@@ -0,0 +1,319 @@
+package com.dbms.mentalhealth.websocket.relay;
+
+import com.dbms.mentalhealth.config.ChatRelayConfig;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Relays chat events between instances through PostgreSQL LISTEN/NOTIFY. Local subscribers get the
+ * event directly; other instances get it through a notification on {@code chat.relay.channel}.
+ * <p>
+ * Each instance keeps one dedicated connection for LISTEN. Notifications sent while that connection is
+ * down are not redelivered; chat history stays available from the database. Payloads above the NOTIFY
+ * limit are split into parts that are sent in order on one connection and joined on receipt. Notifications
+ * on the channel that do not follow that format are counted as {@code chat.relay.malformed} and dropped.
+ * <p>
+ * {@link #publish} never touches the database: events are queued for a publisher thread, which sends
+ * whatever has accumulated with one connection checkout, in publish order. When the queue is full the
+ * event only reaches local subscribers.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "chat.relay.type", havingValue = "postgres")
+public class PostgresChatRelay implements ChatRelay {
+
+    // NOTIFY payloads must stay below 8000 bytes; at most 3 UTF-8 bytes per char plus the header
+    private static final int MAX_PART_CHARS = 2400;
+    private static final int MAX_PARTIAL_EVENTS = 256;
+    // Far above any chat event; bounds what a stray payload can make us allocate
+    private static final int MAX_PARTS = 1024;
+    private static final Pattern CHANNEL_NAME = Pattern.compile("[a-z_][a-z0-9_]{0,62}");
+    private static final int MAX_EVENTS_PER_SEND = 256;
+
+    private final DataSourceProperties dataSourceProperties;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final ChatRelayConfig config;
+
+    private final String nodeId = UUID.randomUUID().toString().substring(0, 8);
+    private final AtomicLong eventCounter = new AtomicLong();
+    private final List<Consumer<ChatRelayEvent>> subscribers = new CopyOnWriteArrayList<>();
+    private final Map<String, String[]> partialEvents = new ConcurrentHashMap<>();
+    private final BlockingQueue<ChatRelayEvent> outbox;
+
+    private final Timer deliveryLatency;
+    private final Counter published;
+    private final Counter received;
+    private final Counter dropped;
+    private final Counter malformed;
+
+    private volatile boolean running;
+    private Thread listenerThread;
+    private Thread publisherThread;
+
+    public PostgresChatRelay(DataSourceProperties dataSourceProperties,
+                             JdbcTemplate jdbcTemplate,
+                             ObjectMapper objectMapper,
+                             ChatRelayConfig config,
+                             MeterRegistry meterRegistry) {
+        this.dataSourceProperties = dataSourceProperties;
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.config = config;
+        this.outbox = new ArrayBlockingQueue<>(config.getPublishQueueCapacity());
+
+        this.deliveryLatency = Timer.builder("chat.relay.delivery.latency")
+                .description("Time from publish on one instance until the event is received on another")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.published = Counter.builder("chat.relay.events").tag("direction", "published").register(meterRegistry);
+        this.received = Counter.builder("chat.relay.events").tag("direction", "received").register(meterRegistry);
+        this.dropped = Counter.builder("chat.relay.events").tag("direction", "dropped").register(meterRegistry);
+        this.malformed = Counter.builder("chat.relay.malformed")
+                .description("Notifications on the relay channel that were not relay payloads")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!CHANNEL_NAME.matcher(config.getChannel()).matches()) {
+            throw new IllegalStateException("Invalid chat relay channel name: " + config.getChannel());
+        }
+        running = true;
+        listenerThread = new Thread(this::listen, "chat-relay-listener-" + nodeId);
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+        publisherThread = new Thread(this::publishQueued, "chat-relay-publisher-" + nodeId);
+        publisherThread.setDaemon(true);
+        publisherThread.start();
+        log.info("PostgreSQL chat relay {} listening on channel {}", nodeId, config.getChannel());
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+        }
+        if (publisherThread != null) {
+            publisherThread.interrupt();
+        }
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void subscribe(Consumer<ChatRelayEvent> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    @Override
+    public void publish(ChatRelayEvent event) {
+        ChatRelayEvent stamped = event.stamped(nodeId);
+        deliver(stamped);
+        if (!outbox.offer(stamped)) {
+            dropped.increment();
+            log.error("Chat relay publish queue is full; {} event for session {} reaches this instance only",
+                    event.type(), event.sessionId());
+        }
+    }
+
+    private void publishQueued() {
+        List<ChatRelayEvent> batch = new ArrayList<>(MAX_EVENTS_PER_SEND);
+        while (running) {
+            try {
+                batch.add(outbox.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            outbox.drainTo(batch, MAX_EVENTS_PER_SEND - 1);
+            try {
+                sendNotifications(batch);
+                published.increment(batch.size());
+            } catch (Exception e) {
+                log.error("Could not relay {} chat events to other instances", batch.size(), e);
+            }
+            batch.clear();
+        }
+    }
+
+    private void sendNotifications(List<ChatRelayEvent> events) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("SELECT pg_notify(?, ?)")) {
+                for (ChatRelayEvent event : events) {
+                    String json;
+                    try {
+                        json = objectMapper.writeValueAsString(event);
+                    } catch (JsonProcessingException e) {
+                        log.error("Could not serialize {} event for session {}", event.type(), event.sessionId(), e);
+                        continue;
+                    }
+                    int parts = Math.max(1, (json.length() + MAX_PART_CHARS - 1) / MAX_PART_CHARS);
+                    String header = nodeId + "|" + eventCounter.incrementAndGet() + "|";
+                    for (int i = 0; i < parts; i++) {
+                        String part = json.substring(i * MAX_PART_CHARS, Math.min(json.length(), (i + 1) * MAX_PART_CHARS));
+                        statement.setString(1, config.getChannel());
+                        statement.setString(2, header + i + "|" + parts + "|" + part);
+                        statement.execute();
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword())) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + config.getChannel());
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications((int) config.getPollTimeoutMs());
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            // Anyone can NOTIFY on the channel; one bad payload must not end the listener
+                            try {
+                                onNotification(notification.getParameter());
+                            } catch (RuntimeException e) {
+                                malformed.increment();
+                                log.error("Dropped chat relay notification that could not be handled", e);
+                            }
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                log.error("Chat relay listener connection failed; reconnecting in {} ms", config.getReconnectBackoffMs(), e);
+                try {
+                    TimeUnit.MILLISECONDS.sleep(config.getReconnectBackoffMs());
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    // Format: origin|eventId|partIndex|partCount|json-part; anything else is counted and dropped
+    void onNotification(String payload) {
+        String[] fields = payload == null ? new String[0] : payload.split("\\|", 5);
+        if (fields.length != 5) {
+            dropMalformed("wrong number of fields");
+            return;
+        }
+        if (nodeId.equals(fields[0])) {
+            return;
+        }
+
+        int index;
+        int count;
+        try {
+            index = Integer.parseInt(fields[2]);
+            count = Integer.parseInt(fields[3]);
+        } catch (NumberFormatException e) {
+            dropMalformed("part index or count is not a number");
+            return;
+        }
+        if (count < 1 || count > MAX_PARTS || index < 0 || index >= count) {
+            dropMalformed("part " + index + " of " + count);
+            return;
+        }
+
+        String json;
+        if (count == 1) {
+            json = fields[4];
+        } else {
+            String key = fields[0] + "|" + fields[1];
+            String[] parts = partialEvents.computeIfAbsent(key, k -> new String[count]);
+            if (parts.length != count) {
+                // The event can no longer be joined; drop what arrived of it
+                partialEvents.remove(key);
+                dropMalformed("part count " + count + " differs from the " + parts.length + " seen before");
+                return;
+            }
+            parts[index] = fields[4];
+            for (String part : parts) {
+                if (part == null) {
+                    trimPartialEvents();
+                    return;
+                }
+            }
+            partialEvents.remove(key);
+            json = String.join("", parts);
+        }
+
+        try {
+            ChatRelayEvent event = objectMapper.readValue(json, ChatRelayEvent.class);
+            received.increment();
+            deliveryLatency.record(Math.max(0, System.currentTimeMillis() - event.publishedAt()), TimeUnit.MILLISECONDS);
+            deliver(event);
+        } catch (JsonProcessingException e) {
+            malformed.increment();
+            log.error("Could not parse relayed chat event", e);
+        }
+    }
+
+    private void dropMalformed(String reason) {
+        malformed.increment();
+        log.warn("Dropped malformed chat relay notification: {}", reason);
+    }
+
+    // Parts of events whose sender died mid-way would otherwise pile up
+    private void trimPartialEvents() {
+        Iterator<String> keys = partialEvents.keySet().iterator();
+        while (partialEvents.size() > MAX_PARTIAL_EVENTS && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    private void deliver(ChatRelayEvent event) {
+        for (Consumer<ChatRelayEvent> subscriber : subscribers) {
+            try {
+                subscriber.accept(event);
+            } catch (Exception e) {
+                log.error("Error delivering {} event for session {}", event.type(), event.sessionId(), e);
+            }
+        }
+    }
+}
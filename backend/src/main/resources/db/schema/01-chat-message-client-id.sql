@@ -0,0 +1,3 @@
+-- Idempotency key of a chat message, so a journal replay cannot insert it twice
+ALTER TABLE chat_messages ADD COLUMN IF NOT EXISTS client_message_id UUID;
+CREATE UNIQUE INDEX IF NOT EXISTS uk_chat_messages_client_message_id ON chat_messages (client_message_id);
@@ -0,0 +1,3 @@
+-- Keyset pagination and resume reads of a session's messages (ChatMessageRepository)
+-- CONCURRENTLY keeps chat inserts flowing while the index is built; scripts run outside a transaction
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_chat_messages_session_sent ON chat_messages (session_id, sent_at, message_id);
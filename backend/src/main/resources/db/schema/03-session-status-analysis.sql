@@ -0,0 +1,10 @@
+-- Analysis job bookkeeping on session_status (SessionAnalysisJobRepository)
+ALTER TABLE session_status ADD COLUMN IF NOT EXISTS analysis_attempts INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE session_status ADD COLUMN IF NOT EXISTS analysis_lease_owner VARCHAR(64);
+ALTER TABLE session_status ADD COLUMN IF NOT EXISTS analysis_lease_until TIMESTAMP(6);
+ALTER TABLE session_status ADD COLUMN IF NOT EXISTS analysis_next_attempt_at TIMESTAMP(6);
+ALTER TABLE session_status ADD COLUMN IF NOT EXISTS analysis_last_error TEXT;
+ALTER TABLE session_status ADD COLUMN IF NOT EXISTS analysis_dead_lettered BOOLEAN NOT NULL DEFAULT FALSE;
+-- Claim queries scan rows still waiting for analysis
+CREATE INDEX IF NOT EXISTS idx_session_status_pending_analysis
+    ON session_status (is_session_status_computed, analysis_dead_lettered, status_id);
@@ -0,0 +1,11 @@
+-- Database tier of GeminiResponseCache (analysis and summary responses)
+CREATE TABLE IF NOT EXISTS gemini_response_cache (
+    prompt_hash VARCHAR(64) NOT NULL PRIMARY KEY,
+    use_case VARCHAR(20) NOT NULL,
+    response TEXT NOT NULL,
+    latency_ms BIGINT NOT NULL,
+    created_at TIMESTAMP(6) NOT NULL,
+    expires_at TIMESTAMP(6) NOT NULL
+);
+-- Lookups filter on expiry and purgeExpired deletes by it
+CREATE INDEX IF NOT EXISTS idx_gemini_response_cache_expires ON gemini_response_cache (expires_at);
@@ -0,0 +1,119 @@
+package com.dbms.mentalhealth.benchmark;
+
+import com.dbms.mentalhealth.model.ChatMessage;
+import com.dbms.mentalhealth.model.Session;
+import com.dbms.mentalhealth.model.User;
+import com.dbms.mentalhealth.repository.ChatMessageBatchRepository;
+import com.dbms.mentalhealth.repository.ChatMessageRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Measures chat message insert throughput against the configured database for a range of batch sizes,
+ * comparing the JDBC batch path with {@code saveAll}. Every round runs in a transaction that is rolled
+ * back, so the database is left untouched; it only needs one existing session to reference.
+ * <p>
+ * {@code saveAll} is the per-row baseline: IDENTITY ids keep Hibernate from batching the inserts.
+ * <p>
+ * Run with the {@code benchmark-chat-insert} profile (see the package documentation).
+ */
+@Slf4j
+@Component
+@Profile("benchmark-chat-insert")
+public class ChatMessageInsertBenchmark implements CommandLineRunner {
+    private static final int[] BATCH_SIZES = {10, 50, 100, 500, 1000, 5000};
+    private static final int WARMUP_ROUNDS = 2;
+    private static final int MEASURED_ROUNDS = 5;
+
+    private final ChatMessageBatchRepository chatMessageBatchRepository;
+    private final ChatMessageRepository chatMessageRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public ChatMessageInsertBenchmark(ChatMessageBatchRepository chatMessageBatchRepository,
+                                      ChatMessageRepository chatMessageRepository,
+                                      JdbcTemplate jdbcTemplate,
+                                      PlatformTransactionManager transactionManager) {
+        this.chatMessageBatchRepository = chatMessageBatchRepository;
+        this.chatMessageRepository = chatMessageRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public void run(String... args) {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList("SELECT session_id, user_id FROM session LIMIT 1");
+        if (rows.isEmpty()) {
+            log.error("Insert benchmark needs at least one row in the session table");
+            return;
+        }
+        int sessionId = ((Number) rows.get(0).get("session_id")).intValue();
+        int userId = ((Number) rows.get(0).get("user_id")).intValue();
+
+        log.info("batch size | jdbc batch rows/s | saveAll rows/s");
+        for (int batchSize : BATCH_SIZES) {
+            List<ChatMessage> batch = messages(sessionId, userId, batchSize);
+            double jdbc = measure(batch, messages -> chatMessageBatchRepository.insertAll(messages, batchSize));
+            double jpa = measure(batch, messages -> chatMessageRepository.saveAll(copies(messages)));
+            log.info("{} | {} | {}", String.format("%10d", batchSize),
+                    String.format("%17.0f", jdbc), String.format("%14.0f", jpa));
+        }
+    }
+
+    private double measure(List<ChatMessage> batch, Consumer<List<ChatMessage>> writer) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            runRolledBack(batch, writer);
+        }
+        long elapsed = 0;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            elapsed += runRolledBack(batch, writer);
+        }
+        return batch.size() * (double) MEASURED_ROUNDS / (elapsed / 1_000_000_000.0);
+    }
+
+    private long runRolledBack(List<ChatMessage> batch, Consumer<List<ChatMessage>> writer) {
+        Long elapsed = transactionTemplate.execute(status -> {
+            long start = System.nanoTime();
+            writer.accept(batch);
+            chatMessageRepository.flush();
+            long took = System.nanoTime() - start;
+            status.setRollbackOnly();
+            return took;
+        });
+        return elapsed == null ? 0 : elapsed;
+    }
+
+    private static List<ChatMessage> messages(int sessionId, int userId, int count) {
+        Session session = new Session();
+        session.setSessionId(sessionId);
+        User sender = new User();
+        sender.setUserId(userId);
+
+        List<ChatMessage> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            messages.add(new ChatMessage(null, session, sender, "benchmark message " + i, LocalDateTime.now(),
+                    UUID.randomUUID()));
+        }
+        return messages;
+    }
+
+    // saveAll assigns ids to the instances it persists, so each round needs fresh ones
+    private static List<ChatMessage> copies(List<ChatMessage> messages) {
+        return messages.stream()
+                .map(m -> new ChatMessage(null, m.getSession(), m.getSender(), m.getMessageContent(), m.getSentAt(),
+                        UUID.randomUUID()))
+                .toList();
+    }
+}
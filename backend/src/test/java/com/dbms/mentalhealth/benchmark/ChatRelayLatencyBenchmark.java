@@ -0,0 +1,126 @@
+package com.dbms.mentalhealth.benchmark;
+
+import com.dbms.mentalhealth.config.ChatRelayConfig;
+import com.dbms.mentalhealth.websocket.relay.ChatRelayEvent;
+import com.dbms.mentalhealth.websocket.relay.PostgresChatRelay;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs two {@link PostgresChatRelay} nodes in this JVM against the configured database and measures
+ * cross-node delivery latency: node A publishes, node B receives. Also checks that a payload larger
+ * than the NOTIFY limit arrives intact.
+ * <p>
+ * Run with the {@code benchmark-chat-relay} profile (see the package documentation).
+ */
+@Slf4j
+@Component
+@Profile("benchmark-chat-relay")
+public class ChatRelayLatencyBenchmark implements CommandLineRunner {
+    private static final int WARMUP_EVENTS = 200;
+    private static final int MEASURED_EVENTS = 2000;
+
+    private final DataSourceProperties dataSourceProperties;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public ChatRelayLatencyBenchmark(DataSourceProperties dataSourceProperties,
+                                     JdbcTemplate jdbcTemplate,
+                                     ObjectMapper objectMapper) {
+        this.dataSourceProperties = dataSourceProperties;
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        ChatRelayConfig config = new ChatRelayConfig();
+        config.setChannel("chat_relay_benchmark");
+        PostgresChatRelay nodeA = new PostgresChatRelay(dataSourceProperties, jdbcTemplate, objectMapper, config, new SimpleMeterRegistry());
+        PostgresChatRelay nodeB = new PostgresChatRelay(dataSourceProperties, jdbcTemplate, objectMapper, config, new SimpleMeterRegistry());
+
+        Map<String, Long> sentAt = new ConcurrentHashMap<>();
+        long[] latencies = new long[MEASURED_EVENTS];
+        CountDownLatch[] latch = {new CountDownLatch(WARMUP_EVENTS)};
+        int[] measured = {0};
+        String largePayload = "x".repeat(20_000);
+        CountDownLatch largeReceived = new CountDownLatch(1);
+
+        nodeB.subscribe(event -> {
+            if (largePayload.equals(event.content())) {
+                largeReceived.countDown();
+                return;
+            }
+            Long start = sentAt.remove(event.content());
+            if (start == null) {
+                return;
+            }
+            synchronized (latencies) {
+                if (event.sessionId().equals("measure") && measured[0] < latencies.length) {
+                    latencies[measured[0]++] = System.nanoTime() - start;
+                }
+            }
+            latch[0].countDown();
+        });
+        nodeA.start();
+        nodeB.start();
+        // Give both LISTEN connections time to come up
+        TimeUnit.SECONDS.sleep(2);
+
+        try {
+            publish(nodeA, "warmup", WARMUP_EVENTS, sentAt);
+            latch[0].await(30, TimeUnit.SECONDS);
+
+            latch[0] = new CountDownLatch(MEASURED_EVENTS);
+            publish(nodeA, "measure", MEASURED_EVENTS, sentAt);
+            if (!latch[0].await(60, TimeUnit.SECONDS)) {
+                log.warn("Only {} of {} relayed events arrived", measured[0], MEASURED_EVENTS);
+            }
+
+            long[] sorted;
+            synchronized (latencies) {
+                sorted = Arrays.copyOf(latencies, measured[0]);
+            }
+            Arrays.sort(sorted);
+            if (sorted.length > 0) {
+                log.info("Cross-node relay latency over {} events: p50 {} us, p95 {} us, p99 {} us, max {} us",
+                        sorted.length, micros(sorted, 0.50), micros(sorted, 0.95), micros(sorted, 0.99),
+                        sorted[sorted.length - 1] / 1000);
+            }
+
+            nodeA.publish(ChatRelayEvent.system("large", largePayload, null));
+            log.info("Payload of {} chars split across notifications {}", largePayload.length(),
+                    largeReceived.await(10, TimeUnit.SECONDS) ? "arrived intact" : "did NOT arrive");
+        } finally {
+            nodeA.stop();
+            nodeB.stop();
+        }
+    }
+
+    // Paced so the benchmark measures delivery latency rather than queueing behind a burst
+    private static void publish(PostgresChatRelay node, String sessionId, int count, Map<String, Long> sentAt)
+            throws InterruptedException {
+        for (int i = 0; i < count; i++) {
+            String payload = sessionId + "-" + i;
+            sentAt.put(payload, System.nanoTime());
+            node.publish(ChatRelayEvent.system(sessionId, payload, null));
+            TimeUnit.MICROSECONDS.sleep(500);
+        }
+    }
+
+    private static long micros(long[] sorted, double percentile) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * percentile))] / 1000;
+    }
+}
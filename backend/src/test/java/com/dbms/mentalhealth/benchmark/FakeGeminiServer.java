@@ -0,0 +1,261 @@
+package com.dbms.mentalhealth.benchmark;
+
+import com.dbms.mentalhealth.config.GeminiSimulatorConfig;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stand-in for the Gemini {@code generateContent} endpoint, for benchmarks and local runs without the real
+ * API. Answers every POST with the {@code candidates[0].content.parts[0].text} shape that
+ * {@code GeminiServiceImpl} reads, after a log-normal delay. Paths ending in {@code :streamGenerateContent}
+ * get the same text as server-sent events of {@code stream-chunk-chars} characters each. The text depends on the prompt: single and
+ * batch moderation verdicts from {@code blocked-phrases}, chunk summaries, and JSON or plain-text session
+ * analyses with a category from {@code category-keywords}.
+ * <p>
+ * Failures are injected at the configured rates: 429 and 500 responses, answers that are not JSON, and
+ * JSON wrapped in a markdown fence. Streams the client closed before the last event are counted as
+ * {@code stream_cancelled}.
+ */
+@Slf4j
+public class FakeGeminiServer {
+
+    private static final double Z_99 = 2.326;
+
+    private final GeminiSimulatorConfig config;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SplittableRandom random;
+    private final Map<String, AtomicLong> responses = new ConcurrentHashMap<>();
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public FakeGeminiServer(GeminiSimulatorConfig config) {
+        this.config = config;
+        this.random = config.getSeed() != 0 ? new SplittableRandom(config.getSeed()) : new SplittableRandom();
+    }
+
+    public void start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        // Every request sleeps for its simulated latency, so each one needs its own thread
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        log.info("Fake Gemini server listening on {}", getUrl());
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    // Any path is accepted; this one mirrors the real endpoint
+    public String getUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + "/v1beta/models/gemini-pro:generateContent";
+    }
+
+    /**
+     * Responses sent so far by kind: ok, throttled, server_error, malformed, fenced, bad_request, stream_cancelled.
+     */
+    public Map<String, Long> getResponseCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        responses.forEach((kind, count) -> counts.put(kind, count.get()));
+        return counts;
+    }
+
+    public void resetResponseCounts() {
+        responses.clear();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String prompt;
+            try (InputStream body = exchange.getRequestBody()) {
+                prompt = objectMapper.readTree(body).path("contents").path(0).path("parts").path(0).path("text").asText(null);
+            } catch (IOException e) {
+                prompt = null;
+            }
+            if (!"POST".equals(exchange.getRequestMethod()) || prompt == null) {
+                send(exchange, 400, "{\"error\": {\"code\": 400, \"status\": \"INVALID_ARGUMENT\"}}", "bad_request");
+                return;
+            }
+
+            sleep(nextLatencyMs());
+
+            double roll = nextDouble();
+            if (roll < config.getThrottledRate()) {
+                send(exchange, 429, "{\"error\": {\"code\": 429, \"status\": \"RESOURCE_EXHAUSTED\"}}", "throttled");
+                return;
+            }
+            roll -= config.getThrottledRate();
+            if (roll < config.getServerErrorRate()) {
+                send(exchange, 500, "{\"error\": {\"code\": 500, \"status\": \"INTERNAL\"}}", "server_error");
+                return;
+            }
+
+            String kind = "ok";
+            String text = answer(prompt);
+            roll = nextDouble();
+            if (roll < config.getMalformedRate()) {
+                kind = "malformed";
+                text = "I'm sorry, I can only answer that in prose: the " + text.length() + " characters you expected are missing.";
+            } else if (roll - config.getMalformedRate() < config.getFencedRate()) {
+                kind = "fenced";
+                text = "```json\n" + text + "\n```";
+            }
+            if (exchange.getRequestURI().getPath().endsWith(":streamGenerateContent")) {
+                stream(exchange, text, kind);
+            } else {
+                send(exchange, 200, candidate(text), kind);
+            }
+        }
+    }
+
+    private String answer(String prompt) throws IOException {
+        if (prompt.contains("content moderator")) {
+            return prompt.contains("JSON array") ? batchVerdicts(prompt) : singleVerdict(prompt);
+        }
+        if (prompt.startsWith("The following is part")) {
+            return "The user talked about " + category(prompt).toLowerCase(Locale.ROOT).replace('_', ' ')
+                    + " and the counselor listened and suggested small next steps.";
+        }
+        String category = category(prompt);
+        String summary = "Simulated analysis of a " + prompt.length() + "-character prompt.";
+        if (prompt.contains("JSON object")) {
+            ObjectNode analysis = objectMapper.createObjectNode().put("category", category).put("summary", summary);
+            return objectMapper.writeValueAsString(analysis);
+        }
+        return "CATEGORY: " + category + "\nSUMMARY: " + summary;
+    }
+
+    private String singleVerdict(String prompt) throws IOException {
+        String marker = "Message to moderate: \"";
+        int start = prompt.indexOf(marker);
+        int end = prompt.lastIndexOf("\"\n\nRespond");
+        String message = start >= 0 && end > start ? prompt.substring(start + marker.length(), end) : prompt;
+        return objectMapper.writeValueAsString(verdict(message));
+    }
+
+    // Items are the {"id": ..., "text": ...} lines of the batch prompt
+    private String batchVerdicts(String prompt) throws IOException {
+        ArrayNode verdicts = objectMapper.createArrayNode();
+        for (String line : prompt.split("\n")) {
+            if (line.startsWith("{\"id\":")) {
+                JsonNode item = objectMapper.readTree(line);
+                verdicts.add(verdict(item.path("text").asText()).put("id", item.path("id").asInt()));
+            }
+        }
+        return objectMapper.writeValueAsString(verdicts);
+    }
+
+    private ObjectNode verdict(String message) {
+        String lower = message.toLowerCase(Locale.ROOT);
+        for (String phrase : config.getBlockedPhrases()) {
+            if (lower.contains(phrase.toLowerCase(Locale.ROOT))) {
+                return objectMapper.createObjectNode().put("allowed", false).put("reason", "Contains \"" + phrase + "\"");
+            }
+        }
+        return objectMapper.createObjectNode().put("allowed", true).put("reason", "");
+    }
+
+    private String category(String prompt) {
+        String lower = prompt.toLowerCase(Locale.ROOT);
+        // Only the conversation counts, not the category list in the instructions
+        int conversation = Math.max(lower.indexOf("conversation:"), lower.indexOf("part summaries:"));
+        String searched = conversation >= 0 ? lower.substring(conversation) : lower;
+        for (Map.Entry<String, String> keyword : config.getCategoryKeywords().entrySet()) {
+            if (searched.contains(keyword.getKey().toLowerCase(Locale.ROOT))) {
+                return keyword.getValue();
+            }
+        }
+        return "OTHER";
+    }
+
+    private String candidate(String text) throws IOException {
+        ObjectNode root = objectMapper.createObjectNode();
+        ObjectNode candidate = root.putArray("candidates").addObject();
+        ObjectNode content = candidate.putObject("content");
+        content.putArray("parts").addObject().put("text", text);
+        content.put("role", "model");
+        candidate.put("finishReason", "STOP");
+        return objectMapper.writeValueAsString(root);
+    }
+
+    private void send(HttpExchange exchange, int status, String body, String kind) throws IOException {
+        responses.computeIfAbsent(kind, k -> new AtomicLong()).incrementAndGet();
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private void stream(HttpExchange exchange, String text, String kind) throws IOException {
+        responses.computeIfAbsent(kind, k -> new AtomicLong()).incrementAndGet();
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        int chunkChars = Math.max(1, config.getStreamChunkChars());
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (int start = 0; start < text.length(); start += chunkChars) {
+                if (start > 0) {
+                    sleep(config.getStreamChunkDelayMs());
+                }
+                String event = "data: " + candidate(text.substring(start, Math.min(text.length(), start + chunkChars))) + "\r\n\r\n";
+                out.write(event.getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+        } catch (IOException e) {
+            // The client stopped reading once it had what it needed
+            responses.computeIfAbsent("stream_cancelled", k -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    private long nextLatencyMs() {
+        long median = config.getLatencyMedianMs();
+        if (config.getLatencyP99Ms() <= median || median <= 0) {
+            return Math.max(0, median);
+        }
+        double sigma = Math.log((double) config.getLatencyP99Ms() / median) / Z_99;
+        double gaussian;
+        synchronized (random) {
+            gaussian = random.nextGaussian();
+        }
+        return Math.round(median * Math.exp(sigma * gaussian));
+    }
+
+    private double nextDouble() {
+        synchronized (random) {
+            return random.nextDouble();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.dbms.mentalhealth.benchmark;
+
+import com.dbms.mentalhealth.config.GeminiCacheConfig;
+import com.dbms.mentalhealth.config.GeminiClientConfig;
+import com.dbms.mentalhealth.config.GeminiSimulatorConfig;
+import com.dbms.mentalhealth.config.ModerationBatchConfig;
+import com.dbms.mentalhealth.config.SessionAnalysisConfig;
+import com.dbms.mentalhealth.gemini.GeminiClient;
+import com.dbms.mentalhealth.gemini.GeminiResponseCache;
+import com.dbms.mentalhealth.gemini.ModerationBatcher;
+import com.dbms.mentalhealth.gemini.SessionTranscriptSummarizer;
+import com.dbms.mentalhealth.model.ModerationResult;
+import com.dbms.mentalhealth.service.impl.GeminiServiceImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Replays a corpus of chat messages and session transcripts through the real moderation and analysis
+ * code against a {@link FakeGeminiServer}, once per failure scenario. Reports throughput, latency
+ * percentiles, verdicts that fell back to "unavailable", parse failures ({@code gemini.parse.failures})
+ * and what the simulator answered. Moderation is measured with one call per message and through
+ * {@link ModerationBatcher}; analysis covers the corpus transcripts plus one long transcript built from
+ * them, which takes the chunked path.
+ * <p>
+ * The response cache is disabled so every request reaches the simulator. Latency comes from
+ * {@code gemini.simulator.latency-*}; the corpus from {@code benchmark.gemini-replay.corpus}.
+ * <p>
+ * Run with the {@code benchmark-gemini-replay} profile (see the package documentation).
+ */
+@Slf4j
+@Component
+@Profile("benchmark-gemini-replay")
+public class GeminiReplayBenchmark implements CommandLineRunner {
+    private static final long SEED = 42;
+
+    private record Scenario(String name, double throttledRate, double serverErrorRate, double malformedRate, double fencedRate) {
+    }
+
+    private record Corpus(List<String> messages, List<List<String>> transcripts) {
+    }
+
+    private static final List<Scenario> SCENARIOS = List.of(
+            new Scenario("clean", 0, 0, 0, 0),
+            new Scenario("5% throttled", 0.05, 0, 0, 0),
+            new Scenario("5% server errors", 0, 0.05, 0, 0),
+            new Scenario("5% malformed", 0, 0, 0.05, 0),
+            new Scenario("20% fenced", 0, 0, 0, 0.20));
+
+    private final GeminiSimulatorConfig simulatorConfig;
+    private final ObjectMapper objectMapper;
+    private final Resource corpusResource;
+    private final int rounds;
+    private final int concurrency;
+
+    public GeminiReplayBenchmark(GeminiSimulatorConfig simulatorConfig,
+                                 ObjectMapper objectMapper,
+                                 @Value("${benchmark.gemini-replay.corpus:classpath:benchmark/gemini-replay-corpus.json}") Resource corpusResource,
+                                 @Value("${benchmark.gemini-replay.rounds:10}") int rounds,
+                                 @Value("${benchmark.gemini-replay.concurrency:16}") int concurrency) {
+        this.simulatorConfig = simulatorConfig;
+        this.objectMapper = objectMapper;
+        this.corpusResource = corpusResource;
+        this.rounds = rounds;
+        this.concurrency = concurrency;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        Corpus corpus;
+        try (InputStream in = corpusResource.getInputStream()) {
+            corpus = objectMapper.readValue(in, Corpus.class);
+        }
+        List<String> messages = new ArrayList<>();
+        for (int i = 0; i < rounds; i++) {
+            messages.addAll(corpus.messages());
+        }
+        List<List<String>> transcripts = new ArrayList<>(corpus.transcripts());
+        transcripts.add(longTranscript(corpus.transcripts()));
+        log.info("Replaying {} messages and {} transcripts per scenario, latency median {} ms / p99 {} ms, concurrency {}",
+                messages.size(), transcripts.size(), simulatorConfig.getLatencyMedianMs(),
+                simulatorConfig.getLatencyP99Ms(), concurrency);
+
+        ExecutorService callers = Executors.newFixedThreadPool(concurrency);
+        try {
+            for (Scenario scenario : SCENARIOS) {
+                runScenario(scenario, messages, transcripts, callers);
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    private void runScenario(Scenario scenario, List<String> messages, List<List<String>> transcripts,
+                             ExecutorService callers) throws Exception {
+        GeminiSimulatorConfig config = new GeminiSimulatorConfig();
+        config.setLatencyMedianMs(simulatorConfig.getLatencyMedianMs());
+        config.setLatencyP99Ms(simulatorConfig.getLatencyP99Ms());
+        config.setBlockedPhrases(simulatorConfig.getBlockedPhrases());
+        config.setCategoryKeywords(simulatorConfig.getCategoryKeywords());
+        config.setThrottledRate(scenario.throttledRate());
+        config.setServerErrorRate(scenario.serverErrorRate());
+        config.setMalformedRate(scenario.malformedRate());
+        config.setFencedRate(scenario.fencedRate());
+        config.setSeed(SEED);
+
+        FakeGeminiServer server = new FakeGeminiServer(config);
+        server.start(0);
+        try {
+            SimpleMeterRegistry registry = new SimpleMeterRegistry();
+            GeminiCacheConfig cacheConfig = new GeminiCacheConfig();
+            cacheConfig.setEnabled(false);
+            GeminiClient client = new GeminiClient(new GeminiClientConfig(), registry, server.getUrl(), "benchmark");
+            GeminiServiceImpl gemini = new GeminiServiceImpl(client, new GeminiResponseCache(null, cacheConfig, registry, "benchmark"), registry);
+            ModerationBatcher batcher = new ModerationBatcher(gemini, new ModerationBatchConfig(), registry);
+            SessionTranscriptSummarizer summarizer = new SessionTranscriptSummarizer(gemini, new SessionAnalysisConfig(), registry);
+
+            log.info("--- Scenario: {} ---", scenario.name());
+            replay("moderation (single)", messages, callers, registry, server,
+                    message -> outcome(gemini.moderateMessage(message)));
+            replay("moderation (batched)", messages, callers, registry, server,
+                    message -> outcome(batcher.moderate(message)));
+            replay("analysis", transcripts, callers, registry, server,
+                    transcript -> summarizer.analyze(transcript).getOrDefault("summary", "").startsWith("Error analyzing") ? "unreadable" : "ok");
+            summarizer.shutdown();
+        } finally {
+            server.stop();
+        }
+    }
+
+    private <T> void replay(String name, List<T> inputs, ExecutorService callers, SimpleMeterRegistry registry,
+                            FakeGeminiServer server, Function<T, String> call) throws Exception {
+        server.resetResponseCounts();
+        double parseFailuresBefore = parseFailures(registry);
+        Map<String, AtomicLong> outcomes = new ConcurrentHashMap<>();
+        long[] latencies = new long[inputs.size()];
+        List<Future<?>> futures = new ArrayList<>(inputs.size());
+
+        long start = System.nanoTime();
+        for (int i = 0; i < inputs.size(); i++) {
+            int index = i;
+            futures.add(callers.submit(() -> {
+                long callStart = System.nanoTime();
+                String outcome;
+                try {
+                    outcome = call.apply(inputs.get(index));
+                } catch (RuntimeException e) {
+                    outcome = "error";
+                }
+                latencies[index] = System.nanoTime() - callStart;
+                outcomes.computeIfAbsent(outcome, k -> new AtomicLong()).incrementAndGet();
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        double elapsedSeconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        Arrays.sort(latencies);
+        log.info("{}: {} calls in {} s ({} calls/s), p50 {} ms, p95 {} ms, p99 {} ms, max {} ms",
+                name, inputs.size(), String.format("%.1f", elapsedSeconds),
+                String.format("%.1f", inputs.size() / elapsedSeconds),
+                millis(latencies, 0.50), millis(latencies, 0.95), millis(latencies, 0.99),
+                latencies[latencies.length - 1] / 1_000_000);
+        log.info("{}: outcomes {}, parse failures {}, simulator responses {}",
+                name, outcomes, (long) (parseFailures(registry) - parseFailuresBefore), server.getResponseCounts());
+    }
+
+    private static String outcome(ModerationResult result) {
+        if (result.isFallback()) {
+            return "unavailable";
+        }
+        return result.isAllowed() ? "allowed" : "blocked";
+    }
+
+    private static double parseFailures(SimpleMeterRegistry registry) {
+        return registry.find("gemini.parse.failures").counters().stream().mapToDouble(Counter::count).sum();
+    }
+
+    // Long enough to go past the single-shot threshold and exercise the chunked path
+    private static List<String> longTranscript(List<List<String>> transcripts) {
+        List<String> lines = new ArrayList<>();
+        int chars = 0;
+        while (chars < 60_000) {
+            for (List<String> transcript : transcripts) {
+                lines.addAll(transcript);
+                chars += transcript.stream().mapToInt(String::length).sum();
+            }
+        }
+        return lines;
+    }
+
+    private static long millis(long[] sorted, double percentile) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * percentile))] / 1_000_000;
+    }
+}
@@ -0,0 +1,175 @@
+package com.dbms.mentalhealth.benchmark;
+
+import com.dbms.mentalhealth.gemini.GeminiResponseParser;
+import com.dbms.mentalhealth.gemini.GeminiStreamHandler;
+import com.dbms.mentalhealth.model.ModerationResult;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Compares the tree-based parsing of Gemini answers that {@code GeminiServiceImpl} used before with
+ * {@link GeminiResponseParser}: extracting the candidate text from a response body, reading a moderation
+ * verdict, and both together. Inputs mimic real answers, including the safety ratings and usage metadata
+ * after the text. Each case is warmed up, then timed over a fixed number of operations in one thread.
+ * <p>
+ * Also reports after how many chunks of a streamed answer the moderation verdict is decided.
+ * <p>
+ * Run with the {@code benchmark-gemini-parsing} profile (see the package documentation).
+ */
+@Slf4j
+@Component
+@Profile("benchmark-gemini-parsing")
+public class GeminiResponseParsingBenchmark implements CommandLineRunner {
+    private static final int WARMUP_OPERATIONS = 200_000;
+    private static final int MEASURED_OPERATIONS = 500_000;
+    private static final int STREAM_CHUNK_CHARS = 16;
+
+    private record Sample(String name, String text) {
+    }
+
+    @FunctionalInterface
+    private interface Operation {
+        int run(byte[] body) throws IOException;
+    }
+
+    private static final List<Sample> SAMPLES = List.of(
+            new Sample("allowed", "{\"allowed\": true, \"reason\": \"\"}"),
+            new Sample("blocked", "{\"allowed\": false, \"reason\": \"Contains a violent threat against another user\"}"),
+            new Sample("fenced", "```json\n{\n  \"allowed\": true,\n  \"reason\": \"\"\n}\n```"),
+            new Sample("analysis", "{\"category\": \"STRESS\", \"summary\": \""
+                    + "The user described mounting pressure from upcoming exams and a part-time job. ".repeat(12) + "\"}"));
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    // Keeps the JIT from discarding the parsing work
+    private int sink;
+
+    @Override
+    public void run(String... args) throws Exception {
+        log.info("case | tree ns/op | streaming ns/op | speed-up");
+        for (Sample sample : SAMPLES) {
+            byte[] body = responseBody(sample.text()).getBytes(StandardCharsets.UTF_8);
+            compare("text " + sample.name(), body, this::treeText, GeminiResponseParsingBenchmark::streamingText);
+            if (!sample.name().equals("analysis")) {
+                byte[] text = sample.text().getBytes(StandardCharsets.UTF_8);
+                compare("verdict " + sample.name(), text, this::treeVerdict, GeminiResponseParsingBenchmark::streamingVerdict);
+                compare("text + verdict " + sample.name(), body,
+                        b -> treeVerdict(treeTextString(b).getBytes(StandardCharsets.UTF_8)),
+                        b -> streamingVerdict(GeminiResponseParser.extractText(new ByteArrayInputStream(b)).getBytes(StandardCharsets.UTF_8)));
+            }
+        }
+
+        for (Sample sample : SAMPLES.subList(0, 3)) {
+            int[] chunks = new int[1];
+            String events = eventStream(sample.text());
+            ModerationResult verdict = GeminiResponseParser.readEventStream(
+                    new ByteArrayInputStream(events.getBytes(StandardCharsets.UTF_8)),
+                    new GeminiStreamHandler<>() {
+                        private final GeminiResponseParser.ModerationVerdictStream delegate = new GeminiResponseParser.ModerationVerdictStream();
+
+                        @Override
+                        public boolean onText(String text) throws IOException {
+                            chunks[0]++;
+                            return delegate.onText(text);
+                        }
+
+                        @Override
+                        public ModerationResult result() throws IOException {
+                            return delegate.result();
+                        }
+                    });
+            int total = (sample.text().length() + STREAM_CHUNK_CHARS - 1) / STREAM_CHUNK_CHARS;
+            log.info("streamed {}: verdict allowed={} after {} of {} chunks of {} characters",
+                    sample.name(), verdict.isAllowed(), chunks[0], total, STREAM_CHUNK_CHARS);
+        }
+        log.debug("Sink {}", sink);
+    }
+
+    private void compare(String name, byte[] body, Operation tree, Operation streaming) throws IOException {
+        double treeNanos = measure(body, tree);
+        double streamingNanos = measure(body, streaming);
+        log.info("{} | {} | {} | {}x", name, String.format("%.0f", treeNanos), String.format("%.0f", streamingNanos),
+                String.format("%.1f", treeNanos / streamingNanos));
+    }
+
+    private double measure(byte[] body, Operation operation) throws IOException {
+        for (int i = 0; i < WARMUP_OPERATIONS; i++) {
+            sink += operation.run(body);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_OPERATIONS; i++) {
+            sink += operation.run(body);
+        }
+        return (System.nanoTime() - start) / (double) MEASURED_OPERATIONS;
+    }
+
+    // The parsing GeminiServiceImpl did before GeminiResponseParser: whole body as a string, then a tree
+    private String treeTextString(byte[] body) throws IOException {
+        JsonNode root = objectMapper.readTree(new String(body, StandardCharsets.UTF_8));
+        return root.path("candidates").path(0).path("content").path("parts").path(0).path("text").asText();
+    }
+
+    private int treeText(byte[] body) throws IOException {
+        return treeTextString(body).length();
+    }
+
+    private int treeVerdict(byte[] text) throws IOException {
+        String response = new String(text, StandardCharsets.UTF_8);
+        String cleanedResponse = response;
+        if (response.startsWith("```json") || response.startsWith("```")) {
+            cleanedResponse = response.replaceAll("^```json\\s*|^```\\s*|\\s*```$", "");
+        }
+        JsonNode root = objectMapper.readTree(cleanedResponse);
+        boolean allowed = root.path("allowed").asBoolean(true);
+        String reason = root.path("reason").asText(null);
+        return (allowed ? 1 : 0) + (reason == null ? 0 : reason.length());
+    }
+
+    private static int streamingText(byte[] body) throws IOException {
+        return GeminiResponseParser.extractText(new ByteArrayInputStream(body)).length();
+    }
+
+    private static int streamingVerdict(byte[] text) throws IOException {
+        ModerationResult result = GeminiResponseParser.parseModerationVerdict(new String(text, StandardCharsets.UTF_8));
+        return (result.isAllowed() ? 1 : 0) + (result.getReason() == null ? 0 : result.getReason().length());
+    }
+
+    private String responseBody(String text) throws IOException {
+        ObjectNode root = objectMapper.createObjectNode();
+        ObjectNode candidate = root.putArray("candidates").addObject();
+        ObjectNode content = candidate.putObject("content");
+        content.putArray("parts").addObject().put("text", text);
+        content.put("role", "model");
+        candidate.put("finishReason", "STOP");
+        candidate.put("index", 0);
+        ArrayNode ratings = candidate.putArray("safetyRatings");
+        for (String category : List.of("SEXUALLY_EXPLICIT", "HATE_SPEECH", "HARASSMENT", "DANGEROUS_CONTENT")) {
+            ratings.addObject().put("category", "HARM_CATEGORY_" + category).put("probability", "NEGLIGIBLE");
+        }
+        root.putObject("usageMetadata")
+                .put("promptTokenCount", 182)
+                .put("candidatesTokenCount", text.length() / 4)
+                .put("totalTokenCount", 182 + text.length() / 4);
+        root.put("modelVersion", "gemini-1.5-flash");
+        return objectMapper.writeValueAsString(root);
+    }
+
+    private String eventStream(String text) throws IOException {
+        StringBuilder events = new StringBuilder();
+        for (int start = 0; start < text.length(); start += STREAM_CHUNK_CHARS) {
+            String chunk = text.substring(start, Math.min(text.length(), start + STREAM_CHUNK_CHARS));
+            events.append("data: ").append(responseBody(chunk)).append("\r\n\r\n");
+        }
+        return events.toString();
+    }
+}
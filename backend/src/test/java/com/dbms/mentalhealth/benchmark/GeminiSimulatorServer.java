@@ -0,0 +1,46 @@
+package com.dbms.mentalhealth.benchmark;
+
+import com.dbms.mentalhealth.config.GeminiSimulatorConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Runs a {@link FakeGeminiServer} inside the application under the gemini-sim and loadtest profiles, which
+ * point {@code spring.ai.google.gemini.url} at it. Test classpath only; combine gemini-sim with dev in
+ * {@code spring-boot:test-run} to exercise the real Gemini client, retries and parsing without the API.
+ */
+@Component
+@Profile({"gemini-sim", "loadtest"})
+public class GeminiSimulatorServer {
+
+    private final FakeGeminiServer server;
+    private final GeminiSimulatorConfig config;
+
+    public GeminiSimulatorServer(GeminiSimulatorConfig config) {
+        this.config = config;
+        this.server = new FakeGeminiServer(config);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        server.start(config.getPort());
+    }
+
+    @PreDestroy
+    public void stop() {
+        server.stop();
+    }
+
+    // Requests answered so far, failures included
+    public long getCalls() {
+        return server.getResponseCounts().entrySet().stream()
+                .filter(count -> !"stream_cancelled".equals(count.getKey()))
+                .mapToLong(Map.Entry::getValue)
+                .sum();
+    }
+}
@@ -0,0 +1,174 @@
+package com.dbms.mentalhealth.benchmark;
+
+import com.dbms.mentalhealth.config.SseWriterConfig;
+import com.dbms.mentalhealth.dto.UserActivity.UserActivityDTO;
+import com.dbms.mentalhealth.sse.SseFanOut;
+import com.dbms.mentalhealth.sse.SseFrame;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.ByteArrayHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.StringHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * CPU time per broadcast of an {@code allUsers} event against the number of subscribers, for the two ways
+ * of writing it: one {@code SseEmitter.event()} per subscriber, serialized again each time, and one
+ * {@link SseFrame} from {@link SseFanOut} whose bytes go to everyone. Each write goes through the same
+ * converter lookup the emitter handler does, into a stream that discards the bytes, so what is measured is
+ * the serialization and copying a broadcast costs the dispatcher thread. Also checks that both ways put the
+ * same bytes on the wire.
+ * <p>
+ * Run with the {@code benchmark-sse-fanout} profile (see the package documentation).
+ */
+@Slf4j
+@Component
+@Profile("benchmark-sse-fanout")
+public class SseFanOutBenchmark implements CommandLineRunner {
+    private static final int[] SUBSCRIBERS = {1, 10, 100, 1000};
+    private static final int[] ONLINE_USERS = {20, 300};
+    private static final int WRITES_PER_CASE = 100_000;
+    private static final String EVENT_NAME = "allUsers";
+
+    @FunctionalInterface
+    private interface Broadcast {
+        void run(Object payload, int subscribers) throws IOException;
+    }
+
+    // Spring MVC's order: bytes and strings before JSON
+    private final List<HttpMessageConverter<?>> converters;
+    private final SseFanOut fanOut;
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final DiscardingOutputStream wire = new DiscardingOutputStream();
+
+    public SseFanOutBenchmark(ObjectMapper objectMapper) {
+        this.converters = List.of(new ByteArrayHttpMessageConverter(),
+                new StringHttpMessageConverter(StandardCharsets.UTF_8),
+                new MappingJackson2HttpMessageConverter(objectMapper));
+        this.fanOut = new SseFanOut(objectMapper, new SseWriterConfig(), new SimpleMeterRegistry());
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        for (int users : ONLINE_USERS) {
+            List<UserActivityDTO> payload = payload(users);
+            log.info("{} online users, frame of {} bytes, identical bytes on the wire: {}", users,
+                    fanOut.encode(EVENT_NAME, payload).size(), sameBytes(payload));
+            log.info("subscribers | per-subscriber serialization us/broadcast | serialize-once us/broadcast | CPU saved");
+            for (int subscribers : SUBSCRIBERS) {
+                double perSubscriber = measure(this::perSubscriber, payload, subscribers);
+                double once = measure(this::serializeOnce, payload, subscribers);
+                log.info("{} | {} | {} | {}%", subscribers, String.format("%.1f", perSubscriber),
+                        String.format("%.1f", once), String.format("%.0f", 100 * (1 - once / perSubscriber)));
+            }
+        }
+        log.debug("Bytes written {}", wire.count);
+    }
+
+    // What UserActivityServiceImpl did before SseFanOut
+    private void perSubscriber(Object payload, int subscribers) throws IOException {
+        for (int i = 0; i < subscribers; i++) {
+            for (DataWithMediaType item : SseEmitter.event().name(EVENT_NAME).data(payload).build()) {
+                write(item, wire);
+            }
+        }
+    }
+
+    private void serializeOnce(Object payload, int subscribers) throws IOException {
+        SseFrame frame = fanOut.encode(EVENT_NAME, payload);
+        for (int i = 0; i < subscribers; i++) {
+            for (DataWithMediaType item : frame.items()) {
+                write(item, wire);
+            }
+        }
+    }
+
+    // Microseconds of thread CPU time per broadcast, after a warm-up of the same length
+    private double measure(Broadcast broadcast, Object payload, int subscribers) throws IOException {
+        int rounds = Math.max(50, WRITES_PER_CASE / subscribers);
+        for (int i = 0; i < rounds; i++) {
+            broadcast.run(payload, subscribers);
+        }
+        long start = threads.getCurrentThreadCpuTime();
+        for (int i = 0; i < rounds; i++) {
+            broadcast.run(payload, subscribers);
+        }
+        return (threads.getCurrentThreadCpuTime() - start) / 1_000.0 / rounds;
+    }
+
+    private boolean sameBytes(Object payload) throws IOException {
+        ByteArrayOutputStream before = new ByteArrayOutputStream();
+        for (DataWithMediaType item : SseEmitter.event().name(EVENT_NAME).data(payload).build()) {
+            write(item, before);
+        }
+        ByteArrayOutputStream after = new ByteArrayOutputStream();
+        for (DataWithMediaType item : fanOut.encode(EVENT_NAME, payload).items()) {
+            write(item, after);
+        }
+        return Arrays.equals(before.toByteArray(), after.toByteArray());
+    }
+
+    // The converter lookup of the emitter handler, with a fresh response wrapper per item as it makes
+    @SuppressWarnings("unchecked")
+    private void write(DataWithMediaType item, OutputStream out) throws IOException {
+        Object data = item.getData();
+        for (HttpMessageConverter<?> converter : converters) {
+            if (converter.canWrite(data.getClass(), item.getMediaType())) {
+                HttpHeaders headers = new HttpHeaders();
+                ((HttpMessageConverter<Object>) converter).write(data, item.getMediaType(), new HttpOutputMessage() {
+                    @Override
+                    public OutputStream getBody() {
+                        return out;
+                    }
+
+                    @Override
+                    public HttpHeaders getHeaders() {
+                        return headers;
+                    }
+                });
+                return;
+            }
+        }
+        throw new IllegalStateException("No converter for " + data.getClass());
+    }
+
+    private static List<UserActivityDTO> payload(int users) {
+        List<UserActivityDTO> payload = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            payload.add(new UserActivityDTO(1000 + i, "Anonymous" + Integer.toHexString(0x5eed * (i + 1)), i % 7 == 0));
+        }
+        return payload;
+    }
+
+    private static final class DiscardingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,7 @@
+/**
+ * Benchmark runners and the Gemini simulator. They live on the test classpath so they stay out of the
+ * application jar, and each runner starts only under its own profile, e.g.
+ * {@code ./mvnw spring-boot:test-run -Dspring-boot.run.profiles=dev,benchmark-chat-insert}. The
+ * gemini-sim profile starts the simulator and points the application at it.
+ */
+package com.dbms.mentalhealth.benchmark;
@@ -0,0 +1,22 @@
+package com.dbms.mentalhealth.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "loadtest")
+public class ChatLoadTestConfig {
+    // Chat sessions driven at once; each has one user and one listener connection
+    private int pairs = 50;
+    // Send rate of every connection
+    private double messagesPerSecond = 1.0;
+    // Results of the warmup phase are discarded
+    private int warmupSeconds = 10;
+    private int durationSeconds = 60;
+    // How long to wait for the last messages to reach chat_messages
+    private int persistenceTimeoutSeconds = 60;
+    // Delete the generated users, listeners, sessions and messages afterwards
+    private boolean cleanup = true;
+}
@@ -0,0 +1,45 @@
+package com.dbms.mentalhealth.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "gemini.simulator")
+public class GeminiSimulatorConfig {
+    // Port of the simulator started by the gemini-sim profile; 0 picks a free port
+    private int port = 8089;
+    // Response time is log-normal with this median and 99th percentile; equal values make it fixed
+    private long latencyMedianMs = 300;
+    private long latencyP99Ms = 1500;
+    // Share of requests answered with each failure, between 0 and 1
+    private double throttledRate = 0;
+    private double serverErrorRate = 0;
+    // 200 responses whose text is not the JSON the prompt asked for
+    private double malformedRate = 0;
+    // 200 responses whose JSON is wrapped in a ```json markdown fence
+    private double fencedRate = 0;
+    // streamGenerateContent sends the text in pieces of this many characters, this far apart
+    private int streamChunkChars = 16;
+    private long streamChunkDelayMs = 40;
+    // Messages containing one of these phrases (case-insensitive) are blocked
+    private List<String> blockedPhrases = new ArrayList<>(List.of("buy now", "idiot"));
+    // First keyword found in an analyzed transcript decides its category; OTHER if none matches
+    private Map<String, String> categoryKeywords = defaultCategoryKeywords();
+    // Fixed seed for reproducible runs; 0 seeds from the clock
+    private long seed = 0;
+
+    private static Map<String, String> defaultCategoryKeywords() {
+        Map<String, String> keywords = new LinkedHashMap<>();
+        keywords.put("exam", "STRESS");
+        keywords.put("breakup", "BREAKUP");
+        keywords.put("panic", "ANXIETY");
+        return keywords;
+    }
+}
@@ -0,0 +1,195 @@
+package com.dbms.mentalhealth.gemini;
+
+import com.dbms.mentalhealth.benchmark.FakeGeminiServer;
+import com.dbms.mentalhealth.config.GeminiCacheConfig;
+import com.dbms.mentalhealth.config.GeminiClientConfig;
+import com.dbms.mentalhealth.config.GeminiSimulatorConfig;
+import com.dbms.mentalhealth.config.ModerationBatchConfig;
+import com.dbms.mentalhealth.exception.gemini.GeminiUnavailableException;
+import com.dbms.mentalhealth.model.ModerationResult;
+import com.dbms.mentalhealth.service.impl.GeminiServiceImpl;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The real Gemini client, moderation and batching code against a {@link FakeGeminiServer} on a free
+ * port, with the response cache disabled so every call reaches the simulator unless a test enables it.
+ */
+class GeminiSimulatorTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private FakeGeminiServer server;
+
+    @AfterEach
+    void stopServer() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    void moderationFollowsTheBlockedPhrases() throws IOException {
+        GeminiServiceImpl gemini = gemini(0);
+
+        ModerationResult allowed = gemini.moderateMessage("I have an exam tomorrow and cannot sleep");
+        ModerationResult blocked = gemini.moderateMessage("Buy now, limited offer!");
+
+        assertTrue(allowed.isAllowed());
+        assertFalse(allowed.isFallback());
+        assertFalse(blocked.isAllowed());
+        assertFalse(blocked.isFallback());
+        assertEquals(2L, server.getResponseCounts().get("ok"));
+    }
+
+    @Test
+    void batchModerationAnswersEveryCallerWithOneRequest() throws Exception {
+        GeminiServiceImpl gemini = gemini(0);
+        ModerationBatchConfig batchConfig = new ModerationBatchConfig();
+        batchConfig.setWindowMs(2000);
+        batchConfig.setMaxBatchSize(4);
+        ModerationBatcher batcher = new ModerationBatcher(gemini, batchConfig, registry);
+
+        List<String> messages = List.of("hello there", "you idiot", "thanks for listening", "buy now");
+        List<ModerationResult> results = moderateConcurrently(batcher, messages);
+
+        assertEquals(List.of(true, false, true, false), results.stream().map(ModerationResult::isAllowed).toList());
+        assertTrue(results.stream().noneMatch(ModerationResult::isFallback));
+        assertEquals(1.0, registry.counter("chat.moderation.batch.calls").count());
+        assertEquals(1L, server.getResponseCounts().get("ok"));
+    }
+
+    @Test
+    void unreadableModerationIsCountedAndLeftToTheFailurePolicy() throws IOException {
+        GeminiServiceImpl gemini = gemini(1);
+
+        ModerationResult result = gemini.moderateMessage("hello there");
+
+        assertTrue(result.isFallback());
+        assertEquals(1.0, parseFailures("moderation"));
+        assertEquals(1L, server.getResponseCounts().get("malformed"));
+    }
+
+    @Test
+    void onlyReadableAnswersAreCached() throws IOException {
+        GeminiSimulatorConfig config = simulatorConfig();
+        GeminiServiceImpl gemini = gemini(config, new GeminiClientConfig(), true);
+
+        gemini.moderateMessage("hello there");
+        gemini.moderateMessage("hello there");
+        assertEquals(1L, server.getResponseCounts().get("ok"));
+
+        // The simulator reads its config on every request
+        config.setMalformedRate(1);
+        assertTrue(gemini.moderateMessage("see you soon").isFallback());
+        assertTrue(gemini.moderateMessage("see you soon").isFallback());
+        assertEquals(2L, server.getResponseCounts().get("malformed"));
+    }
+
+    @Test
+    void unreadableBatchFallsBackToSingleCalls() throws Exception {
+        GeminiServiceImpl gemini = gemini(1);
+        ModerationBatchConfig batchConfig = new ModerationBatchConfig();
+        batchConfig.setWindowMs(2000);
+        batchConfig.setMaxBatchSize(2);
+        ModerationBatcher batcher = new ModerationBatcher(gemini, batchConfig, registry);
+
+        List<ModerationResult> results = moderateConcurrently(batcher, List.of("hello there", "see you soon"));
+
+        assertTrue(results.stream().allMatch(ModerationResult::isFallback));
+        assertEquals(1.0, parseFailures("moderation_batch"));
+        assertEquals(2.0, parseFailures("moderation"));
+        assertEquals(2.0, registry.counter("chat.moderation.batch.fallbacks", "reason", "malformed").count());
+        // One batch call, then one call per message
+        assertEquals(3L, server.getResponseCounts().get("malformed"));
+    }
+
+    // Starts the simulator without latency, answering the given share of requests with text that is not JSON
+    private GeminiServiceImpl gemini(double malformedRate) throws IOException {
+        GeminiSimulatorConfig config = simulatorConfig();
+        config.setMalformedRate(malformedRate);
+        return gemini(config, new GeminiClientConfig());
+    }
+
+    private GeminiServiceImpl gemini(GeminiSimulatorConfig config, GeminiClientConfig clientConfig) throws IOException {
+        return gemini(config, clientConfig, false);
+    }
+
+    // The cache, when enabled, keeps to its memory tier
+    private GeminiServiceImpl gemini(GeminiSimulatorConfig config, GeminiClientConfig clientConfig, boolean cached)
+            throws IOException {
+        server = new FakeGeminiServer(config);
+        server.start(0);
+
+        GeminiCacheConfig cacheConfig = new GeminiCacheConfig();
+        cacheConfig.setEnabled(cached);
+        cacheConfig.setPersistent(false);
+        GeminiClient client = new GeminiClient(clientConfig, registry, server.getUrl(), "test");
+        return new GeminiServiceImpl(client, new GeminiResponseCache(null, cacheConfig, registry, "test"), registry);
+    }
+
+    private static GeminiSimulatorConfig simulatorConfig() {
+        GeminiSimulatorConfig config = new GeminiSimulatorConfig();
+        config.setLatencyMedianMs(0);
+        config.setLatencyP99Ms(0);
+        config.setSeed(42);
+        return config;
+    }
+
+    @Test
+    void stalledBodyTimesOutAndFreesTheBulkhead() throws IOException {
+        // Headers arrive at once, then one character every five seconds
+        GeminiSimulatorConfig config = simulatorConfig();
+        config.setStreamChunkChars(1);
+        config.setStreamChunkDelayMs(5000);
+        GeminiClientConfig clientConfig = new GeminiClientConfig();
+        clientConfig.setModeration(new GeminiClientConfig.UseCase(500, 1, 1));
+        GeminiServiceImpl gemini = gemini(config, clientConfig);
+
+        long start = System.nanoTime();
+        assertThrows(GeminiUnavailableException.class,
+                () -> gemini.streamModerationVerdict(gemini.createModerationPrompt("hello there")));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(elapsedMs < 3000, "attempt took " + elapsedMs + " ms");
+        assertEquals(1.0, registry.counter("gemini.client.calls", "use_case", "moderation", "outcome", "timeout").count());
+        assertEquals(0.0, registry.get("gemini.client.in.flight").tag("use_case", "moderation").gauge().value());
+    }
+
+    private static List<ModerationResult> moderateConcurrently(ModerationBatcher batcher, List<String> messages)
+            throws Exception {
+        ExecutorService callers = Executors.newFixedThreadPool(messages.size());
+        try {
+            List<Future<ModerationResult>> futures = new ArrayList<>();
+            for (String message : messages) {
+                futures.add(callers.submit(() -> batcher.moderate(message)));
+            }
+            List<ModerationResult> results = new ArrayList<>();
+            for (Future<ModerationResult> future : futures) {
+                results.add(future.get(10, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    private double parseFailures(String response) {
+        return registry.find("gemini.parse.failures").tag("response", response).counters().stream()
+                .mapToDouble(Counter::count).sum();
+    }
+}
@@ -0,0 +1,147 @@
+package com.dbms.mentalhealth.journal;
+
+import com.dbms.mentalhealth.config.ChatJournalConfig;
+import com.dbms.mentalhealth.model.ChatMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The journal on a temporary directory, closed and reopened the way a restart would.
+ */
+class ChatMessageJournalTest {
+
+    private static final LocalDateTime SENT_AT = LocalDateTime.of(2026, 1, 1, 12, 0);
+
+    @TempDir
+    Path directory;
+
+    private ChatMessageJournal journal;
+
+    @AfterEach
+    void close() {
+        if (journal != null) {
+            journal.shutdown();
+        }
+    }
+
+    @Test
+    void unacknowledgedMessagesAreReplayedAfterRestart() throws IOException {
+        journal = open(16 * 1024);
+        ChatMessage first = message("first");
+        ChatMessage second = message("second");
+        ChatMessage third = message("third");
+        long firstSeq = journal.append(first);
+        long secondSeq = journal.append(second);
+        long thirdSeq = journal.append(third);
+        journal.acknowledge(List.of(secondSeq));
+        journal.shutdown();
+
+        journal = open(16 * 1024);
+        List<JournalEntry> recovered = journal.recover();
+
+        assertEquals(List.of(firstSeq, thirdSeq), recovered.stream().map(JournalEntry::seq).toList());
+        assertEquals(List.of(first.getClientMessageId(), third.getClientMessageId()),
+                recovered.stream().map(JournalEntry::clientMessageId).toList());
+        assertEquals(List.of("first", "third"), recovered.stream().map(JournalEntry::content).toList());
+        assertEquals(SENT_AT, recovered.get(0).sentAt());
+        // Sequence numbers are never reused, so a later ack cannot hit a recovered message
+        assertTrue(journal.append(message("fourth")) > thirdSeq);
+    }
+
+    @Test
+    void tornTailIsDroppedAndOverwritten() throws IOException {
+        journal = open(16 * 1024);
+        ChatMessage kept = message("kept");
+        journal.append(kept);
+        journal.append(message("torn"));
+        journal.shutdown();
+        journal = null;
+
+        // Corrupt the last byte of the second frame's content, as if the process died while writing it
+        Path segment = segmentFiles().get(0);
+        int keptLength = frameLength("kept");
+        int tornLength = frameLength("torn");
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek(keptLength + tornLength - Integer.BYTES - 1);
+            file.write('X');
+        }
+
+        journal = open(16 * 1024);
+        assertEquals(List.of("kept"), contents(journal.recover()));
+        journal.append(message("after"));
+        journal.shutdown();
+
+        journal = open(16 * 1024);
+        List<JournalEntry> recovered = journal.recover();
+        assertEquals(List.of("kept", "after"), contents(recovered));
+        assertEquals(kept.getClientMessageId(), recovered.get(0).clientMessageId());
+    }
+
+    @Test
+    void fullyAcknowledgedSegmentsAreDeleted() throws Exception {
+        // A few messages per segment, so ten of them span several files
+        journal = open(256);
+        List<Long> seqs = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            seqs.add(journal.append(message("message " + i)));
+        }
+        assertTrue(segmentFiles().size() >= 3);
+
+        journal.acknowledge(seqs.subList(0, 5));
+        journal.acknowledge(seqs.subList(5, 10));
+
+        // Only the active segment and the pre-allocated spare are left
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (segmentFiles().size() > 2 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, segmentFiles().size());
+        journal.shutdown();
+
+        journal = open(256);
+        assertEquals(List.of(), journal.recover());
+    }
+
+    private ChatMessageJournal open(int segmentSizeBytes) throws IOException {
+        ChatJournalConfig config = new ChatJournalConfig();
+        config.setDirectory(directory.toString());
+        config.setSegmentSizeBytes(segmentSizeBytes);
+        ChatMessageJournal opened = new ChatMessageJournal(config, new SimpleMeterRegistry());
+        opened.init();
+        return opened;
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(JournalSegment::isSegmentFile).sorted().toList();
+        }
+    }
+
+    private static ChatMessage message(String content) {
+        return ChatMessage.of(UUID.randomUUID(), 7, 42, content, SENT_AT);
+    }
+
+    private static int frameLength(String content) {
+        return JournalSegment.encodeMessage(UUID.randomUUID(), 7, 42, SENT_AT, content).length;
+    }
+
+    private static List<String> contents(List<JournalEntry> entries) {
+        return entries.stream().map(JournalEntry::content).toList();
+    }
+}
@@ -0,0 +1,115 @@
+package com.dbms.mentalhealth.loadtest;
+
+import com.dbms.mentalhealth.enums.ProfileStatus;
+import com.dbms.mentalhealth.enums.Role;
+import com.dbms.mentalhealth.enums.SessionActivityStatus;
+import com.dbms.mentalhealth.model.Listener;
+import com.dbms.mentalhealth.model.Session;
+import com.dbms.mentalhealth.model.User;
+import com.dbms.mentalhealth.repository.ListenerRepository;
+import com.dbms.mentalhealth.repository.SessionRepository;
+import com.dbms.mentalhealth.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Creates the users, listeners and ongoing sessions a load test run chats in, and removes them again.
+ * Names carry a per-run prefix so runs against a shared database do not collide.
+ */
+@Slf4j
+@Component
+@Profile("loadtest")
+public class ChatLoadTestFixtures {
+
+    public record ChatPair(int sessionId, String userName, String listenerName) {
+    }
+
+    private final UserRepository userRepository;
+    private final ListenerRepository listenerRepository;
+    private final SessionRepository sessionRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    private final List<Integer> userIds = new ArrayList<>();
+    private final List<Integer> sessionIds = new ArrayList<>();
+
+    public ChatLoadTestFixtures(UserRepository userRepository,
+                                ListenerRepository listenerRepository,
+                                SessionRepository sessionRepository,
+                                JdbcTemplate jdbcTemplate) {
+        this.userRepository = userRepository;
+        this.listenerRepository = listenerRepository;
+        this.sessionRepository = sessionRepository;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public List<ChatPair> create(int pairs) {
+        String run = UUID.randomUUID().toString().substring(0, 8);
+        List<ChatPair> created = new ArrayList<>(pairs);
+        for (int i = 0; i < pairs; i++) {
+            User user = userRepository.save(user("lt-" + run + "-u" + i, Role.USER));
+            User listenerUser = userRepository.save(user("lt-" + run + "-l" + i, Role.LISTENER));
+            userIds.add(user.getUserId());
+            userIds.add(listenerUser.getUserId());
+
+            Listener listener = new Listener();
+            listener.setUser(listenerUser);
+            listener.setJoinedAt(LocalDateTime.now());
+            listener.setApprovedBy("loadtest");
+            listener = listenerRepository.save(listener);
+
+            Session session = new Session();
+            session.setUser(user);
+            session.setListener(listener);
+            session.setSessionStatus(SessionActivityStatus.ONGOING);
+            session.setSessionStart(LocalDateTime.now());
+            session = sessionRepository.save(session);
+            sessionIds.add(session.getSessionId());
+
+            created.add(new ChatPair(session.getSessionId(), user.getAnonymousName(), listenerUser.getAnonymousName()));
+        }
+        log.info("Created {} load test sessions with prefix lt-{}", pairs, run);
+        return created;
+    }
+
+    public void cleanup() {
+        if (sessionIds.isEmpty()) {
+            return;
+        }
+        String sessions = ids(sessionIds);
+        String users = ids(userIds);
+        int messages = jdbcTemplate.update("DELETE FROM chat_messages WHERE session_id IN (" + sessions + ")");
+        jdbcTemplate.update("DELETE FROM session WHERE session_id IN (" + sessions + ")");
+        jdbcTemplate.update("DELETE FROM listeners WHERE user_id IN (" + users + ")");
+        jdbcTemplate.update("DELETE FROM users WHERE user_id IN (" + users + ")");
+        log.info("Removed {} load test sessions, {} users and {} messages", sessionIds.size(), userIds.size(), messages);
+        sessionIds.clear();
+        userIds.clear();
+    }
+
+    public String sessionIdList() {
+        return ids(sessionIds);
+    }
+
+    private static User user(String anonymousName, Role role) {
+        User user = new User();
+        user.setEmail(anonymousName + "@loadtest.invalid");
+        user.setPassword("loadtest");
+        user.setAnonymousName(anonymousName);
+        user.setRole(role);
+        user.setIsActive(true);
+        user.setProfileStatus(ProfileStatus.ACTIVE);
+        return user;
+    }
+
+    private static String ids(List<Integer> ids) {
+        return ids.stream().map(String::valueOf).collect(Collectors.joining(","));
+    }
+}
@@ -0,0 +1,285 @@
+package com.dbms.mentalhealth.loadtest;
+
+import com.dbms.mentalhealth.benchmark.GeminiSimulatorServer;
+import com.dbms.mentalhealth.config.ChatLoadTestConfig;
+import com.dbms.mentalhealth.config.GeminiSimulatorConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives the running application end to end: {@code loadtest.pairs} chat sessions, each with a user and
+ * a listener connected over {@code /chat/{sessionId}/{username}}, both sending at
+ * {@code loadtest.messages-per-second}. Gemini is the {@link GeminiSimulatorServer}, reached through the
+ * real client, cache and parsing; its latency is set with {@code gemini.simulator.*}. Reports
+ * delivery latency (send until the other participant receives it), moderation latency (from the
+ * {@code chat.moderation.latency} timer) and persistence lag (send until the row is visible in
+ * {@code chat_messages}, polled every 100 ms).
+ * <p>
+ * Lives on the test classpath so it stays out of the application jar; run with
+ * {@code ./mvnw spring-boot:test-run -Dspring-boot.run.profiles=loadtest} against a local PostgreSQL.
+ */
+@Slf4j
+@Component
+@Profile("loadtest")
+public class ChatLoadTestRunner implements CommandLineRunner {
+    private static final String PREFIX = "lt-";
+    private static final long PERSISTENCE_POLL_MS = 100;
+
+    private final ChatLoadTestConfig config;
+    private final ChatLoadTestFixtures fixtures;
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+    private final GeminiSimulatorServer geminiSimulator;
+    private final GeminiSimulatorConfig geminiSimulatorConfig;
+    private final Environment environment;
+
+    private final AtomicLong messageIds = new AtomicLong();
+    // Send time of every message by id; entries are removed once the message is persisted
+    private final Map<Long, Long> sentAt = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Long> deliveryLatencies = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Long> persistenceLags = new ConcurrentLinkedQueue<>();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong refused = new AtomicLong();
+    private final AtomicLong blocked = new AtomicLong();
+    private final AtomicLong persisted = new AtomicLong();
+    private volatile long measureFrom = Long.MAX_VALUE;
+
+    public ChatLoadTestRunner(ChatLoadTestConfig config,
+                              ChatLoadTestFixtures fixtures,
+                              JdbcTemplate jdbcTemplate,
+                              MeterRegistry meterRegistry,
+                              GeminiSimulatorServer geminiSimulator,
+                              GeminiSimulatorConfig geminiSimulatorConfig,
+                              Environment environment) {
+        this.config = config;
+        this.fixtures = fixtures;
+        this.jdbcTemplate = jdbcTemplate;
+        this.meterRegistry = meterRegistry;
+        this.geminiSimulator = geminiSimulator;
+        this.geminiSimulatorConfig = geminiSimulatorConfig;
+        this.environment = environment;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        String baseUrl = "ws://localhost:" + environment.getProperty("local.server.port")
+                + environment.getProperty("server.servlet.context-path", "") + "/chat/";
+        List<ChatLoadTestFixtures.ChatPair> pairs = fixtures.create(config.getPairs());
+        List<WebSocketSession> connections = new ArrayList<>();
+        ScheduledExecutorService senders = Executors.newScheduledThreadPool(
+                Math.max(2, Runtime.getRuntime().availableProcessors()));
+        ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor();
+
+        try {
+            StandardWebSocketClient client = new StandardWebSocketClient();
+            for (ChatLoadTestFixtures.ChatPair pair : pairs) {
+                connections.add(connect(client, baseUrl + pair.sessionId() + "/" + pair.userName()));
+                connections.add(connect(client, baseUrl + pair.sessionId() + "/" + pair.listenerName()));
+            }
+            log.info("Opened {} WebSocket connections for {} sessions", connections.size(), pairs.size());
+
+            long periodMicros = (long) (1_000_000 / config.getMessagesPerSecond());
+            for (WebSocketSession connection : connections) {
+                // Spread the first sends so connections do not fire in lockstep
+                long delay = ThreadLocalRandom.current().nextLong(periodMicros);
+                senders.scheduleAtFixedRate(() -> send(connection), delay, periodMicros, TimeUnit.MICROSECONDS);
+            }
+            long[] lastPersistedId = {maxMessageId()};
+            String sessionIds = fixtures.sessionIdList();
+            poller.scheduleWithFixedDelay(() -> pollPersisted(sessionIds, lastPersistedId),
+                    PERSISTENCE_POLL_MS, PERSISTENCE_POLL_MS, TimeUnit.MILLISECONDS);
+
+            TimeUnit.SECONDS.sleep(config.getWarmupSeconds());
+            resetMeasurements();
+            long start = System.nanoTime();
+            measureFrom = start;
+            TimeUnit.SECONDS.sleep(config.getDurationSeconds());
+            senders.shutdownNow();
+            double elapsedSeconds = (System.nanoTime() - start) / 1_000_000_000.0;
+            HistogramSnapshot moderation = moderationSnapshot();
+
+            // Everything that passed moderation should eventually be written
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(config.getPersistenceTimeoutSeconds());
+            while (persisted.get() < sent.get() - refused.get() - blocked.get() && System.nanoTime() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(PERSISTENCE_POLL_MS);
+            }
+
+            report(elapsedSeconds, moderation);
+        } finally {
+            senders.shutdownNow();
+            poller.shutdownNow();
+            for (WebSocketSession connection : connections) {
+                closeQuietly(connection);
+            }
+            if (config.isCleanup()) {
+                fixtures.cleanup();
+            }
+        }
+    }
+
+    private WebSocketSession connect(StandardWebSocketClient client, String url) throws Exception {
+        return client.execute(new TextWebSocketHandler() {
+            @Override
+            protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+                onFrame(message.getPayload());
+            }
+        }, url).get(10, TimeUnit.SECONDS);
+    }
+
+    // Ticks for one connection never overlap, so sendMessage is not called concurrently on a session
+    private void send(WebSocketSession connection) {
+        if (!connection.isOpen()) {
+            return;
+        }
+        long id = messageIds.incrementAndGet();
+        long now = System.nanoTime();
+        sentAt.put(id, now);
+        if (now >= measureFrom) {
+            sent.incrementAndGet();
+        }
+        try {
+            connection.sendMessage(new TextMessage(PREFIX + id));
+        } catch (IOException | IllegalStateException e) {
+            sentAt.remove(id);
+            log.warn("Send on {} failed: {}", connection.getUri(), e.getMessage());
+        }
+    }
+
+    // Legacy frames: "sender: content" for chat, "SYSTEM: ..." for notices
+    private void onFrame(String payload) {
+        if (payload.startsWith("SYSTEM: ")) {
+            if (payload.contains("busy")) {
+                refused.incrementAndGet();
+            } else if (payload.contains("not sent")) {
+                blocked.incrementAndGet();
+            }
+            return;
+        }
+        Long id = parseId(payload, payload.indexOf(": ") + 2);
+        Long start = id != null ? sentAt.get(id) : null;
+        if (start != null && start >= measureFrom) {
+            deliveryLatencies.add(System.nanoTime() - start);
+            delivered.incrementAndGet();
+        }
+    }
+
+    private void pollPersisted(String sessionIds, long[] lastPersistedId) {
+        try {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                    "SELECT message_id, message_content FROM chat_messages WHERE message_id > ? AND session_id IN ("
+                            + sessionIds + ") ORDER BY message_id", lastPersistedId[0]);
+            long now = System.nanoTime();
+            for (Map<String, Object> row : rows) {
+                lastPersistedId[0] = Math.max(lastPersistedId[0], ((Number) row.get("message_id")).longValue());
+                Long id = parseId((String) row.get("message_content"), 0);
+                Long start = id != null ? sentAt.remove(id) : null;
+                if (start != null && start >= measureFrom) {
+                    persistenceLags.add(now - start);
+                    persisted.incrementAndGet();
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Polling chat_messages failed: {}", e.getMessage());
+        }
+    }
+
+    private static Long parseId(String content, int from) {
+        if (from < 0 || !content.startsWith(PREFIX, from)) {
+            return null;
+        }
+        try {
+            return Long.parseLong(content.substring(from + PREFIX.length()).trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private long maxMessageId() {
+        Long max = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(message_id), 0) FROM chat_messages", Long.class);
+        return max == null ? 0 : max;
+    }
+
+    private void resetMeasurements() {
+        deliveryLatencies.clear();
+        persistenceLags.clear();
+        sent.set(0);
+        delivered.set(0);
+        refused.set(0);
+        blocked.set(0);
+        persisted.set(0);
+    }
+
+    private HistogramSnapshot moderationSnapshot() {
+        Timer timer = meterRegistry.find("chat.moderation.latency").timer();
+        return timer != null ? timer.takeSnapshot() : null;
+    }
+
+    private void report(double elapsedSeconds, HistogramSnapshot moderation) {
+        log.info("Load test: {} sessions, {} connections at {} msg/s each, simulated Gemini latency median {} ms, p99 {} ms",
+                config.getPairs(), config.getPairs() * 2, config.getMessagesPerSecond(),
+                geminiSimulatorConfig.getLatencyMedianMs(), geminiSimulatorConfig.getLatencyP99Ms());
+        log.info("Sent {} ({} msg/s), delivered {}, refused {}, blocked {}, persisted {}; {} Gemini calls in total",
+                sent.get(), String.format("%.1f", sent.get() / elapsedSeconds), delivered.get(), refused.get(),
+                blocked.get(), persisted.get(), geminiSimulator.getCalls());
+        log.info("Delivery latency: {}", percentiles(deliveryLatencies));
+        if (moderation != null) {
+            StringBuilder line = new StringBuilder();
+            for (ValueAtPercentile value : moderation.percentileValues()) {
+                line.append(String.format("p%.0f %.1f ms, ", value.percentile() * 100, value.value(TimeUnit.MILLISECONDS)));
+            }
+            log.info("Moderation latency (last 2 minutes): {}max {} ms over {} verdicts", line,
+                    String.format("%.1f", moderation.max(TimeUnit.MILLISECONDS)), moderation.count());
+        }
+        log.info("Persistence lag (+ up to {} ms polling): {}", PERSISTENCE_POLL_MS, percentiles(persistenceLags));
+    }
+
+    private static String percentiles(ConcurrentLinkedQueue<Long> samples) {
+        long[] sorted = samples.stream().mapToLong(Long::longValue).toArray();
+        if (sorted.length == 0) {
+            return "no samples";
+        }
+        Arrays.sort(sorted);
+        return String.format("p50 %.1f ms, p95 %.1f ms, p99 %.1f ms, max %.1f ms over %d samples",
+                millis(sorted, 0.50), millis(sorted, 0.95), millis(sorted, 0.99),
+                sorted[sorted.length - 1] / 1_000_000.0, sorted.length);
+    }
+
+    private static double millis(long[] sorted, double percentile) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * percentile))] / 1_000_000.0;
+    }
+
+    private static void closeQuietly(WebSocketSession connection) {
+        try {
+            connection.close(CloseStatus.NORMAL);
+        } catch (IOException e) {
+            log.debug("Error closing load test connection", e);
+        }
+    }
+}
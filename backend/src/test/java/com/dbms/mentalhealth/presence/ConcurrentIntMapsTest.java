@@ -0,0 +1,195 @@
+package com.dbms.mentalhealth.presence;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link ConcurrentIntObjectMap} and {@link ConcurrentIntLongMap}, single-threaded. Probe chains are set
+ * up with keys picked for their stripe and slot, using the maps' own hashing, in a stripe's initial table
+ * of 8 slots.
+ */
+class ConcurrentIntMapsTest {
+
+    @Test
+    void objectMapPutGetRemove() {
+        ConcurrentIntObjectMap<String> map = new ConcurrentIntObjectMap<>();
+
+        assertNull(map.put(1, "one"));
+        assertNull(map.put(2, "two"));
+        assertEquals("one", map.put(1, "uno"));
+
+        assertEquals("uno", map.get(1));
+        assertEquals("two", map.get(2));
+        assertNull(map.get(3));
+        assertNull(map.get(0));
+        assertEquals(2, map.size());
+
+        assertEquals("uno", map.remove(1));
+        assertNull(map.remove(1));
+        assertNull(map.get(1));
+        assertEquals(1, map.size());
+
+        assertThrows(IllegalArgumentException.class, () -> map.put(0, "zero"));
+        map.clear();
+        assertEquals(0, map.size());
+        assertNull(map.get(2));
+    }
+
+    @Test
+    void objectMapKeepsEveryEntryThroughResizes() {
+        ConcurrentIntObjectMap<String> map = new ConcurrentIntObjectMap<>();
+        for (int key = 1; key <= 5000; key++) {
+            map.put(key, "v" + key);
+        }
+        assertEquals(5000, map.size());
+        for (int key = 1; key <= 5000; key += 2) {
+            assertEquals("v" + key, map.remove(key));
+        }
+
+        assertEquals(2500, map.size());
+        for (int key = 1; key <= 5000; key++) {
+            assertEquals(key % 2 == 0 ? "v" + key : null, map.get(key));
+        }
+        Map<Integer, String> seen = new HashMap<>();
+        map.forEach(seen::put);
+        assertEquals(2500, seen.size());
+        assertEquals("v5000", seen.get(5000));
+    }
+
+    @Test
+    void objectMapDeletionShiftsAChainThatWrapsPastTheEnd() {
+        ConcurrentIntObjectMap<String> map = new ConcurrentIntObjectMap<>();
+        int[] lastSlot = keysAt(0, 7, 2);
+        int[] firstSlot = keysAt(0, 0, 1);
+        // Slot 7, then wrapped to slots 0 and 1
+        map.put(lastSlot[0], "a");
+        map.put(lastSlot[1], "b");
+        map.put(firstSlot[0], "c");
+
+        assertEquals("a", map.remove(lastSlot[0]));
+
+        assertEquals("b", map.get(lastSlot[1]));
+        assertEquals("c", map.get(firstSlot[0]));
+        assertEquals(2, map.size());
+        assertEquals("b", map.remove(lastSlot[1]));
+        assertEquals("c", map.get(firstSlot[0]));
+        assertEquals("c", map.remove(firstSlot[0]));
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    void longMapPutGetRemove() {
+        ConcurrentIntLongMap map = new ConcurrentIntLongMap();
+
+        map.put(1, 10L);
+        map.put(2, 20L);
+        map.put(1, 11L);
+
+        assertEquals(11L, map.get(1, -1L));
+        assertEquals(20L, map.get(2, -1L));
+        assertEquals(-1L, map.get(3, -1L));
+        assertEquals(-1L, map.get(0, -1L));
+        assertEquals(2, map.size());
+
+        assertTrue(map.remove(1));
+        assertFalse(map.remove(1));
+        assertEquals(-1L, map.get(1, -1L));
+        assertEquals(1, map.size());
+        assertThrows(IllegalArgumentException.class, () -> map.put(0, 0L));
+    }
+
+    @Test
+    void longMapKeepsEveryEntryThroughResizes() {
+        ConcurrentIntLongMap map = new ConcurrentIntLongMap();
+        for (int key = 1; key <= 5000; key++) {
+            map.put(key, key * 10L);
+        }
+        for (int key = 1; key <= 5000; key += 2) {
+            assertTrue(map.remove(key));
+        }
+
+        assertEquals(2500, map.size());
+        for (int key = 1; key <= 5000; key++) {
+            assertEquals(key % 2 == 0 ? key * 10L : -1L, map.get(key, -1L));
+        }
+    }
+
+    @Test
+    void longMapDeletionShiftsAChainThatWrapsPastTheEnd() {
+        ConcurrentIntLongMap map = new ConcurrentIntLongMap();
+        int[] lastSlot = keysAt(5, 7, 2);
+        int[] firstSlot = keysAt(5, 0, 1);
+        map.put(lastSlot[0], 1L);
+        map.put(lastSlot[1], 2L);
+        map.put(firstSlot[0], 3L);
+
+        assertTrue(map.remove(lastSlot[0]));
+
+        assertEquals(2L, map.get(lastSlot[1], -1L));
+        assertEquals(3L, map.get(firstSlot[0], -1L));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    void removeIfRemovesAdjacentEntriesOfOneCluster() {
+        ConcurrentIntLongMap map = new ConcurrentIntLongMap();
+        int[] homeTwo = keysAt(3, 2, 3);
+        int[] homeThree = keysAt(3, 3, 1);
+        // Slots 2, 3, 4 and 5, all removed
+        for (int key : homeTwo) {
+            map.put(key, 0L);
+        }
+        map.put(homeThree[0], 0L);
+        int elsewhere = keysAt(4, 0, 1)[0];
+        map.put(elsewhere, 1L);
+
+        assertEquals(4, map.removeIf((key, value) -> value == 0L));
+
+        assertEquals(1, map.size());
+        assertEquals(1L, map.get(elsewhere, -1L));
+        for (int key : homeTwo) {
+            assertEquals(-1L, map.get(key, -1L));
+        }
+    }
+
+    @Test
+    void removeIfKeepsTheRestOfAClusterThatWraps() {
+        ConcurrentIntLongMap map = new ConcurrentIntLongMap();
+        int[] lastSlot = keysAt(9, 7, 2);
+        int[] firstSlot = keysAt(9, 0, 2);
+        // Slot 7, then wrapped to 0, 1 and 2; the two adjacent entries across the end go
+        map.put(lastSlot[0], 0L);
+        map.put(lastSlot[1], 0L);
+        map.put(firstSlot[0], 1L);
+        map.put(firstSlot[1], 2L);
+
+        assertEquals(2, map.removeIf((key, value) -> value == 0L));
+
+        assertEquals(2, map.size());
+        assertEquals(1L, map.get(firstSlot[0], -1L));
+        assertEquals(2L, map.get(firstSlot[1], -1L));
+        assertEquals(-1L, map.get(lastSlot[0], -1L));
+        assertEquals(-1L, map.get(lastSlot[1], -1L));
+    }
+
+    // The first keys above 1 that land in the stripe and have the home slot in an 8-slot table
+    private static int[] keysAt(int stripe, int slot, int count) {
+        int[] keys = new int[count];
+        int found = 0;
+        for (int key = 2; found < count; key++) {
+            int hash = IntIntTable.mix(key);
+            if (hash >>> 28 == stripe && (hash & 7) == slot) {
+                keys[found++] = key;
+            }
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,129 @@
+package com.dbms.mentalhealth.presence;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The immutable {@link IntIntTable} and {@link IntObjectTable}, built from parallel arrays.
+ */
+class IntTablesTest {
+
+    @Test
+    void intTableGetsWhatItWasBuiltFrom() {
+        IntIntTable table = IntIntTable.of(new int[]{1, 2, 3, 2}, new int[]{10, 20, 30, 21}, 4);
+
+        assertEquals(3, table.size());
+        assertEquals(10, table.get(1, -1));
+        assertEquals(21, table.get(2, -1));
+        assertEquals(30, table.get(3, -1));
+        assertEquals(-1, table.get(4, -1));
+        assertEquals(-1, table.get(0, -1));
+        assertFalse(table.containsKey(0));
+        assertTrue(table.containsKey(3));
+        // Entries past count are ignored
+        assertEquals(1, IntIntTable.of(new int[]{7, 8}, new int[]{70, 80}, 1).size());
+        assertThrows(IllegalArgumentException.class, () -> IntIntTable.of(new int[]{0}, new int[]{1}, 1));
+        assertEquals(0, IntIntTable.EMPTY.size());
+        assertFalse(IntIntTable.EMPTY.containsKey(1));
+    }
+
+    @Test
+    void intTableGrowsWithItsEntries() {
+        int count = 5000;
+        int[] keys = new int[count];
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = i + 1;
+            values[i] = (i + 1) * 10;
+        }
+
+        IntIntTable table = IntIntTable.of(keys, values, count);
+
+        assertEquals(count, table.size());
+        for (int key = 1; key <= count; key++) {
+            assertEquals(key * 10, table.get(key, -1));
+        }
+        assertEquals(-1, table.get(count + 1, -1));
+        List<Integer> seen = new ArrayList<>();
+        table.forEachKey(seen::add);
+        assertEquals(count, seen.size());
+    }
+
+    @Test
+    void intTableProbesPastTheEnd() {
+        // Both tables have 8 slots: the second key of slot 7 wraps to slot 0, pushing the one of slot 0 on
+        int[] lastSlot = keysAt(7, 3);
+        int[] firstSlot = keysAt(0, 1);
+        IntIntTable table = IntIntTable.of(
+                new int[]{lastSlot[0], lastSlot[1], firstSlot[0]}, new int[]{1, 2, 3}, 3);
+
+        assertEquals(1, table.get(lastSlot[0], -1));
+        assertEquals(2, table.get(lastSlot[1], -1));
+        assertEquals(3, table.get(firstSlot[0], -1));
+        assertEquals(-1, table.get(lastSlot[2], -1));
+    }
+
+    @Test
+    void objectTableGetsWhatItWasBuiltFrom() {
+        IntObjectTable<String> table = IntObjectTable.of(new int[]{1, 2, 1}, new String[]{"a", "b", "c"}, 3);
+
+        assertEquals(2, table.size());
+        assertEquals("c", table.get(1));
+        assertEquals("b", table.get(2));
+        assertNull(table.get(3));
+        assertNull(table.get(0));
+        assertFalse(table.containsKey(0));
+        assertThrows(IllegalArgumentException.class, () -> IntObjectTable.of(new int[]{0}, new String[]{"x"}, 1));
+        assertSame(IntObjectTable.empty(), IntObjectTable.empty());
+        assertEquals(0, IntObjectTable.<String>empty().size());
+    }
+
+    @Test
+    void objectTableGrowsAndProbesPastTheEnd() {
+        int count = 5000;
+        int[] keys = new int[count];
+        String[] values = new String[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = i + 1;
+            values[i] = "v" + (i + 1);
+        }
+        IntObjectTable<String> large = IntObjectTable.of(keys, values, count);
+        assertEquals(count, large.size());
+        for (int key = 1; key <= count; key++) {
+            assertEquals("v" + key, large.get(key));
+        }
+
+        int[] lastSlot = keysAt(7, 3);
+        int[] firstSlot = keysAt(0, 1);
+        IntObjectTable<String> wrapped = IntObjectTable.of(
+                new int[]{lastSlot[0], lastSlot[1], firstSlot[0]}, new String[]{"a", "b", "c"}, 3);
+        assertEquals("a", wrapped.get(lastSlot[0]));
+        assertEquals("b", wrapped.get(lastSlot[1]));
+        assertEquals("c", wrapped.get(firstSlot[0]));
+        assertNull(wrapped.get(lastSlot[2]));
+        List<String> seen = new ArrayList<>();
+        wrapped.forEach((key, value) -> seen.add(value));
+        assertEquals(3, seen.size());
+    }
+
+    // The first keys whose home is the slot in an 8-slot table
+    private static int[] keysAt(int slot, int count) {
+        int[] keys = new int[count];
+        int found = 0;
+        for (int key = 1; found < count; key++) {
+            if ((IntIntTable.mix(key) & 7) == slot) {
+                keys[found++] = key;
+            }
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,131 @@
+package com.dbms.mentalhealth.sse;
+
+import com.dbms.mentalhealth.config.SseWriterConfig;
+import com.dbms.mentalhealth.enums.SseDelivery;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The fan-out with a single writer thread and emitters that are never attached to a response, so sends are
+ * only buffered, except where a test makes one block like a client that stopped reading.
+ */
+class SseFanOutTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final CountDownLatch unblock = new CountDownLatch(1);
+    private SseFanOut fanOut;
+
+    @AfterEach
+    void stop() {
+        unblock.countDown();
+        if (fanOut != null) {
+            fanOut.shutdown();
+        }
+    }
+
+    @Test
+    void stalledLatestWriteIsClosedAndAnotherWriterTakesOver() throws Exception {
+        fanOut = fanOut(300);
+        CountDownLatch writing = new CountDownLatch(1);
+        SseEmitter stuckEmitter = new SseEmitter() {
+            @Override
+            public synchronized void send(Set<DataWithMediaType> items) {
+                writing.countDown();
+                awaitUninterruptibly(unblock);
+            }
+        };
+        SseSubscriber stuck = fanOut.subscribe(stuckEmitter, SseDelivery.LATEST, closed -> {
+        });
+        SseSubscriber healthy = fanOut.subscribe(new SseEmitter(), SseDelivery.LATEST, closed -> {
+        });
+        CompletableFuture<Boolean> stuckOutcome = new CompletableFuture<>();
+        CompletableFuture<Boolean> healthyOutcome = new CompletableFuture<>();
+
+        assertTrue(stuck.offer(fanOut.encode("onlineUsers", "[]"), stuckOutcome::complete));
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        assertTrue(healthy.offer(fanOut.encode("onlineUsers", "[]"), healthyOutcome::complete));
+
+        // The only writer is stuck, so this frame is written by the one the watchdog adds
+        assertTrue(healthyOutcome.get(5, TimeUnit.SECONDS));
+        assertFalse(stuck.isOpen());
+        assertTrue(healthy.isOpen());
+        assertEquals(1.0, registry.counter("sse.subscriber.stalled", "reason", "write").count());
+        assertEquals(1.0, registry.get("sse.writers.stalled").gauge().value());
+
+        unblock.countDown();
+        assertTrue(stuckOutcome.get(5, TimeUnit.SECONDS));
+        awaitStalledWriters(0);
+    }
+
+    @Test
+    void outcomeIsFalseForFramesDroppedOrReplaced() throws Exception {
+        fanOut = fanOut(10_000);
+        CountDownLatch writing = new CountDownLatch(1);
+        SseEmitter slowEmitter = new SseEmitter() {
+            @Override
+            public synchronized void send(Set<DataWithMediaType> items) {
+                writing.countDown();
+                awaitUninterruptibly(unblock);
+            }
+        };
+        SseSubscriber subscriber = fanOut.subscribe(slowEmitter, SseDelivery.LATEST, closed -> {
+        });
+        CompletableFuture<Boolean> first = new CompletableFuture<>();
+        CompletableFuture<Boolean> replaced = new CompletableFuture<>();
+        CompletableFuture<Boolean> dropped = new CompletableFuture<>();
+
+        assertTrue(subscriber.offer(fanOut.encode("onlineUsers", "[1]"), first::complete));
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        assertTrue(subscriber.offer(fanOut.encode("onlineUsers", "[2]"), replaced::complete));
+        assertTrue(subscriber.offer(fanOut.encode("onlineUsers", "[3]"), dropped::complete));
+        assertFalse(replaced.get(5, TimeUnit.SECONDS));
+
+        // Closing during the write neither waits for it nor loses its outcome
+        subscriber.close();
+        assertFalse(dropped.get(5, TimeUnit.SECONDS));
+        unblock.countDown();
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+    }
+
+    private SseFanOut fanOut(long sendTimeLimitMs) {
+        SseWriterConfig config = new SseWriterConfig();
+        config.setThreads(1);
+        config.setSendTimeLimitMs(sendTimeLimitMs);
+        return new SseFanOut(new ObjectMapper(), config, registry);
+    }
+
+    private void awaitStalledWriters(double expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (registry.get("sse.writers.stalled").gauge().value() != expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, registry.get("sse.writers.stalled").gauge().value());
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.dbms.mentalhealth.websocket;
+
+import com.dbms.mentalhealth.config.ChatReplayConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ChatReplayBufferTest {
+
+    private final ChatReplayBuffer buffer = new ChatReplayBuffer(new ChatReplayConfig(), new SimpleMeterRegistry());
+
+    @Test
+    void recreatedLogStartsANewEpoch() {
+        ChatSessionLog first = buffer.getOrCreate("1");
+        first.append("alice", "hello", LocalDateTime.now());
+        assertSame(first, buffer.getOrCreate("1"));
+
+        // Evicted or removed: its seqs start over, so a client holding the old epoch must not match
+        buffer.remove("1");
+        ChatSessionLog second = buffer.getOrCreate("1");
+
+        assertEquals(0, second.lastSeq());
+        assertNotEquals(first.epoch(), second.epoch());
+        assertNotEquals(first.epoch(), buffer.getOrCreate("2").epoch());
+    }
+}
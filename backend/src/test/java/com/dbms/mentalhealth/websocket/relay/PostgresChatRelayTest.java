@@ -0,0 +1,186 @@
+package com.dbms.mentalhealth.websocket.relay;
+
+import com.dbms.mentalhealth.config.ChatRelayConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Two relay nodes in one JVM, as two instances of the backend would be. The cross-node tests need a
+ * PostgreSQL database: set {@code CHAT_RELAY_TEST_DB_URL} (and {@code CHAT_RELAY_TEST_DB_USERNAME},
+ * {@code CHAT_RELAY_TEST_DB_PASSWORD}), e.g. to the database from docker-compose.
+ */
+class PostgresChatRelayTest {
+    private static final String DB_URL = "CHAT_RELAY_TEST_DB_URL";
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final List<PostgresChatRelay> nodes = new ArrayList<>();
+
+    @AfterEach
+    void stopNodes() {
+        nodes.forEach(PostgresChatRelay::stop);
+    }
+
+    @Test
+    @EnabledIfEnvironmentVariable(named = DB_URL, matches = ".+")
+    void deliversEventsToTheOtherNodeInPublishOrder() throws Exception {
+        PostgresChatRelay nodeA = node(System.getenv(DB_URL));
+        PostgresChatRelay nodeB = node(System.getenv(DB_URL));
+        BlockingQueue<ChatRelayEvent> localOnA = subscribe(nodeA);
+        BlockingQueue<ChatRelayEvent> receivedOnB = subscribe(nodeB);
+        // LISTEN is issued asynchronously by the listener thread
+        awaitListening(nodeA, receivedOnB);
+
+        for (int i = 0; i < 50; i++) {
+            nodeA.publish(ChatRelayEvent.message("session-1", "alice", "message " + i, LocalDateTime.now()));
+        }
+        for (int i = 0; i < 50; i++) {
+            ChatRelayEvent event = receivedOnB.poll(5, TimeUnit.SECONDS);
+            assertNotNull(event, "event " + i + " was not relayed");
+            assertEquals("message " + i, event.content());
+            assertEquals(nodeA.getNodeId(), event.originNodeId());
+        }
+
+        // The publishing node delivers locally once and ignores its own notifications
+        localOnA.clear();
+        nodeA.publish(ChatRelayEvent.endSession("session-1"));
+        assertNotNull(localOnA.poll(1, TimeUnit.SECONDS));
+        assertNotNull(receivedOnB.poll(5, TimeUnit.SECONDS));
+        assertNull(localOnA.poll(500, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    @EnabledIfEnvironmentVariable(named = DB_URL, matches = ".+")
+    void joinsEventsLargerThanTheNotifyLimit() throws Exception {
+        PostgresChatRelay nodeA = node(System.getenv(DB_URL));
+        PostgresChatRelay nodeB = node(System.getenv(DB_URL));
+        BlockingQueue<ChatRelayEvent> receivedOnB = subscribe(nodeB);
+        awaitListening(nodeA, receivedOnB);
+
+        String content = "é".repeat(20_000);
+        nodeA.publish(ChatRelayEvent.message("session-2", "bob", content, LocalDateTime.now()));
+
+        ChatRelayEvent event = receivedOnB.poll(5, TimeUnit.SECONDS);
+        assertNotNull(event);
+        assertEquals(content, event.content());
+    }
+
+    @Test
+    void publishDeliversLocallyWithoutWaitingForTheDatabase() throws Exception {
+        // Nothing listens on port 1: every database call fails
+        PostgresChatRelay node = node("jdbc:postgresql://127.0.0.1:1/none?connectTimeout=10");
+        BlockingQueue<ChatRelayEvent> local = subscribe(node);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            node.publish(ChatRelayEvent.message("session-3", "carol", "message " + i, LocalDateTime.now()));
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(100, local.size());
+        assertTrue(elapsedMs < 1000, "publish blocked for " + elapsedMs + " ms");
+    }
+
+    @Test
+    void malformedNotificationsAreDroppedAndLaterOnesStillDelivered() throws Exception {
+        PostgresChatRelay node = node("jdbc:postgresql://127.0.0.1:1/none?connectTimeout=10");
+        BlockingQueue<ChatRelayEvent> received = subscribe(node);
+        String json = objectMapper.writeValueAsString(
+                ChatRelayEvent.message("session-4", "dave", "hello", LocalDateTime.now()).stamped("other"));
+
+        node.onNotification("not a relay payload");
+        node.onNotification("other|1|x|1|" + json);
+        node.onNotification("other|2|0|0|" + json);
+        node.onNotification("other|3|2|2|" + json);
+        node.onNotification("other|4|-1|2|" + json);
+        node.onNotification("other|5|0|99999999|" + json);
+        // A later part claims a different count than the first
+        node.onNotification("other|6|0|2|" + json.substring(0, 10));
+        node.onNotification("other|6|1|3|" + json.substring(10));
+        node.onNotification("other|7|0|1|{broken");
+        assertNull(received.poll(100, TimeUnit.MILLISECONDS));
+
+        node.onNotification("other|8|0|2|" + json.substring(0, 10));
+        node.onNotification("other|8|1|2|" + json.substring(10));
+        ChatRelayEvent event = received.poll(1, TimeUnit.SECONDS);
+        assertNotNull(event);
+        assertEquals("hello", event.content());
+    }
+
+    @Test
+    @EnabledIfEnvironmentVariable(named = DB_URL, matches = ".+")
+    void listenerSurvivesForeignNotificationsOnTheChannel() throws Exception {
+        PostgresChatRelay nodeA = node(System.getenv(DB_URL));
+        PostgresChatRelay nodeB = node(System.getenv(DB_URL));
+        BlockingQueue<ChatRelayEvent> receivedOnB = subscribe(nodeB);
+        awaitListening(nodeA, receivedOnB);
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(System.getenv(DB_URL),
+                System.getenv().getOrDefault("CHAT_RELAY_TEST_DB_USERNAME", "postgres"),
+                System.getenv().getOrDefault("CHAT_RELAY_TEST_DB_PASSWORD", "")));
+        jdbcTemplate.queryForList("SELECT pg_notify('chat_relay_test', 'x|1|5|2|{}')");
+        jdbcTemplate.queryForList("SELECT pg_notify('chat_relay_test', 'x|2|a|b|{}')");
+
+        nodeA.publish(ChatRelayEvent.message("session-5", "erin", "still relayed", LocalDateTime.now()));
+        ChatRelayEvent event = receivedOnB.poll(5, TimeUnit.SECONDS);
+        assertNotNull(event);
+        assertEquals("still relayed", event.content());
+    }
+
+    private PostgresChatRelay node(String url) {
+        DataSourceProperties properties = new DataSourceProperties();
+        properties.setUrl(url);
+        properties.setUsername(System.getenv().getOrDefault("CHAT_RELAY_TEST_DB_USERNAME", "postgres"));
+        properties.setPassword(System.getenv().getOrDefault("CHAT_RELAY_TEST_DB_PASSWORD", ""));
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(url, properties.getUsername(), properties.getPassword());
+
+        ChatRelayConfig config = new ChatRelayConfig();
+        config.setChannel("chat_relay_test");
+        config.setPollTimeoutMs(50);
+        config.setReconnectBackoffMs(200);
+        PostgresChatRelay node = new PostgresChatRelay(properties, new JdbcTemplate(dataSource), objectMapper, config,
+                new SimpleMeterRegistry());
+        node.start();
+        nodes.add(node);
+        return node;
+    }
+
+    private static BlockingQueue<ChatRelayEvent> subscribe(PostgresChatRelay node) {
+        BlockingQueue<ChatRelayEvent> events = new LinkedBlockingQueue<>();
+        node.subscribe(events::add);
+        return events;
+    }
+
+    // Publishes probes until one arrives, then drops everything received so far
+    private static void awaitListening(PostgresChatRelay publisher, BlockingQueue<ChatRelayEvent> receiver)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            publisher.publish(ChatRelayEvent.system("probe", "probe", null));
+            if (receiver.poll(200, TimeUnit.MILLISECONDS) != null) {
+                TimeUnit.MILLISECONDS.sleep(300);
+                receiver.clear();
+                return;
+            }
+        }
+        throw new AssertionError("Relay nodes did not connect to the database");
+    }
+}